@@ -0,0 +1,117 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.util.MapUtils;
+
+/**
+ * Map and poi reading of whole synthetic file and of small viewport in its center,
+ * nearest pois to the center are found with poi search of whole file and with nearest search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MapReadingBenchmark {
+
+	private static final int NEAREST = 20;
+
+	private BinaryMapIndexReader reader;
+	private int[] all;
+	private int[] viewport;
+	private int centerX;
+	private int centerY;
+
+	@Setup(Level.Trial)
+	public void setUp(SyntheticObfFixture fixture) throws IOException {
+		reader = fixture.openReader();
+		int last = fixture.gridSize - 1;
+		all = fixture.getBounds31(0, 0, last, last);
+		int c = fixture.gridSize / 2;
+		viewport = fixture.getBounds31(c - 4, c - 4, c + 4, c + 4);
+		centerX = (viewport[0] + viewport[2]) / 2;
+		centerY = (viewport[1] + viewport[3]) / 2;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<BinaryMapDataObject> searchMapIndexAll() throws IOException {
+		return searchMap(all);
+	}
+
+	@Benchmark
+	public List<BinaryMapDataObject> searchMapIndexViewport() throws IOException {
+		return searchMap(viewport);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiAll() throws IOException {
+		return searchPoi(all);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiViewport() throws IOException {
+		return searchPoi(viewport);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiNearest() throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiNearestRequest(centerX, centerY, NEAREST,
+				null, null);
+		return BinaryMapIndexReader.searchPoiNearest(Collections.singletonList(reader), req);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiNearestBySort() throws IOException {
+		List<Amenity> res = searchPoi(all);
+		Collections.sort(res, new Comparator<Amenity>() {
+			@Override
+			public int compare(Amenity o1, Amenity o2) {
+				return Double.compare(getDistance(o1), getDistance(o2));
+			}
+		});
+		return res.subList(0, Math.min(NEAREST, res.size()));
+	}
+
+	private double getDistance(Amenity a) {
+		return MapUtils.squareDist31TileMetric(centerX, centerY, MapUtils.get31TileNumberX(a.getLocation().getLongitude()),
+				MapUtils.get31TileNumberY(a.getLocation().getLatitude()));
+	}
+
+	private List<BinaryMapDataObject> searchMap(int[] b) throws IOException {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(b[0], b[2], b[1], b[3], 15,
+				null);
+		return reader.searchMapIndex(req);
+	}
+
+	private List<Amenity> searchPoi(int[] b) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(b[0], b[2], b[1], b[3], -1, null,
+				null);
+		return reader.searchPoi(req);
+	}
+}
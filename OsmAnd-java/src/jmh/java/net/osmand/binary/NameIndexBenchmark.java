@@ -0,0 +1,83 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+
+/**
+ * Poi search by name prefix with name index read from file and loaded to memory, and loading of name index.
+ * Memory used by loaded index is logged by {@link BinaryMapIndexReader#loadNameIndexes()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NameIndexBenchmark {
+
+	@Param({ "gre", "royal c" })
+	public String query;
+
+	private BinaryMapIndexReader reader;
+	private BinaryMapIndexReader memoryReader;
+	private int[] bounds;
+
+	@Setup(Level.Trial)
+	public void setUp(SyntheticObfFixture fixture) throws IOException {
+		reader = fixture.openReader();
+		memoryReader = fixture.openReader();
+		memoryReader.loadNameIndexes();
+		int last = fixture.gridSize - 1;
+		bounds = fixture.getBounds31(0, 0, last, last);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		memoryReader.close();
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiByName() throws IOException {
+		return searchPoiByName(reader);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoiByNameInMemory() throws IOException {
+		return searchPoiByName(memoryReader);
+	}
+
+	@Benchmark
+	public long loadNameIndexes() throws IOException {
+		for (PoiRegion region : reader.getPoiIndexes()) {
+			region.nameIndex = null;
+		}
+		reader.loadNameIndexes();
+		return reader.getNameIndexesMemorySize();
+	}
+
+	private List<Amenity> searchPoiByName(BinaryMapIndexReader r) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((bounds[0] + bounds[2]) / 2,
+				(bounds[1] + bounds[3]) / 2, query, bounds[0], bounds[2], bounds[1], bounds[3], null);
+		return r.searchPoiByName(req);
+	}
+}
@@ -0,0 +1,66 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Synthetic obf file shared by all benchmark threads, it is generated once per trial.
+ */
+@State(Scope.Benchmark)
+public class SyntheticObfFixture {
+
+	@Param({ "40" })
+	public int gridSize;
+
+	public SyntheticObfWriter writer;
+	public File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		writer = new SyntheticObfWriter(52.4, 4.8).setGrid(gridSize, 0.0015);
+		file = File.createTempFile("synthetic", ".obf");
+		file.deleteOnExit();
+		writer.write(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Readers are not thread safe, so every thread should open its own.
+	 */
+	public BinaryMapIndexReader openReader() throws IOException {
+		return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+
+	public LatLon getNode(int row, int col) {
+		return writer.getNode(row, col);
+	}
+
+	/**
+	 * @return bounds of grid rows and columns in 31 tile numbers [left, top, right, bottom], edge rows are included
+	 */
+	public int[] getBounds31(int fromRow, int fromCol, int toRow, int toCol) {
+		LatLon tl = writer.getNode(fromRow, fromCol);
+		LatLon br = writer.getNode(toRow, toCol);
+		// map coordinates are stored with precision of 32 units
+		int pad = 64;
+		return new int[] { MapUtils.get31TileNumberX(tl.getLongitude()) - pad,
+				MapUtils.get31TileNumberY(tl.getLatitude()) - pad,
+				MapUtils.get31TileNumberX(br.getLongitude()) + pad,
+				MapUtils.get31TileNumberY(br.getLatitude()) + pad };
+	}
+}
@@ -0,0 +1,119 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.CachedOsmandIndexes;
+import net.osmand.binary.SyntheticObfFixture;
+import net.osmand.data.LatLon;
+import net.osmand.util.Algorithms;
+
+/**
+ * Time to first route after start with many obf files:
+ * reading of index cache, initialization of all readers and first route calculation.
+ * Files are copies of synthetic file, so route is calculated with first reader only
+ * as it would be with distinct regions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ColdStartBenchmark {
+
+	@Param({ "300" })
+	public int files;
+
+	@Param({ "true" })
+	public boolean useCache;
+
+	private File dir;
+	private File cacheFile;
+	private List<File> obfFiles = new ArrayList<File>();
+	private List<BinaryMapIndexReader> readers;
+	private LatLon start;
+	private LatLon end;
+
+	@Setup(Level.Trial)
+	public void setUp(SyntheticObfFixture fixture) throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		dir = File.createTempFile("coldstart", "");
+		dir.delete();
+		dir.mkdirs();
+		for (int i = 0; i < files; i++) {
+			File f = new File(dir, "Region_" + i + ".obf");
+			Algorithms.fileCopy(fixture.file, f);
+			obfFiles.add(f);
+		}
+		cacheFile = new File(dir, "indexes.cache");
+		if (useCache) {
+			CachedOsmandIndexes cache = new CachedOsmandIndexes();
+			closeReaders(cache.getReaders(obfFiles, threads()));
+			cache.writeToFile(cacheFile);
+		}
+		start = fixture.getNode(1, 1);
+		end = fixture.getNode(fixture.gridSize - 3, fixture.gridSize - 5);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeReaders() throws IOException {
+		if (readers != null) {
+			closeReaders(readers);
+			readers = null;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Algorithms.removeAllFiles(dir);
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> firstRoute() throws IOException, InterruptedException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		if (cacheFile.exists()) {
+			cache.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		}
+		readers = cache.getReaders(obfFiles, threads());
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", 256);
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null,
+				new BinaryMapIndexReader[] { readers.get(0) });
+		List<RouteSegmentResult> route = frontEnd.searchRoute(ctx, start, end, null);
+		if (route == null || route.isEmpty()) {
+			throw new IllegalStateException("Route is not found in synthetic file");
+		}
+		return route;
+	}
+
+	private static int threads() {
+		return Math.max(2, Runtime.getRuntime().availableProcessors());
+	}
+
+	private static void closeReaders(List<BinaryMapIndexReader> readers) throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			if (r != null) {
+				r.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfFixture;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+/**
+ * Routes across synthetic street grid:
+ * full calculation with tiles loading, A* search over loaded tiles and result preparation of found route.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RoutingBenchmark {
+
+	@Param({ "car" })
+	public String profile;
+
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+	private RoutePlannerFrontEnd frontEnd;
+	private LatLon start;
+	private LatLon end;
+	// context with loaded tiles
+	private RoutingContext loadedCtx;
+	private FinalRouteSegment finalSegment;
+
+	@Setup(Level.Trial)
+	public void setUp(SyntheticObfFixture fixture) throws IOException, InterruptedException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		reader = fixture.openReader();
+		config = RoutingConfiguration.getDefault().build(profile, 256);
+		frontEnd = new RoutePlannerFrontEnd();
+		start = fixture.getNode(1, 1);
+		end = fixture.getNode(fixture.gridSize - 3, fixture.gridSize - 5);
+		loadedCtx = buildContext();
+		List<RouteSegmentResult> route = frontEnd.searchRoute(loadedCtx, start, end, null);
+		if (route == null || route.isEmpty()) {
+			throw new IllegalStateException("Route is not found in synthetic file");
+		}
+		finalSegment = searchLoaded();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> searchRoute() throws IOException, InterruptedException {
+		return frontEnd.searchRoute(buildContext(), start, end, null);
+	}
+
+	@Benchmark
+	public FinalRouteSegment searchRouteInternal() throws IOException, InterruptedException {
+		return searchLoaded();
+	}
+
+	@Benchmark
+	public List<RouteSegmentResult> prepareResult() throws IOException {
+		return new RouteResultPreparation().prepareResult(loadedCtx, finalSegment);
+	}
+
+	private RoutingContext buildContext() {
+		return frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+	}
+
+	private FinalRouteSegment searchLoaded() throws IOException, InterruptedException {
+		RouteSegmentPoint s = frontEnd.findRouteSegment(start.getLatitude(), start.getLongitude(), loadedCtx, null);
+		RouteSegmentPoint e = frontEnd.findRouteSegment(end.getLatitude(), end.getLongitude(), loadedCtx, null);
+		loadedCtx.initStartAndTargetPoints(s, e);
+		return new BinaryRoutePlanner().searchRouteInternal(loadedCtx, s, e, null);
+	}
+}
@@ -33,6 +33,8 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +70,113 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream with positional reads from file channel.
+   * Position of channel is not changed, so several streams could read the same channel concurrently.
+   */
+  public static CodedInputStream newInstance(FileChannel channel) throws IOException {
+    return new CodedInputStream(channel);
+  }
+
+  /**
+   * Create a new CodedInputStream reading directly from memory mapped file.
+   * Seeks only move position and there is no intermediate heap buffer.
+   * Files bigger than {@link #MAPPED_SEGMENT_SIZE} are mapped with several segments.
+   * Positions of stream are int, so files bigger than 2GB are not mapped and stream reads them
+   * with positional reads of channel as {@link #newInstance(FileChannel)} (see {@link #isMemoryMapped()}).
+   */
+  public static CodedInputStream newMappedInstance(RandomAccessFile raf) throws IOException {
+    return newMappedInstance(raf, MAPPED_SEGMENT_SIZE);
+  }
+
+  public static CodedInputStream newMappedInstance(RandomAccessFile raf, long segmentSize) throws IOException {
+    if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Segment size is out of range: " + segmentSize);
+    }
+    FileChannel channel = raf.getChannel();
+    long length = channel.size();
+    if (length > Integer.MAX_VALUE) {
+      return new CodedInputStream(channel);
+    }
+    int cnt = (int) ((length + segmentSize - 1) / segmentSize);
+    ByteBuffer[] segments = new ByteBuffer[cnt];
+    for (int i = 0; i < cnt; i++) {
+      long start = i * segmentSize;
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+    }
+    return new CodedInputStream(segments, segmentSize, length);
+  }
+
+  /**
+   * Create a new CodedInputStream over the same mapping as given memory mapped stream,
+   * mapped segments are shared and position of new stream is independent.
+   */
+  public static CodedInputStream newMappedInstance(CodedInputStream mappedStream) {
+    if (mappedStream.segments == null) {
+      throw new IllegalArgumentException("Stream is not memory mapped");
+    }
+    ByteBuffer[] segments = new ByteBuffer[mappedStream.segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = mappedStream.segments[i].duplicate();
+    }
+    return new CodedInputStream(segments, mappedStream.segmentSize, mappedStream.fileLength);
+  }
+
+  public boolean isMemoryMapped() {
+    return segments != null;
+  }
+
+  /**
+   * Releases mapping of stream created by {@link #newMappedInstance(RandomAccessFile)}, so mapped file
+   * could be replaced or deleted. Neither this stream nor streams sharing its mapping could be used after that.
+   * @return false if platform doesn't allow to release mapping and it is released by garbage collector
+   */
+  public boolean unmap() {
+    if (segments == null) {
+      return true;
+    }
+    boolean released = true;
+    for (ByteBuffer segment : segments) {
+      released &= releaseMappedBuffer(segment);
+    }
+    segments = null;
+    mapped = null;
+    bufferPos = 0;
+    bufferSize = 0;
+    return released;
+  }
+
+  private static boolean releaseMappedBuffer(ByteBuffer buffer) {
+    try {
+      // java 9+
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+      return true;
+    } catch (Exception e) {
+      // not available
+    }
+    try {
+      // java 8
+      java.lang.reflect.Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      cleaner.getClass().getMethod("clean").invoke(cleaner);
+      return true;
+    } catch (Exception e) {
+      // not available
+    }
+    try {
+      // android
+      Class.forName("java.nio.NioUtils").getMethod("freeDirectBuffer", ByteBuffer.class).invoke(null, buffer);
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+  // end osmand change
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,12 +331,20 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (size <= (bufferSize - bufferPos) && size > 0 && mapped == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
       bufferPos += size;
       return result;
+    } else if (size <= (bufferSize - bufferPos) && size > 0 && size <= BUFFER_SIZE) {
+      // osmand change: bytes are in current mapped segment, copy them at once to reused array
+      if (stringBuffer == null) {
+        stringBuffer = new byte[BUFFER_SIZE];
+      }
+      copyFromBuffer(bufferPos, stringBuffer, 0, size);
+      bufferPos += size;
+      return new String(stringBuffer, 0, size, "UTF-8");
     } else {
       // Slow path:  Build a byte array first then copy it.
       return new String(readRawBytes(size), "UTF-8");
@@ -324,12 +441,18 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (size <= (bufferSize - bufferPos) && size > 0 && mapped == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
       bufferPos += size;
       return result;
+    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+      // osmand change: copy directly from current mapped segment
+      mapped.position(bufferPos);
+      final ByteString result = ByteString.copyFrom(mapped, size);
+      bufferPos += size;
+      return result;
     } else {
       // Slow path:  Build a byte array first then copy it.
       return ByteString.copyFrom(readRawBytes(size));
@@ -539,6 +662,17 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: in memory mapped mode current segment is used instead of buffer
+  // and buffer positions are relative to mappedStart
+  private ByteBuffer[] segments;
+  private ByteBuffer mapped;
+  private long mappedStart;
+  private long fileLength;
+  private long segmentSize;
+  private byte[] stringBuffer;
+  // osmand change: positional reads from shared channel
+  private FileChannel channel;
+  private ByteBuffer channelBuffer;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -567,6 +701,7 @@ public final class CodedInputStream {
   private static final int DEFAULT_RECURSION_LIMIT = 64;
   private static final int DEFAULT_SIZE_LIMIT = 64 << 20;  // 64MB
   private static final int BUFFER_SIZE = 5 * 1024;
+  public static final long MAPPED_SEGMENT_SIZE = 1 << 30;
 
   private CodedInputStream(final byte[] buffer, final int off, final int len) {
     this.buffer = buffer;
@@ -586,6 +721,28 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	private CodedInputStream(final FileChannel channel) throws IOException {
+		buffer = new byte[BUFFER_SIZE];
+		this.channel = channel;
+		this.channelBuffer = ByteBuffer.wrap(buffer);
+		this.fileLength = channel.size();
+		bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		input = null;
+	}
+
+	private CodedInputStream(final ByteBuffer[] segments, long segmentSize, long length) {
+		buffer = null;
+		this.segments = segments;
+		this.segmentSize = segmentSize;
+		this.fileLength = length;
+		bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -748,10 +905,37 @@ public final class CodedInputStream {
       }
     }
 
+    if (segments != null) {
+      // osmand change
+      long pos = mappedStart + bufferSize;
+      if (pos >= fileLength) {
+        if (mustSucceed) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        }
+        return false;
+      }
+      selectMappedSegment(pos);
+      return true;
+    }
+
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (channel != null) {
+      // osmand change
+      bufferSize = (int) Math.min(fileLength - totalBytesRetired, buffer.length);
+      if (bufferSize > 0) {
+        channelBuffer.clear();
+        channelBuffer.limit(bufferSize);
+        while (channelBuffer.hasRemaining()) {
+          if (channel.read(channelBuffer, totalBytesRetired + channelBuffer.position()) < 0) {
+            throw InvalidProtocolBufferException.truncatedMessage();
+          }
+        }
+      } else {
+        bufferSize = -1;
+      }
+    } else if (raf != null) {
     	// osmand change
      totalBytesRetired = (int) raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
@@ -797,9 +981,40 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mapped != null) {
+      return mapped.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
+  // osmand change
+  private void copyFromBuffer(int pos, byte[] dest, int destPos, int length) {
+    if (mapped != null) {
+      mapped.position(pos);
+      mapped.get(dest, destPos, length);
+    } else {
+      System.arraycopy(buffer, pos, dest, destPos, length);
+    }
+  }
+
+  private void selectMappedSegment(long pos) {
+    int ind = (int) (pos / segmentSize);
+    if (ind == segments.length && ind > 0) {
+      // position at the very end of file
+      ind--;
+    }
+    mapped = segments[ind];
+    mappedStart = ind * segmentSize;
+    // mapped files are not bigger than 2GB
+    totalBytesRetired = (int) mappedStart;
+    bufferPos = (int) (pos - mappedStart);
+    bufferSize = mapped.limit();
+    bufferSizeAfterLimit = 0;
+    if (pos <= currentLimit) {
+      recomputeBufferSizeAfterLimit();
+    }
+  }
+
   /**
    * Read a fixed size of bytes from the input.
    *
@@ -821,17 +1036,24 @@ public final class CodedInputStream {
     if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
-      System.arraycopy(buffer, bufferPos, bytes, 0, size);
+      copyFromBuffer(bufferPos, bytes, 0, size);
       bufferPos += size;
       return bytes;
-    } else if (size < BUFFER_SIZE) {
+    } else if (size < BUFFER_SIZE || segments != null || channel != null) {
+      // osmand change: bytes of file are checked against file length, so they could be allocated at once
+      if (segments != null && mappedStart + bufferPos + size > fileLength) {
+        throw InvalidProtocolBufferException.truncatedMessage();
+      }
+      if (channel != null && (long) totalBytesRetired + bufferPos + size > fileLength) {
+        throw InvalidProtocolBufferException.truncatedMessage();
+      }
       // Reading more bytes than are in the buffer, but not an excessive number
       // of bytes.  We can safely allocate the resulting array ahead of time.
 
       // First copy what we have.
       final byte[] bytes = new byte[size];
       int pos = bufferSize - bufferPos;
-      System.arraycopy(buffer, bufferPos, bytes, 0, pos);
+      copyFromBuffer(bufferPos, bytes, 0, pos);
       bufferPos = bufferSize;
 
       // We want to use refillBuffer() and then copy from the buffer into our
@@ -840,13 +1062,13 @@ public final class CodedInputStream {
       refillBuffer(true);
 
       while (size - pos > bufferSize) {
-        System.arraycopy(buffer, 0, bytes, pos, bufferSize);
+        copyFromBuffer(0, bytes, pos, bufferSize);
         pos += bufferSize;
         bufferPos = bufferSize;
         refillBuffer(true);
       }
 
-      System.arraycopy(buffer, 0, bytes, pos, size - pos);
+      copyFromBuffer(0, bytes, pos, size - pos);
       bufferPos = size - pos;
 
       return bytes;
@@ -941,7 +1163,19 @@ public final class CodedInputStream {
       bufferPos = bufferSize;
 
       // osmand change
-      if(raf != null) {
+      if (segments != null) {
+        long target = mappedStart + bufferSize + (size - pos);
+        if (target > fileLength) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        }
+        selectMappedSegment(target);
+      } else if (channel != null) {
+        long target = (long) totalBytesRetired + bufferSize + (size - pos);
+        if (target > fileLength) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        }
+        seek(target);
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
@@ -972,10 +1206,17 @@ public final class CodedInputStream {
 			  throw InvalidProtocolBufferException.truncatedMessage();
 		  }
 		  bufferPos = (int) (pointer - totalBytesRetired);
+	  } else if (segments != null) {
+		  if (pointer > fileLength || segments.length == 0) {
+			  throw InvalidProtocolBufferException.truncatedMessage();
+		  }
+		  selectMappedSegment(pointer);
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  if (raf != null) {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
@@ -1,21 +1,50 @@
 package net.osmand;
 
+import java.text.CollationElementIterator;
+import java.text.Normalizer;
+import java.text.RuleBasedCollator;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 
 
 /**
  * Abstract collator matcher that basically supports subclasses with some collator
  * matching.
- * 
+ * Strings are compared folded: every char is replaced by the shortest form equal to it by collator
+ * (lower case without accents, empty for ignorable chars), so matching is done on char arrays in linear time.
+ * Positions of original chars are kept, so windows of original strings are compared as before.
+ *
  * @author pavol.zibrita
  */
 public class CollatorStringMatcher implements StringMatcher {
 
+	// foldings of different collator settings, there are only few of them
+	private static final int MAX_FOLDINGS = 16;
+	private static final Map<java.text.Collator, Folding> foldings = new HashMap<java.text.Collator, Folding>();
+	private static Locale foldingsLocale;
+	private static Folding primaryFolding;
+	private static final ThreadLocal<FoldedString> nameBuffer = new ThreadLocal<FoldedString>() {
+		@Override
+		protected FoldedString initialValue() {
+			return new FoldedString();
+		}
+	};
+	// part of static methods
+	private static final ThreadLocal<FoldedString> partBuffer = new ThreadLocal<FoldedString>() {
+		@Override
+		protected FoldedString initialValue() {
+			return new FoldedString();
+		}
+	};
+
 	private final Collator collator;
 	private final StringMatcherMode mode;
 	private final String part;
-	
+	private final Folding folding;
+	private final FoldedString foldedPart;
+
 	public static enum StringMatcherMode {
 		CHECK_ONLY_STARTS_WITH,
 		CHECK_STARTS_FROM_SPACE,
@@ -27,42 +56,67 @@ public class CollatorStringMatcher implements StringMatcher {
 	}
 
 	public CollatorStringMatcher(String part, StringMatcherMode mode) {
-		this.collator = OsmAndCollator.primaryCollator();
-		this.part = part.toLowerCase(Locale.getDefault());
+		this(getPrimaryFolding(), part.toLowerCase(Locale.getDefault()), mode);
+	}
+
+	/**
+	 * Matcher of collator, it matches names as {@link #cmatches(Collator, String, String, StringMatcherMode)} does
+	 */
+	public CollatorStringMatcher(Collator collator, String part, StringMatcherMode mode) {
+		this(getFolding(collator), part, mode);
+	}
+
+	private CollatorStringMatcher(Folding folding, String part, StringMatcherMode mode) {
+		this.folding = folding;
+		this.collator = folding.collator;
+		this.part = part;
 		this.mode = mode;
+		this.foldedPart = folding.fold(this.part, false, new FoldedString());
+		if (mode == StringMatcherMode.CHECK_CONTAINS) {
+			foldedPart.initPrefixes();
+		}
 	}
 
 	public Collator getCollator() {
 		return collator;
 	}
-	
+
 	@Override
 	public boolean matches(String name) {
-		return cmatches(collator, name, part, mode);
+		return fmatches(folding, name, foldedPart, mode);
 	}
-	
-	
+
+
 	public static boolean cmatches(Collator collator, String base, String part, StringMatcherMode mode){
+		Folding folding = getFolding(collator);
+		FoldedString foldedPart = folding.fold(part, false, partBuffer.get());
+		if (mode == StringMatcherMode.CHECK_CONTAINS) {
+			foldedPart.initPrefixes();
+		}
+		return fmatches(folding, base, foldedPart, mode);
+	}
+
+	private static boolean fmatches(Folding folding, String base, FoldedString part, StringMatcherMode mode) {
 		switch (mode) {
 		case CHECK_CONTAINS:
-			return ccontains(collator, base, part); 
+			return fcontains(folding.fold(base, false, nameBuffer.get()), part);
 		case CHECK_EQUALS_FROM_SPACE:
-			return cstartsWith(collator, base, part, true, true, true, false);
+			return fstartsWith(folding, base, part, true, true, true, false);
 		case CHECK_STARTS_FROM_SPACE:
-			return cstartsWith(collator, base, part, true, true, false, false);
+			return fstartsWith(folding, base, part, true, true, false, false);
 		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
-			return cstartsWith(collator, base, part, false, true, false, false);
+			return fstartsWith(folding, base, part, false, true, false, false);
 		case CHECK_ONLY_STARTS_WITH:
-			return cstartsWith(collator, base, part, true, false, false, false);
+			return fstartsWith(folding, base, part, true, false, false, false);
 		case CHECK_ONLY_STARTS_WITH_TRIM:
-			return cstartsWith(collator, base, part, true, false, false, true);
+			return fstartsWith(folding, base, part, true, false, false, true);
 		case CHECK_EQUALS:
-			return cstartsWith(collator, base, part, false, false, true, false);
+			return fstartsWith(folding, base, part, false, false, true, false);
 		}
 		return false;
 	}
-	
-	
+
+
 	/**
 	 * Check if part contains in base
 	 *
@@ -72,66 +126,73 @@ public class CollatorStringMatcher implements StringMatcher {
 	 * @return true if part is contained in base
 	 */
 	public static boolean ccontains(Collator collator, String base, String part) {
-//		int pos = 0;
-//		if (part.length() > 3) {
-//			// improve searching by searching first 3 characters
-//			pos = cindexOf(collator, pos, part.substring(0, 3), base);
-//			if (pos == -1) {
-//				return false;
-//			}
-//		}
-//		pos = cindexOf(collator, pos, part, base);
-//		if (pos == -1) {
-//			return false;
-//		}
-//		return true;
-		
-		if (base.length() <= part.length())
-			return collator.equals(base, part);
-		
-		for (int pos = 0; pos <= base.length() - part.length() + 1; pos++) {
-			String temp = base.substring(pos, base.length());
-			
-			for (int length = temp.length(); length >= 0; length--) {
-				String temp2 = temp.substring(0,  length);
-				if (collator.equals(temp2, part)) 
-					return true;
-			}
-		}
-		
-		return false;
-	}
-
-	private static int cindexOf(Collator collator, int start, String part, String base) {
-		for (int pos = start; pos <= base.length() - part.length(); pos++) {
-			if (collator.equals(base.substring(pos, pos + part.length()), part)) {
-				return pos;
-			}
-		}
-		return -1;
+		return cmatches(collator, base, part, StringMatcherMode.CHECK_CONTAINS);
 	}
 
 	/**
 	 * Checks if string starts with another string.
 	 * Special check try to find as well in the middle of name
-	 * 
+	 *
 	 * @param collator
 	 * @param searchInParam
 	 * @param theStart
 	 * @param trim - trim theStart to searchInParam length if searchInParam non empty
 	 * @return true if searchIn starts with token
 	 */
-	public static boolean cstartsWith(Collator collator, String searchInParam, String theStart, 
+	public static boolean cstartsWith(Collator collator, String searchInParam, String theStart,
+			boolean checkBeginning, boolean checkSpaces, boolean equals, boolean trim) {
+		Folding folding = getFolding(collator);
+		return fstartsWith(folding, searchInParam, folding.fold(theStart, false, partBuffer.get()),
+				checkBeginning, checkSpaces, equals, trim);
+	}
+
+	/**
+	 * Part is contained if some substring of base starting not further than base length - part length + 1
+	 * is equal to it. Prefixes of part should be initialized.
+	 */
+	private static boolean fcontains(FoldedString base, FoldedString part) {
+		if (base.positions <= part.positions) {
+			return regionEquals(base, 0, base.positions, part, part.positions);
+		}
+		if (part.length == 0) {
+			return true;
+		}
+		int lastStart = base.positions - part.positions + 1;
+		// Knuth-Morris-Pratt search of occurrences which start and end at char boundaries of base
+		int[] prefixes = part.prefixes;
+		char[] chars = base.chars;
+		char[] pchars = part.chars;
+		int plength = part.length;
+		int k = 0;
+		for (int i = 0; i < base.length; i++) {
+			while (k > 0 && chars[i] != pchars[k]) {
+				k = prefixes[k - 1];
+			}
+			if (chars[i] == pchars[k]) {
+				k++;
+			}
+			if (k == plength) {
+				int start = base.starts[i - plength + 1];
+				if (start >= 0 && start <= lastStart && base.starts[i + 1] >= 0) {
+					return true;
+				}
+				k = prefixes[k - 1];
+			}
+		}
+		return false;
+	}
+
+	private static boolean fstartsWith(Folding folding, String searchInParam, FoldedString theStart,
 			boolean checkBeginning, boolean checkSpaces, boolean equals, boolean trim) {
-		String searchIn = searchInParam.toLowerCase(Locale.getDefault());
-		if (trim && searchIn.length() > 0) {
-			searchIn += " ";
+		FoldedString searchIn = folding.fold(searchInParam, true, nameBuffer.get());
+		if (trim && searchIn.positions > 0) {
+			folding.add(searchIn, ' ');
 		}
-		int searchInLength = searchIn.length();
-		if (trim && searchInLength > 0 && theStart.length() > searchInLength) {
-			theStart = theStart.substring(0, searchInLength);
+		int searchInLength = searchIn.positions;
+		int startLength = theStart.positions;
+		if (trim && searchInLength > 0 && startLength > searchInLength) {
+			startLength = searchInLength;
 		}
-		int startLength = theStart.length();
 		if (startLength == 0) {
 			return true;
 		}
@@ -139,40 +200,310 @@ public class CollatorStringMatcher implements StringMatcher {
 			return false;
 		}
 		// simulate starts with for collator
-		if (checkBeginning) {
-			boolean starts = collator.equals(searchIn.substring(0, startLength), theStart);
-			if (starts) {
-				if (equals) {
-					if (startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
-						return true;
-					}
-				} else {
-					return true;
-				}
+		if (checkBeginning && regionEquals(searchIn, 0, startLength, theStart, startLength)) {
+			if (!equals || startLength == searchInLength || searchIn.spaces[startLength]) {
+				return true;
 			}
 		}
 		if (checkSpaces) {
 			for (int i = 1; i <= searchInLength - startLength; i++) {
-				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i))) {
-					if (collator.equals(searchIn.substring(i, i + startLength), theStart)) {
-						if(equals) {
-							if(i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
-								return true;
-							}
-						} else {
-							return true;
-						}
+				if (searchIn.spaces[i - 1] && !searchIn.spaces[i]
+						&& regionEquals(searchIn, i, i + startLength, theStart, startLength)) {
+					if (!equals || i + startLength == searchInLength || searchIn.spaces[i + startLength]) {
+						return true;
 					}
 				}
 			}
 		}
 		if (!checkBeginning && !checkSpaces && equals) {
-			return collator.equals(searchIn, theStart);
+			return regionEquals(searchIn, 0, searchInLength, theStart, startLength);
 		}
 		return false;
 	}
-	
+
+	/**
+	 * @return true if chars of s from position start to end are equal to first chars of part
+	 */
+	private static boolean regionEquals(FoldedString s, int start, int end, FoldedString part, int partPositions) {
+		int offset = s.offsets[start];
+		int length = s.offsets[end] - offset;
+		if (length != part.offsets[partPositions]) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (s.chars[offset + i] != part.chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private static boolean isSpace(char c){
 		return !Character.isLetter(c) && !Character.isDigit(c);
 	}
+
+	private static synchronized Folding getPrimaryFolding() {
+		Locale locale = Locale.getDefault();
+		if (primaryFolding == null || !primaryFolding.locale.equals(locale)) {
+			primaryFolding = new Folding(OsmAndCollator.primaryCollator(), locale);
+		}
+		return primaryFolding;
+	}
+
+	private static Folding getFolding(Collator collator) {
+		Locale locale = Locale.getDefault();
+		java.text.Collator instance = OsmAndCollator.unwrapCollator(collator);
+		if (instance == null) {
+			// unknown collator is not cached as it could be never released
+			return new Folding(collator, locale);
+		}
+		synchronized (foldings) {
+			if (!locale.equals(foldingsLocale) || foldings.size() >= MAX_FOLDINGS) {
+				foldings.clear();
+				foldingsLocale = locale;
+			}
+			// collators are equal by rules and strength, so wrappers created for each search share folding
+			Folding folding = foldings.get(instance);
+			if (folding == null) {
+				java.text.Collator key = (java.text.Collator) instance.clone();
+				folding = new Folding(OsmAndCollator.wrapCollator(key), locale);
+				foldings.put(key, folding);
+			}
+			return folding;
+		}
+	}
+
+	/**
+	 * Folded chars of string with offsets of original chars in them.
+	 */
+	private static class FoldedString {
+		char[] chars = new char[32];
+		int length;
+		// first position of original char having folded offset, -1 if offset is inside of char folded to several
+		int[] starts = new int[33];
+
+		int positions;
+		// folded offset of original chars, offsets[positions] is length
+		int[] offsets = new int[33];
+		// original char is space
+		boolean[] spaces = new boolean[33];
+		// prefix function of chars, see initPrefixes()
+		int[] prefixes = new int[0];
+
+		void clear() {
+			length = 0;
+			positions = 0;
+			starts[0] = 0;
+			offsets[0] = 0;
+		}
+
+		void add(boolean space, String folded) {
+			int flength = folded.length();
+			if (positions + 1 == offsets.length) {
+				int capacity = offsets.length * 2;
+				offsets = copyOf(offsets, capacity);
+				boolean[] nspaces = new boolean[capacity];
+				System.arraycopy(spaces, 0, nspaces, 0, positions);
+				spaces = nspaces;
+			}
+			if (length + flength >= chars.length) {
+				int capacity = Math.max(chars.length * 2, length + flength + 1);
+				char[] nchars = new char[capacity];
+				System.arraycopy(chars, 0, nchars, 0, length);
+				chars = nchars;
+				starts = copyOf(starts, capacity + 1);
+			}
+			if (positions == 0 || offsets[positions - 1] != length) {
+				starts[length] = positions;
+			}
+			offsets[positions] = length;
+			spaces[positions] = space;
+			for (int i = 0; i < flength; i++) {
+				if (i > 0) {
+					starts[length] = -1;
+				}
+				chars[length++] = folded.charAt(i);
+			}
+			positions++;
+			if (offsets[positions - 1] != length) {
+				starts[length] = positions;
+			}
+			offsets[positions] = length;
+		}
+
+		/**
+		 * Calculates prefix function of chars for Knuth-Morris-Pratt search
+		 */
+		void initPrefixes() {
+			if (prefixes.length < length) {
+				prefixes = new int[chars.length];
+			}
+			int k = 0;
+			for (int i = 1; i < length; i++) {
+				while (k > 0 && chars[i] != chars[k]) {
+					k = prefixes[k - 1];
+				}
+				if (chars[i] == chars[k]) {
+					k++;
+				}
+				prefixes[i] = k;
+			}
+		}
+
+		private static int[] copyOf(int[] a, int capacity) {
+			int[] n = new int[capacity];
+			System.arraycopy(a, 0, n, 0, a.length);
+			return n;
+		}
+	}
+
+	/**
+	 * Lazily filled table of folded chars for one collator.
+	 */
+	private static class Folding {
+		// expansions which are not produced by unicode decomposition, used only if collator agrees
+		private static final String[] EXPANSIONS = { "ß", "ss", "æ", "ae", "œ", "oe", "þ", "th",
+				"ø", "o", "ł", "l", "đ", "d", "ı", "i" };
+
+		final Collator collator;
+		final Locale locale;
+		// pages of 256 chars, not synchronized as folded value is always the same
+		private final String[][] pages = new String[256][];
+		private final String[][] lowerPages = new String[256][];
+		// first folded char of every primary order, chars equal by collator (like i and y in lithuanian)
+		// are folded to the same char
+		private final RuleBasedCollator primaryRules;
+		private final Map<Integer, String> canonical = new HashMap<Integer, String>();
+
+		Folding(Collator collator, Locale locale) {
+			this.collator = collator;
+			this.locale = locale;
+			java.text.Collator instance = OsmAndCollator.unwrapCollator(collator);
+			this.primaryRules = instance instanceof RuleBasedCollator && instance.getStrength() == java.text.Collator.PRIMARY
+					? (RuleBasedCollator) instance : null;
+		}
+
+		/**
+		 * @param lower - positions are chars of lower case string as it's compared by word boundaries
+		 */
+		FoldedString fold(String s, boolean lower, FoldedString res) {
+			res.clear();
+			int len = s.length();
+			for (int i = 0; i < len; i++) {
+				char c = s.charAt(i);
+				if (!lower) {
+					add(res, c);
+				} else if (c == '\u03a3' && isFinalSigma(s, i)) {
+					// as String.toLowerCase does
+					add(res, '\u03c2');
+				} else {
+					String l = getLower(c);
+					for (int j = 0; j < l.length(); j++) {
+						add(res, l.charAt(j));
+					}
+				}
+			}
+			return res;
+		}
+
+		private static boolean isFinalSigma(String s, int i) {
+			return i > 0 && Character.isLetter(s.charAt(i - 1))
+					&& (i + 1 == s.length() || !Character.isLetter(s.charAt(i + 1)));
+		}
+
+		void add(FoldedString res, char c) {
+			res.add(isSpace(c), getFolded(c));
+		}
+
+		/**
+		 * @return lower case of char, it could have several chars
+		 */
+		private String getLower(char c) {
+			String[] page = getPage(lowerPages, c);
+			String l = page[c & 0xff];
+			if (l == null) {
+				l = String.valueOf(c).toLowerCase(locale);
+				page[c & 0xff] = l;
+			}
+			return l;
+		}
+
+		private String getFolded(char c) {
+			String[] page = getPage(pages, c);
+			String f = page[c & 0xff];
+			if (f == null) {
+				f = getCanonical(fold(c));
+				page[c & 0xff] = f;
+			}
+			return f;
+		}
+
+		private String getCanonical(String f) {
+			if (primaryRules == null || f.length() != 1) {
+				return f;
+			}
+			CollationElementIterator it = primaryRules.getCollationElementIterator(f);
+			int order = it.next();
+			if (order == CollationElementIterator.NULLORDER || it.next() != CollationElementIterator.NULLORDER) {
+				return f;
+			}
+			Integer primary = CollationElementIterator.primaryOrder(order);
+			synchronized (canonical) {
+				String c = canonical.get(primary);
+				if (c == null) {
+					canonical.put(primary, f);
+					return f;
+				}
+				return collator.equals(c, f) ? c : f;
+			}
+		}
+
+		private static String[] getPage(String[][] pages, char c) {
+			String[] page = pages[c >> 8];
+			if (page == null) {
+				page = new String[256];
+				pages[c >> 8] = page;
+			}
+			return page;
+		}
+
+		private String fold(char c) {
+			String s = String.valueOf(c);
+			if (Character.isSurrogate(c)) {
+				return s;
+			}
+			if (collator.equals(s, "")) {
+				return "";
+			}
+			// strings are matched ignoring case as far as collator ignores it
+			String lower = s.toLowerCase(locale);
+			if (lower.length() == 1 && collator.equals(s, lower)) {
+				s = lower;
+			}
+			// chars with several lower case forms (final sigma) are folded to one of them
+			String canonical = s.toUpperCase(locale).toLowerCase(locale);
+			if (canonical.length() == 1 && !canonical.equals(s) && collator.equals(s, canonical)) {
+				s = canonical;
+			}
+			for (int i = 0; i < EXPANSIONS.length; i += 2) {
+				if (EXPANSIONS[i].equals(s) && collator.equals(s, EXPANSIONS[i + 1])) {
+					return EXPANSIONS[i + 1];
+				}
+			}
+			StringBuilder stripped = new StringBuilder();
+			String decomposed = Normalizer.normalize(s, Normalizer.Form.NFKD);
+			for (int i = 0; i < decomposed.length(); i++) {
+				char d = decomposed.charAt(i);
+				int type = Character.getType(d);
+				if (type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK
+						&& type != Character.ENCLOSING_MARK) {
+					stripped.append(Character.toLowerCase(d));
+				}
+			}
+			if (stripped.length() > 0 && collator.equals(s, stripped.toString())) {
+				return stripped.toString();
+			}
+			return s;
+		}
+	}
 }
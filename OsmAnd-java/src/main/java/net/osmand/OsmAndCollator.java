@@ -13,29 +13,49 @@ public class OsmAndCollator {
 		instance.setStrength(java.text.Collator.PRIMARY);
 		return wrapCollator(instance);
 	}
-	
+
 	public static net.osmand.Collator wrapCollator(final java.text.Collator instance) {
-		return new net.osmand.Collator() {
-			
-			@Override
-			public int compare(Object o1, Object o2) {
-				return instance.compare(o1, o2);
-			}
-			
-			@Override
-			public boolean equals(Object obj) {
-				return instance.equals(obj);
-			}
-
-			@Override
-			public boolean equals(String source, String target) {
-				return instance.equals(source, target);
-			}
-
-			@Override
-			public int compare(String source, String target) {
-				return instance.compare(source, target);
-			}
-		};
+		return new JavaCollator(instance);
+	}
+
+	/**
+	 * @return wrapped java collator or null if collator is not created by {@link #wrapCollator(java.text.Collator)}
+	 */
+	public static java.text.Collator unwrapCollator(net.osmand.Collator collator) {
+		return collator instanceof JavaCollator ? ((JavaCollator) collator).instance : null;
+	}
+
+	private static class JavaCollator implements net.osmand.Collator {
+
+		private final java.text.Collator instance;
+
+		JavaCollator(java.text.Collator instance) {
+			this.instance = instance;
+		}
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			return instance.compare(o1, o2);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof JavaCollator && instance.equals(((JavaCollator) obj).instance);
+		}
+
+		@Override
+		public int hashCode() {
+			return instance.hashCode();
+		}
+
+		@Override
+		public boolean equals(String source, String target) {
+			return instance.equals(source, target);
+		}
+
+		@Override
+		public int compare(String source, String target) {
+			return instance.compare(source, target);
+		}
 	}
 }
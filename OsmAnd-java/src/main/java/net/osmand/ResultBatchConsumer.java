@@ -0,0 +1,17 @@
+package net.osmand;
+
+import java.util.List;
+
+/**
+ * Receives search results in batches while search is running,
+ * delivered results are not kept by search request.
+ */
+public interface ResultBatchConsumer<T> {
+
+	/**
+	 * @param batch published results, list is reused after call
+	 * @return number of results consumer wants to receive in next batch, 0 to cancel search
+	 */
+	int consume(List<T> batch);
+
+}
@@ -113,14 +113,44 @@ public class TspAnt {
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        int n = l.size();
+        double[][] dist = new double[n][n];
+		for (int i = 0; i < n ; i++) {
+			for (int j = 1; j < n ; j++) {
+				dist[i][j] = Math.rint(MapUtils.getDistance(l.get(i), l.get(j)));
+			}
+		}
+        return readGraph(dist, keepEndPoint);
+    }
+
+    // Reads graph from cost matrix (for example travel times calculated by RouteMatrixPlanner),
+    // 0 is start point, last is end point if it is kept, negative cost means unreachable.
+    public TspAnt readGraph(float[][] costs, boolean keepEndPoint) {
+        int n = costs.length;
+        double[][] dist = new double[n][n];
+        double maxCost = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 1; j < n; j++) {
+                maxCost = Math.max(maxCost, costs[i][j]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 1; j < n; j++) {
+                dist[i][j] = costs[i][j] < 0 ? Math.rint(maxCost * n) + 1 : Math.rint(costs[i][j]);
+            }
+        }
+        return readGraph(dist, keepEndPoint);
+    }
+
+    private TspAnt readGraph(double[][] dist, boolean keepEndPoint) {
+        n = dist.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = dist[i][j] + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
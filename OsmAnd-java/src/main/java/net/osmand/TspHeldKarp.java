@@ -43,6 +43,30 @@ public class TspHeldKarp {
 		
 		return this;
 	}
+
+	// Reads cost matrix (for example travel times calculated by RouteMatrixPlanner),
+	// 0 is start point, negative cost means unreachable.
+	public TspHeldKarp readInput(float[][] costs, boolean returnToInitialPoint) {
+		n = costs.length;
+		order = new int[n];
+		cost = new double[n][n];
+		double maxCost = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				maxCost = Math.max(maxCost, costs[i][j]);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (!returnToInitialPoint && (j == 0)) {
+					cost[i][j] = 0;
+				} else {
+					cost[i][j] = costs[i][j] < 0 ? Math.rint(maxCost * n) + 1 : Math.rint(costs[i][j]);
+				}
+			}
+		}
+		return this;
+	}
   //
   
 
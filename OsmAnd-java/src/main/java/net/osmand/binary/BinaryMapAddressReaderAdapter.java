@@ -12,6 +12,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.PlatformUtil;
 import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
@@ -50,6 +51,7 @@ public class BinaryMapAddressReaderAdapter {
 	public static class AddressRegion extends BinaryIndexPart {
 		String enName;
 		int indexNameOffset = -1;
+		volatile NameIndex nameIndex;
 		List<String> attributeTagsTable = new ArrayList<String>();
 		List<CitiesBlock> cities = new ArrayList<BinaryMapAddressReaderAdapter.CitiesBlock>();
 
@@ -290,17 +292,21 @@ public class BinaryMapAddressReaderAdapter {
 			if (stringMatcher == null) {
 				return true;
 			}
-			boolean matches = stringMatcher.matches(city.getName());
-			if (!matches) {
-				for (String n : city.getAllNames()) {
-					matches = stringMatcher.matches(n);
-					if (matches) {
-						break;
-					}
+			return matchesName(stringMatcher, city);
+		}
+	}
+
+	private static boolean matchesName(StringMatcher stringMatcher, MapObject object) {
+		boolean matches = stringMatcher.matches(object.getName());
+		if (!matches) {
+			for (String n : object.getAllNames()) {
+				matches = stringMatcher.matches(n);
+				if (matches) {
+					break;
 				}
 			}
-			return matches;
 		}
+		return matches;
 	}
 
 	protected City readCityHeader(CityMatcher matcher, int filePointer, List<String> additionalTagsTable) throws IOException {
@@ -596,6 +602,29 @@ public class BinaryMapAddressReaderAdapter {
 		}
 	}
 
+	/**
+	 * Filters streets and cities found by name query which is a prefix of new query (with mode CHECK_STARTS_FROM_SPACE),
+	 * the same objects would be read by new query.
+	 * @return null if postcode of new query doesn't extend previous one, so objects should be read again
+	 */
+	public List<MapObject> filterAddressDataByName(List<MapObject> objects, String prevQuery, String query,
+			StringMatcherMode mode) {
+		String postcode = Postcode.normalize(query, map.getCountryName());
+		if (!postcode.startsWith(Postcode.normalize(prevQuery, map.getCountryName()))) {
+			return null;
+		}
+		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(query, mode);
+		CollatorStringMatcher postcodeMatcher = new CollatorStringMatcher(postcode, mode);
+		List<MapObject> res = new ArrayList<MapObject>();
+		for (MapObject o : objects) {
+			boolean postcodeCity = o instanceof City && ((City) o).isPostcode();
+			if (matchesName(postcodeCity ? postcodeMatcher : stringMatcher, o)) {
+				res.add(o);
+			}
+		}
+		return res;
+	}
+
 	public void searchAddressDataByName(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
 		TIntArrayList loffsets = new TIntArrayList();
 		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode);
@@ -610,6 +639,7 @@ public class BinaryMapAddressReaderAdapter {
 		};
 		long time = System.currentTimeMillis();
 		int indexOffset = 0;
+		NameIndex nameIndex = reg.nameIndex;
 		while (true) {
 			if (req.isCancelled()) {
 				return;
@@ -621,6 +651,11 @@ public class BinaryMapAddressReaderAdapter {
 				return;
 			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
 				int length = readInt();
+				if (nameIndex != null) {
+					nameIndex.readIndexedStringTable(stringMatcher.getCollator(), req.nameQuery, loffsets);
+					codedIS.skipRawBytes(length);
+					break;
+				}
 				indexOffset = codedIS.getTotalBytesRead();
 				int oldLimit = codedIS.pushLimit(length);
 				// here offsets are sorted by distance
@@ -641,25 +676,14 @@ public class BinaryMapAddressReaderAdapter {
 				LOG.info("Searched address structure in " + (System.currentTimeMillis() - time) + "ms. Found " + loffsets.size()
 						+ " subtress");
 				for (int j = 0; j < loffsets.size(); j++) {
-					int fp = indexOffset + loffsets.get(j);
-					codedIS.seek(fp);
-					int len = codedIS.readRawVarint32();
-					int oldLim = codedIS.pushLimit(len);
-					int stag = 0;
-					do {
-						int st = codedIS.readTag();
-						stag = WireFormat.getTagFieldNumber(st);
-						if (stag == AddressNameIndexData.ATOM_FIELD_NUMBER) {
-							int slen = codedIS.readRawVarint32();
-							int soldLim = codedIS.pushLimit(slen);
-							readAddressNameData(req, refs, refsContainer, fp);
-							codedIS.popLimit(soldLim);
-						} else if (stag != 0) {
-							skipUnknownField(st);
-						}
-					} while (stag != 0);
-
-					codedIS.popLimit(oldLim);
+					TIntArrayList atoms;
+					if (nameIndex != null) {
+						atoms = nameIndex.getAtoms(loffsets.get(j));
+					} else {
+						atoms = new TIntArrayList();
+						readAddressNameIndexData(req, atoms, indexOffset + loffsets.get(j));
+					}
+					addAddressNameAtoms(atoms, req, refs, refsContainer);
 					if (req.isCancelled()) {
 						return;
 					}
@@ -701,16 +725,7 @@ public class BinaryMapAddressReaderAdapter {
 								readStreet(s, null, false, MapUtils.get31TileNumberX(l.getLongitude()) >> 7,
 										MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
 										reg.attributeTagsTable);
-								boolean matches = stringMatcher.matches(s.getName());
-								if (!matches) {
-									for (String n : s.getAllNames()) {
-										matches = stringMatcher.matches(n);
-										if (matches) {
-											break;
-										}
-									}
-								}
-								if (matches) {
+								if (matchesName(stringMatcher, s)) {
 									req.publish(s);
 								}
 								codedIS.popLimit(old);
@@ -747,27 +762,106 @@ public class BinaryMapAddressReaderAdapter {
 
 	}
 
-	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
-			TIntArrayList[] refsContainer, int fp) throws IOException {
-		TIntArrayList toAdd = null;
-		TIntArrayList toAddCity = null;
+	/**
+	 * Reads name index of region to memory, stream is positioned at name index of address region.
+	 */
+	NameIndex loadNameIndex() throws IOException {
+		NameIndex index = new NameIndex();
+		int indexOffset = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return index;
+			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
+				int length = readInt();
+				indexOffset = codedIS.getTotalBytesRead();
+				int oldLimit = codedIS.pushLimit(length);
+				map.loadIndexedStringTable(index, "");
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
+				TIntArrayList offsets = index.getValues();
+				for (int j = 0; j < offsets.size(); j++) {
+					TIntArrayList atoms = new TIntArrayList();
+					readAddressNameIndexData(null, atoms, indexOffset + offsets.get(j));
+					index.setAtoms(offsets.get(j), atoms);
+				}
+				return index;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void readAddressNameIndexData(SearchRequest<MapObject> req, TIntArrayList atoms, int fp) throws IOException {
+		codedIS.seek(fp);
+		int len = codedIS.readRawVarint32();
+		int oldLim = codedIS.pushLimit(len);
+		int stag = 0;
+		do {
+			int st = codedIS.readTag();
+			stag = WireFormat.getTagFieldNumber(st);
+			if (stag == AddressNameIndexData.ATOM_FIELD_NUMBER) {
+				int slen = codedIS.readRawVarint32();
+				int soldLim = codedIS.pushLimit(slen);
+				readAddressNameData(req, atoms, fp);
+				codedIS.popLimit(soldLim);
+			} else if (stag != 0) {
+				skipUnknownField(st);
+			}
+		} while (stag != 0);
+		codedIS.popLimit(oldLim);
+	}
+
+	private void addAddressNameAtoms(TIntArrayList atoms, SearchRequest<MapObject> req, TIntArrayList[] refs,
+			TIntArrayList[] refsContainer) {
+		if (atoms == null) {
+			return;
+		}
+		for (int i = 0; i < atoms.size(); i += 5) {
+			int x16 = atoms.get(i + 1);
+			int y16 = atoms.get(i + 2);
+			boolean add = x16 == -1 || !req.isBboxSpecified() || req.contains(x16, y16, x16, y16);
+			if (add) {
+				int type = atoms.get(i);
+				int shiftindex = atoms.get(i + 3);
+				int shiftcityindex = atoms.get(i + 4);
+				if (shiftindex != 0) {
+					refs[type].add(shiftindex);
+				}
+				if (shiftcityindex != 0) {
+					refsContainer[type].add(shiftcityindex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds type, location (-1 if not specified yet), shift to object and shift to city of every reference
+	 * of atom as 5 ints.
+	 */
+	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList atoms, int fp) throws IOException {
+		int type = -1;
 		int shiftindex = 0;
 		int shiftcityindex = 0;
-		boolean add = true; 
+		int x16 = -1;
+		int y16 = -1;
 		while (true) {
-			if (req.isCancelled()) {
+			if (req != null && req.isCancelled()) {
 				return;
 			}
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			if(tag == 0 || tag == AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER) {
-				if (toAdd != null && add) {
-					if(shiftindex != 0) {
-						toAdd.add(shiftindex);
-					}
-					if(shiftcityindex != 0) {
-						toAddCity.add(shiftcityindex);
-					}
+				if (type != -1 && (shiftindex != 0 || shiftcityindex != 0)) {
+					atoms.add(type);
+					atoms.add(x16);
+					atoms.add(y16);
+					atoms.add(shiftindex);
+					atoms.add(shiftcityindex);
 				}
 			}
 			switch (tag) {
@@ -780,23 +874,20 @@ public class BinaryMapAddressReaderAdapter {
 				codedIS.readString();
 				break;
 			case AddressNameIndexDataAtom.SHIFTTOCITYINDEX_FIELD_NUMBER:
-				if (toAddCity != null) {
+				if (type != -1) {
 					shiftcityindex = fp - codedIS.readInt32();
 				}
 				break;
 			case AddressNameIndexDataAtom.XY16_FIELD_NUMBER:
 				int in32 = codedIS.readInt32();
-				int x16 = (in32 >>> 16) << 15;
-				int y16 = (in32 & ((1 << 16) - 1)) << 15;
-				add = !req.isBboxSpecified() || req.contains(x16, y16, x16, y16);
+				x16 = (in32 >>> 16) << 15;
+				y16 = (in32 & ((1 << 16) - 1)) << 15;
 				break;
 			case AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER:
 				shiftindex = fp - codedIS.readInt32();
 				break;
 			case AddressNameIndexDataAtom.TYPE_FIELD_NUMBER:
-				int type = codedIS.readInt32();
-				toAdd = refs[type];
-				toAddCity = refsContainer[type];
+				type = codedIS.readInt32();
 				break;
 			default:
 				skipUnknownField(t);
@@ -11,6 +11,7 @@ import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.Location;
 import net.osmand.OsmAndCollator;
 import net.osmand.PlatformUtil;
+import net.osmand.ResultBatchConsumer;
 import net.osmand.ResultMatcher;
 import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
@@ -63,6 +64,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -111,6 +115,15 @@ public class BinaryMapIndexReader {
 	/*private*/ List<BinaryIndexPart> indexes = new ArrayList<BinaryIndexPart>();
 
 	protected CodedInputStream codedIS;
+	// not null for concurrent reader, public methods reading file are delegated to cursor of calling thread
+	private ThreadLocal<BinaryMapIndexReader> threadCursors;
+	private String blockCacheKey;
+	// tiles covered by data, null if coverage is not known
+	private volatile TileCoverage mapCoverage;
+	private volatile TileCoverage routeCoverage;
+	private volatile TileCoverage poiCoverage;
+	// coverage is not known yet and it is built on first use
+	private volatile boolean lazyCoverage;
 
 	private final BinaryMapTransportReaderAdapter transportAdapter;
 	private final BinaryMapPoiReaderAdapter poiAdapter;
@@ -133,9 +146,24 @@ public class BinaryMapIndexReader {
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read file through memory mapping instead of buffered random access file,
+	 * seeks become pointer moves and no heap buffer is allocated
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped)
+			throws IOException {
+		this(raf, file, memoryMapped ? CodedInputStream.newMappedInstance(raf) : CodedInputStream.newInstance(raf),
+				init);
+	}
+
+	private BinaryMapIndexReader(final RandomAccessFile raf, File file, CodedInputStream codedIS, boolean init)
+			throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.codedIS = codedIS;
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -149,7 +177,12 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (referenceToSameFile.isMemoryMapped()) {
+			// mapping of the same file is shared
+			codedIS = CodedInputStream.newMappedInstance(referenceToSameFile.codedIS);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -164,10 +197,83 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		mapCoverage = referenceToSameFile.mapCoverage;
+		routeCoverage = referenceToSameFile.routeCoverage;
+		poiCoverage = referenceToSameFile.poiCoverage;
+		lazyCoverage = referenceToSameFile.lazyCoverage;
 		calculateCenterPointForRegions();
 	}
 
 
+	/**
+	 * Cursor of concurrent reader, it reads shared file view with its own stream
+	 * and shares index metadata with reader.
+	 */
+	private BinaryMapIndexReader(BinaryMapIndexReader shared) throws IOException {
+		this.raf = shared.raf;
+		this.file = shared.file;
+		if (shared.codedIS.isMemoryMapped()) {
+			codedIS = CodedInputStream.newMappedInstance(shared.codedIS);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf.getChannel());
+		}
+		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
+		version = shared.version;
+		dateCreated = shared.dateCreated;
+		basemap = shared.basemap;
+		mapIndexes = shared.mapIndexes;
+		poiIndexes = shared.poiIndexes;
+		addressIndexes = shared.addressIndexes;
+		transportIndexes = shared.transportIndexes;
+		routingIndexes = shared.routingIndexes;
+		indexes = shared.indexes;
+		transportAdapter = new BinaryMapTransportReaderAdapter(this);
+		addressAdapter = new BinaryMapAddressReaderAdapter(this);
+		poiAdapter = new BinaryMapPoiReaderAdapter(this);
+		routeAdapter = new BinaryMapRouteReaderAdapter(this);
+	}
+
+	/**
+	 * Opens reader which could be used by routing, rendering and search threads at the same time.
+	 * File is read with memory mapping or positional reads of one channel, so no file handles are opened per thread,
+	 * every thread gets lightweight cursor and index metadata is initialized once and shared.
+	 */
+	public static BinaryMapIndexReader openConcurrentReader(final RandomAccessFile raf, File file, boolean memoryMapped)
+			throws IOException {
+		CodedInputStream cis = memoryMapped ? CodedInputStream.newMappedInstance(raf) : CodedInputStream
+				.newInstance(raf.getChannel());
+		final BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, cis, true);
+		reader.threadCursors = new ThreadLocal<BinaryMapIndexReader>() {
+			@Override
+			protected BinaryMapIndexReader initialValue() {
+				try {
+					return new BinaryMapIndexReader(reader);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		return reader;
+	}
+
+	/**
+	 * @return key of file in {@link DecodedBlockCache} or null if file is unknown
+	 */
+	String getBlockCacheKey() {
+		if (blockCacheKey == null && file != null) {
+			blockCacheKey = file.getAbsolutePath() + "@" + dateCreated;
+		}
+		return blockCacheKey;
+	}
+
+	public boolean isConcurrent() {
+		return threadCursors != null;
+	}
+
+	public boolean isMemoryMapped() {
+		return codedIS != null && codedIS.isMemoryMapped();
+	}
+
 	public long getDateCreated() {
 		return dateCreated;
 	}
@@ -323,19 +429,181 @@ public class BinaryMapIndexReader {
 			List<RouteSubregion> sr = ri.getSubregions();
 			for (RouteSubregion r : sr) {
 				if (right31x >= r.left && left31x <= r.right && r.top <= bottom31y && r.bottom >= top31y) {
-					return true;
+					return isCovered(getCoverage(TileCoverage.ROUTE), left31x, top31y, right31x, bottom31y);
 				}
 			}
 		}
 		return false;
 	}
 
+	private static boolean isCovered(TileCoverage coverage, int left31x, int top31y, int right31x, int bottom31y) {
+		return coverage == null || coverage.intersects(left31x, top31y, right31x, bottom31y);
+	}
+
+	/**
+	 * @param type {@link TileCoverage#MAP}, {@link TileCoverage#ROUTE} or {@link TileCoverage#POI}
+	 * @return tiles covered by data of type or null if coverage is not known (file contains no such data
+	 * or coverage was not initialized)
+	 */
+	public TileCoverage getCoverage(int type) {
+		if (lazyCoverage) {
+			initLazyCoverage();
+		}
+		switch (type) {
+		case TileCoverage.MAP:
+			return mapCoverage;
+		case TileCoverage.ROUTE:
+			return routeCoverage;
+		case TileCoverage.POI:
+			return poiCoverage;
+		default:
+			throw new IllegalArgumentException("Unknown coverage type " + type);
+		}
+	}
+
+	void setCoverage(int type, TileCoverage coverage) {
+		switch (type) {
+		case TileCoverage.MAP:
+			mapCoverage = coverage;
+			break;
+		case TileCoverage.ROUTE:
+			routeCoverage = coverage;
+			break;
+		case TileCoverage.POI:
+			poiCoverage = coverage;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown coverage type " + type);
+		}
+	}
+
+	/**
+	 * Coverage will be built on first check of data in area instead of building it on open.
+	 */
+	void setLazyCoverage() {
+		lazyCoverage = true;
+	}
+
+	/**
+	 * @return false if coverage should be built on first use
+	 */
+	boolean isCoverageInitialized() {
+		return !lazyCoverage;
+	}
+
+	private synchronized void initLazyCoverage() {
+		if (!lazyCoverage) {
+			return;
+		}
+		try {
+			initCoverage();
+		} catch (IOException e) {
+			// areas of file are checked only by bounding boxes
+			log.error("Coverage of " + file + " could not be read", e);
+		}
+		lazyCoverage = false;
+	}
+
+	/**
+	 * Builds tile coverage of map, routing and poi data which is not known yet.
+	 * Only upper levels of data trees are read: boxes are not split when they fit into one tile of coverage.
+	 */
+	public void initCoverage() throws IOException {
+		BinaryMapIndexReader cursor = threadCursors != null ? threadCursors.get() : this;
+		if (mapCoverage == null) {
+			mapCoverage = cursor.buildMapCoverage();
+		}
+		if (routeCoverage == null) {
+			routeCoverage = cursor.buildRouteCoverage();
+		}
+		if (poiCoverage == null) {
+			poiCoverage = cursor.buildPoiCoverage();
+		}
+	}
+
+	private TileCoverage buildMapCoverage() throws IOException {
+		int[] bounds = null;
+		for (MapIndex mapIndex : mapIndexes) {
+			for (MapRoot root : mapIndex.getRoots()) {
+				bounds = unionBounds(bounds, root.left, root.top, root.right, root.bottom);
+			}
+		}
+		if (bounds == null) {
+			return null;
+		}
+		TileCoverage coverage = new TileCoverage(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (MapIndex mapIndex : mapIndexes) {
+			for (MapRoot root : mapIndex.getRoots()) {
+				codedIS.seek(root.filePointer);
+				int oldLimit = codedIS.pushLimit(root.length);
+				readMapLevelCoverage(root, coverage);
+				codedIS.popLimit(oldLimit);
+			}
+		}
+		return coverage;
+	}
+
+	private TileCoverage buildRouteCoverage() throws IOException {
+		int[] bounds = null;
+		for (RouteRegion ri : routingIndexes) {
+			for (RouteSubregion r : ri.getSubregions()) {
+				bounds = unionBounds(bounds, r.left, r.top, r.right, r.bottom);
+			}
+			for (RouteSubregion r : ri.getBaseSubregions()) {
+				bounds = unionBounds(bounds, r.left, r.top, r.right, r.bottom);
+			}
+		}
+		if (bounds == null) {
+			return null;
+		}
+		TileCoverage coverage = new TileCoverage(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (RouteRegion ri : routingIndexes) {
+			for (RouteSubregion r : ri.getSubregions()) {
+				routeAdapter.addRouteCoverage(r, coverage);
+			}
+			for (RouteSubregion r : ri.getBaseSubregions()) {
+				routeAdapter.addRouteCoverage(r, coverage);
+			}
+		}
+		return coverage;
+	}
+
+	private TileCoverage buildPoiCoverage() throws IOException {
+		int[] bounds = null;
+		for (PoiRegion index : poiIndexes) {
+			bounds = unionBounds(bounds, index.left31, index.top31, index.right31, index.bottom31);
+		}
+		if (bounds == null) {
+			return null;
+		}
+		TileCoverage coverage = new TileCoverage(bounds[0], bounds[1], bounds[2], bounds[3]);
+		for (PoiRegion index : poiIndexes) {
+			codedIS.seek(index.filePointer);
+			int oldLimit = codedIS.pushLimit(index.length);
+			poiAdapter.addPoiCoverage(coverage);
+			codedIS.popLimit(oldLimit);
+		}
+		return coverage;
+	}
+
+	// left, top, right, bottom
+	private static int[] unionBounds(int[] bounds, int left31x, int top31y, int right31x, int bottom31y) {
+		if (bounds == null) {
+			return new int[] { left31x, top31y, right31x, bottom31y };
+		}
+		bounds[0] = Math.min(bounds[0], left31x);
+		bounds[1] = Math.min(bounds[1], top31y);
+		bounds[2] = Math.max(bounds[2], right31x);
+		bounds[3] = Math.max(bounds[3], bottom31y);
+		return bounds;
+	}
+
 
 	
 	public boolean containsPoiData(int left31x, int top31y, int right31x, int bottom31y) {
 		for (PoiRegion index : poiIndexes) {
 			if (right31x >= index.left31 && left31x <= index.right31 && index.top31 <= bottom31y && index.bottom31 >= top31y) {
-				return true;
+				return isCovered(getCoverage(TileCoverage.POI), left31x, top31y, right31x, bottom31y);
 			}
 		}
 		return false;
@@ -355,7 +623,7 @@ public class BinaryMapIndexReader {
 			for (MapRoot root : mapIndex.getRoots()) {
 				if (root.minZoom <= zoom && root.maxZoom >= zoom) {
 					if (tile31x >= root.left && tile31x <= root.right && root.top <= tile31y && root.bottom >= tile31y) {
-						return true;
+						return isCovered(getCoverage(TileCoverage.MAP), tile31x, tile31y, tile31x, tile31y);
 					}
 				}
 			}
@@ -368,7 +636,7 @@ public class BinaryMapIndexReader {
 			for (MapRoot root : mapIndex.getRoots()) {
 				if (root.minZoom <= zoom && root.maxZoom >= zoom) {
 					if (right31x >= root.left && left31x <= root.right && root.top <= bottom31y && root.bottom >= top31y) {
-						return true;
+						return isCovered(getCoverage(TileCoverage.MAP), left31x, top31y, right31x, bottom31y);
 					}
 				}
 			}
@@ -437,6 +705,9 @@ public class BinaryMapIndexReader {
 
 
 	public int readByte() throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().readByte();
+		}
 		byte b = codedIS.readRawByte();
 		if (b < 0) {
 			return b + 256;
@@ -446,6 +717,9 @@ public class BinaryMapIndexReader {
 	}
 
 	public final int readInt() throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().readInt();
+		}
 		int ch1 = readByte();
 		int ch2 = readByte();
 		int ch3 = readByte();
@@ -479,6 +753,10 @@ public class BinaryMapIndexReader {
 	 * Transport public methods
 	 */
 	public void loadTransportRoutes(int[] filePointers, TIntObjectHashMap<TransportRoute> result) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().loadTransportRoutes(filePointers, result);
+			return;
+		}
 		Map<TransportIndex, TIntArrayList> groupPoints = new HashMap<TransportIndex, TIntArrayList>();
 		for (int filePointer : filePointers) {
 			TransportIndex ind = getTransportIndex(filePointer);
@@ -558,6 +836,9 @@ public class BinaryMapIndexReader {
 	}
 	
 	public List<TransportStop> searchTransportIndex(TransportIndex index, SearchRequest<TransportStop> req) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchTransportIndex(index, req);
+		}
 		if (index.stopsFileLength == 0 || index.right < req.left || index.left > req.right || index.top > req.bottom
 				|| index.bottom < req.top) {
 			return req.getSearchResults();
@@ -566,12 +847,18 @@ public class BinaryMapIndexReader {
 		int oldLimit = codedIS.pushLimit(index.stopsFileLength);
 		int offset = req.searchResults.size();
 		TIntObjectHashMap<String> stringTable = new TIntObjectHashMap<String>();
-		transportAdapter.searchTransportTreeBounds(0, 0, 0, 0, req, stringTable);
-		codedIS.popLimit(oldLimit);
-		TIntObjectHashMap<String> indexedStringTable = transportAdapter.initializeStringTable(index, stringTable);
-		for (int i = offset; i < req.searchResults.size(); i++) {
-			TransportStop st = req.searchResults.get(i);
-			transportAdapter.initializeNames(indexedStringTable, st);
+		// stops get ids and names after whole index is read
+		req.holdBatch();
+		try {
+			transportAdapter.searchTransportTreeBounds(0, 0, 0, 0, req, stringTable);
+			codedIS.popLimit(oldLimit);
+			TIntObjectHashMap<String> indexedStringTable = transportAdapter.initializeStringTable(index, stringTable);
+			for (int i = offset; i < req.searchResults.size(); i++) {
+				TransportStop st = req.searchResults.get(i);
+				transportAdapter.initializeNames(indexedStringTable, st);
+			}
+		} finally {
+			req.releaseBatch();
 		}
 		return req.getSearchResults();
 	}
@@ -584,6 +871,7 @@ public class BinaryMapIndexReader {
 			log.debug("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			log.debug("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 		}
+		req.flushBatch();
 		return req.getSearchResults();
 	}
 
@@ -614,6 +902,9 @@ public class BinaryMapIndexReader {
 
 	public List<City> getCities(SearchRequest<City> resultMatcher, StringMatcher matcher, String lang, int cityType)
 			throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().getCities(resultMatcher, matcher, lang, cityType);
+		}
 		List<City> cities = new ArrayList<City>();
 		for (AddressRegion r : addressIndexes) {
 			for (CitiesBlock block : r.cities) {
@@ -634,6 +925,9 @@ public class BinaryMapIndexReader {
 	}
 	public List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher, StringMatcher matcher,  
 			int cityType) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().getCities(region, resultMatcher, matcher, cityType);
+		}
 		List<City> cities = new ArrayList<City>();
 		for (CitiesBlock block : region.cities) {
 			if (block.type == cityType) {
@@ -647,6 +941,9 @@ public class BinaryMapIndexReader {
 	}
 
 	public int preloadStreets(City c, SearchRequest<Street> resultMatcher) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().preloadStreets(c, resultMatcher);
+		}
 		AddressRegion reg;
 		try {
 			reg = checkAddressIndex(c.getFileOffset());
@@ -672,6 +969,10 @@ public class BinaryMapIndexReader {
 	}
 
 	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().preloadBuildings(s, resultMatcher);
+			return;
+		}
 		AddressRegion reg = checkAddressIndex(s.getFileOffset());
 		codedIS.seek(s.getFileOffset());
 		int size = codedIS.readRawVarint32();
@@ -854,82 +1155,401 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	private void readMapLevelCoverage(MapRoot root, TileCoverage coverage) throws IOException {
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case MapRootLevel.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				int filePointer = codedIS.getTotalBytesRead();
+				int oldLimit = codedIS.pushLimit(length);
+				readMapTreeCoverage(root.left, root.right, root.top, root.bottom, coverage);
+				codedIS.popLimit(oldLimit);
+				codedIS.seek(filePointer + length);
+				break;
+			case MapRootLevel.BLOCKS_FIELD_NUMBER:
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void readMapTreeCoverage(int pleft, int pright, int ptop, int pbottom, TileCoverage coverage)
+			throws IOException {
+		int left = pleft;
+		int right = pright;
+		int top = ptop;
+		int bottom = pbottom;
+		boolean boundsRead = false;
+		boolean children = false;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			if (!boundsRead && tag != MapDataBox.LEFT_FIELD_NUMBER && tag != MapDataBox.RIGHT_FIELD_NUMBER
+					&& tag != MapDataBox.TOP_FIELD_NUMBER && tag != MapDataBox.BOTTOM_FIELD_NUMBER) {
+				boundsRead = true;
+				if (coverage.isSingleTile(left, top, right, bottom)) {
+					coverage.add(left, top, right, bottom);
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+					return;
+				}
+			}
+			switch (tag) {
+			case 0:
+				if (!children) {
+					coverage.add(left, top, right, bottom);
+				}
+				return;
+			case MapDataBox.BOTTOM_FIELD_NUMBER:
+				bottom = codedIS.readSInt32() + pbottom;
+				break;
+			case MapDataBox.LEFT_FIELD_NUMBER:
+				left = codedIS.readSInt32() + pleft;
+				break;
+			case MapDataBox.RIGHT_FIELD_NUMBER:
+				right = codedIS.readSInt32() + pright;
+				break;
+			case MapDataBox.TOP_FIELD_NUMBER:
+				top = codedIS.readSInt32() + ptop;
+				break;
+			case MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER:
+				readInt();
+				coverage.add(left, top, right, bottom);
+				break;
+			case MapDataBox.BOXES_FIELD_NUMBER:
+				children = true;
+				int length = readInt();
+				int filePointer = codedIS.getTotalBytesRead();
+				int oldLimit = codedIS.pushLimit(length);
+				readMapTreeCoverage(left, right, top, bottom, coverage);
+				codedIS.popLimit(oldLimit);
+				codedIS.seek(filePointer + length);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req) throws IOException {
 		return searchMapIndex(req, null);
 	}
 	
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchMapIndex(req, filterMapIndex);
+		}
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
 		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+		String cacheKey = DecodedBlockCache.getMapDataCache().isEnabled() && !READ_STATS ? getBlockCacheKey() : null;
 		for (MapIndex mapIndex : mapIndexes) {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
-			// lazy initializing rules
+			initMapEncodingRules(mapIndex);
+			for (MapRoot index : mapIndex.getRoots()) {
+				searchMapRootSubtrees(req, index, foundSubtrees);
+				for (MapTree tree : foundSubtrees) {
+					if (!req.isCancelled()) {
+						readMapDataBlock(req, tree, mapIndex, cacheKey);
+					}
+				}
+				foundSubtrees.clear();
+			}
+		}
+		logMapSearchStats(req);
+		req.flushBatch();
+		return req.getSearchResults();
+	}
+
+	/**
+	 * Searches map data of several files like {@link #searchMapIndex(SearchRequest)} called for each file,
+	 * but data blocks are decoded in parallel by pool threads, each thread reads with its own cursor.
+	 * Subtrees are found, search filter is applied and results are published to request (and its result matcher)
+	 * on calling thread in the same order as by serial search, every block is published as soon as it is decoded
+	 * and blocks before it are published. Blocks of readers not opened by {@link #openConcurrentReader}
+	 * are decoded on calling thread, as well as blocks which are not yet started by pool when they are needed,
+	 * so search could run on pool thread.
+	 */
+	public static List<BinaryMapDataObject> searchMapIndex(List<BinaryMapIndexReader> readers,
+			final SearchRequest<BinaryMapDataObject> req, ExecutorService pool) throws IOException {
+		req.numberOfVisitedObjects = 0;
+		req.numberOfAcceptedObjects = 0;
+		req.numberOfAcceptedSubtrees = 0;
+		req.numberOfReadSubtrees = 0;
+		List<MapBlockTask> blocks = new ArrayList<MapBlockTask>();
+		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+		for (BinaryMapIndexReader reader : readers) {
+			String cacheKey = DecodedBlockCache.getMapDataCache().isEnabled() && !READ_STATS ? reader.getBlockCacheKey()
+					: null;
+			BinaryMapIndexReader cursor = reader.threadCursors != null ? reader.threadCursors.get() : reader;
+			for (MapIndex mapIndex : cursor.mapIndexes) {
+				cursor.initMapEncodingRules(mapIndex);
+				for (MapRoot index : mapIndex.getRoots()) {
+					cursor.searchMapRootSubtrees(req, index, foundSubtrees);
+					for (MapTree tree : foundSubtrees) {
+						blocks.add(new MapBlockTask(reader, tree, mapIndex, cacheKey, req));
+					}
+					foundSubtrees.clear();
+				}
+			}
+		}
+		// only limited number of decoded blocks wait to be published
+		int window = Runtime.getRuntime().availableProcessors() * 2;
+		int submitted = 0;
+		try {
+			for (int i = 0; i < blocks.size(); i++) {
+				for (; submitted < blocks.size() && submitted < i + window; submitted++) {
+					MapBlockTask t = blocks.get(submitted);
+					if (t.isParallel() && !req.isCancelled()) {
+						pool.execute(t.future);
+					}
+				}
+				if (req.isCancelled()) {
+					break;
+				}
+				MapBlockTask b = blocks.get(i);
+				if (!b.isParallel()) {
+					b.reader.readMapDataBlock(req, b.tree, b.mapIndex, b.cacheKey);
+					continue;
+				}
+				b.join();
+				if (b.error != null) {
+					throw b.error;
+				}
+				b.publishResults();
+			}
+		} finally {
+			for (int i = 0; i < submitted; i++) {
+				blocks.get(i).future.cancel(false);
+			}
+		}
+		logMapSearchStats(req);
+		req.flushBatch();
+		return req.getSearchResults();
+	}
+
+	private static void logMapSearchStats(SearchRequest<BinaryMapDataObject> req) {
+		if (req.numberOfVisitedObjects > 0 && req.log) {
+			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+		}
+	}
+
+	private void initMapEncodingRules(MapIndex mapIndex) throws IOException {
+		// lazy initializing rules
+		synchronized (mapIndex) {
 			if (mapIndex.encodingRules.isEmpty()) {
 				codedIS.seek(mapIndex.filePointer);
 				int oldLimit = codedIS.pushLimit(mapIndex.length);
 				readMapIndex(mapIndex, true);
 				codedIS.popLimit(oldLimit);
 			}
-			for (MapRoot index : mapIndex.getRoots()) {
-				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
-					if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
-						continue;
-					}
+		}
+	}
+
+	/**
+	 * Finds subtrees of map level intersecting request, they are sorted by position of data block
+	 */
+	private void searchMapRootSubtrees(SearchRequest<BinaryMapDataObject> req, MapRoot index,
+			List<MapTree> foundSubtrees) throws IOException {
+		if (index.minZoom > req.zoom || index.maxZoom < req.zoom) {
+			return;
+		}
+		if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
+			return;
+		}
+		// lazy initializing trees
+		synchronized (index) {
+			if (index.trees == null) {
+				index.trees = new ArrayList<MapTree>();
+				codedIS.seek(index.filePointer);
+				int oldLimit = codedIS.pushLimit(index.length);
+				readMapLevel(index);
+				codedIS.popLimit(oldLimit);
+			}
+		}
 
+		for (MapTree tree : index.trees) {
+			if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
+				continue;
+			}
+			codedIS.seek(tree.filePointer);
+			int oldLimit = codedIS.pushLimit(tree.length);
+			searchMapTreeBounds(tree, index, req, foundSubtrees);
+			codedIS.popLimit(oldLimit);
+		}
 
+		Collections.sort(foundSubtrees, new Comparator<MapTree>() {
+			@Override
+			public int compare(MapTree o1, MapTree o2) {
+				return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
+			}
+		});
+	}
 
-					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						int oldLimit = codedIS.pushLimit(index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
-					}
+	private void readMapDataBlock(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex mapIndex,
+			String cacheKey) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().readMapDataBlock(req, tree, mapIndex, cacheKey);
+			return;
+		}
+		if (cacheKey != null) {
+			readCachedMapDataBlock(req, tree, mapIndex, cacheKey);
+		} else {
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(length);
+			readMapDataBlocks(req, tree, mapIndex);
+			codedIS.popLimit(oldLimit);
+		}
+	}
 
-					for (MapTree tree : index.trees) {
-						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
-							continue;
+	private static class MapBlockTask implements Runnable {
+		final FutureTask<Void> future = new FutureTask<Void>(this, null);
+		final BinaryMapIndexReader reader;
+		final MapTree tree;
+		final MapIndex mapIndex;
+		final String cacheKey;
+		final SearchRequest<BinaryMapDataObject> req;
+		SearchRequest<BinaryMapDataObject> result;
+		IOException error;
+
+		MapBlockTask(BinaryMapIndexReader reader, MapTree tree, MapIndex mapIndex, String cacheKey,
+				SearchRequest<BinaryMapDataObject> req) {
+			this.reader = reader;
+			this.tree = tree;
+			this.mapIndex = mapIndex;
+			this.cacheKey = cacheKey;
+			this.req = req;
+		}
+
+		boolean isParallel() {
+			return reader.threadCursors != null && !READ_STATS;
+		}
+
+		/**
+		 * Waits for block to be decoded, block is decoded on calling thread if pool has not started it
+		 */
+		void join() throws IOException {
+			future.run();
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+		}
+
+		@Override
+		public void run() {
+			if (req.isCancelled()) {
+				return;
+			}
+			// own request for block keeps temporary state of decoding, it is only cancelled by original request,
+			// search filter could have own state, so it is applied on publishing
+			SearchRequest<BinaryMapDataObject> r = buildSearchRequest(req.left, req.right, req.top, req.bottom,
+					req.zoom, null, new ResultMatcher<BinaryMapDataObject>() {
+						@Override
+						public boolean publish(BinaryMapDataObject object) {
+							return true;
 						}
-						codedIS.seek(tree.filePointer);
-						int oldLimit = codedIS.pushLimit(tree.length);
-						searchMapTreeBounds(tree, index, req, foundSubtrees);
-						codedIS.popLimit(oldLimit);
-					}
 
-					Collections.sort(foundSubtrees, new Comparator<MapTree>() {
 						@Override
-						public int compare(MapTree o1, MapTree o2) {
-							return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
+						public boolean isCancelled() {
+							return req.isCancelled();
 						}
 					});
-					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
-							codedIS.seek(tree.mapDataBlock);
-							int length = codedIS.readRawVarint32();
-							int oldLimit = codedIS.pushLimit(length);
-							readMapDataBlocks(req, tree, mapIndex);
-							codedIS.popLimit(oldLimit);
-						}
+			r.log = false;
+			try {
+				reader.readMapDataBlock(r, tree, mapIndex, cacheKey);
+				result = r;
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+
+		void publishResults() {
+			if (result == null) {
+				return;
+			}
+			req.numberOfVisitedObjects += result.numberOfVisitedObjects;
+			req.numberOfAcceptedObjects += result.numberOfAcceptedObjects;
+			for (BinaryMapDataObject o : result.getSearchResults()) {
+				if (req.searchFilter != null) {
+					req.cacheTypes.clear();
+					req.cacheTypes.add(o.types);
+					if (!req.searchFilter.accept(req.cacheTypes, mapIndex)) {
+						req.numberOfAcceptedObjects--;
+						continue;
 					}
-					foundSubtrees.clear();
 				}
-
+				req.publish(o);
 			}
+			// published block is not needed anymore
+			result = null;
 		}
-		if (req.numberOfVisitedObjects > 0 && req.log) {
-			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
-		}
-		return req.getSearchResults();
 	}
 
-	
+	private void readCachedMapDataBlock(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root,
+			String cacheKey) throws IOException {
+		DecodedBlockCache<BinaryMapDataObject> cache = DecodedBlockCache.getMapDataCache();
+		List<BinaryMapDataObject> objects = cache.get(cacheKey, tree.mapDataBlock);
+		if (objects == null) {
+			// whole block is cached, objects are filtered by request after
+			SearchRequest<BinaryMapDataObject> all = buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE,
+					req.zoom, null);
+			codedIS.seek(tree.mapDataBlock);
+			int length = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(length);
+			readMapDataBlocks(all, tree, root);
+			codedIS.popLimit(oldLimit);
+			objects = cache.put(cacheKey, tree.mapDataBlock, all.searchResults,
+					ObjectSizeModel.getMapDataSize(all.searchResults));
+		}
+		for (BinaryMapDataObject o : objects) {
+			if (req.isCancelled()) {
+				return;
+			}
+			req.numberOfVisitedObjects++;
+			int minX = Integer.MAX_VALUE;
+			int maxX = Integer.MIN_VALUE;
+			int minY = Integer.MAX_VALUE;
+			int maxY = Integer.MIN_VALUE;
+			for (int i = 0; i < o.coordinates.length; i += 2) {
+				minX = Math.min(minX, o.coordinates[i]);
+				maxX = Math.max(maxX, o.coordinates[i]);
+				minY = Math.min(minY, o.coordinates[i + 1]);
+				maxY = Math.max(maxY, o.coordinates[i + 1]);
+			}
+			if (maxX < req.left || minX > req.right || minY > req.bottom || maxY < req.top) {
+				continue;
+			}
+			if (req.searchFilter != null) {
+				req.cacheTypes.clear();
+				req.cacheTypes.add(o.types);
+				if (!req.searchFilter.accept(req.cacheTypes, root)) {
+					continue;
+				}
+			}
+			req.numberOfAcceptedObjects++;
+			req.publish(o);
+		}
+	}
 
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
 		List<BinaryMapDataObject> tempResults = null;
@@ -1287,6 +1907,9 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchAddressDataByName(req, typeFilter);
+		}
 		for (AddressRegion reg : addressIndexes) {
 			if (reg.indexNameOffset != -1) {
 				codedIS.seek(reg.indexNameOffset);
@@ -1296,6 +1919,7 @@ public class BinaryMapIndexReader {
 				codedIS.popLimit(old);
 			}
 		}
+		req.flushBatch();
 		return req.getSearchResults();
 	}
 
@@ -1303,11 +1927,93 @@ public class BinaryMapIndexReader {
 		return searchAddressDataByName(req, null);
 	}
 
+	/**
+	 * Loads name indexes of address and poi regions to memory, they are shared by all readers of file and
+	 * used by {@link #searchAddressDataByName(SearchRequest)} and {@link #searchPoiByName(SearchRequest)}
+	 * instead of reading name indexes from file.
+	 * Indexes are not loaded by default as app keeps many files open with little memory. Server geocoder keeps
+	 * files open for all requests, so it calls this method once for every file after
+	 * {@link #openConcurrentReader} and before readers are passed to search settings
+	 * ({@link net.osmand.search.core.SearchSettings#setOfflineIndexes}). Load time and memory of every index are
+	 * logged, memory of all indexes of file is returned by {@link #getNameIndexesMemorySize()}.
+	 */
+	public void loadNameIndexes() throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().loadNameIndexes();
+			return;
+		}
+		for (AddressRegion reg : addressIndexes) {
+			if (reg.indexNameOffset != -1 && reg.nameIndex == null) {
+				long time = System.currentTimeMillis();
+				codedIS.seek(reg.indexNameOffset);
+				int len = readInt();
+				int old = codedIS.pushLimit(len);
+				NameIndex index = addressAdapter.loadNameIndex();
+				codedIS.popLimit(old);
+				index.setLoadTime(System.currentTimeMillis() - time);
+				reg.nameIndex = index;
+				logNameIndex(reg, index);
+			}
+		}
+		for (PoiRegion poiIndex : poiIndexes) {
+			if (poiIndex.nameIndex == null) {
+				long time = System.currentTimeMillis();
+				codedIS.seek(poiIndex.filePointer);
+				int old = codedIS.pushLimit(poiIndex.length);
+				NameIndex index = poiAdapter.loadNameIndex();
+				codedIS.popLimit(old);
+				index.setLoadTime(System.currentTimeMillis() - time);
+				poiIndex.nameIndex = index;
+				logNameIndex(poiIndex, index);
+			}
+		}
+	}
+
+	private void logNameIndex(BinaryIndexPart part, NameIndex index) {
+		log.info("Loaded " + part.getPartName() + " name index of " + part.getName() + " in " + index.getLoadTime()
+				+ " ms: " + index.getKeysCount() + " keys, " + index.getMemorySize() / 1024 + " KB");
+	}
+
+	/**
+	 * @return estimated memory of loaded name indexes (bytes)
+	 */
+	public long getNameIndexesMemorySize() {
+		long size = 0;
+		for (AddressRegion reg : addressIndexes) {
+			if (reg.nameIndex != null) {
+				size += reg.nameIndex.getMemorySize();
+			}
+		}
+		for (PoiRegion poiIndex : poiIndexes) {
+			if (poiIndex.nameIndex != null) {
+				size += poiIndex.nameIndex.getMemorySize();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Filters objects found by {@link #searchAddressDataByName(SearchRequest)} with query and CHECK_STARTS_FROM_SPACE mode
+	 * by new query which extends it, so region is not read again while user is typing.
+	 * @return null if objects can't be filtered and region should be searched
+	 */
+	public List<MapObject> filterAddressDataByName(List<MapObject> objects, String prevNameQuery, String nameQuery,
+			StringMatcherMode matcherMode) {
+		return addressAdapter.filterAddressDataByName(objects, prevNameQuery.trim(), nameQuery.trim(), matcherMode);
+	}
+
 	public void initCategories(PoiRegion poiIndex) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().initCategories(poiIndex);
+			return;
+		}
 		poiAdapter.initCategories(poiIndex);
 	}
 
 	public List<Amenity> searchPoiByName(SearchRequest<Amenity> req) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchPoiByName(req);
+		}
 		if (req.nameQuery == null || req.nameQuery.length() == 0) {
 			throw new IllegalArgumentException();
 		}
@@ -1318,10 +2024,22 @@ public class BinaryMapIndexReader {
 			poiAdapter.searchPoiByName(poiIndex, req);
 			codedIS.popLimit(old);
 		}
+		req.flushBatch();
 		return req.getSearchResults();
 	}
 
+	/**
+	 * Filters pois found by {@link #searchPoiByName(SearchRequest)} with query by new query which extends it,
+	 * result is the same as search by new query in the same area.
+	 */
+	public static List<Amenity> filterPoiByName(List<Amenity> amenities, String nameQuery) {
+		return BinaryMapPoiReaderAdapter.filterPoiByName(amenities, nameQuery.trim());
+	}
+
 	public Map<PoiCategory, List<String>> searchPoiCategoriesByName(String query, Map<PoiCategory, List<String>> map) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchPoiCategoriesByName(query, map);
+		}
 		if (query == null || query.length() == 0) {
 			throw new IllegalArgumentException();
 		}
@@ -1354,6 +2072,9 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<Amenity> searchPoi(SearchRequest<Amenity> req) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchPoi(req);
+		}
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
@@ -1367,11 +2088,55 @@ public class BinaryMapIndexReader {
 		}
 		log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 		log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		req.flushBatch();
+		return req.getSearchResults();
+	}
 
+	/**
+	 * Searches nearest pois to request point in all files, boxes of poi trees are read in order of distance
+	 * and reading stops when remaining boxes can't contain pois closer than found ones.
+	 * Result matcher is used as filter of pois which are closer than found ones, request results keep
+	 * accepted pois ordered by distance.
+	 * @see #buildSearchPoiNearestRequest(int, int, int, SearchPoiTypeFilter, ResultMatcher)
+	 */
+	public static List<Amenity> searchPoiNearest(List<BinaryMapIndexReader> readers, SearchRequest<Amenity> req)
+			throws IOException {
+		long time = System.currentTimeMillis();
+		req.numberOfVisitedObjects = 0;
+		req.numberOfAcceptedObjects = 0;
+		req.numberOfAcceptedSubtrees = 0;
+		req.numberOfReadSubtrees = 0;
+		NearestPoiSearch search = new NearestPoiSearch(req);
+		for (BinaryMapIndexReader reader : readers) {
+			BinaryMapIndexReader cursor = reader.threadCursors != null ? reader.threadCursors.get() : reader;
+			for (PoiRegion poiIndex : cursor.poiIndexes) {
+				if (!search.intersects(poiIndex.left31, poiIndex.right31, poiIndex.top31, poiIndex.bottom31)) {
+					continue;
+				}
+				cursor.poiAdapter.initCategories(poiIndex);
+				cursor.codedIS.seek(poiIndex.filePointer);
+				int old = cursor.codedIS.pushLimit(poiIndex.length);
+				cursor.poiAdapter.searchNearestPoiRoots(poiIndex, req, search);
+				cursor.codedIS.popLimit(old);
+			}
+		}
+		List<Amenity> res = search.search();
+		for (Amenity am : res) {
+			req.addResult(am);
+		}
+		if (req.log) {
+			log.info("Search nearest poi is done in " + (System.currentTimeMillis() - time) + " ms. Read "
+					+ req.numberOfReadSubtrees + " boxes and " + req.numberOfAcceptedSubtrees + " data blocks, visit "
+					+ req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects.");
+		}
+		req.flushBatch();
 		return req.getSearchResults();
 	}
 
 	public List<Amenity> searchPoi(PoiRegion poiIndex, SearchRequest<Amenity> req) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchPoi(poiIndex, req);
+		}
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
@@ -1385,7 +2150,7 @@ public class BinaryMapIndexReader {
 
 		log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
-
+		req.flushBatch();
 		return req.getSearchResults();
 	}
 
@@ -1516,6 +2281,20 @@ public class BinaryMapIndexReader {
 		return request;
 	}
 	
+	/**
+	 * Search area could be limited with {@link SearchRequest#setBBoxRadius(double, double, int)}.
+	 * @param limit number of nearest pois to find
+	 */
+	public static SearchRequest<Amenity> buildSearchPoiNearestRequest(int x31, int y31, int limit,
+			SearchPoiTypeFilter poiTypeFilter, ResultMatcher<Amenity> matcher) {
+		SearchRequest<Amenity> request = buildSearchPoiRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, -1,
+				poiTypeFilter, matcher);
+		request.x = x31;
+		request.y = y31;
+		request.limit = limit;
+		return request;
+	}
+
 	public static SearchRequest<RouteDataObject> buildSearchRouteRequest(int sleft, int sright, int stop, int sbottom,  
 			ResultMatcher<RouteDataObject> matcher){
 		SearchRequest<RouteDataObject> request = new SearchRequest<RouteDataObject>();
@@ -1560,6 +2339,7 @@ public class BinaryMapIndexReader {
 		if (codedIS != null) {
 			raf.close();
 			codedIS = null;
+			threadCursors = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
 			transportIndexes.clear();
@@ -1622,6 +2402,12 @@ public class BinaryMapIndexReader {
 		private boolean ocean = false;
 
 		private ResultMatcher<T> resultMatcher;
+		// streaming mode: search results list is a batch which is delivered to consumer and cleared
+		private ResultBatchConsumer<T> batchConsumer;
+		private int batchSize;
+		private int batchHolds = 0;
+		private int publishedResults = 0;
+		private boolean batchCancelled = false;
 
 		// 31 zoom tiles
 		// common variables
@@ -1692,13 +2478,75 @@ public class BinaryMapIndexReader {
 		}
 
 		public boolean publish(T obj) {
-			if (resultMatcher == null || resultMatcher.publish(obj)) {
-				searchResults.add(obj);
+			if (matches(obj)) {
+				addResult(obj);
 				return true;
 			}
 			return false;
 		}
 
+		// result matcher is called once per object, so objects accepted by it are added with addResult
+		boolean matches(T obj) {
+			return resultMatcher == null || resultMatcher.publish(obj);
+		}
+
+		void addResult(T obj) {
+			searchResults.add(obj);
+			publishedResults++;
+			if (batchConsumer != null && batchHolds == 0 && searchResults.size() >= batchSize) {
+				flushBatch();
+			}
+		}
+
+		/**
+		 * Switches request to streaming mode: published results are passed to consumer by batches
+		 * and search results list keeps only current batch.
+		 * @param batchSize size of first batch, next sizes are requested by consumer
+		 */
+		public void setBatchConsumer(ResultBatchConsumer<T> batchConsumer, int batchSize) {
+			if (batchSize <= 0) {
+				throw new IllegalArgumentException("Batch size should be positive: " + batchSize);
+			}
+			this.batchConsumer = batchConsumer;
+			this.batchSize = batchSize;
+			this.batchCancelled = false;
+		}
+
+		/**
+		 * Passes published results to batch consumer, it is called by reader when search is finished.
+		 */
+		public void flushBatch() {
+			if (batchConsumer == null || batchCancelled || searchResults.isEmpty()) {
+				return;
+			}
+			int next = batchConsumer.consume(searchResults);
+			searchResults.clear();
+			if (next <= 0) {
+				batchCancelled = true;
+			} else {
+				batchSize = next;
+			}
+		}
+
+		// results published inside hold could be changed by reader, so they are not delivered till release
+		void holdBatch() {
+			batchHolds++;
+		}
+
+		void releaseBatch() {
+			batchHolds--;
+			if (batchHolds == 0 && batchConsumer != null && searchResults.size() >= batchSize) {
+				flushBatch();
+			}
+		}
+
+		/**
+		 * @return number of results published by request including delivered to batch consumer
+		 */
+		public int getPublishedResultsCount() {
+			return publishedResults;
+		}
+
 		protected void publishOceanTile(boolean ocean) {
 			if (ocean) {
 				this.ocean = true;
@@ -1716,13 +2564,16 @@ public class BinaryMapIndexReader {
 		}
 
 		public boolean limitExceeded() {
-			return limit != -1 && searchResults.size() > limit;
+			return limit != -1 && (batchConsumer == null ? searchResults.size() : publishedResults) > limit;
 		}
 
 		public boolean isCancelled() {
 			if (this.interrupted) {
 				return interrupted;
 			}
+			if (batchCancelled) {
+				return true;
+			}
 			if (resultMatcher != null) {
 				return resultMatcher.isCancelled();
 			}
@@ -1768,6 +2619,8 @@ public class BinaryMapIndexReader {
 		public void clearSearchResults() {
 			// recreate whole list to allow GC collect old data 
 			searchResults = new ArrayList<T>();
+			publishedResults = 0;
+			batchCancelled = false;
 			cacheCoordinates.clear();
 			cacheTypes.clear();
 			land = false;
@@ -2388,6 +3241,42 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	void loadIndexedStringTable(NameIndex index, String prefix) throws IOException {
+		int key = -1;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
+				String k = codedIS.readString();
+				key = index.addKey(prefix.length() > 0 ? prefix + k : k);
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
+				int val = readInt();
+				if (key != -1) {
+					index.addValue(key, val);
+				}
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				if (key != -1) {
+					loadIndexedStringTable(index, index.getKey(key));
+					index.endSubtree(key);
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				codedIS.popLimit(oldLim);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private static void testAddressSearchByName(BinaryMapIndexReader reader) throws IOException {
 		SearchRequest<MapObject> req = buildAddressByNameRequest(new ResultMatcher<MapObject>() {
 			@Override
@@ -2594,6 +3483,9 @@ public class BinaryMapIndexReader {
 
 
 	public List<RouteSubregion> searchRouteIndexTree(SearchRequest<?> req, List<RouteSubregion> list) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().searchRouteIndexTree(req, list);
+		}
 		req.numberOfVisitedObjects = 0;
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
@@ -2607,19 +3499,57 @@ public class BinaryMapIndexReader {
 	}
 
 	public void loadRouteIndexData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().loadRouteIndexData(toLoad, matcher);
+			return;
+		}
 		if (routeAdapter != null) {
 			routeAdapter.loadRouteRegionData(toLoad, matcher);
 		}
 	}
 
+	/**
+	 * Loads route objects of subregions and publishes them to request, so they could be streamed to its batch consumer
+	 */
+	public void loadRouteIndexData(List<RouteSubregion> toLoad, final SearchRequest<RouteDataObject> req)
+			throws IOException {
+		loadRouteIndexData(toLoad, new ResultMatcher<RouteDataObject>() {
+			@Override
+			public boolean publish(RouteDataObject object) {
+				return req.publish(object);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return req.isCancelled();
+			}
+		});
+		req.flushBatch();
+	}
+
 	public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) throws IOException {
+		return loadRouteIndexData(rs, true);
+	}
+
+	/**
+	 * @param useBlockCache - false if objects are kept by other cache (routing tile cache),
+	 * so they are not held twice by {@link DecodedBlockCache}
+	 */
+	public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs, boolean useBlockCache) throws IOException {
+		if (threadCursors != null) {
+			return threadCursors.get().loadRouteIndexData(rs, useBlockCache);
+		}
 		if (routeAdapter != null) {
-			return routeAdapter.loadRouteRegionData(rs);
+			return routeAdapter.loadRouteRegionData(rs, useBlockCache);
 		}
 		return Collections.emptyList();
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException {
+		if (threadCursors != null) {
+			threadCursors.get().initRouteRegion(routeReg);
+			return;
+		}
 		if (routeAdapter != null) {
 			routeAdapter.initRouteRegion(routeReg);
 		}
@@ -54,6 +54,7 @@ public class BinaryMapPoiReaderAdapter {
 		List<PoiCategory> categoriesType = new ArrayList<PoiCategory>();
 		List<List<String>> subcategories = new ArrayList<List<String>>();
 		List<PoiSubType> subTypes = new ArrayList<PoiSubType>();
+		volatile NameIndex nameIndex;
 
 		int left31;
 		int right31;
@@ -282,15 +283,17 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				int oldLimit = codedIS.pushLimit(region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
-	private String normalizeSearchPoiByNameQuery(String query) {
+	private static String normalizeSearchPoiByNameQuery(String query) {
 		return query.replace("\"", "").toLowerCase();
 	}
 
@@ -312,6 +315,12 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmandOdb.OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER:
 				int length = readInt();
+				NameIndex nameIndex = region.nameIndex;
+				if (nameIndex != null) {
+					offsets = readPoiNameIndex(nameIndex, matcher.getCollator(), query, req);
+					codedIS.skipRawBytes(length);
+					break;
+				}
 				int oldLimit = codedIS.pushLimit(length);
 				// here offsets are sorted by distance
 				offsets = readPoiNameIndex(matcher.getCollator(), query, req);
@@ -396,8 +405,10 @@ public class BinaryMapPoiReaderAdapter {
 						codedIS.seek(dataOffsets.get(i) + offset);
 						int len = codedIS.readRawVarint32();
 						int oldLim = codedIS.pushLimit(len);
-						readPoiNameIndexData(offsets, req);
+						TIntArrayList atoms = new TIntArrayList();
+						readPoiNameIndexData(atoms);
 						codedIS.popLimit(oldLim);
+						addPoiNameAtoms(atoms, offsets, req);
 						if (req.isCancelled()) {
 							codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 							return offsets;
@@ -415,7 +426,94 @@ public class BinaryMapPoiReaderAdapter {
 
 	}
 
-	private void readPoiNameIndexData(TIntLongHashMap offsets, SearchRequest<Amenity> req) throws IOException {
+	private TIntLongHashMap readPoiNameIndex(NameIndex nameIndex, Collator instance, String query,
+			SearchRequest<Amenity> req) {
+		TIntLongHashMap offsets = new TIntLongHashMap();
+		TIntArrayList dataOffsets = new TIntArrayList();
+		nameIndex.readIndexedStringTable(instance, query, dataOffsets);
+		dataOffsets.sort();
+		for (int i = 0; i < dataOffsets.size() && !req.isCancelled(); i++) {
+			addPoiNameAtoms(nameIndex.getAtoms(dataOffsets.get(i)), offsets, req);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Reads name index of region to memory, stream is positioned at poi region.
+	 */
+	NameIndex loadNameIndex() throws IOException {
+		NameIndex index = new NameIndex();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return index;
+			case OsmandOdb.OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				loadPoiNameIndex(index);
+				codedIS.popLimit(oldLimit);
+				return index;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void loadPoiNameIndex(NameIndex index) throws IOException {
+		int offset = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiNameIndex.TABLE_FIELD_NUMBER: {
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				offset = codedIS.getTotalBytesRead();
+				map.loadIndexedStringTable(index, "");
+				codedIS.popLimit(oldLimit);
+				break;
+			}
+			case OsmandOdb.OsmAndPoiNameIndex.DATA_FIELD_NUMBER: {
+				TIntArrayList dataOffsets = index.getValues();
+				for (int i = 0; i < dataOffsets.size(); i++) {
+					codedIS.seek(dataOffsets.get(i) + offset);
+					int len = codedIS.readRawVarint32();
+					int oldLim = codedIS.pushLimit(len);
+					TIntArrayList atoms = new TIntArrayList();
+					readPoiNameIndexData(atoms);
+					codedIS.popLimit(oldLim);
+					index.setAtoms(dataOffsets.get(i), atoms);
+				}
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			}
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void addPoiNameAtoms(TIntArrayList atoms, TIntLongHashMap offsets, SearchRequest<Amenity> req) {
+		if (atoms == null) {
+			return;
+		}
+		for (int i = 0; i < atoms.size(); i += 3) {
+			int x31 = atoms.get(i);
+			int y31 = atoms.get(i + 1);
+			if (req.contains(x31, y31, x31, y31)) {
+				long d = Math.abs(req.x - x31) + Math.abs(req.y - y31);
+				offsets.put(atoms.get(i + 2), d);
+			}
+		}
+	}
+
+	private void readPoiNameIndexData(TIntArrayList atoms) throws IOException {
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -425,7 +523,7 @@ public class BinaryMapPoiReaderAdapter {
 			case OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER:
 				int len = codedIS.readRawVarint32();
 				int oldLim = codedIS.pushLimit(len);
-				readPoiNameIndexDataAtom(offsets, req);
+				readPoiNameIndexDataAtom(atoms);
 				codedIS.popLimit(oldLim);
 				break;
 			default:
@@ -435,7 +533,10 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private void readPoiNameIndexDataAtom(TIntLongHashMap offsets, SearchRequest<Amenity> req) throws IOException {
+	/**
+	 * Adds location and shift of every poi box of atom as 3 ints.
+	 */
+	private void readPoiNameIndexDataAtom(TIntArrayList atoms) throws IOException {
 		int x = 0;
 		int y = 0;
 		int zoom = 15;
@@ -455,13 +556,9 @@ public class BinaryMapPoiReaderAdapter {
 				zoom = codedIS.readUInt32();
 				break;
 			case OsmandOdb.OsmAndPoiNameIndexDataAtom.SHIFTTO_FIELD_NUMBER:
-				int x31 = (x << (31 - zoom));
-				int y31 = (y << (31 - zoom));
-				int shift = readInt();
-				if (req.contains(x31, y31, x31, y31)) {
-					long d = Math.abs(req.x - x31) + Math.abs(req.y - y31);
-					offsets.put(shift, d);
-				}
+				atoms.add(x << (31 - zoom));
+				atoms.add(y << (31 - zoom));
+				atoms.add(readInt());
 				break;
 			default:
 				skipUnknownField(t);
@@ -538,6 +635,225 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	protected void addPoiCoverage(TileCoverage coverage) throws IOException {
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				addPoiBoxCoverage(0, 0, 0, coverage);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	// boxes are split till zoom of coverage
+	private void addPoiBoxCoverage(int px, int py, int pzoom, TileCoverage coverage) throws IOException {
+		int zoom = pzoom;
+		int dx = px;
+		int dy = py;
+		int x = 0;
+		int y = 0;
+		boolean tileRead = false;
+		boolean children = false;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			if (!tileRead && tag != OsmandOdb.OsmAndPoiBox.ZOOM_FIELD_NUMBER
+					&& tag != OsmandOdb.OsmAndPoiBox.LEFT_FIELD_NUMBER && tag != OsmandOdb.OsmAndPoiBox.TOP_FIELD_NUMBER) {
+				tileRead = true;
+				x = dx + (px << (zoom - pzoom));
+				y = dy + (py << (zoom - pzoom));
+				if (zoom >= coverage.getZoom()) {
+					addPoiTileCoverage(x, y, zoom, coverage);
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+					return;
+				}
+			}
+			switch (tag) {
+			case 0:
+				if (!children) {
+					addPoiTileCoverage(x, y, zoom, coverage);
+				}
+				return;
+			case OsmandOdb.OsmAndPoiBox.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32() + pzoom;
+				break;
+			case OsmandOdb.OsmAndPoiBox.LEFT_FIELD_NUMBER:
+				dx = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.TOP_FIELD_NUMBER:
+				dy = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.SUBBOXES_FIELD_NUMBER:
+				children = true;
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				addPoiBoxCoverage(x, y, zoom, coverage);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER:
+				readInt();
+				addPoiTileCoverage(x, y, zoom, coverage);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private static void addPoiTileCoverage(int x, int y, int zoom, TileCoverage coverage) {
+		coverage.add(x << (31 - zoom), y << (31 - zoom), ((x + 1) << (31 - zoom)) - 1, ((y + 1) << (31 - zoom)) - 1);
+	}
+
+	protected void searchNearestPoiRoots(PoiRegion region, SearchRequest<Amenity> req, NearestPoiSearch search)
+			throws IOException {
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				addNearestPoiBox(region, length, 0, 0, 0, req, search);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	// reads only tile and categories of box and queues it
+	private void addNearestPoiBox(PoiRegion region, int length, int px, int py, int pzoom,
+			SearchRequest<Amenity> req, NearestPoiSearch search) throws IOException {
+		int pointer = codedIS.getTotalBytesRead();
+		int oldLimit = codedIS.pushLimit(length);
+		int zoom = pzoom;
+		int dx = px;
+		int dy = py;
+		boolean accept = true;
+		boolean header = true;
+		while (header) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case OsmandOdb.OsmAndPoiBox.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32() + pzoom;
+				break;
+			case OsmandOdb.OsmAndPoiBox.LEFT_FIELD_NUMBER:
+				dx = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.TOP_FIELD_NUMBER:
+				dy = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.CATEGORIES_FIELD_NUMBER:
+				if (req.poiTypeFilter == null) {
+					skipUnknownField(t);
+				} else {
+					int len = codedIS.readRawVarint32();
+					int oldLim = codedIS.pushLimit(len);
+					accept = checkCategories(req, region);
+					codedIS.popLimit(oldLim);
+					header = accept;
+				}
+				break;
+			default:
+				header = false;
+				break;
+			}
+		}
+		codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+		codedIS.popLimit(oldLimit);
+		if (accept) {
+			int x = dx + (px << (zoom - pzoom));
+			int y = dy + (py << (zoom - pzoom));
+			search.addBox(this, region, pointer, length, x, y, zoom);
+		}
+	}
+
+	protected void readNearestPoiBox(PoiRegion region, int pointer, int length, int x, int y, int zoom, double dist,
+			SearchRequest<Amenity> req, NearestPoiSearch search) throws IOException {
+		codedIS.seek(pointer);
+		int oldLimit = codedIS.pushLimit(length);
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				codedIS.popLimit(oldLimit);
+				return;
+			case OsmandOdb.OsmAndPoiBox.SUBBOXES_FIELD_NUMBER:
+				int len = readInt();
+				addNearestPoiBox(region, len, x, y, zoom, req, search);
+				break;
+			case OsmandOdb.OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER:
+				// data offset is relative to poi index
+				search.addData(this, region, region.filePointer + readInt(), dist);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	protected void readNearestPoiData(PoiRegion region, int pointer, SearchRequest<Amenity> req,
+			NearestPoiSearch search) throws IOException {
+		codedIS.seek(pointer);
+		int length = readInt();
+		int oldLimit = codedIS.pushLimit(length);
+		int x = 0;
+		int y = 0;
+		int zoom = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				codedIS.popLimit(oldLimit);
+				return;
+			case OsmandOdb.OsmAndPoiBoxData.X_FIELD_NUMBER:
+				x = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.Y_FIELD_NUMBER:
+				y = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				Amenity am = readPoiPoint(req.left, req.right, req.top, req.bottom, x, y, zoom, req, region, true);
+				codedIS.popLimit(oldLim);
+				if (am != null) {
+					search.addAmenity(am);
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
@@ -565,33 +881,8 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLim = codedIS.pushLimit(len);
 				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
 				codedIS.popLimit(oldLim);
-				if (am != null) {
-					boolean matches = matcher.matches(am.getName().toLowerCase()) ||
-							matcher.matches(am.getEnName(true).toLowerCase());
-					if (!matches) {
-						for (String s : am.getAllNames()) {
-							matches = matcher.matches(s.toLowerCase());
-							if (matches) {
-								break;
-							}
-						}
-						if (!matches) {
-							Map<String, String> lt = am.getAdditionalInfo();
-							for (Entry<String, String> e : lt.entrySet()) {
-								if(!e.getKey().contains("_name") && 
-									!e.getKey().equals("brand")) {
-									continue;
-								}
-								matches = matcher.matches(e.getValue());
-								if (matches) {
-									break;
-								}
-							}
-						}
-					}
-					if (matches) {
-						req.publish(am);
-					}
+				if (am != null && matchesName(matcher, am)) {
+					req.publish(am);
 				}
 				break;
 			default:
@@ -601,6 +892,48 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	private static boolean matchesName(CollatorStringMatcher matcher, Amenity am) {
+		boolean matches = matcher.matches(am.getName().toLowerCase()) ||
+				matcher.matches(am.getEnName(true).toLowerCase());
+		if (!matches) {
+			for (String s : am.getAllNames()) {
+				matches = matcher.matches(s.toLowerCase());
+				if (matches) {
+					break;
+				}
+			}
+			if (!matches) {
+				Map<String, String> lt = am.getAdditionalInfo();
+				for (Entry<String, String> e : lt.entrySet()) {
+					if(!e.getKey().contains("_name") && 
+						!e.getKey().equals("brand")) {
+						continue;
+					}
+					matches = matcher.matches(e.getValue());
+					if (matches) {
+						break;
+					}
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Filters pois found by name query which is a prefix of new query, the same pois would be read by new query.
+	 */
+	static List<Amenity> filterPoiByName(List<Amenity> amenities, String nameQuery) {
+		CollatorStringMatcher matcher = new CollatorStringMatcher(normalizeSearchPoiByNameQuery(nameQuery),
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		List<Amenity> res = new ArrayList<Amenity>();
+		for (Amenity am : amenities) {
+			if (matchesName(matcher, am)) {
+				res.add(am);
+			}
+		}
+		return res;
+	}
+
 	private boolean readPoiData(int left31, int right31, int top31, int bottom31,
 			SearchRequest<Amenity> req, PoiRegion region, TLongHashSet toSkip, int zSkip) throws IOException {
 		int x = 0;
@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
@@ -431,6 +432,7 @@ public class BinaryMapRouteReaderAdapter {
 				referenceRouteRegion= o.region;
 				return o;
 			}
+			o.decodeNames();
 			RouteDataObject rdo = new RouteDataObject(this);
 			rdo.pointsX = o.pointsX;
 			rdo.pointsY = o.pointsY;
@@ -545,7 +547,6 @@ public class BinaryMapRouteReaderAdapter {
 		public int bottom;
 		public int shiftToData;
 		public List<RouteSubregion> subregions = null;
-		public List<RouteDataObject> dataObjects = null;
 
 		public int getEstimatedSize(){
 			int shallow = 7 * INT_SIZE + 4*3;
@@ -641,7 +642,8 @@ public class BinaryMapRouteReaderAdapter {
 		TIntArrayList pointsY = new TIntArrayList();
 		TIntArrayList types = new TIntArrayList();
 		List<TIntArrayList> globalpointTypes = new ArrayList<TIntArrayList>();
-		List<TIntArrayList> globalpointNames = new ArrayList<TIntArrayList>();
+		byte[] encodedNames = null;
+		byte[] encodedPointNames = null;
 		while (true) {
 			int ts = codedIS.readTag();
 			int tags = WireFormat.getTagFieldNumber(ts);
@@ -659,20 +661,9 @@ public class BinaryMapRouteReaderAdapter {
 						}
 					}
 				}
-				if (globalpointNames.size() > 0) {
-					o.pointNames = new String[globalpointNames.size()][];
-					o.pointNameTypes = new int[globalpointNames.size()][];
-					for (int k = 0; k < o.pointNames.length; k++) {
-						TIntArrayList l = globalpointNames.get(k);
-						if (l != null) {
-							o.pointNameTypes[k] = new int[l.size() / 2];
-							o.pointNames[k] = new String[l.size() / 2];
-							for (int ik = 0; ik < l.size(); ik += 2) {
-								o.pointNameTypes[k][ik / 2] = l.get(ik);
-								o.pointNames[k][ik / 2] = ((char) l.get(ik + 1)) + "";
-							}
-						}
-					}
+				// names are decoded on first request by RouteDataObject.decodeNames
+				if (encodedNames != null || encodedPointNames != null) {
+					o.setEncodedNames(encodedNames, encodedPointNames);
 				}
 				return o;
 			case RouteData.TYPES_FIELD_NUMBER:
@@ -684,18 +675,8 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.STRINGNAMES_FIELD_NUMBER:
-				o.names = new TIntObjectHashMap<String>();
-				int sizeL = codedIS.readRawVarint32();
-				int old = codedIS.pushLimit(sizeL);
-				TIntArrayList list = new TIntArrayList();
-				while (codedIS.getBytesUntilLimit() > 0) {
-					int stag = codedIS.readRawVarint32();
-					int pId = codedIS.readRawVarint32();
-					o.names.put(stag, ((char)pId)+"");
-					list.add(stag);
-				}
-				o.nameIds = list.toArray();
-				codedIS.popLimit(old);
+				// pairs of name tag and string table index
+				encodedNames = codedIS.readRawBytes(codedIS.readRawVarint32());
 				break;
 			case RouteData.POINTS_FIELD_NUMBER:
 				len = codedIS.readRawVarint32();
@@ -713,23 +694,14 @@ public class BinaryMapRouteReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteData.POINTNAMES_FIELD_NUMBER:
-				len = codedIS.readRawVarint32();
-				oldLimit = codedIS.pushLimit(len);
-				while (codedIS.getBytesUntilLimit() > 0) {
-					int pointInd = codedIS.readRawVarint32();
-					int pointNameType = codedIS.readRawVarint32();
-					int nameInd = codedIS.readRawVarint32();
-					while (pointInd >= globalpointNames.size()) {
-						globalpointNames.add(null);
-					}
-					if(globalpointNames.get(pointInd)== null) {
-						TIntArrayList pointTypes = new TIntArrayList();
-						globalpointNames.set(pointInd, pointTypes);
-					}
-					globalpointNames.get(pointInd).add(pointNameType);
-					globalpointNames.get(pointInd).add(nameInd);
+				// triples of point index, name tag and string table index
+				byte[] pointNames = codedIS.readRawBytes(codedIS.readRawVarint32());
+				if (encodedPointNames != null) {
+					byte[] merged = Arrays.copyOf(encodedPointNames, encodedPointNames.length + pointNames.length);
+					System.arraycopy(pointNames, 0, merged, encodedPointNames.length, pointNames.length);
+					pointNames = merged;
 				}
-				codedIS.popLimit(oldLimit);
+				encodedPointNames = pointNames;
 				break;
 			case RouteData.POINTTYPES_FIELD_NUMBER:
 				len = codedIS.readRawVarint32();
@@ -760,9 +732,10 @@ public class BinaryMapRouteReaderAdapter {
 			}
 		}
 	}
-	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
+	private List<RouteDataObject> readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
 			TLongObjectHashMap<RestrictionInfo> restrictions) throws IOException {
-		routeTree.dataObjects = new ArrayList<RouteDataObject>();
+		// objects are kept locally, subregion could be loaded by several cursors at the same time
+		List<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
 		List<String> stringTable = null;
@@ -775,7 +748,7 @@ public class BinaryMapRouteReaderAdapter {
 				while (it.hasNext()) {
 					it.advance();
 					int from = (int) it.key();
-					RouteDataObject fromr = routeTree.dataObjects.get(from);
+					RouteDataObject fromr = dataObjects.get(from);
 					fromr.restrictions = new long[it.value().length()];
 					RestrictionInfo val = it.value();
 					for (int k = 0; k < fromr.restrictions.length; k++) {
@@ -790,37 +763,25 @@ public class BinaryMapRouteReaderAdapter {
 					}
 //					fromr.restrictionsVia = new 
 				}
-				for (RouteDataObject o : routeTree.dataObjects) {
+				for (RouteDataObject o : dataObjects) {
 					if (o != null) {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
 						}
-						if (o.names != null && stringTable != null) {
-							int[] keys = o.names.keys();
-							for (int j = 0; j < keys.length; j++) {
-								o.names.put(keys[j], stringTable.get(o.names.get(keys[j]).charAt(0)));
-							}
-						}
-						if (o.pointNames != null && stringTable != null) {
-							for(String[] ar : o.pointNames) {
-								if(ar != null) {
-									for(int j = 0; j < ar.length; j++) {
-										ar[j] = stringTable.get(ar[j].charAt(0));
-									}
-								}
-							}
+						if (stringTable != null && o.hasEncodedNames()) {
+							o.setStringTable(stringTable);
 						}
 					}
 				}
-				return;
+				return dataObjects;
 			case RouteDataBlock.DATAOBJECTS_FIELD_NUMBER :
 				int length = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(length);
 				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
-				while(obj.id >= routeTree.dataObjects.size()) {
-					routeTree.dataObjects.add(null);
+				while(obj.id >= dataObjects.size()) {
+					dataObjects.add(null);
 				}
-				routeTree.dataObjects.set((int) obj.id,obj);
+				dataObjects.set((int) obj.id,obj);
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteDataBlock.IDTABLE_FIELD_NUMBER :
@@ -989,6 +950,28 @@ public class BinaryMapRouteReaderAdapter {
 		}
 	}
 	
+	/**
+	 * Adds tiles of route boxes to coverage, boxes are split till they fit into one tile.
+	 * Children are read into copy of box, so tree of region is not loaded.
+	 */
+	public void addRouteCoverage(RouteSubregion rs, TileCoverage coverage) throws IOException {
+		if (coverage.isSingleTile(rs.left, rs.top, rs.right, rs.bottom)) {
+			coverage.add(rs.left, rs.top, rs.right, rs.bottom);
+			return;
+		}
+		RouteSubregion copy = new RouteSubregion(rs);
+		codedIS.seek(rs.filePointer);
+		int old = codedIS.pushLimit(rs.length);
+		readRouteTree(copy, null, 1, false);
+		codedIS.popLimit(old);
+		if (copy.shiftToData != 0 || copy.subregions.isEmpty()) {
+			coverage.add(rs.left, rs.top, rs.right, rs.bottom);
+		}
+		for (RouteSubregion sub : copy.subregions) {
+			addRouteCoverage(sub, coverage);
+		}
+	}
+
 	public void initRouteTypesIfNeeded(SearchRequest<?> req, List<RouteSubregion> list) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
@@ -998,28 +981,22 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			int oldLimit = codedIS.pushLimit(routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		// region could be shared by cursors of concurrent reader
+		synchronized (routeReg) {
+			if (routeReg.routeEncodingRules.isEmpty()) {
+				codedIS.seek(routeReg.filePointer);
+				int oldLimit = codedIS.pushLimit(routeReg.length);
+				readRouteIndex(routeReg);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
 	
-	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
+	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs, boolean useBlockCache) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
-		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
-		return res;
+		return loadRouteBlock(rs, idMap, restrictionMap, useBlockCache);
 	}
 	
 	public void loadRouteRegionData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
@@ -1034,32 +1011,63 @@ public class BinaryMapRouteReaderAdapter {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
+			if (matcher.isCancelled()) {
+				return;
 			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			List<RouteDataObject> dataObjects = loadRouteBlock(rs, idMap, restrictionMap, true);
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 		}
 	}
 
+	private List<RouteDataObject> loadRouteBlock(RouteSubregion rs, TLongArrayList idMap,
+			TLongObjectHashMap<RestrictionInfo> restrictionMap, boolean useBlockCache) throws IOException {
+		int filePointer = rs.filePointer + rs.shiftToData;
+		DecodedBlockCache<RouteDataObject> cache = DecodedBlockCache.getRouteDataCache();
+		String fileKey = useBlockCache && cache.isEnabled() ? map.getBlockCacheKey() : null;
+		if (fileKey != null) {
+			List<RouteDataObject> cached = cache.get(fileKey, filePointer);
+			if (cached != null) {
+				return copyCachedObjects(cached);
+			}
+		}
+		codedIS.seek(filePointer);
+		int limit = codedIS.readRawVarint32();
+		int oldLimit = codedIS.pushLimit(limit);
+		List<RouteDataObject> res = readRouteTreeData(rs, idMap, restrictionMap);
+		codedIS.popLimit(oldLimit);
+		if (fileKey != null) {
+			res = copyCachedObjects(cache.put(fileKey, filePointer, res, ObjectSizeModel.getRouteDataSize(res)));
+		}
+		return res;
+	}
+
+	/**
+	 * Route objects are modified by routing (conditional tags, inserted points),
+	 * so every request gets its own copies of cached objects.
+	 */
+	private static List<RouteDataObject> copyCachedObjects(List<RouteDataObject> cached) {
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(cached.size());
+		for (RouteDataObject o : cached) {
+			res.add(o == null ? null : o.copyMutable());
+		}
+		return res;
+	}
+
 	public List<RouteSubregion> searchRouteRegionTree(SearchRequest<?> req, List<RouteSubregion> list, 
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -1076,11 +1084,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
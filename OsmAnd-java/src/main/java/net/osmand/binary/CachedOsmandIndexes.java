@@ -1,10 +1,26 @@
 package net.osmand.binary;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
@@ -30,28 +46,35 @@ import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
 
+/**
+ * Cache of obf files structure stored in one file (OsmAndStoredIndex).
+ * Cache file is memory mapped and only names and sizes of files are read on start,
+ * file index is parsed when reader of that file is requested.
+ * File index also keeps tile coverage of map, routing and poi data in field which is not part of FileIndex message,
+ * so it is skipped by parsers of older versions.
+ */
 public class CachedOsmandIndexes {
+
+	// fields of file index with tile coverage
+	private static final int COVERAGE_FIELD_NUMBER = 20;
+	private static final int COVERAGE_TYPE_FIELD_NUMBER = 1;
+	private static final int COVERAGE_DATA_FIELD_NUMBER = 2;
+	private static final int[] COVERAGE_TYPES = { TileCoverage.MAP, TileCoverage.ROUTE, TileCoverage.POI };
 	
-	private OsmAndStoredIndex storedIndex;
-	private OsmAndStoredIndex.Builder storedIndexBuilder;
+	// file name -> stored file index, guarded by this
+	private Map<String, StoredFileIndex> storedFiles = new LinkedHashMap<String, StoredFileIndex>();
+	// file name -> reader which builds coverage on first use, coverage is stored by next write, guarded by this
+	private final Map<String, BinaryMapIndexReader> lazyCoverages = new LinkedHashMap<String, BinaryMapIndexReader>();
+	private long storedDateCreated = 0;
+	// mapped cache file, it is replaced only under write lock
+	private CodedInputStream storedData;
+	private final ReentrantReadWriteLock mappingLock = new ReentrantReadWriteLock();
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = true;
 	
 	public static final int VERSION = 2;
 
 	public void addToCache(BinaryMapIndexReader reader, File f) {
-		hasChanged = true;
-		if(storedIndexBuilder == null) {
-			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
-			storedIndexBuilder.setVersion(VERSION);
-			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
-			if(storedIndex != null) {
-				for(FileIndex ex : storedIndex.getFileIndexList()) {
-					storedIndexBuilder.addFileIndex(ex);
-				}
-			}
-		}
-		
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d== 0?f.lastModified() : d);
@@ -152,8 +175,30 @@ public class CachedOsmandIndexes {
 			fileIndex.addRoutingIndex(routing);
 		}
 		
-		storedIndexBuilder.addFileIndex(fileIndex);
-		
+		boolean lazyCoverage = !reader.isCoverageInitialized();
+		StoredFileIndex stored = new StoredFileIndex(fileIndex.build(), lazyCoverage ? null : getCoverages(reader, f));
+		synchronized (this) {
+			storedFiles.put(stored.fileName, stored);
+			if (lazyCoverage) {
+				lazyCoverages.put(stored.fileName, reader);
+			} else {
+				lazyCoverages.remove(stored.fileName);
+			}
+			hasChanged = true;
+		}
+	}
+
+	private TileCoverage[] getCoverages(BinaryMapIndexReader reader, File f) {
+		TileCoverage[] coverages = new TileCoverage[COVERAGE_TYPES.length];
+		try {
+			reader.initCoverage();
+			for (int i = 0; i < COVERAGE_TYPES.length; i++) {
+				coverages[i] = reader.getCoverage(COVERAGE_TYPES[i]);
+			}
+		} catch (IOException e) {
+			log.error("Coverage of " + f.getName() + " could not be read", e);
+		}
+		return coverages;
 	}
 
 	private void addRouteSubregion(RoutingPart.Builder routing, RouteSubregion sub, boolean base) {
@@ -172,26 +217,39 @@ public class CachedOsmandIndexes {
 	public BinaryMapIndexReader getReader(File f) throws IOException {
 		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		FileIndex found = null;
-		if (storedIndex != null) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
-					found = fi;
-					break;
-				}
-			}
+		StoredFileIndex stored;
+		synchronized (this) {
+			stored = storedFiles.get(f.getName());
+		}
+		if (stored != null && isUpToDate(stored, f)) {
+			found = getFileIndex(stored);
 		}
 		BinaryMapIndexReader reader = null;
 		if (found == null) {
 			long val = System.currentTimeMillis();
 			reader = new BinaryMapIndexReader(mf, f);
+			// data trees are not walked on start, coverage is built when area of file is checked first time
+			reader.setLazyCoverage();
 			addToCache(reader, f);
 			if (log.isDebugEnabled()) {
 				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val ) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
 			reader = initFileIndex(found, mf, f);
+			TileCoverage[] coverages = stored.getCoverages();
+			if (coverages == null) {
+				// cache is written by older version
+				if (reader.containsMapData() || reader.containsRouteData() || reader.containsPoiData()) {
+					reader.setLazyCoverage();
+					synchronized (this) {
+						lazyCoverages.put(stored.fileName, reader);
+					}
+				}
+			} else {
+				for (int i = 0; i < COVERAGE_TYPES.length; i++) {
+					reader.setCoverage(COVERAGE_TYPES[i], coverages[i]);
+				}
+			}
 		}
 		return reader;
 	}
@@ -304,29 +362,396 @@ public class CachedOsmandIndexes {
 		return reader;
 	}
 
+	private FileIndex getFileIndex(StoredFileIndex stored) throws IOException {
+		mappingLock.readLock().lock();
+		try {
+			return stored.getFileIndex(storedData);
+		} finally {
+			mappingLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stale entry is detected by size and modification time of file, so file is not opened to check it
+	 */
+	private boolean isUpToDate(StoredFileIndex stored, File f) {
+		if (f.length() != stored.size) {
+			return false;
+		}
+		// date is taken from obf header if it is present, then file should not be changed after cache was written
+		long lastModified = f.lastModified();
+		return lastModified == stored.dateModified || storedDateCreated == 0 || lastModified <= storedDateCreated;
+	}
+
+	/**
+	 * Opens readers of files by several threads.
+	 * @return readers in order of files, null if file could not be read
+	 */
+	public List<BinaryMapIndexReader> getReaders(List<File> files, int threads) {
+		return getReaders(files, threads, null);
+	}
+
+	/**
+	 * Opens readers of files by several threads.
+	 * @param errors if not null, errors of files are stored with same index (e.g. to report out of memory)
+	 * @return readers in order of files, null if file could not be read
+	 */
+	public List<BinaryMapIndexReader> getReaders(List<File> files, int threads, Throwable[] errors) {
+		long time = System.currentTimeMillis();
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[files.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<BinaryMapIndexReader>> futures = new ArrayList<Future<BinaryMapIndexReader>>();
+			for (final File f : files) {
+				futures.add(executor.submit(new Callable<BinaryMapIndexReader>() {
+					@Override
+					public BinaryMapIndexReader call() throws Exception {
+						return getReader(f);
+					}
+				}));
+			}
+			for (int i = 0; i < readers.length; i++) {
+				try {
+					readers[i] = futures.get(i).get();
+				} catch (ExecutionException e) {
+					log.error(String.format("File %s could not be read", files.get(i).getName()), e.getCause());
+					if (errors != null) {
+						errors[i] = e.getCause();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info("Initialize " + files.size() + " files " + (System.currentTimeMillis() - time) + " ms");
+		return Arrays.asList(readers);
+	}
+
+	/**
+	 * Mapping stays valid after file is closed, stream of file which is too big to be mapped could not be used.
+	 */
+	private static CodedInputStream mapStoredData(RandomAccessFile raf) throws IOException {
+		CodedInputStream cis = CodedInputStream.newMappedInstance(raf);
+		if (!cis.isMemoryMapped()) {
+			throw new IOException("Cache file is too big to be memory mapped: " + raf.length());
+		}
+		cis.setSizeLimit(Integer.MAX_VALUE);
+		return cis;
+	}
+
 	public void readFromFile(File f, int version) throws IOException {
 		long time = System.currentTimeMillis();
-		FileInputStream is = new FileInputStream(f);
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
 		try {
-			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
-			hasChanged = false;
-			if(storedIndex.getVersion() != version){
-				storedIndex = null;
+			CodedInputStream cis = mapStoredData(raf);
+			Map<String, StoredFileIndex> files = new LinkedHashMap<String, StoredFileIndex>();
+			int storedVersion = 0;
+			long dateCreated = 0;
+			boolean end = false;
+			while (!end) {
+				int t = cis.readTag();
+				switch (WireFormat.getTagFieldNumber(t)) {
+				case 0:
+					end = true;
+					break;
+				case OsmAndStoredIndex.VERSION_FIELD_NUMBER:
+					storedVersion = cis.readUInt32();
+					break;
+				case OsmAndStoredIndex.DATECREATED_FIELD_NUMBER:
+					dateCreated = cis.readInt64();
+					break;
+				case OsmAndStoredIndex.FILEINDEX_FIELD_NUMBER:
+					int length = cis.readRawVarint32();
+					int offset = cis.getTotalBytesRead();
+					int oldLimit = cis.pushLimit(length);
+					StoredFileIndex stored = readStoredFileIndex(cis, offset, length);
+					cis.popLimit(oldLimit);
+					// later entry of the same file replaces previous one
+					files.put(stored.fileName, stored);
+					break;
+				default:
+					cis.skipField(t);
+					break;
+				}
+			}
+			mappingLock.writeLock().lock();
+			try {
+				synchronized (this) {
+					hasChanged = false;
+					if (storedVersion == version) {
+						storedFiles = files;
+						storedDateCreated = dateCreated;
+						replaceStoredData(cis);
+					} else {
+						cis.unmap();
+					}
+				}
+			} finally {
+				mappingLock.writeLock().unlock();
 			}
 		} finally {
-			is.close();
+			raf.close();
 		}
 		log.info("Initialize cache " + (System.currentTimeMillis() - time));
 	}
+
+	private static StoredFileIndex readStoredFileIndex(CodedInputStream cis, int offset, int length) throws IOException {
+		String fileName = "";
+		long size = 0;
+		long dateModified = 0;
+		while (true) {
+			int t = cis.readTag();
+			switch (WireFormat.getTagFieldNumber(t)) {
+			case 0:
+				return new StoredFileIndex(fileName, size, dateModified, offset, length);
+			case FileIndex.SIZE_FIELD_NUMBER:
+				size = cis.readInt64();
+				break;
+			case FileIndex.DATEMODIFIED_FIELD_NUMBER:
+				dateModified = cis.readInt64();
+				break;
+			case FileIndex.FILENAME_FIELD_NUMBER:
+				fileName = cis.readString();
+				break;
+			default:
+				// map, routing, poi and other parts are parsed on request
+				cis.skipField(t);
+				break;
+			}
+		}
+	}
 	
 	public void writeToFile(File f) throws IOException {
-		if (hasChanged) {
-			FileOutputStream outputStream = new FileOutputStream(f);
+		List<StoredFileIndex> files;
+		synchronized (this) {
+			storeLazyCoverages();
+			if (!hasChanged) {
+				return;
+			}
+			files = new ArrayList<StoredFileIndex>(storedFiles.values());
+		}
+		int[] offsets = new int[files.size()];
+		int[] lengths = new int[files.size()];
+		File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+		mappingLock.writeLock().lock();
+		try {
+			FileOutputStream outputStream = new FileOutputStream(tmp);
 			try {
-				storedIndexBuilder.build().writeTo(outputStream);
+				CodedOutputStream out = CodedOutputStream.newInstance(outputStream);
+				out.writeUInt32(OsmAndStoredIndex.VERSION_FIELD_NUMBER, VERSION);
+				int pos = CodedOutputStream.computeUInt32Size(OsmAndStoredIndex.VERSION_FIELD_NUMBER, VERSION);
+				for (int i = 0; i < files.size(); i++) {
+					byte[] data = files.get(i).getData(storedData);
+					out.writeTag(OsmAndStoredIndex.FILEINDEX_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+					out.writeRawVarint32(data.length);
+					out.writeRawBytes(data);
+					pos += CodedOutputStream.computeTagSize(OsmAndStoredIndex.FILEINDEX_FIELD_NUMBER)
+							+ CodedOutputStream.computeRawVarint32Size(data.length);
+					offsets[i] = pos;
+					lengths[i] = data.length;
+					pos += data.length;
+				}
+				out.writeInt64(OsmAndStoredIndex.DATECREATED_FIELD_NUMBER, System.currentTimeMillis());
+				out.flush();
 			} finally {
 				outputStream.close();
 			}
+			// cache file could be mapped, it is released before replacement and written file is mapped instead
+			replaceStoredData(null);
+			boolean replaced = tmp.renameTo(f) || (f.delete() && tmp.renameTo(f));
+			RandomAccessFile raf = new RandomAccessFile(replaced ? f : tmp, "r");
+			try {
+				CodedInputStream cis = mapStoredData(raf);
+				for (int i = 0; i < files.size(); i++) {
+					files.get(i).setPosition(offsets[i], lengths[i]);
+				}
+				replaceStoredData(cis);
+			} finally {
+				raf.close();
+			}
+			if (!replaced) {
+				throw new IOException("Cache file could not be replaced " + f.getAbsolutePath());
+			}
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+		synchronized (this) {
+			hasChanged = false;
+		}
+	}
+
+	/**
+	 * Stores coverages which were built by readers since they were opened, should be called under lock
+	 */
+	private void storeLazyCoverages() {
+		Iterator<Map.Entry<String, BinaryMapIndexReader>> it = lazyCoverages.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, BinaryMapIndexReader> e = it.next();
+			BinaryMapIndexReader reader = e.getValue();
+			if (!reader.isCoverageInitialized()) {
+				continue;
+			}
+			it.remove();
+			StoredFileIndex stored = storedFiles.get(e.getKey());
+			FileIndex fileIndex = stored == null ? null : stored.getParsedFileIndex();
+			if (fileIndex != null && stored.getCoverages() == null) {
+				TileCoverage[] coverages = new TileCoverage[COVERAGE_TYPES.length];
+				for (int i = 0; i < COVERAGE_TYPES.length; i++) {
+					coverages[i] = reader.getCoverage(COVERAGE_TYPES[i]);
+				}
+				storedFiles.put(stored.fileName, new StoredFileIndex(fileIndex, coverages));
+				hasChanged = true;
+			}
+		}
+	}
+
+	/**
+	 * Should be called under write lock of mapping, so mapping is not used by other threads
+	 */
+	private void replaceStoredData(CodedInputStream data) {
+		if (storedData != null && !storedData.unmap()) {
+			log.warn("Mapping of cache file is released by garbage collector");
+		}
+		storedData = data;
+	}
+
+	private static class StoredFileIndex {
+		final String fileName;
+		final long size;
+		final long dateModified;
+		// position of encoded file index in cache file, -1 for new index
+		private int offset;
+		private int length;
+		private FileIndex fileIndex;
+		// by coverage types, null if they are not stored
+		private TileCoverage[] coverages;
+
+		StoredFileIndex(String fileName, long size, long dateModified, int offset, int length) {
+			this.fileName = fileName;
+			this.size = size;
+			this.dateModified = dateModified;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		StoredFileIndex(FileIndex fileIndex, TileCoverage[] coverages) {
+			this(fileIndex.getFileName(), fileIndex.getSize(), fileIndex.getDateModified(), -1, 0);
+			this.fileIndex = fileIndex;
+			this.coverages = coverages;
+		}
+
+		synchronized void setPosition(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		synchronized FileIndex getFileIndex(CodedInputStream storedData) throws IOException {
+			if (fileIndex == null) {
+				byte[] data = getData(storedData);
+				fileIndex = FileIndex.parseFrom(data);
+				coverages = readCoverages(data);
+			}
+			return fileIndex;
+		}
+
+		/**
+		 * @return file index if it is already parsed or created
+		 */
+		synchronized FileIndex getParsedFileIndex() {
+			return fileIndex;
+		}
+
+		/**
+		 * @return coverages of file index read by {@link #getFileIndex(CodedInputStream)}
+		 */
+		synchronized TileCoverage[] getCoverages() {
+			return coverages;
+		}
+
+		private static TileCoverage[] readCoverages(byte[] data) throws IOException {
+			TileCoverage[] res = null;
+			CodedInputStream cis = CodedInputStream.newInstance(data);
+			while (true) {
+				int t = cis.readTag();
+				int tag = WireFormat.getTagFieldNumber(t);
+				if (tag == 0) {
+					return res;
+				} else if (tag != COVERAGE_FIELD_NUMBER) {
+					cis.skipField(t);
+					continue;
+				}
+				if (res == null) {
+					res = new TileCoverage[COVERAGE_TYPES.length];
+				}
+				int oldLimit = cis.pushLimit(cis.readRawVarint32());
+				int type = 0;
+				TileCoverage coverage = null;
+				while (true) {
+					int ct = cis.readTag();
+					int ctag = WireFormat.getTagFieldNumber(ct);
+					if (ctag == 0) {
+						break;
+					} else if (ctag == COVERAGE_TYPE_FIELD_NUMBER) {
+						type = cis.readUInt32();
+					} else if (ctag == COVERAGE_DATA_FIELD_NUMBER) {
+						int old = cis.pushLimit(cis.readRawVarint32());
+						coverage = TileCoverage.readFrom(cis);
+						cis.skipRawBytes(cis.getBytesUntilLimit());
+						cis.popLimit(old);
+					} else {
+						cis.skipField(ct);
+					}
+				}
+				cis.popLimit(oldLimit);
+				for (int i = 0; i < COVERAGE_TYPES.length; i++) {
+					if (COVERAGE_TYPES[i] == type) {
+						res[i] = coverage;
+					}
+				}
+			}
+		}
+
+		synchronized byte[] getData(CodedInputStream storedData) throws IOException {
+			if (offset == -1) {
+				return writeData();
+			}
+			// own cursor over shared mapping
+			CodedInputStream cis = CodedInputStream.newMappedInstance(storedData);
+			cis.setSizeLimit(Integer.MAX_VALUE);
+			cis.seek(offset);
+			return cis.readRawBytes(length);
+		}
+
+		private byte[] writeData() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+			fileIndex.writeTo(out);
+			// type is written for every known coverage, so file index with no data still has coverage field,
+			// unknown coverage is not written
+			for (int i = 0; coverages != null && i < COVERAGE_TYPES.length; i++) {
+				TileCoverage c = coverages[i];
+				if (c == null && i > 0) {
+					continue;
+				}
+				int size = CodedOutputStream.computeUInt32Size(COVERAGE_TYPE_FIELD_NUMBER, COVERAGE_TYPES[i]);
+				if (c != null) {
+					size += CodedOutputStream.computeTagSize(COVERAGE_DATA_FIELD_NUMBER)
+							+ CodedOutputStream.computeRawVarint32Size(c.getSerializedSize()) + c.getSerializedSize();
+				}
+				out.writeTag(COVERAGE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeRawVarint32(size);
+				out.writeUInt32(COVERAGE_TYPE_FIELD_NUMBER, COVERAGE_TYPES[i]);
+				if (c != null) {
+					out.writeTag(COVERAGE_DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+					out.writeRawVarint32(c.getSerializedSize());
+					c.writeTo(out);
+				}
+			}
+			out.flush();
+			return bytes.toByteArray();
 		}
 	}
 
@@ -0,0 +1,233 @@
+package net.osmand.binary;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Process wide cache of decoded data blocks shared by all readers.
+ * Blocks are keyed by obf file and block file pointer and evicted by estimated size in bytes
+ * with segmented LRU: new block goes to probation segment, block requested again is moved to protected segment,
+ * blocks which don't fit into protected segment go back to probation and are evicted from it.
+ * So blocks read once by large request don't push out blocks used by many requests.
+ * Cache is disabled while memory budget is 0.
+ *
+ * Cached lists and objects are shared between requests, so they are never modified: decoded map objects are read only
+ * and route objects are copied when they are handed out by reader.
+ * Route tiles of routing contexts are kept by {@link net.osmand.router.RoutingTileCache} when it is enabled,
+ * they are not put to this cache.
+ */
+public class DecodedBlockCache<T> {
+
+	private static final DecodedBlockCache<RouteDataObject> ROUTE_DATA = new DecodedBlockCache<RouteDataObject>(
+			"Route data");
+	private static final DecodedBlockCache<BinaryMapDataObject> MAP_DATA = new DecodedBlockCache<BinaryMapDataObject>(
+			"Map data");
+
+	public static final float DEFAULT_PROTECTED_RATIO = 0.8f;
+
+	private final String name;
+	// access ordered, eldest first
+	private final LinkedHashMap<BlockKey, Block<T>> probation = new LinkedHashMap<BlockKey, Block<T>>(64, 0.75f, true);
+	private final LinkedHashMap<BlockKey, Block<T>> protectedSegment = new LinkedHashMap<BlockKey, Block<T>>(64, 0.75f,
+			true);
+	private volatile long memoryBudget = 0;
+	private float protectedRatio = DEFAULT_PROTECTED_RATIO;
+	private long probationSize = 0;
+	private long protectedSize = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public DecodedBlockCache(String name) {
+		this.name = name;
+	}
+
+	public static DecodedBlockCache<RouteDataObject> getRouteDataCache() {
+		return ROUTE_DATA;
+	}
+
+	public static DecodedBlockCache<BinaryMapDataObject> getMapDataCache() {
+		return MAP_DATA;
+	}
+
+	public boolean isEnabled() {
+		return memoryBudget > 0;
+	}
+
+	public synchronized void setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+		evict();
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @param ratio part of memory budget kept for blocks requested more than once
+	 */
+	public synchronized void setProtectedRatio(float ratio) {
+		if (ratio < 0 || ratio > 1) {
+			throw new IllegalArgumentException("Protected ratio should be in [0, 1]: " + ratio);
+		}
+		this.protectedRatio = ratio;
+		evict();
+	}
+
+	/**
+	 * @param fileKey key of obf file, it should change when file is replaced
+	 * @return cached objects or null
+	 */
+	public synchronized List<T> get(String fileKey, long filePointer) {
+		BlockKey key = new BlockKey(fileKey, filePointer);
+		Block<T> b = protectedSegment.get(key);
+		if (b == null) {
+			b = probation.remove(key);
+			if (b == null) {
+				misses++;
+				return null;
+			}
+			probationSize -= b.size;
+			protectedSegment.put(key, b);
+			protectedSize += b.size;
+			evict();
+		}
+		hits++;
+		return b.objects;
+	}
+
+	/**
+	 * Puts decoded block into cache.
+	 * @return objects which should be used by caller, they could be already cached by concurrent request
+	 */
+	public synchronized List<T> put(String fileKey, long filePointer, List<T> objects, long size) {
+		BlockKey key = new BlockKey(fileKey, filePointer);
+		Block<T> b = protectedSegment.get(key);
+		if (b == null) {
+			b = probation.get(key);
+		}
+		if (b != null) {
+			return b.objects;
+		}
+		List<T> res = Collections.unmodifiableList(objects);
+		if (size > memoryBudget) {
+			return res;
+		}
+		probation.put(key, new Block<T>(res, size));
+		probationSize += size;
+		evict();
+		return res;
+	}
+
+	private void evict() {
+		long protectedBudget = (long) (memoryBudget * protectedRatio);
+		Iterator<Entry<BlockKey, Block<T>>> it = protectedSegment.entrySet().iterator();
+		while (protectedSize > protectedBudget && it.hasNext()) {
+			// demoted block gets another chance in probation segment
+			Entry<BlockKey, Block<T>> e = it.next();
+			it.remove();
+			protectedSize -= e.getValue().size;
+			probation.put(e.getKey(), e.getValue());
+			probationSize += e.getValue().size;
+		}
+		it = probation.entrySet().iterator();
+		while (probationSize + protectedSize > memoryBudget && it.hasNext()) {
+			Block<T> b = it.next().getValue();
+			it.remove();
+			probationSize -= b.size;
+			evictions++;
+		}
+	}
+
+	public synchronized void clear() {
+		probation.clear();
+		protectedSegment.clear();
+		probationSize = 0;
+		protectedSize = 0;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return estimated bytes held by cached blocks
+	 */
+	public synchronized long getCurrentSize() {
+		return probationSize + protectedSize;
+	}
+
+	public synchronized long getProtectedSize() {
+		return protectedSize;
+	}
+
+	public synchronized int getBlocksCount() {
+		return probation.size() + protectedSegment.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s cache %d blocks, %d of %d KB (protected %d KB), hit rate %.2f, hits %d, misses %d, evictions %d",
+				name, getBlocksCount(), getCurrentSize() >> 10, memoryBudget >> 10, protectedSize >> 10, getHitRate(),
+				hits, misses, evictions);
+	}
+
+	private static class Block<T> {
+		private final List<T> objects;
+		private final long size;
+
+		Block(List<T> objects, long size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	private static class BlockKey {
+		private final String file;
+		private final long filePointer;
+
+		BlockKey(String file, long filePointer) {
+			this.file = file;
+			this.filePointer = filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * file.hashCode() + (int) (filePointer ^ (filePointer >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return filePointer == other.filePointer && file.equals(other.file);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package net.osmand.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+/**
+ * In-memory copy of name index of poi or address region. Indexed string table is kept as trie of keys
+ * (prefixes of normalized names) in preorder and atoms of every table value are kept as packed ints
+ * with locations and offsets of objects, so search by name doesn't read and parse name index from file.
+ * Atoms don't have all names of objects (poi atoms have no name), so objects of found atoms are still read
+ * from file and matched by name. While user is typing, search apis filter objects found by previous word
+ * (see {@link net.osmand.search.core.NameCandidatesCache}) instead of searching index again.
+ */
+public class NameIndex {
+
+	private final List<String> keys = new ArrayList<String>();
+	// index of key after last key of subtree
+	private final TIntArrayList subtreeEnds = new TIntArrayList();
+	private final List<TIntArrayList> values = new ArrayList<TIntArrayList>();
+	private final TIntObjectHashMap<TIntArrayList> atoms = new TIntObjectHashMap<TIntArrayList>();
+	private long loadTime;
+
+	int addKey(String key) {
+		keys.add(key);
+		values.add(null);
+		subtreeEnds.add(keys.size());
+		return keys.size() - 1;
+	}
+
+	String getKey(int key) {
+		return keys.get(key);
+	}
+
+	void addValue(int key, int value) {
+		TIntArrayList l = values.get(key);
+		if (l == null) {
+			l = new TIntArrayList(1);
+			values.set(key, l);
+		}
+		l.add(value);
+	}
+
+	void endSubtree(int key) {
+		subtreeEnds.set(key, keys.size());
+	}
+
+	void setAtoms(int value, TIntArrayList packed) {
+		packed.trimToSize();
+		atoms.put(value, packed);
+	}
+
+	void setLoadTime(long loadTime) {
+		this.loadTime = loadTime;
+	}
+
+	/**
+	 * @return distinct values of all keys
+	 */
+	TIntArrayList getValues() {
+		TIntArrayList res = new TIntArrayList();
+		for (TIntArrayList l : values) {
+			if (l != null) {
+				res.addAll(l);
+			}
+		}
+		res.sort();
+		TIntArrayList distinct = new TIntArrayList(res.size());
+		for (int i = 0; i < res.size(); i++) {
+			if (i == 0 || res.get(i) != res.get(i - 1)) {
+				distinct.add(res.get(i));
+			}
+		}
+		return distinct;
+	}
+
+	TIntArrayList getAtoms(int value) {
+		return atoms.get(value);
+	}
+
+	/**
+	 * Finds values of the best matching keys as {@link BinaryMapIndexReader#readIndexedStringTable} does for table in file.
+	 */
+	void readIndexedStringTable(Collator instance, String query, TIntArrayList list) {
+		// query is folded once for all keys
+		CollatorStringMatcher queryMatcher = new CollatorStringMatcher(instance, query,
+				StringMatcherMode.CHECK_ONLY_STARTS_WITH);
+		readIndexedStringTable(instance, queryMatcher, query, 0, keys.size(), list, 0);
+	}
+
+	private int readIndexedStringTable(Collator instance, CollatorStringMatcher queryMatcher, String query, int start,
+			int end, TIntArrayList list, int charMatches) {
+		for (int i = start; i < end; i = subtreeEnds.get(i)) {
+			String key = keys.get(i);
+			boolean matches = false;
+			// check query is part of key (the best matching)
+			if (queryMatcher.matches(key)) {
+				if (query.length() >= charMatches) {
+					if (query.length() > charMatches) {
+						charMatches = query.length();
+						list.clear();
+					}
+					matches = true;
+				}
+				// check key is part of query
+			} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+				if (key.length() >= charMatches) {
+					if (key.length() > charMatches) {
+						charMatches = key.length();
+						list.clear();
+					}
+					matches = true;
+				}
+			}
+			if (matches) {
+				if (values.get(i) != null) {
+					list.addAll(values.get(i));
+				}
+				if (subtreeEnds.get(i) > i + 1) {
+					charMatches = readIndexedStringTable(instance, queryMatcher, query, i + 1, subtreeEnds.get(i), list,
+							charMatches);
+				}
+			}
+		}
+		return charMatches;
+	}
+
+	public int getKeysCount() {
+		return keys.size();
+	}
+
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	/**
+	 * @return estimated size of index in memory (bytes)
+	 */
+	public long getMemorySize() {
+		long size = 64 + subtreeEnds.size() * 4 + values.size() * 8;
+		for (String key : keys) {
+			size += 48 + key.length() * 2;
+		}
+		for (TIntArrayList l : values) {
+			if (l != null) {
+				size += 32 + l.size() * 4;
+			}
+		}
+		for (TIntArrayList l : atoms.valueCollection()) {
+			size += 48 + l.size() * 4;
+		}
+		return size;
+	}
+}
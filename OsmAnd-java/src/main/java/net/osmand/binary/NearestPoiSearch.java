@@ -0,0 +1,172 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Best-first search of nearest pois over poi box trees of several files.
+ * Boxes and data blocks are queued by lower bound of distance to request point, found pois are kept in bounded heap
+ * and search stops when nothing left in queue could be closer than the farthest of found pois.
+ * Distance is measured in tile metric (meters, x scaled at latitude of request point).
+ */
+class NearestPoiSearch {
+
+	private static final Comparator<Node> NEAREST_FIRST = new Comparator<Node>() {
+		@Override
+		public int compare(Node o1, Node o2) {
+			return Double.compare(o1.dist, o2.dist);
+		}
+	};
+
+	private static final Comparator<Node> FARTHEST_FIRST = new Comparator<Node>() {
+		@Override
+		public int compare(Node o1, Node o2) {
+			return Double.compare(o2.dist, o1.dist);
+		}
+	};
+
+	private final SearchRequest<Amenity> req;
+	private final int limit;
+	private final PriorityQueue<Node> queue = new PriorityQueue<Node>(64, NEAREST_FIRST);
+	private final PriorityQueue<Node> nearest;
+	// same poi could be stored in overlapping files
+	private final TLongHashSet ids = new TLongHashSet();
+
+	NearestPoiSearch(SearchRequest<Amenity> req) {
+		if (req.limit <= 0) {
+			throw new IllegalArgumentException("Nearest search requires positive limit: " + req.limit);
+		}
+		this.req = req;
+		this.limit = req.limit;
+		this.nearest = new PriorityQueue<Node>(limit + 1, FARTHEST_FIRST);
+	}
+
+	/**
+	 * @return distance to the farthest of found pois when limit is reached
+	 */
+	double getBound() {
+		return nearest.size() < limit ? Double.POSITIVE_INFINITY : nearest.peek().dist;
+	}
+
+	boolean intersects(int left31, int right31, int top31, int bottom31) {
+		return !(req.left > right31 || left31 > req.right || req.bottom < top31 || bottom31 < req.top);
+	}
+
+	double getDistance(int left31, int right31, int top31, int bottom31) {
+		int x = Math.max(left31, Math.min(right31, req.x));
+		int y = Math.max(top31, Math.min(bottom31, req.y));
+		return MapUtils.squareDist31TileMetric(req.x, req.y, x, y);
+	}
+
+	/**
+	 * Queues box of poi tree, x, y are tile numbers of box at zoom.
+	 */
+	void addBox(BinaryMapPoiReaderAdapter adapter, PoiRegion region, int pointer, int length, int x, int y, int zoom) {
+		int left31 = x << (31 - zoom);
+		int right31 = ((x + 1) << (31 - zoom)) - 1;
+		int top31 = y << (31 - zoom);
+		int bottom31 = ((y + 1) << (31 - zoom)) - 1;
+		if (!intersects(left31, right31, top31, bottom31)) {
+			return;
+		}
+		double dist = getDistance(left31, right31, top31, bottom31);
+		if (dist < getBound()) {
+			queue.add(new Node(adapter, region, pointer, length, x, y, zoom, dist, null));
+		}
+	}
+
+	/**
+	 * Queues poi data block of box, it has the same distance as box.
+	 */
+	void addData(BinaryMapPoiReaderAdapter adapter, PoiRegion region, int pointer, double dist) {
+		if (dist < getBound()) {
+			queue.add(new Node(adapter, region, pointer, -1, 0, 0, 0, dist, null));
+		}
+	}
+
+	void addAmenity(Amenity am) {
+		LatLon l = am.getLocation();
+		int x = MapUtils.get31TileNumberX(l.getLongitude());
+		int y = MapUtils.get31TileNumberY(l.getLatitude());
+		double dist = MapUtils.squareDist31TileMetric(req.x, req.y, x, y);
+		if (dist >= getBound()) {
+			return;
+		}
+		if (am.getId() != null && ids.contains(am.getId())) {
+			return;
+		}
+		if (!req.matches(am)) {
+			return;
+		}
+		if (am.getId() != null) {
+			ids.add(am.getId());
+		}
+		nearest.add(new Node(null, null, 0, 0, x, y, 0, dist, am));
+		if (nearest.size() > limit) {
+			nearest.poll();
+		}
+	}
+
+	/**
+	 * @return found pois ordered by distance
+	 */
+	List<Amenity> search() throws IOException {
+		while (!queue.isEmpty() && !req.isCancelled()) {
+			Node n = queue.poll();
+			if (n.dist >= getBound()) {
+				break;
+			}
+			if (n.length < 0) {
+				req.numberOfAcceptedSubtrees++;
+				n.adapter.readNearestPoiData(n.region, n.pointer, req, this);
+			} else {
+				req.numberOfReadSubtrees++;
+				n.adapter.readNearestPoiBox(n.region, n.pointer, n.length, n.x, n.y, n.zoom, n.dist, req, this);
+			}
+		}
+		List<Node> nodes = new ArrayList<Node>(nearest);
+		Collections.sort(nodes, NEAREST_FIRST);
+		List<Amenity> res = new ArrayList<Amenity>(nodes.size());
+		for (Node n : nodes) {
+			res.add(n.amenity);
+		}
+		return res;
+	}
+
+	private static class Node {
+		final BinaryMapPoiReaderAdapter adapter;
+		final PoiRegion region;
+		final int pointer;
+		// -1 for data block
+		final int length;
+		final int x;
+		final int y;
+		final int zoom;
+		final double dist;
+		final Amenity amenity;
+
+		Node(BinaryMapPoiReaderAdapter adapter, PoiRegion region, int pointer, int length, int x, int y, int zoom,
+				double dist, Amenity amenity) {
+			this.adapter = adapter;
+			this.region = region;
+			this.pointer = pointer;
+			this.length = length;
+			this.x = x;
+			this.y = y;
+			this.zoom = zoom;
+			this.dist = dist;
+			this.amenity = amenity;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package net.osmand.binary;
+
+import java.util.List;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Size model of decoded objects in bytes (64-bit VM with compressed references).
+ */
+public class ObjectSizeModel {
+
+	public static final int OBJECT_HEADER = 12;
+	public static final int ARRAY_HEADER = 16;
+	public static final int REFERENCE = 4;
+
+	// RouteDataObject : 15 references + long id
+	static final int ROUTE_DATA_OBJECT = align(OBJECT_HEADER + 15 * REFERENCE + 8);
+	// BinaryMapDataObject : 7 references, 4 ints, long, boolean
+	static final int MAP_DATA_OBJECT = align(OBJECT_HEADER + 7 * REFERENCE + 4 * 4 + 8 + 1);
+
+	public static int align(int size) {
+		return (size + 7) & ~7;
+	}
+
+	public static int getIntArraySize(int[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 4 * a.length);
+	}
+
+	public static int getLongArraySize(long[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 8 * a.length);
+	}
+
+	public static int getFloatArraySize(float[] a) {
+		return a == null ? 0 : align(ARRAY_HEADER + 4 * a.length);
+	}
+
+	public static int getStringSize(String s) {
+		// String object + char array
+		return s == null ? 0 : align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2 * s.length());
+	}
+
+	public static int getIntArraysSize(int[][] a) {
+		if (a == null) {
+			return 0;
+		}
+		int sz = align(ARRAY_HEADER + REFERENCE * a.length);
+		for (int i = 0; i < a.length; i++) {
+			sz += getIntArraySize(a[i]);
+		}
+		return sz;
+	}
+
+	/**
+	 * Array list with its array grown by 1.5
+	 */
+	public static int getListSize(int size) {
+		return align(OBJECT_HEADER + REFERENCE + 8) + align(ARRAY_HEADER + REFERENCE * (size * 3 / 2));
+	}
+
+	/**
+	 * Trove int-object map, keys, values, states arrays with load factor 0.5
+	 */
+	public static int getIntObjectMapSize(int size) {
+		int capacity = size * 2 + 1;
+		return align(OBJECT_HEADER + 32) + align(ARRAY_HEADER + 4 * capacity) + align(ARRAY_HEADER + REFERENCE * capacity)
+				+ align(ARRAY_HEADER + capacity);
+	}
+
+	public static int getStringArraysSize(String[][] a) {
+		if (a == null) {
+			return 0;
+		}
+		int sz = align(ARRAY_HEADER + REFERENCE * a.length);
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != null) {
+				sz += align(ARRAY_HEADER + REFERENCE * a[i].length);
+				for (int j = 0; j < a[i].length; j++) {
+					sz += getStringSize(a[i][j]);
+				}
+			}
+		}
+		return sz;
+	}
+
+	/**
+	 * Size of object with all its arrays, names and restrictions
+	 */
+	public static int getRouteDataObjectSize(RouteDataObject o) {
+		int sz = ROUTE_DATA_OBJECT;
+		sz += getIntArraySize(o.pointsX);
+		sz += getIntArraySize(o.pointsY);
+		sz += getIntArraySize(o.types);
+		sz += getLongArraySize(o.restrictions);
+		sz += getLongArraySize(o.restrictionsVia);
+		sz += getIntArraysSize(o.pointTypes);
+		sz += getIntArraysSize(o.pointNameTypes);
+		sz += getStringArraysSize(o.pointNames);
+		sz += getIntArraySize(o.nameIds);
+		sz += getFloatArraySize(o.heightDistanceArray);
+		if (o.hasEncodedNames()) {
+			// encoded names and point names
+			sz += 2 * align(ARRAY_HEADER) + o.getEncodedNamesSize();
+		}
+		sz += getNamesSize(o.names);
+		return sz;
+	}
+
+	/**
+	 * Size of object with coordinates, types and names
+	 */
+	public static int getMapDataObjectSize(BinaryMapDataObject o) {
+		int sz = MAP_DATA_OBJECT;
+		sz += getIntArraySize(o.coordinates);
+		sz += getIntArraysSize(o.polygonInnerCoordinates);
+		sz += getIntArraySize(o.types);
+		sz += getIntArraySize(o.additionalTypes);
+		sz += getNamesSize(o.objectNames);
+		if (o.namesOrder != null) {
+			sz += align(OBJECT_HEADER + REFERENCE + 8) + align(ARRAY_HEADER + 4 * o.namesOrder.size());
+		}
+		return sz;
+	}
+
+	public static long getRouteDataSize(List<RouteDataObject> objects) {
+		long sz = getListSize(objects.size());
+		for (RouteDataObject o : objects) {
+			if (o != null) {
+				sz += getRouteDataObjectSize(o);
+			}
+		}
+		return sz;
+	}
+
+	public static long getMapDataSize(List<BinaryMapDataObject> objects) {
+		long sz = getListSize(objects.size());
+		for (BinaryMapDataObject o : objects) {
+			sz += getMapDataObjectSize(o);
+		}
+		return sz;
+	}
+
+	private static int getNamesSize(TIntObjectHashMap<String> names) {
+		if (names == null) {
+			return 0;
+		}
+		int sz = getIntObjectMapSize(names.size());
+		TIntObjectIterator<String> it = names.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			sz += getStringSize(it.value());
+		}
+		return sz;
+	}
+}
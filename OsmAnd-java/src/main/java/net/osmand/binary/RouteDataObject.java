@@ -3,12 +3,17 @@ package net.osmand.binary;
 import net.osmand.Location;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.router.RouteTypesCache;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 import net.osmand.util.TransliterationHelper;
 
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 
@@ -34,6 +39,13 @@ public class RouteDataObject {
 	public int[] nameIds;
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
+	// names and point names read from file are kept encoded till first request (routing doesn't use them),
+	// encoded arrays are set to null when fields above are decoded
+	private volatile byte[] encodedNames;
+	private volatile byte[] encodedPointNames;
+	private List<String> stringTable;
+	// hash of types for routing caches, 0 till first request
+	private int typesHash;
 
 	public RouteDataObject(RouteRegion region) {
 		this.region = region;
@@ -55,7 +67,12 @@ public class RouteDataObject {
 		this.pointsX = copy.pointsX;
 		this.pointsY = copy.pointsY;
 		this.types = copy.types;
+		this.typesHash = copy.typesHash;
+		this.encodedNames = copy.encodedNames;
+		this.encodedPointNames = copy.encodedPointNames;
+		this.stringTable = copy.stringTable;
 		this.names = copy.names;
+		this.nameIds = copy.nameIds;
 		this.restrictions = copy.restrictions;
 		this.restrictionsVia = copy.restrictionsVia;
 		this.pointTypes = copy.pointTypes;
@@ -64,7 +81,136 @@ public class RouteDataObject {
 		this.id = copy.id;
 	}
 
+	/**
+	 * Copy which could be modified by conditional tags processing and point insertion without changes of this object:
+	 * types are changed in place so they are cloned, points arrays are replaced on insert so they are shared.
+	 */
+	public RouteDataObject copyMutable() {
+		RouteDataObject copy = new RouteDataObject(this);
+		if (types != null) {
+			copy.types = types.clone();
+		}
+		if (pointTypes != null) {
+			copy.pointTypes = pointTypes.clone();
+			for (int i = 0; i < copy.pointTypes.length; i++) {
+				if (copy.pointTypes[i] != null) {
+					copy.pointTypes[i] = copy.pointTypes[i].clone();
+				}
+			}
+		}
+		return copy;
+	}
+
+	void setEncodedNames(byte[] encodedNames, byte[] encodedPointNames) {
+		this.encodedNames = encodedNames;
+		this.encodedPointNames = encodedPointNames;
+	}
+
+	/**
+	 * @param stringTable strings of route data block referenced by encoded names
+	 */
+	void setStringTable(List<String> stringTable) {
+		this.stringTable = stringTable;
+	}
+
+	public boolean hasEncodedNames() {
+		return encodedNames != null || encodedPointNames != null;
+	}
+
+	public int getEncodedNamesSize() {
+		byte[] en = encodedNames;
+		byte[] epn = encodedPointNames;
+		return (en == null ? 0 : en.length) + (epn == null ? 0 : epn.length);
+	}
+
+	/**
+	 * Decodes names, name ids, point names and point name types if they are not decoded yet.
+	 * It is called by getters, fields could be accessed directly only after this call.
+	 */
+	public void decodeNames() {
+		if (encodedNames == null && encodedPointNames == null) {
+			return;
+		}
+		synchronized (this) {
+			try {
+				byte[] en = encodedNames;
+				if (en != null) {
+					TIntObjectHashMap<String> nms = new TIntObjectHashMap<String>();
+					int[] ids = new int[en.length / 2];
+					int cnt = 0;
+					CodedInputStream in = CodedInputStream.newInstance(en);
+					while (!in.isAtEnd()) {
+						int stag = in.readRawVarint32();
+						nms.put(stag, getTableString(in.readRawVarint32()));
+						ids[cnt++] = stag;
+					}
+					names = nms;
+					nameIds = Arrays.copyOf(ids, cnt);
+					encodedNames = null;
+				}
+				byte[] epn = encodedPointNames;
+				if (epn != null) {
+					int[] pnt = new int[epn.length / 3];
+					int[] tps = new int[pnt.length];
+					int[] vls = new int[pnt.length];
+					int cnt = 0;
+					int pointsLength = 0;
+					CodedInputStream in = CodedInputStream.newInstance(epn);
+					while (!in.isAtEnd()) {
+						pnt[cnt] = in.readRawVarint32();
+						tps[cnt] = in.readRawVarint32();
+						vls[cnt] = in.readRawVarint32();
+						pointsLength = Math.max(pointsLength, pnt[cnt] + 1);
+						cnt++;
+					}
+					int[] perPoint = new int[pointsLength];
+					for (int i = 0; i < cnt; i++) {
+						perPoint[pnt[i]]++;
+					}
+					String[][] pnames = new String[pointsLength][];
+					int[][] ptypes = new int[pointsLength][];
+					for (int k = 0; k < pointsLength; k++) {
+						if (perPoint[k] > 0) {
+							pnames[k] = new String[perPoint[k]];
+							ptypes[k] = new int[perPoint[k]];
+							perPoint[k] = 0;
+						}
+					}
+					for (int i = 0; i < cnt; i++) {
+						int k = pnt[i];
+						ptypes[k][perPoint[k]] = tps[i];
+						pnames[k][perPoint[k]++] = getTableString(vls[i]);
+					}
+					if (pointsLength > 0) {
+						pointNames = pnames;
+						pointNameTypes = ptypes;
+					}
+					encodedPointNames = null;
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Corrupted names of route object " + id, e);
+			}
+		}
+	}
+
+	private String getTableString(int ind) {
+		if (stringTable == null) {
+			return ((char) ind) + "";
+		}
+		return stringTable.get(ind);
+	}
+
+	public void setPointNames(String[][] pointNames, int[][] pointNameTypes) {
+		synchronized (this) {
+			this.pointNames = pointNames;
+			this.pointNameTypes = pointNameTypes;
+			encodedPointNames = null;
+		}
+	}
+
 	public boolean compareRoute(RouteDataObject thatObj) {
+		decodeNames();
+		thatObj.decodeNames();
 		if (this.id == thatObj.id
 				&& Arrays.equals(this.pointsX, thatObj.pointsX)
 				&& Arrays.equals(this.pointsY, thatObj.pointsY)) {
@@ -228,6 +374,7 @@ public class RouteDataObject {
 	}
 
 	public String getName(){
+		decodeNames();
 		if(names != null ) {
 			return names.get(region.nameTypeRule);
 		}
@@ -240,6 +387,7 @@ public class RouteDataObject {
 	}
 
 	public String getName(String lang, boolean transliterate){
+		decodeNames();
 		if(names != null ) {
 			if(Algorithms.isEmpty(lang)) {
 				return names.get(region.nameTypeRule);
@@ -263,10 +411,12 @@ public class RouteDataObject {
 	}
 
 	public int[] getNameIds() {
+		decodeNames();
 		return nameIds;
 	}
 
 	public TIntObjectHashMap<String> getNames() {
+		decodeNames();
 		return names;
 	}
 
@@ -274,6 +424,7 @@ public class RouteDataObject {
 		//if (getDestinationRef(direction) != null) {
 		//	return getDestinationRef(direction);
 		//}
+		decodeNames();
 		if (names != null) {
 			if(Algorithms.isEmpty(lang)) {
 				return names.get(region.refTypeRule);
@@ -297,6 +448,7 @@ public class RouteDataObject {
 	}
 
 	public String getDestinationRef(boolean direction) {
+		decodeNames();
 		if (names != null) {
 			int[] kt = names.keys();
 			String refTag = (direction == true) ? "destination:ref:forward" : "destination:ref:backward";
@@ -326,6 +478,7 @@ public class RouteDataObject {
 		//Issue #3289: Treat destination:ref like a destination, not like a ref
 		String destRef = ((getDestinationRef(direction) == null) || getDestinationRef(direction).equals(getRef(lang, transliterate, direction))) ? "" : getDestinationRef(direction);
 		String destRef1 = ("".equals(destRef)) ? "" : destRef + ", ";
+		decodeNames();
 
 		if(names != null) {
 			int[] kt = names.keys();
@@ -418,6 +571,7 @@ public class RouteDataObject {
 	}
 
 	public boolean hasPointNames() {
+		decodeNames();
 		return pointNames != null;
 	}
 
@@ -455,6 +609,7 @@ public class RouteDataObject {
 	}
 
 	public String[] getPointNames(int ind) {
+		decodeNames();
 		if (pointNames == null || ind >= pointNames.length) {
 			return null;
 		}
@@ -462,6 +617,7 @@ public class RouteDataObject {
 	}
 
 	public int[] getPointNameTypes(int ind) {
+		decodeNames();
 		if (pointNameTypes == null || ind >= pointNameTypes.length) {
 			return null;
 		}
@@ -479,6 +635,18 @@ public class RouteDataObject {
 		return types;
 	}
 
+	/**
+	 * @return hash of types computed by {@link RouteTypesCache#hash(int[])}, it is computed once per object
+	 */
+	public int getTypesHash() {
+		int h = typesHash;
+		if (h == 0) {
+			h = RouteTypesCache.hash(types);
+			typesHash = h;
+		}
+		return h;
+	}
+
 	public void processConditionalTags(long conditionalTime) {
 		int sz = types.length;
 		for (int i = 0; i < sz; i++) {
@@ -501,6 +669,7 @@ public class RouteDataObject {
 						types = ntypes;
 					}
 					types[ks] = vl;
+					typesHash = 0;
 				}
 			}
 		}
@@ -705,6 +874,7 @@ public class RouteDataObject {
 //	}
 
 	public String getExitName() {
+		decodeNames();
 		if (pointNames != null && pointNameTypes != null) {
 			int pnSz = pointNames.length;
 			for (int i = 0; i < pnSz; i++) {
@@ -723,6 +893,7 @@ public class RouteDataObject {
 	}
 
 	public String getExitRef() {
+		decodeNames();
 		if (pointNames != null && pointNameTypes != null) {
 			int pnSz = pointNames.length;
 			for (int i = 0; i < pnSz; i++) {
@@ -791,6 +962,7 @@ public class RouteDataObject {
 				return r.getValue();
 			}
 		}
+		decodeNames();
 		if (nameIds != null) {
 			for (int i = 0; i < nameIds.length; i++) {
 				RouteTypeRule r = region.quickGetEncodingRule(nameIds[i]);
@@ -811,6 +983,7 @@ public class RouteDataObject {
 				}
 			}
 		}
+		decodeNames();
 		if (pointNameTypes != null && pnt < pointNameTypes.length && pointNameTypes[pnt] != null) {
 			for (int i = 0; i < pointNameTypes[pnt].length; i++) {
 				RouteTypeRule r = region.quickGetEncodingRule(pointNameTypes[pnt][i]);
@@ -0,0 +1,216 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Bitmap of tiles which contain data of one type in obf file.
+ * Tiles are taken at the most detailed zoom (not more than {@link #MAX_ZOOM}) which keeps bitmap of data bounding box
+ * within {@link #MAX_TILES} bits, so files with big bounding box (long countries, world files)
+ * are not searched in areas which they don't cover.
+ */
+public class TileCoverage {
+
+	public static final int MAX_ZOOM = 12;
+	public static final int MAX_TILES = 1 << 16;
+
+	// fields of stored coverage message
+	private static final int ZOOM_FIELD_NUMBER = 1;
+	private static final int LEFT_FIELD_NUMBER = 2;
+	private static final int TOP_FIELD_NUMBER = 3;
+	private static final int WIDTH_FIELD_NUMBER = 4;
+	private static final int HEIGHT_FIELD_NUMBER = 5;
+	private static final int BITS_FIELD_NUMBER = 6;
+
+	// data types
+	public static final int MAP = 1;
+	public static final int ROUTE = 2;
+	public static final int POI = 3;
+
+	private final int zoom;
+	// tile numbers at zoom
+	private final int left;
+	private final int top;
+	private final int width;
+	private final int height;
+	private final long[] bits;
+
+	public TileCoverage(int left31, int top31, int right31, int bottom31) {
+		int z = MAX_ZOOM;
+		while (z > 0 && tiles(left31, right31, z) * tiles(top31, bottom31, z) > MAX_TILES) {
+			z--;
+		}
+		this.zoom = z;
+		this.left = left31 >> (31 - z);
+		this.top = top31 >> (31 - z);
+		this.width = (int) tiles(left31, right31, z);
+		this.height = (int) tiles(top31, bottom31, z);
+		this.bits = new long[(width * height + 63) >> 6];
+	}
+
+	private TileCoverage(int zoom, int left, int top, int width, int height, long[] bits) {
+		this.zoom = zoom;
+		this.left = left;
+		this.top = top;
+		this.width = width;
+		this.height = height;
+		this.bits = bits;
+	}
+
+	private static long tiles(int from31, int to31, int z) {
+		return Math.max(1, (to31 >> (31 - z)) - (from31 >> (31 - z)) + 1);
+	}
+
+	public int getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * @return true if area is inside one tile of coverage, so it doesn't need to be split
+	 */
+	public boolean isSingleTile(int left31, int top31, int right31, int bottom31) {
+		return (left31 >> (31 - zoom)) == (right31 >> (31 - zoom)) && (top31 >> (31 - zoom)) == (bottom31 >> (31 - zoom));
+	}
+
+	public void add(int left31, int top31, int right31, int bottom31) {
+		int l = Math.max(left, left31 >> (31 - zoom));
+		int r = Math.min(left + width - 1, right31 >> (31 - zoom));
+		int t = Math.max(top, top31 >> (31 - zoom));
+		int b = Math.min(top + height - 1, bottom31 >> (31 - zoom));
+		for (int y = t; y <= b; y++) {
+			for (int x = l; x <= r; x++) {
+				int ind = (y - top) * width + (x - left);
+				bits[ind >> 6] |= 1L << (ind & 63);
+			}
+		}
+	}
+
+	public boolean intersects(int left31, int top31, int right31, int bottom31) {
+		int l = Math.max(left, left31 >> (31 - zoom));
+		int r = Math.min(left + width - 1, right31 >> (31 - zoom));
+		int t = Math.max(top, top31 >> (31 - zoom));
+		int b = Math.min(top + height - 1, bottom31 >> (31 - zoom));
+		for (int y = t; y <= b; y++) {
+			for (int x = l; x <= r; x++) {
+				int ind = (y - top) * width + (x - left);
+				if ((bits[ind >> 6] & (1L << (ind & 63))) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public boolean contains(int x31, int y31) {
+		return intersects(x31, y31, x31, y31);
+	}
+
+	public int getTilesCount() {
+		int cnt = 0;
+		for (long l : bits) {
+			cnt += Long.bitCount(l);
+		}
+		return cnt;
+	}
+
+	public int getAllTilesCount() {
+		return width * height;
+	}
+
+	public void writeTo(CodedOutputStream out) throws IOException {
+		out.writeUInt32(ZOOM_FIELD_NUMBER, zoom);
+		out.writeUInt32(LEFT_FIELD_NUMBER, left);
+		out.writeUInt32(TOP_FIELD_NUMBER, top);
+		out.writeUInt32(WIDTH_FIELD_NUMBER, width);
+		out.writeUInt32(HEIGHT_FIELD_NUMBER, height);
+		out.writeTag(BITS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(bits.length * 8);
+		for (long l : bits) {
+			out.writeRawLittleEndian64(l);
+		}
+	}
+
+	public int getSerializedSize() {
+		return CodedOutputStream.computeUInt32Size(ZOOM_FIELD_NUMBER, zoom)
+				+ CodedOutputStream.computeUInt32Size(LEFT_FIELD_NUMBER, left)
+				+ CodedOutputStream.computeUInt32Size(TOP_FIELD_NUMBER, top)
+				+ CodedOutputStream.computeUInt32Size(WIDTH_FIELD_NUMBER, width)
+				+ CodedOutputStream.computeUInt32Size(HEIGHT_FIELD_NUMBER, height)
+				+ CodedOutputStream.computeTagSize(BITS_FIELD_NUMBER)
+				+ CodedOutputStream.computeRawVarint32Size(bits.length * 8) + bits.length * 8;
+	}
+
+	/**
+	 * Reads coverage written by {@link #writeTo(CodedOutputStream)} till the limit of stream.
+	 * @return coverage or null if it is not consistent
+	 */
+	public static TileCoverage readFrom(CodedInputStream cis) throws IOException {
+		int zoom = -1;
+		int left = 0;
+		int top = 0;
+		int width = 0;
+		int height = 0;
+		long[] bits = null;
+		while (true) {
+			int t = cis.readTag();
+			switch (WireFormat.getTagFieldNumber(t)) {
+			case 0:
+				if (zoom < 0 || zoom > MAX_ZOOM || width <= 0 || height <= 0 || (long) width * height > MAX_TILES
+						|| bits == null || bits.length != (width * height + 63) >> 6) {
+					return null;
+				}
+				return new TileCoverage(zoom, left, top, width, height, bits);
+			case ZOOM_FIELD_NUMBER:
+				zoom = cis.readUInt32();
+				break;
+			case LEFT_FIELD_NUMBER:
+				left = cis.readUInt32();
+				break;
+			case TOP_FIELD_NUMBER:
+				top = cis.readUInt32();
+				break;
+			case WIDTH_FIELD_NUMBER:
+				width = cis.readUInt32();
+				break;
+			case HEIGHT_FIELD_NUMBER:
+				height = cis.readUInt32();
+				break;
+			case BITS_FIELD_NUMBER:
+				int length = cis.readRawVarint32();
+				bits = new long[length / 8];
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] = cis.readRawLittleEndian64();
+				}
+				cis.skipRawBytes(length - bits.length * 8);
+				break;
+			default:
+				cis.skipField(t);
+				break;
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TileCoverage)) {
+			return false;
+		}
+		TileCoverage o = (TileCoverage) obj;
+		return zoom == o.zoom && left == o.left && top == o.top && width == o.width && height == o.height
+				&& Arrays.equals(bits, o.bits);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bits) + 31 * (zoom + 31 * (left + 31 * top));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Coverage zoom %d: %d of %d tiles", zoom, getTilesCount(), getAllTilesCount());
+	}
+}
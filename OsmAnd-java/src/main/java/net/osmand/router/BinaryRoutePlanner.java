@@ -7,9 +7,15 @@ import java.text.MessageFormat;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.osmand.PlatformUtil;
+import net.osmand.binary.DecodedBlockCache;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.osm.MapRenderingTypes;
 import net.osmand.util.MapUtils;
@@ -22,14 +28,22 @@ public class BinaryRoutePlanner {
 	private static final boolean TEST_SPECIFIC = false;
 
 	private static final int REVERSE_WAY_RESTRICTION_ONLY = 1024;
-	/*private*/ static final int STANDARD_ROAD_IN_QUEUE_OVERHEAD = 220;
-	/*private*/ static final int STANDARD_ROAD_VISITED_OVERHEAD = 150;
 
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
 	private static final int ROUTE_POINTS = 11;
 	private static final boolean TRACE_ROUTING = false;
 
+	// threads of reverse search are reused by next parallel route calculations
+	private static final ExecutorService REVERSE_SEARCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Reverse route search");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
 
 	public static double squareRootDist(int x1, int y1, int x2, int y2) {
 		return MapUtils.squareRootDist31(x1, y1, x2, y2);
@@ -37,19 +51,6 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
-
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -74,20 +75,29 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentHeap graphDirectSegments = new RouteSegmentHeap(50);
+		RouteSegmentHeap graphReverseSegments = new RouteSegmentHeap(50);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
-		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		boolean parallel = ctx.planRouteInParallel();
+		VisitedSegments visitedDirectSegments = parallel ? new ConcurrentVisitedSegments() : new VisitedSegments();
+		VisitedSegments visitedOppositeSegments = parallel ? new ConcurrentVisitedSegments() : new VisitedSegments();
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
+		if (parallel) {
+			FinalRouteSegment finalSegment = searchRouteInParallel(ctx, start, end, graphDirectSegments,
+					graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+			ctx.visitedSegments = visitedDirectSegments.size() + visitedOppositeSegments.size();
+			printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+					visitedOppositeSegments);
+			return finalSegment;
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		RouteSegmentHeap graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -95,9 +105,8 @@ public class BinaryRoutePlanner {
 		while (!graphSegments.isEmpty()) {
 			RouteSegment segment = graphSegments.poll();
 			// use accumulative approach
-			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
-					(graphDirectSegments.size() +
-					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			ctx.memoryOverhead = (int) (RoutingMemoryModel.getVisitedSize(visitedDirectSegments.size() + visitedOppositeSegments.size())
+					+ RoutingMemoryModel.getQueueSize(graphDirectSegments.size() + graphReverseSegments.size()));
 			
 			if (TRACE_ROUTING) {
 				printRoad(">", segment, !forwardSearch);
@@ -122,21 +131,26 @@ public class BinaryRoutePlanner {
 				throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
 			}
 			ctx.visitedSegments ++;
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.updateMemory(ctx.getCurrentEstimatedSize(),
+						RoutingMemoryModel.getQueueSize(graphDirectSegments.size() + graphReverseSegments.size()),
+						RoutingMemoryModel.getVisitedSize(visitedDirectSegments.size() + visitedOppositeSegments.size()));
+			}
 			if (forwardSearch) {
 				boolean doNotAddIntersections = onlyBackward;
 				processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments,
-						segment, visitedOppositeSegments, doNotAddIntersections);
+						segment, visitedOppositeSegments, doNotAddIntersections, null);
 			} else {
 				boolean doNotAddIntersections = onlyForward;
 				processRouteSegment(ctx, true, graphReverseSegments, visitedOppositeSegments, segment,
-						visitedDirectSegments, doNotAddIntersections);
+						visitedDirectSegments, doNotAddIntersections, null);
 			}
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
 
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, graphReverseSegments, end, visitedOppositeSegments,
-					"Route is not found to selected target point.");
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, graphDirectSegments, start, visitedDirectSegments,
-					"Route is not found from selected start point.");
+			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, true, graphReverseSegments, end,
+					visitedOppositeSegments, "Route is not found to selected target point.");
+			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, false, graphDirectSegments, start,
+					visitedDirectSegments, "Route is not found from selected start point.");
 			if (ctx.planRouteIn2Directions()) {
 				forwardSearch = (nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(), graphReverseSegments.peek()) < 0);
 //				if (graphDirectSegments.size() * 2 > graphReverseSegments.size()) {
@@ -170,8 +184,229 @@ public class BinaryRoutePlanner {
 		return finalSegment;
 	}
 
-	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+	/**
+	 * Runs reverse search on shared executor and direct search on current thread.
+	 * Queues of both directions are keyed by consistent average potentials (see {@link #addToQueue}),
+	 * so sum of minimum keys of both queues is lower bound of any route which is not found yet.
+	 * Searches stop when that sum is not less than the best meeting point, so result doesn't depend on timing
+	 * of threads. Meeting points are checked against visited and queued segments of opposite direction.
+	 */
+	private FinalRouteSegment searchRouteInParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end, RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments,
+			VisitedSegments visitedDirectSegments,
+			VisitedSegments visitedOppositeSegments) throws InterruptedException, IOException {
+		MeetingPoint meetingPoint = new MeetingPoint();
+		SearchDirection direct = new SearchDirection(ctx, false, meetingPoint, graphDirectSegments,
+				graphReverseSegments, visitedDirectSegments, visitedOppositeSegments, start,
+				"Route is not found from selected start point.");
+		SearchDirection reverse = new SearchDirection(ctx, true, meetingPoint, graphReverseSegments,
+				graphDirectSegments, visitedOppositeSegments, visitedDirectSegments, end,
+				"Route is not found to selected target point.");
+		direct.opposite = reverse;
+		reverse.opposite = direct;
+		Future<?> reverseSearch = REVERSE_SEARCH_EXECUTOR.submit(reverse);
+		direct.run();
+		try {
+			reverseSearch.get();
+		} catch (InterruptedException e) {
+			meetingPoint.cancel();
+			reverseSearch.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			// search direction keeps its own errors
+			throw new IllegalStateException(e.getCause());
+		}
+		rethrow(direct.error);
+		rethrow(reverse.error);
+		updateQueueStatistics(ctx, graphDirectSegments, graphReverseSegments);
+		return meetingPoint.best.get();
+	}
+
+	private static void rethrow(Throwable e) throws InterruptedException, IOException {
+		if (e == null) {
+			return;
+		} else if (e instanceof InterruptedException) {
+			throw (InterruptedException) e;
+		} else if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		}
+		throw new IllegalStateException(e);
+	}
+
+	private class SearchDirection implements Runnable {
+		private final RoutingContext ctx;
+		private final boolean reverseWaySearch;
+		private final MeetingPoint meetingPoint;
+		private final RouteSegmentHeap graphSegments;
+		private final RouteSegmentHeap oppositeGraphSegments;
+		private final VisitedSegments visitedSegments;
+		private final VisitedSegments oppositeSegments;
+		private final RouteSegmentPoint pnt;
+		private final String notFoundMsg;
+		private SearchDirection opposite;
+		// minimum key of queue, it is read by opposite direction and it only grows
+		private volatile float minKey = Float.NEGATIVE_INFINITY;
+		private Throwable error;
+
+		SearchDirection(RoutingContext ctx, boolean reverseWaySearch, MeetingPoint meetingPoint,
+				RouteSegmentHeap graphSegments, RouteSegmentHeap oppositeGraphSegments,
+				VisitedSegments visitedSegments, VisitedSegments oppositeSegments,
+				RouteSegmentPoint pnt, String notFoundMsg) {
+			this.ctx = ctx;
+			this.reverseWaySearch = reverseWaySearch;
+			this.meetingPoint = meetingPoint;
+			this.graphSegments = graphSegments;
+			this.oppositeGraphSegments = oppositeGraphSegments;
+			this.visitedSegments = visitedSegments;
+			this.oppositeSegments = oppositeSegments;
+			this.pnt = pnt;
+			this.notFoundMsg = notFoundMsg;
+		}
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable e) {
+				error = e;
+				meetingPoint.cancel();
+			}
+		}
+
+		private void search() throws InterruptedException, IOException {
+			while (!meetingPoint.isCancelled()) {
+				checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, pnt, visitedSegments, notFoundMsg);
+				// empty queue gives infinite key, opposite direction could still find meeting point
+				minKey = graphSegments.peekKey();
+				if (graphSegments.isEmpty()) {
+					break;
+				}
+				FinalRouteSegment best = meetingPoint.best.get();
+				if (best != null && minKey + opposite.minKey >= best.distanceFromStart) {
+					break;
+				}
+				RouteSegment segment = graphSegments.poll();
+				// opposite queue size is read without synchronization, it is only estimation
+				ctx.memoryOverhead = (int) (RoutingMemoryModel.getVisitedSize(visitedSegments.size() + oppositeSegments.size())
+						+ RoutingMemoryModel.getQueueSize(graphSegments.size() + oppositeGraphSegments.size()));
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.updateMemory(ctx.getCurrentEstimatedSize(),
+							RoutingMemoryModel.getQueueSize(graphSegments.size() + oppositeGraphSegments.size()),
+							RoutingMemoryModel.getVisitedSize(visitedSegments.size() + oppositeSegments.size()));
+				}
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment, oppositeSegments,
+						false, meetingPoint);
+				updateCalculationProgress(ctx, graphSegments, reverseWaySearch);
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+	}
+
+	// best final segment found by any of parallel searches
+	private static class MeetingPoint {
+		private final AtomicReference<FinalRouteSegment> best = new AtomicReference<FinalRouteSegment>();
+		private volatile boolean cancelled;
+
+		public void offer(FinalRouteSegment segment) {
+			while (true) {
+				FinalRouteSegment current = best.get();
+				if (current != null && current.distanceFromStart <= segment.distanceFromStart) {
+					return;
+				}
+				if (best.compareAndSet(current, segment)) {
+					return;
+				}
+			}
+		}
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	// visited segments of one direction (stores road.id << X + segmentStart)
+	private static class VisitedSegments {
+		private final TLongObjectHashMap<RouteSegment> segments = new TLongObjectHashMap<RouteSegment>();
+
+		public RouteSegment get(long key) {
+			return segments.get(key);
+		}
+
+		public RouteSegment put(long key, RouteSegment value) {
+			return segments.put(key, value);
+		}
+
+		public boolean containsKey(long key) {
+			return segments.containsKey(key);
+		}
+
+		public int size() {
+			return segments.size();
+		}
+
+		public void queued(long key, RouteSegment value) {
+		}
+
+		/**
+		 * @return segment which was visited or could be visited next with known distance from start
+		 */
+		public RouteSegment getReached(long key) {
+			return segments.get(key);
+		}
+	}
+
+	// visited segments of one direction are checked by opposite search thread, it checks queued ones as well,
+	// otherwise direction which is far ahead could pass the opposite queue and lower bound of route is lost
+	private static class ConcurrentVisitedSegments extends VisitedSegments {
+		private final TLongObjectHashMap<RouteSegment> queued = new TLongObjectHashMap<RouteSegment>();
+
+		@Override
+		public synchronized void queued(long key, RouteSegment value) {
+			queued.put(key, value);
+		}
+
+		@Override
+		public synchronized RouteSegment getReached(long key) {
+			RouteSegment s = super.getReached(key);
+			return s != null ? s : queued.get(key);
+		}
+
+		@Override
+		public synchronized RouteSegment get(long key) {
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized RouteSegment put(long key, RouteSegment value) {
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized boolean containsKey(long key) {
+			return super.containsKey(key);
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+	}
+
+	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection, boolean reverseWaySearch,
+			RouteSegmentHeap graphSegments, RouteSegmentPoint pnt, VisitedSegments visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -193,11 +428,11 @@ public class BinaryRoutePlanner {
 						RouteSegment neg = next.initRouteSegment(false);
 						if (pos != null) {
 							pos.distanceToEnd = estimatedDistance;
-							graphSegments.add(pos);
+							addToQueue(ctx, graphSegments, visited, pos, reverseWaySearch);
 						}
 						if (neg != null) {
 							neg.distanceToEnd = estimatedDistance;
-							graphSegments.add(neg);
+							addToQueue(ctx, graphSegments, visited, neg, reverseWaySearch);
 						}
 						println("Reiterate point with new start/destination " + next.getRoad());
 						break;
@@ -241,8 +476,8 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+			RouteSegment recalculationEnd, RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments, 
+			VisitedSegments visitedDirectSegments, VisitedSegments visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false);
 		RouteSegment endPos = initRouteSegment(ctx, end, true);
@@ -269,22 +504,22 @@ public class BinaryRoutePlanner {
 		float estimatedDistance = (float) estimatedDistance(ctx, ctx.targetX, ctx.targetY, ctx.startX, ctx.startY);
 		if (startPos != null) {
 			startPos.distanceToEnd = estimatedDistance;
-			graphDirectSegments.add(startPos);
+			addToQueue(ctx, graphDirectSegments, visitedDirectSegments, startPos, false);
 		}
 		if (startNeg != null) {
 			startNeg.distanceToEnd = estimatedDistance;
-			graphDirectSegments.add(startNeg);
+			addToQueue(ctx, graphDirectSegments, visitedDirectSegments, startNeg, false);
 		}
 		if (recalculationEnd != null) {
-			graphReverseSegments.add(recalculationEnd);
+			addToQueue(ctx, graphReverseSegments, visitedOppositeSegments, recalculationEnd, true);
 		} else {
 			if (endPos != null) {
 				endPos.distanceToEnd = estimatedDistance;
-				graphReverseSegments.add(endPos);
+				addToQueue(ctx, graphReverseSegments, visitedOppositeSegments, endPos, true);
 			}
 			if (endNeg != null) {
 				endNeg.distanceToEnd = estimatedDistance;
-				graphReverseSegments.add(endNeg);
+				addToQueue(ctx, graphReverseSegments, visitedOppositeSegments, endNeg, true);
 			}
 		}
 		if (TRACE_ROUTING) {
@@ -303,19 +538,69 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void addToQueue(final RoutingContext ctx, RouteSegmentHeap graphSegments, VisitedSegments visitedSegments,
+			RouteSegment segment, boolean reverseWaySearch) {
+		// segments with same route point id are not duplicated in queue, only the best one is kept
+		long id;
+		if (segment instanceof FinalRouteSegment || segment.getDirectionAssigned() == 0) {
+			id = graphSegments.nextUniqueId();
+		} else {
+			id = calculateRoutePointId(segment, segment.isPositive());
+		}
+		float key;
+		if (ctx.planRouteInParallel()) {
+			key = segment.distanceFromStart + averagePotential(ctx, segment, reverseWaySearch);
+		} else {
+			key = segment.distanceFromStart + ctx.config.heuristicCoefficient * segment.distanceToEnd;
+		}
+		if (graphSegments.push(segment, id, key)) {
+			visitedSegments.queued(id, segment);
+		}
+	}
+
+	/**
+	 * Potential (h(target) - h(start)) / 2 of direct search and opposite one of reverse search.
+	 * Route can't be faster than max speed, so both potentials are consistent and keys of both queues
+	 * are measured on the same scale: f(direct) + f(reverse) of any route equals its time.
+	 */
+	private static float averagePotential(final RoutingContext ctx, RouteSegment segment, boolean reverseWaySearch) {
+		int x = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+		int y = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+		double p = (squareRootDist(x, y, ctx.targetX, ctx.targetY) - squareRootDist(x, y, ctx.startX, ctx.startY))
+				/ (2 * ctx.getRouter().getMaxSpeed());
+		return (float) (reverseWaySearch ? -p : p);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentHeap graphDirectSegments,
+			RouteSegmentHeap graphReverseSegments) {
+		if (ctx.calculationProgress != null) {
+			updateQueueStatistics(ctx, graphDirectSegments, graphReverseSegments);
+			if (ctx.getPlanRoadDirection() >= 0) {
+				updateCalculationProgress(ctx, graphDirectSegments, false);
+			}
+			if (ctx.getPlanRoadDirection() <= 0) {
+				updateCalculationProgress(ctx, graphReverseSegments, true);
+			}
+		}
+	}
+
+	// called from search thread of that direction only
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentHeap graphSegments,
+			boolean reverseWaySearch) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (graphDirectSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek();
+			if (reverseWaySearch) {
+				ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+			} else {
+				ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+			}
+			if (graphSegments.size() > 0 && !reverseWaySearch) {
+				RouteSegment peek = graphSegments.peek();
 				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
 						ctx.calculationProgress.distanceFromBegin);
 				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
 			}
-			if (graphReverseSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek();
+			if (graphSegments.size() > 0 && reverseWaySearch) {
+				RouteSegment peek = graphSegments.peek();
 				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
 				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
@@ -323,6 +608,22 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	private void updateQueueStatistics(final RoutingContext ctx, RouteSegmentHeap graphDirectSegments,
+			RouteSegmentHeap graphReverseSegments) {
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.queuePushes = graphDirectSegments.getPushes() + graphReverseSegments.getPushes();
+			ctx.calculationProgress.queuePolls = graphDirectSegments.getPolls() + graphReverseSegments.getPolls();
+			ctx.calculationProgress.queueDecreaseKeys = graphDirectSegments.getDecreaseKeys()
+					+ graphReverseSegments.getDecreaseKeys();
+			ctx.calculationProgress.queueIgnoredPushes = graphDirectSegments.getIgnoredPushes()
+					+ graphReverseSegments.getIgnoredPushes();
+			ctx.calculationProgress.queueStaleEntries = graphDirectSegments.getStaleEntries()
+					+ graphReverseSegments.getStaleEntries();
+			ctx.calculationProgress.maxQueueSize = Math.max(ctx.calculationProgress.maxQueueSize,
+					graphDirectSegments.size() + graphReverseSegments.size());
+		}
+	}
+
 
 	private void printRoad(String prefix, RouteSegment segment, Boolean reverseWaySearch) {
 		String pr;
@@ -367,8 +668,8 @@ public class BinaryRoutePlanner {
 		log.warn(logMsg);
 	}
 	
-	public void printDebugMemoryInformation(RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments,TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+	public void printDebugMemoryInformation(RoutingContext ctx, RouteSegmentHeap graphDirectSegments, RouteSegmentHeap graphReverseSegments, 
+			VisitedSegments visitedDirectSegments,VisitedSegments visitedOppositeSegments) {
 		printInfo(String.format("Time. Total: %.2f, to load: %.2f, to load headers: %.2f, to calc dev: %.2f, to calc rules: %.2f ", 
 				(System.nanoTime() - ctx.timeToCalculate) / 1e6, ctx.timeToLoad / 1e6, 
 				ctx.timeToLoadHeaders / 1e6, ctx.timeNanoToCalcDeviation / 1e6, GeneralRouter.TIMER / 1e6));
@@ -380,7 +681,18 @@ public class BinaryRoutePlanner {
 				+ ctx.loadedPrevUnloadedTiles);
 		printInfo("Visited segments " + ctx.visitedSegments + ", relaxed roads " + ctx.relaxedSegments);
 		if (graphDirectSegments != null && graphReverseSegments != null) {
-			printInfo("Priority queues sizes : " + graphDirectSegments.size() + "/" + graphReverseSegments.size());
+			printInfo("Priority queues sizes : " + graphDirectSegments.size() + "/" + graphReverseSegments.size()
+					+ ", max " + graphDirectSegments.getMaxSize() + "/" + graphReverseSegments.getMaxSize());
+			printInfo("Priority queues pushes " + (graphDirectSegments.getPushes() + graphReverseSegments.getPushes())
+					+ ", polls " + (graphDirectSegments.getPolls() + graphReverseSegments.getPolls())
+					+ ", decrease key " + (graphDirectSegments.getDecreaseKeys() + graphReverseSegments.getDecreaseKeys())
+					+ ", ignored pushes " + (graphDirectSegments.getIgnoredPushes() + graphReverseSegments.getIgnoredPushes()));
+		}
+		if (RoutingTileCache.getInstance().isEnabled()) {
+			printInfo(RoutingTileCache.getInstance().toString());
+		}
+		if (DecodedBlockCache.getRouteDataCache().isEnabled()) {
+			printInfo(DecodedBlockCache.getRouteDataCache().toString());
 		}
 		if (visitedDirectSegments != null && visitedOppositeSegments != null) {
 			printInfo("Visited interval sizes: " + visitedDirectSegments.size() + "/" + visitedOppositeSegments.size());
@@ -391,10 +703,12 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
-            RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
+			RouteSegmentHeap graphSegments, VisitedSegments visitedSegments, 
+            RouteSegment segment, VisitedSegments oppositeSegments, boolean doNotAddIntersections,
+            MeetingPoint meetingPoint) throws IOException {
 		final RouteDataObject road = segment.road;
-		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, visitedSegments, segment, road);
+		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, graphSegments,
+				visitedSegments, segment, road);
 		if (TEST_SPECIFIC && road.getId() >> 6 == TEST_ID) {
 			printRoad(" ! "  + segment.distanceFromStart + " ", segment, reverseWaySearch);
 		}
@@ -452,11 +766,12 @@ public class BinaryRoutePlanner {
 				directionAllowed = false;
 				continue;
 			}
-			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, graphSegments, segment, oppositeSegments,
-					segmentPoint, segmentDist, obstaclesTime);
+			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, graphSegments, visitedSegments,
+					segment, oppositeSegments, segmentPoint, segmentDist, obstaclesTime, meetingPoint);
 			obstaclesTime += obstacle;
 			obstaclesTime += heightObstacle;
-			if (alreadyVisited) {
+			// parallel searches don't stop at meeting point, each of them visits roads in order of its keys
+			if (alreadyVisited && meetingPoint == null) {
 				directionAllowed = false;
 				continue;
 			}
@@ -490,14 +805,23 @@ public class BinaryRoutePlanner {
 				directionAllowed = false;
 				continue;
 			}
+			if (meetingPoint != null && previous != null && isIntersection(road, roadNext)) {
+				// parallel searches process road only till next intersection, so roads are visited in order of keys
+				addToQueue(ctx, graphSegments, visitedSegments, previous, reverseWaySearch);
+				directionAllowed = false;
+			}
 		}
 		if (initDirectionAllowed && ctx.visitor != null) {
 			ctx.visitor.visitSegment(segment, segmentPoint, true);
 		}
 	}
 
+	private static boolean isIntersection(RouteDataObject road, RouteSegment roadNext) {
+		return roadNext != null && (roadNext.getRoad().getId() != road.getId() || roadNext.next != null);
+	}
+
 	private boolean checkIfInitialMovementAllowedOnSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, final RouteDataObject road) {
+			RouteSegmentHeap graphSegments, VisitedSegments visitedSegments, RouteSegment segment, final RouteDataObject road) {
 		boolean directionAllowed;
 		int oneway = ctx.getRouter().isOneWay(road);
 		// use positive direction as agreed
@@ -518,6 +842,7 @@ public class BinaryRoutePlanner {
 		if (directionAllowed && visitedSegment != null) {
 			if (visitedSegment.distanceFromStart <= segment.distanceFromStart) {
 				directionAllowed = false;
+				graphSegments.staleEntryPolled();
 			}
 		}
 		return directionAllowed;
@@ -551,12 +876,13 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
-			int segmentPoint, float segmentDist, float obstaclesTime) {
+			RouteSegmentHeap graphSegments, VisitedSegments visitedSegments, RouteSegment segment,
+			VisitedSegments oppositeSegments,
+			int segmentPoint, float segmentDist, float obstaclesTime, MeetingPoint meetingPoint) {
 		RouteDataObject road = segment.getRoad();
 		long opp = calculateRoutePointId(road, segment.isPositive() ? segmentPoint - 1 : segmentPoint, !segment.isPositive());
-		if (oppositeSegments.containsKey(opp)) {
-			RouteSegment opposite = oppositeSegments.get(opp);
+		RouteSegment opposite = oppositeSegments.getReached(opp);
+		if (opposite != null) {
 			RouteSegment to = reverseWaySearch ? getParentDiffId(segment) : getParentDiffId(opposite);
 			RouteSegment from = !reverseWaySearch ? getParentDiffId(segment) : getParentDiffId(opposite);
 			if (checkViaRestrictions(from, to)) {
@@ -569,7 +895,12 @@ public class BinaryRoutePlanner {
 				frs.distanceFromStart = opposite.distanceFromStart + distStartObstacles;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
-				graphSegments.add(frs);
+				if (meetingPoint != null) {
+					// parallel searches don't queue final segments, they stop by keys of both queues
+					meetingPoint.offer(frs);
+				} else {
+					addToQueue(ctx, graphSegments, visitedSegments, frs, reverseWaySearch);
+				}
 				if (TRACE_ROUTING) {
 					printRoad("  >> Final segment : ", frs, reverseWaySearch);
 				}
@@ -580,7 +911,7 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
+	static float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
 		float priority = ctx.getRouter().defineSpeedPriority(road);
 		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
 		if (speed == 0) {
@@ -614,27 +945,37 @@ public class BinaryRoutePlanner {
 
 
 	private boolean proccessRestrictions(RoutingContext ctx, RouteSegment segment, RouteSegment inputNext, boolean reverseWay) {
+		RouteSegment parent = getParentDiffId(segment);
+		return proccessRestrictions(ctx, segment.getRoad(), parent == null ? null : parent.getRoad(), inputNext,
+				reverseWay, ctx.getSegmentsToVisitPrescripted(reverseWay), ctx.getSegmentsToVisitNotForbidden(reverseWay));
+	}
+
+	/**
+	 * Collects segments of intersection which could be visited after road (entered from parent road) into prescripted list.
+	 * Lists are owned by caller, so the method could be used by searches running in parallel.
+	 * @return false if there are no restrictions and all segments could be visited
+	 */
+	static boolean proccessRestrictions(RoutingContext ctx, RouteDataObject road, RouteDataObject parent,
+			RouteSegment inputNext, boolean reverseWay, List<RouteSegment> prescripted, List<RouteSegment> notForbidden) {
 		if (!ctx.getRouter().restrictionsAware()) {
 			return false;
 		}
-		RouteDataObject road = segment.getRoad();
-		RouteSegment parent = getParentDiffId(segment);
 		if (!reverseWay && road.getRestrictionLength() == 0 &&
-				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
+				(parent == null || parent.getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
-		processRestriction(ctx, inputNext, reverseWay, 0, road);
+		prescripted.clear();
+		notForbidden.clear();
+		processRestriction(inputNext, reverseWay, 0, road, prescripted, notForbidden);
 		if (parent != null) {
-			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
+			processRestriction(inputNext, reverseWay, road.id, parent, prescripted, notForbidden);
 		}
 		return true;
 	}
 
 
-	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
-			RouteDataObject road) {
+	private static void processRestriction(RouteSegment inputNext, boolean reverseWay, long viaId,
+			RouteDataObject road, List<RouteSegment> prescripted, List<RouteSegment> notForbidden) {
 		boolean via = viaId != 0;
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
@@ -685,11 +1026,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					prescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				notForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -698,23 +1039,23 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						notForbidden.clear();
+						prescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						notForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			prescripted.addAll(notForbidden);
 		}
 	}
 
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments,  float distFromStart, RouteSegment segment,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentHeap graphSegments,
+			VisitedSegments visitedSegments,  float distFromStart, RouteSegment segment,
 			short segmentPoint, RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, 
 			boolean[] processFurther) {
 		boolean thereAreRestrictions;
@@ -726,7 +1067,7 @@ public class BinaryRoutePlanner {
 		} else {
 			thereAreRestrictions = proccessRestrictions(ctx, segment, inputNext, reverseWaySearch);
 			if (thereAreRestrictions) {
-				nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+				nextIterator = ctx.getSegmentsToVisitPrescripted(reverseWaySearch).iterator();
 				if (TRACE_ROUTING) {
 					println("  >> There are restrictions");
 				}
@@ -766,9 +1107,9 @@ public class BinaryRoutePlanner {
 				RouteSegment nextPos = next.initRouteSegment(true);
 				RouteSegment nextNeg = next.initRouteSegment(false);
 				processOneRoadIntersection(ctx, graphSegments, visitedSegments, distFromStart, distanceToEnd, segment, segmentPoint,
-						nextPos);
+						nextPos, reverseWaySearch);
 				processOneRoadIntersection(ctx, graphSegments, visitedSegments, distFromStart, distanceToEnd, segment, segmentPoint,
-						nextNeg);
+						nextNeg, reverseWaySearch);
 
 			}
 			// iterate to next road
@@ -784,9 +1125,9 @@ public class BinaryRoutePlanner {
 
 
 	@SuppressWarnings("unused")
-	private void processOneRoadIntersection(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
-			int segmentPoint, RouteSegment next) {
+	private void processOneRoadIntersection(RoutingContext ctx, RouteSegmentHeap graphSegments,
+			VisitedSegments visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
+			int segmentPoint, RouteSegment next, boolean reverseWaySearch) {
 		if (next != null) {
 			float obstaclesTime = (float) ctx.getRouter().calculateTurnTime(next, 
 					next.isPositive() ? next.getRoad().getPointsLength() - 1 : 0,    
@@ -810,7 +1151,7 @@ public class BinaryRoutePlanner {
 					// put additional information to recover whole route after
 					next.setParentRoute(segment);
 					next.setParentSegmentEnd(segmentPoint);
-					graphSegments.add(next);
+					addToQueue(ctx, graphSegments, visitedSegments, next, reverseWaySearch);
 				}
 			} else {
 				// the segment was already visited! We need to follow better route if it exists
@@ -0,0 +1,682 @@
+package net.osmand.router;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+/**
+ * Contraction hierarchy (node order + shortcut edges) of the road graph of one {@link RouteRegion}
+ * preprocessed for one routing profile by {@link ContractionHierarchyBuilder}.
+ * Graph nodes are road intersections and road ends, original edges are parts of roads between them.
+ * Edge weights include point and height obstacles. Turn time depends on pair of roads, so it can't be part of
+ * node based hierarchy and profiles defining it are not supported (see {@link #isSupported(GeneralRouter)}). Nodes of roads with turn restrictions are marked,
+ * routes passing them are not returned, so they are calculated by A* with restrictions.
+ */
+public class ContractionHierarchy {
+
+	private final static Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+
+	public static final String HIERARCHY_FILE_EXT = ".chg";
+	private static final int MAGIC = 0x4f434831;
+	private static final int VERSION = 3;
+	static final int NO_CHILD = -1;
+
+	private static final Map<File, ContractionHierarchy> loadedHierarchies = new HashMap<File, ContractionHierarchy>();
+	// last modified time of files which couldn't be read
+	private static final Map<File, Long> failedHierarchies = new HashMap<File, Long>();
+
+	// header
+	final String signature;
+	final String regionName;
+	final long obfLength;
+	final long obfLastModified;
+
+	// nodes
+	final int nodesCount;
+	final int[] nodeX;
+	final int[] nodeY;
+	final int[] rank;
+	// node is on road with turn restrictions (or via road of them)
+	final boolean[] restricted;
+
+	// edges (original edges have no children, shortcuts have no road)
+	final int edgesCount;
+	final int[] edgeFrom;
+	final int[] edgeTo;
+	final float[] edgeWeight;
+	final int[] edgeChild1;
+	final int[] edgeChild2;
+	final long[] edgeRoad;
+	final int[] edgeRoadStart;
+	final int[] edgeRoadEnd;
+
+	// upward graph built after load
+	private int[] fwdIndex;
+	private int[] fwdEdges;
+	private int[] bwdIndex;
+	private int[] bwdEdges;
+	private TLongObjectHashMap<TIntArrayList> roadEdges;
+
+	// last modified time of file hierarchy is read from
+	private long fileLastModified;
+	// query states which are not used by running queries
+	private final List<QueryState> freeStates = new ArrayList<QueryState>();
+
+	ContractionHierarchy(String signature, String regionName, long obfLength, long obfLastModified,
+			int nodesCount, int[] nodeX, int[] nodeY, int[] rank, boolean[] restricted,
+			int edgesCount, int[] edgeFrom, int[] edgeTo, float[] edgeWeight, int[] edgeChild1, int[] edgeChild2,
+			long[] edgeRoad, int[] edgeRoadStart, int[] edgeRoadEnd) {
+		this.signature = signature;
+		this.regionName = regionName;
+		this.obfLength = obfLength;
+		this.obfLastModified = obfLastModified;
+		this.nodesCount = nodesCount;
+		this.nodeX = nodeX;
+		this.nodeY = nodeY;
+		this.rank = rank;
+		this.restricted = restricted;
+		this.edgesCount = edgesCount;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeWeight = edgeWeight;
+		this.edgeChild1 = edgeChild1;
+		this.edgeChild2 = edgeChild2;
+		this.edgeRoad = edgeRoad;
+		this.edgeRoadStart = edgeRoadStart;
+		this.edgeRoadEnd = edgeRoadEnd;
+		buildUpwardGraph();
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	public int getNodesCount() {
+		return nodesCount;
+	}
+
+	public int getEdgesCount() {
+		return edgesCount;
+	}
+
+	public boolean isOriginalEdge(int edge) {
+		return edgeChild1[edge] == NO_CHILD;
+	}
+
+	/**
+	 * Hierarchy is valid only for the same obf file and exactly the same routing profile parameters
+	 */
+	public boolean matches(File obf, GeneralRouter router) {
+		return obf.length() == obfLength && obf.lastModified() == obfLastModified
+				&& signature.equals(getProfileSignature(router));
+	}
+
+	public static File getHierarchyFile(File obf, RouteRegion region, GeneralRouter router) {
+		String name = obf.getName();
+		String profile = router.getProfileName() == null || router.getProfileName().length() == 0 ?
+				router.getProfile().name().toLowerCase() : router.getProfileName();
+		return new File(obf.getParentFile(), name + "." + region.getName() + "." + profile + HIERARCHY_FILE_EXT);
+	}
+
+	/**
+	 * Hierarchy file is checked on every call, so hierarchy preprocessed or updated later is loaded.
+	 * @return loaded hierarchy of region for the router or null if it is not preprocessed or outdated
+	 */
+	public static ContractionHierarchy getHierarchy(File obf, RouteRegion region, GeneralRouter router) {
+		File file = getHierarchyFile(obf, region, router);
+		long lastModified = file.lastModified();
+		ContractionHierarchy ch;
+		synchronized (loadedHierarchies) {
+			ch = loadedHierarchies.get(file);
+			if (ch != null && ch.fileLastModified != lastModified) {
+				loadedHierarchies.remove(file);
+				ch = null;
+			}
+			Long failed = failedHierarchies.get(file);
+			if (ch == null && lastModified != 0 && (failed == null || failed != lastModified)) {
+				try {
+					ch = readFromFile(file);
+					ch.fileLastModified = lastModified;
+					loadedHierarchies.put(file, ch);
+					failedHierarchies.remove(file);
+				} catch (IOException e) {
+					log.error("Error reading contraction hierarchy " + file.getName(), e);
+					failedHierarchies.put(file, lastModified);
+				}
+			}
+		}
+		if (ch != null && !ch.matches(obf, router)) {
+			return null;
+		}
+		return ch;
+	}
+
+	/**
+	 * Turn time ({@link GeneralRouter#calculateTurnTime}) is not part of edge weights, so hierarchy
+	 * could be used only if profile has no turn penalties and no penalty transitions between roads.
+	 */
+	public static boolean isSupported(GeneralRouter router) {
+		return router.getLeftTurn() <= 0 && router.getRightTurn() <= 0 && router.getRoundaboutTurn() <= 0
+				&& router.getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).getRules().length == 0;
+	}
+
+	public static String getProfileSignature(GeneralRouter router) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(router.getProfile()).append('/').append(router.getProfileName());
+		sb.append(" speed=").append(router.getMinSpeed()).append(',').append(router.getDefaultSpeed()).append(',')
+				.append(router.getMaxSpeed());
+		sb.append(" height=").append(router.getHeightObstacles());
+		Map<String, String> params = new TreeMap<String, String>();
+		for (RouteDataObjectAttribute a : RouteDataObjectAttribute.values()) {
+			String[] keys = router.getObjContext(a).getParamKeys();
+			String[] values = router.getObjContext(a).getParamValues();
+			for (int i = 0; i < keys.length; i++) {
+				params.put(keys[i], values[i]);
+			}
+		}
+		sb.append(" params=").append(params);
+		long[] impassable = router.getImpassableRoadIds();
+		Arrays.sort(impassable);
+		sb.append(" impassable=").append(Arrays.toString(impassable));
+		return sb.toString();
+	}
+
+	private void buildUpwardGraph() {
+		fwdIndex = new int[nodesCount + 1];
+		bwdIndex = new int[nodesCount + 1];
+		for (int e = 0; e < edgesCount; e++) {
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				fwdIndex[edgeFrom[e] + 1]++;
+			} else {
+				bwdIndex[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodesCount; i++) {
+			fwdIndex[i + 1] += fwdIndex[i];
+			bwdIndex[i + 1] += bwdIndex[i];
+		}
+		fwdEdges = new int[fwdIndex[nodesCount]];
+		bwdEdges = new int[bwdIndex[nodesCount]];
+		int[] fwdPos = Arrays.copyOf(fwdIndex, nodesCount);
+		int[] bwdPos = Arrays.copyOf(bwdIndex, nodesCount);
+		roadEdges = new TLongObjectHashMap<TIntArrayList>();
+		for (int e = 0; e < edgesCount; e++) {
+			if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+				fwdEdges[fwdPos[edgeFrom[e]]++] = e;
+			} else {
+				bwdEdges[bwdPos[edgeTo[e]]++] = e;
+			}
+			if (isOriginalEdge(e)) {
+				TIntArrayList l = roadEdges.get(edgeRoad[e]);
+				if (l == null) {
+					l = new TIntArrayList(2);
+					roadEdges.put(edgeRoad[e], l);
+				}
+				l.add(e);
+			}
+		}
+	}
+
+	/**
+	 * Bidirectional upward search between start and end road points, could be run by several threads.
+	 * @return not prepared route segments or null if route should be calculated by A*
+	 */
+	public List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end) {
+		TIntArrayList startEdges = findEdges(start);
+		TIntArrayList endEdges = findEdges(end);
+		if (startEdges.isEmpty() || endEdges.isEmpty()) {
+			return null;
+		}
+		for (int i = 0; i < startEdges.size(); i++) {
+			if (endEdges.contains(startEdges.get(i))) {
+				// both points are on the same edge, simple case for A*
+				return null;
+			}
+		}
+		QueryState q = acquireState();
+		try {
+			TIntArrayList path = search(ctx, q, start, end, startEdges, endEdges);
+			return path == null ? null : buildResult(ctx, start, end, path);
+		} finally {
+			releaseState(q);
+		}
+	}
+
+	/**
+	 * @return start edge, original edges of route and end edge or null if route is not found
+	 * or passes restricted node
+	 */
+	private TIntArrayList search(RoutingContext ctx, QueryState q, RouteSegmentPoint start, RouteSegmentPoint end,
+			TIntArrayList startEdges, TIntArrayList endEdges) {
+		NodeHeap fwdQueue = new NodeHeap(64);
+		NodeHeap bwdQueue = new NodeHeap(64);
+		for (int i = 0; i < startEdges.size(); i++) {
+			int e = startEdges.get(i);
+			float cost = edgeWeight[e] * edgeFraction(start, e, true);
+			q.seed(fwdQueue, q.fwdDist, q.fwdParent, edgeTo[e], cost, i);
+		}
+		for (int i = 0; i < endEdges.size(); i++) {
+			int e = endEdges.get(i);
+			float cost = edgeWeight[e] * edgeFraction(end, e, false);
+			q.seed(bwdQueue, q.bwdDist, q.bwdParent, edgeFrom[e], cost, i);
+		}
+		float best = Float.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		int settled = 0;
+		while (!fwdQueue.isEmpty() || !bwdQueue.isEmpty()) {
+			boolean forward = bwdQueue.isEmpty() || (!fwdQueue.isEmpty() && fwdQueue.peekKey() <= bwdQueue.peekKey());
+			NodeHeap queue = forward ? fwdQueue : bwdQueue;
+			if (queue.peekKey() >= best) {
+				queue.clear();
+				continue;
+			}
+			float d = queue.peekKey();
+			int node = queue.poll();
+			float[] dist = forward ? q.fwdDist : q.bwdDist;
+			float[] oppositeDist = forward ? q.bwdDist : q.fwdDist;
+			if (d > dist[node]) {
+				continue;
+			}
+			settled++;
+			if (oppositeDist[node] != Float.POSITIVE_INFINITY && d + oppositeDist[node] < best) {
+				best = d + oppositeDist[node];
+				meetingNode = node;
+			}
+			int[] index = forward ? fwdIndex : bwdIndex;
+			int[] edges = forward ? fwdEdges : bwdEdges;
+			int[] parent = forward ? q.fwdParent : q.bwdParent;
+			for (int k = index[node]; k < index[node + 1]; k++) {
+				int e = edges[k];
+				int next = forward ? edgeTo[e] : edgeFrom[e];
+				float nd = d + edgeWeight[e];
+				if (nd < dist[next]) {
+					q.touch(next);
+					dist[next] = nd;
+					parent[next] = e;
+					queue.push(next, nd);
+				}
+			}
+		}
+		ctx.visitedSegments += settled;
+		if (meetingNode == -1) {
+			return null;
+		}
+		TIntArrayList path = new TIntArrayList();
+		int node = meetingNode;
+		while (q.fwdParent[node] >= 0) {
+			int e = q.fwdParent[node];
+			unpack(e, path, true);
+			node = edgeFrom[e];
+		}
+		path.add(startEdges.get(-q.fwdParent[node] - 2));
+		path.reverse();
+		node = meetingNode;
+		while (q.bwdParent[node] >= 0) {
+			int e = q.bwdParent[node];
+			unpack(e, path, false);
+			node = edgeTo[e];
+		}
+		path.add(endEdges.get(-q.bwdParent[node] - 2));
+		// turns are made only at nodes between edges
+		for (int i = 0; i < path.size() - 1; i++) {
+			if (restricted[edgeTo[path.get(i)]]) {
+				return null;
+			}
+		}
+		ctx.routingTime = best;
+		return path;
+	}
+
+	private List<RouteSegmentResult> buildResult(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			TIntArrayList path) {
+		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
+		int firstEdge = path.get(0);
+		int lastEdge = path.get(path.size() - 1);
+		int ss = start.getSegmentStart();
+		boolean startForward = edgeRoadStart[firstEdge] < edgeRoadEnd[firstEdge];
+		result.add(new RouteSegmentResult(start.getRoad(), startForward ? ss - 1 : ss, edgeRoadEnd[firstEdge]));
+		for (int i = 1; i < path.size() - 1; i++) {
+			int e = path.get(i);
+			RouteDataObject road = loadRoad(ctx, edgeRoad[e], nodeX[edgeFrom[e]], nodeY[edgeFrom[e]]);
+			if (road == null) {
+				log.warn("Road " + (edgeRoad[e] >> 6) + " from contraction hierarchy is not found in " + regionName);
+				return null;
+			}
+			result.add(new RouteSegmentResult(road, edgeRoadStart[e], edgeRoadEnd[e]));
+		}
+		int es = end.getSegmentStart();
+		boolean endForward = edgeRoadStart[lastEdge] < edgeRoadEnd[lastEdge];
+		result.add(new RouteSegmentResult(end.getRoad(), edgeRoadStart[lastEdge], endForward ? es : es - 1));
+		return result;
+	}
+
+	private QueryState acquireState() {
+		synchronized (freeStates) {
+			if (!freeStates.isEmpty()) {
+				return freeStates.remove(freeStates.size() - 1);
+			}
+		}
+		return new QueryState(nodesCount);
+	}
+
+	private void releaseState(QueryState q) {
+		q.reset();
+		synchronized (freeStates) {
+			freeStates.add(q);
+		}
+	}
+
+	// appends original edges of (shortcut) edge, reversed order if needed
+	private void unpack(int edge, TIntArrayList path, boolean reverse) {
+		TIntArrayList stack = new TIntArrayList();
+		stack.add(edge);
+		while (!stack.isEmpty()) {
+			int e = stack.removeAt(stack.size() - 1);
+			if (isOriginalEdge(e)) {
+				path.add(e);
+			} else if (reverse) {
+				stack.add(edgeChild1[e]);
+				stack.add(edgeChild2[e]);
+			} else {
+				stack.add(edgeChild2[e]);
+				stack.add(edgeChild1[e]);
+			}
+		}
+	}
+
+	private TIntArrayList findEdges(RouteSegmentPoint pnt) {
+		TIntArrayList res = new TIntArrayList(2);
+		TIntArrayList edges = roadEdges.get(pnt.getRoad().getId());
+		int ss = pnt.getSegmentStart();
+		if (edges != null) {
+			for (int i = 0; i < edges.size(); i++) {
+				int e = edges.get(i);
+				int lo = Math.min(edgeRoadStart[e], edgeRoadEnd[e]);
+				int hi = Math.max(edgeRoadStart[e], edgeRoadEnd[e]);
+				if (lo <= ss - 1 && hi >= ss) {
+					res.add(e);
+				}
+			}
+		}
+		return res;
+	}
+
+	// part of edge to pass from point to the end of edge (toEnd) or from the beginning of edge to the point
+	private float edgeFraction(RouteSegmentPoint pnt, int e, boolean toEnd) {
+		RouteDataObject road = pnt.getRoad();
+		int ss = pnt.getSegmentStart();
+		int rs = edgeRoadStart[e];
+		int re = edgeRoadEnd[e];
+		double total = distanceAlong(road, rs, re);
+		if (total <= 0) {
+			return 0;
+		}
+		double part;
+		int x = pnt.preciseX;
+		int y = pnt.preciseY;
+		if (x == 0 && y == 0) {
+			x = road.getPoint31XTile(ss);
+			y = road.getPoint31YTile(ss);
+		}
+		int target = toEnd ? re : rs;
+		// nearest point of interval [ss - 1, ss] towards target
+		int near = target >= ss ? ss : ss - 1;
+		part = BinaryRoutePlanner.squareRootDist(x, y, road.getPoint31XTile(near), road.getPoint31YTile(near))
+				+ distanceAlong(road, near, target);
+		return (float) Math.min(1, part / total);
+	}
+
+	private static double distanceAlong(RouteDataObject road, int from, int to) {
+		double d = 0;
+		int lo = Math.min(from, to);
+		int hi = Math.max(from, to);
+		for (int i = lo + 1; i <= hi; i++) {
+			d += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i - 1), road.getPoint31YTile(i - 1),
+					road.getPoint31XTile(i), road.getPoint31YTile(i));
+		}
+		return d;
+	}
+
+	private static RouteDataObject loadRoad(RoutingContext ctx, long roadId, int x31, int y31) {
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, 0);
+		while (s != null) {
+			if (s.getRoad().getId() == roadId) {
+				return s.getRoad();
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(signature);
+			out.writeUTF(regionName);
+			out.writeLong(obfLength);
+			out.writeLong(obfLastModified);
+			out.writeInt(nodesCount);
+			for (int i = 0; i < nodesCount; i++) {
+				out.writeInt(nodeX[i]);
+				out.writeInt(nodeY[i]);
+				out.writeInt(rank[i]);
+				out.writeBoolean(restricted[i]);
+			}
+			out.writeInt(edgesCount);
+			for (int e = 0; e < edgesCount; e++) {
+				out.writeInt(edgeFrom[e]);
+				out.writeInt(edgeTo[e]);
+				out.writeFloat(edgeWeight[e]);
+				out.writeInt(edgeChild1[e]);
+				out.writeInt(edgeChild2[e]);
+				out.writeLong(edgeRoad[e]);
+				out.writeInt(edgeRoadStart[e]);
+				out.writeInt(edgeRoadEnd[e]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy readFromFile(File file) throws IOException {
+		long time = System.currentTimeMillis();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unsupported contraction hierarchy file " + file.getName());
+			}
+			String signature = in.readUTF();
+			String regionName = in.readUTF();
+			long obfLength = in.readLong();
+			long obfLastModified = in.readLong();
+			int nodesCount = in.readInt();
+			int[] nodeX = new int[nodesCount];
+			int[] nodeY = new int[nodesCount];
+			int[] rank = new int[nodesCount];
+			boolean[] restricted = new boolean[nodesCount];
+			for (int i = 0; i < nodesCount; i++) {
+				nodeX[i] = in.readInt();
+				nodeY[i] = in.readInt();
+				rank[i] = in.readInt();
+				restricted[i] = in.readBoolean();
+			}
+			int edgesCount = in.readInt();
+			int[] edgeFrom = new int[edgesCount];
+			int[] edgeTo = new int[edgesCount];
+			float[] edgeWeight = new float[edgesCount];
+			int[] edgeChild1 = new int[edgesCount];
+			int[] edgeChild2 = new int[edgesCount];
+			long[] edgeRoad = new long[edgesCount];
+			int[] edgeRoadStart = new int[edgesCount];
+			int[] edgeRoadEnd = new int[edgesCount];
+			for (int e = 0; e < edgesCount; e++) {
+				edgeFrom[e] = in.readInt();
+				edgeTo[e] = in.readInt();
+				edgeWeight[e] = in.readFloat();
+				edgeChild1[e] = in.readInt();
+				edgeChild2[e] = in.readInt();
+				edgeRoad[e] = in.readLong();
+				edgeRoadStart[e] = in.readInt();
+				edgeRoadEnd[e] = in.readInt();
+			}
+			ContractionHierarchy ch = new ContractionHierarchy(signature, regionName, obfLength, obfLastModified,
+					nodesCount, nodeX, nodeY, rank, restricted, edgesCount, edgeFrom, edgeTo, edgeWeight, edgeChild1, edgeChild2,
+					edgeRoad, edgeRoadStart, edgeRoadEnd);
+			log.info("Contraction hierarchy " + file.getName() + " loaded in " + (System.currentTimeMillis() - time)
+					+ " ms: nodes " + nodesCount + ", edges " + edgesCount);
+			return ch;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Distances and parents of nodes of one query, reset only for touched nodes to be reused by next query
+	 */
+	private static class QueryState {
+		final float[] fwdDist;
+		final float[] bwdDist;
+		final int[] fwdParent;
+		final int[] bwdParent;
+		final TIntArrayList touched = new TIntArrayList();
+
+		QueryState(int nodesCount) {
+			fwdDist = new float[nodesCount];
+			bwdDist = new float[nodesCount];
+			fwdParent = new int[nodesCount];
+			bwdParent = new int[nodesCount];
+			Arrays.fill(fwdDist, Float.POSITIVE_INFINITY);
+			Arrays.fill(bwdDist, Float.POSITIVE_INFINITY);
+		}
+
+		void touch(int node) {
+			if (fwdDist[node] == Float.POSITIVE_INFINITY && bwdDist[node] == Float.POSITIVE_INFINITY) {
+				touched.add(node);
+			}
+		}
+
+		void seed(NodeHeap queue, float[] dist, int[] parent, int node, float cost, int seedIndex) {
+			if (cost < dist[node]) {
+				touch(node);
+				dist[node] = cost;
+				parent[node] = -seedIndex - 2;
+				queue.push(node, cost);
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < touched.size(); i++) {
+				int n = touched.get(i);
+				fwdDist[n] = Float.POSITIVE_INFINITY;
+				bwdDist[n] = Float.POSITIVE_INFINITY;
+			}
+			touched.clear();
+		}
+	}
+
+	/**
+	 * Simple binary min heap of nodes (duplicates allowed, stale entries are skipped by caller)
+	 */
+	static class NodeHeap {
+		private float[] keys;
+		private int[] nodes;
+		private int size;
+
+		NodeHeap(int capacity) {
+			keys = new float[capacity];
+			nodes = new int[capacity];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		float peekKey() {
+			return keys[0];
+		}
+
+		void push(int node, float key) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int p = (i - 1) >> 1;
+				if (keys[p] <= key) {
+					break;
+				}
+				keys[i] = keys[p];
+				nodes[i] = nodes[p];
+				i = p;
+			}
+			keys[i] = key;
+			nodes[i] = node;
+		}
+
+		int poll() {
+			int res = nodes[0];
+			size--;
+			if (size > 0) {
+				float key = keys[size];
+				int node = nodes[size];
+				int i = 0;
+				while (true) {
+					int c = 2 * i + 1;
+					if (c >= size) {
+						break;
+					}
+					if (c + 1 < size && keys[c + 1] < keys[c]) {
+						c++;
+					}
+					if (key <= keys[c]) {
+						break;
+					}
+					keys[i] = keys[c];
+					nodes[i] = nodes[c];
+					i = c;
+				}
+				keys[i] = key;
+				nodes[i] = node;
+			}
+			return res;
+		}
+	}
+}
@@ -0,0 +1,458 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Offline preprocessing of {@link ContractionHierarchy} for one route region and one routing profile.
+ * Usage : ContractionHierarchyBuilder -obf=file.obf [-vehicle=car] [-routingXmlPath=routing.xml]
+ */
+public class ContractionHierarchyBuilder {
+
+	private final static Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+
+	// limits local witness search, bigger value gives less shortcuts but slower preprocessing
+	public static int WITNESS_SETTLED_LIMIT = 500;
+
+	private final GeneralRouter router;
+
+	private TLongObjectHashMap<Integer> nodeIds = new TLongObjectHashMap<Integer>();
+	private TIntArrayList nodeX = new TIntArrayList();
+	private TIntArrayList nodeY = new TIntArrayList();
+	private TIntHashSet restrictedNodes = new TIntHashSet();
+
+	private int edgesCount = 0;
+	private TIntArrayList edgeFrom = new TIntArrayList();
+	private TIntArrayList edgeTo = new TIntArrayList();
+	private float[] edgeWeight = new float[1024];
+	private TIntArrayList edgeChild1 = new TIntArrayList();
+	private TIntArrayList edgeChild2 = new TIntArrayList();
+	private TLongArrayList edgeRoad = new TLongArrayList();
+	private TIntArrayList edgeRoadStart = new TIntArrayList();
+	private TIntArrayList edgeRoadEnd = new TIntArrayList();
+
+	// contraction state
+	private TIntArrayList[] outEdges;
+	private TIntArrayList[] inEdges;
+	private boolean[] contracted;
+	private int[] contractedNeighbours;
+	private float[] witnessDist;
+	private TIntArrayList witnessTouched = new TIntArrayList();
+
+	public ContractionHierarchyBuilder(GeneralRouter router) {
+		this.router = router;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if profile defines turn time (see {@link ContractionHierarchy#isSupported(GeneralRouter)})
+	 */
+	public ContractionHierarchy build(BinaryMapIndexReader reader, RouteRegion region) throws IOException {
+		if (!ContractionHierarchy.isSupported(router)) {
+			throw new IllegalArgumentException("Contraction hierarchy doesn't support turn time of profile "
+					+ router.getProfileName());
+		}
+		long time = System.currentTimeMillis();
+		List<RouteSubregion> subregions = searchSubregions(reader, region);
+		// 1. intersections and road ends are nodes of graph
+		TLongHashSet nodePoints = new TLongHashSet();
+		TLongHashSet seenPoints = new TLongHashSet();
+		TLongHashSet restrictedRoads = new TLongHashSet();
+		for (RouteSubregion s : subregions) {
+			for (RouteDataObject road : reader.loadRouteIndexData(s)) {
+				if (road != null && router.restrictionsAware()) {
+					for (int i = 0; i < road.getRestrictionLength(); i++) {
+						restrictedRoads.add(road.getId());
+						if (road.getRestrictionVia(i) != 0) {
+							restrictedRoads.add(road.getRestrictionVia(i));
+						}
+					}
+				}
+				if (road != null && road.getPointsLength() > 1 && router.acceptLine(road)) {
+					int last = road.getPointsLength() - 1;
+					for (int i = 0; i <= last; i++) {
+						long key = pointKey(road, i);
+						if (i == 0 || i == last || !seenPoints.add(key)) {
+							nodePoints.add(key);
+						}
+						seenPoints.add(key);
+					}
+				}
+			}
+		}
+		seenPoints = null;
+		// 2. parts of roads between nodes are original edges
+		for (RouteSubregion s : subregions) {
+			for (RouteDataObject road : reader.loadRouteIndexData(s)) {
+				if (road != null && road.getPointsLength() > 1 && router.acceptLine(road)) {
+					addRoad(road, nodePoints, restrictedRoads.contains(road.getId()));
+				}
+			}
+		}
+		int originalEdges = edgesCount;
+		log.info("Graph of " + region.getName() + " : nodes " + nodeX.size() + ", edges " + originalEdges
+				+ ", restricted nodes " + restrictedNodes.size() + " (" + (System.currentTimeMillis() - time) + " ms)");
+		// 3. contract nodes
+		int[] rank = contract();
+		log.info("Contraction hierarchy of " + region.getName() + " : shortcuts " + (edgesCount - originalEdges)
+				+ " (" + (System.currentTimeMillis() - time) + " ms)");
+		boolean[] restricted = new boolean[nodeX.size()];
+		TIntIterator it = restrictedNodes.iterator();
+		while (it.hasNext()) {
+			restricted[it.next()] = true;
+		}
+		File obf = reader.getFile();
+		return new ContractionHierarchy(ContractionHierarchy.getProfileSignature(router), region.getName(),
+				obf.length(), obf.lastModified(), nodeX.size(), nodeX.toArray(), nodeY.toArray(), rank, restricted,
+				edgesCount,
+				edgeFrom.toArray(), edgeTo.toArray(), Arrays.copyOf(edgeWeight, edgesCount), edgeChild1.toArray(),
+				edgeChild2.toArray(), edgeRoad.toArray(), edgeRoadStart.toArray(), edgeRoadEnd.toArray());
+	}
+
+	private List<RouteSubregion> searchSubregions(BinaryMapIndexReader reader, RouteRegion region) throws IOException {
+		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE,
+				0, Integer.MAX_VALUE, null);
+		return reader.searchRouteIndexTree(request, region.getSubregions());
+	}
+
+	private static long pointKey(RouteDataObject road, int i) {
+		return (((long) road.getPoint31XTile(i)) << 31) + (long) road.getPoint31YTile(i);
+	}
+
+	private int getNode(RouteDataObject road, int i) {
+		long key = pointKey(road, i);
+		Integer id = nodeIds.get(key);
+		if (id == null) {
+			id = nodeX.size();
+			nodeIds.put(key, id);
+			nodeX.add(road.getPoint31XTile(i));
+			nodeY.add(road.getPoint31YTile(i));
+		}
+		return id;
+	}
+
+	/**
+	 * @param restricted - road has turn restrictions or it is via road of them, so all its nodes are marked
+	 */
+	private void addRoad(RouteDataObject road, TLongHashSet nodePoints, boolean restricted) {
+		int oneway = router.isOneWay(road);
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		if (speed <= 0) {
+			return;
+		}
+		int prevInd = 0;
+		int prevNode = getNode(road, 0);
+		if (restricted) {
+			restrictedNodes.add(prevNode);
+		}
+		double dist = 0;
+		float obstacles = 0;
+		// height obstacles depend on direction (uphill or downhill)
+		double fwdHeight = 0;
+		double bwdHeight = 0;
+		boolean blocked = false;
+		boolean fwdBlocked = false;
+		boolean bwdBlocked = false;
+		for (int i = 1; i < road.getPointsLength(); i++) {
+			dist += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i - 1), road.getPoint31YTile(i - 1),
+					road.getPoint31XTile(i), road.getPoint31YTile(i));
+			float obstacle = router.defineRoutingObstacle(road, i);
+			if (obstacle < 0) {
+				blocked = true;
+			} else {
+				obstacles += obstacle;
+			}
+			double fwd = router.defineHeightObstacle(road, (short) (i - 1), (short) i);
+			double bwd = router.defineHeightObstacle(road, (short) i, (short) (i - 1));
+			if (fwd < 0) {
+				fwdBlocked = true;
+			} else {
+				fwdHeight += fwd;
+			}
+			if (bwd < 0) {
+				bwdBlocked = true;
+			} else {
+				bwdHeight += bwd;
+			}
+			if (nodePoints.contains(pointKey(road, i))) {
+				int node = getNode(road, i);
+				if (restricted) {
+					restrictedNodes.add(node);
+				}
+				if (!blocked && node != prevNode) {
+					float weight = (float) (dist / speed) + obstacles;
+					if (oneway >= 0 && !fwdBlocked) {
+						addEdge(prevNode, node, weight + (float) fwdHeight, ContractionHierarchy.NO_CHILD,
+								ContractionHierarchy.NO_CHILD, road.getId(), prevInd, i);
+					}
+					if (oneway <= 0 && !bwdBlocked) {
+						addEdge(node, prevNode, weight + (float) bwdHeight, ContractionHierarchy.NO_CHILD,
+								ContractionHierarchy.NO_CHILD, road.getId(), i, prevInd);
+					}
+				}
+				prevInd = i;
+				prevNode = node;
+				dist = 0;
+				obstacles = 0;
+				fwdHeight = 0;
+				bwdHeight = 0;
+				blocked = false;
+				fwdBlocked = false;
+				bwdBlocked = false;
+			}
+		}
+	}
+
+	private int addEdge(int from, int to, float weight, int child1, int child2, long road, int roadStart, int roadEnd) {
+		if (edgesCount == edgeWeight.length) {
+			edgeWeight = Arrays.copyOf(edgeWeight, edgesCount * 2);
+		}
+		edgeFrom.add(from);
+		edgeTo.add(to);
+		edgeWeight[edgesCount] = weight;
+		edgeChild1.add(child1);
+		edgeChild2.add(child2);
+		edgeRoad.add(road);
+		edgeRoadStart.add(roadStart);
+		edgeRoadEnd.add(roadEnd);
+		if (outEdges != null) {
+			outEdges[from].add(edgesCount);
+			inEdges[to].add(edgesCount);
+		}
+		return edgesCount++;
+	}
+
+	private int[] contract() {
+		int n = nodeX.size();
+		outEdges = new TIntArrayList[n];
+		inEdges = new TIntArrayList[n];
+		for (int i = 0; i < n; i++) {
+			outEdges[i] = new TIntArrayList(4);
+			inEdges[i] = new TIntArrayList(4);
+		}
+		for (int e = 0; e < edgesCount; e++) {
+			outEdges[edgeFrom.get(e)].add(e);
+			inEdges[edgeTo.get(e)].add(e);
+		}
+		contracted = new boolean[n];
+		contractedNeighbours = new int[n];
+		witnessDist = new float[n];
+		Arrays.fill(witnessDist, Float.POSITIVE_INFINITY);
+		ContractionHierarchy.NodeHeap queue = new ContractionHierarchy.NodeHeap(Math.max(n, 16));
+		for (int i = 0; i < n; i++) {
+			queue.push(i, priority(i));
+		}
+		int[] rank = new int[n];
+		int order = 0;
+		long time = System.currentTimeMillis();
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			if (contracted[v]) {
+				continue;
+			}
+			// lazy update of priority
+			float p = priority(v);
+			if (!queue.isEmpty() && p > queue.peekKey()) {
+				queue.push(v, p);
+				continue;
+			}
+			contractNode(v, false);
+			contracted[v] = true;
+			rank[v] = order++;
+			updateNeighbours(v);
+			if (order % 100000 == 0) {
+				log.info("Contracted " + order + " of " + n + " nodes, edges " + edgesCount + " ("
+						+ (System.currentTimeMillis() - time) + " ms)");
+			}
+		}
+		outEdges = null;
+		inEdges = null;
+		return rank;
+	}
+
+	private void updateNeighbours(int v) {
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < out.size(); i++) {
+			contractedNeighbours[edgeTo.get(out.get(i))]++;
+		}
+		TIntArrayList in = inEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			contractedNeighbours[edgeFrom.get(in.get(i))]++;
+		}
+	}
+
+	private float priority(int v) {
+		int shortcuts = contractNode(v, true);
+		int degree = 0;
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < out.size(); i++) {
+			if (!contracted[edgeTo.get(out.get(i))]) {
+				degree++;
+			}
+		}
+		TIntArrayList in = inEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			if (!contracted[edgeFrom.get(in.get(i))]) {
+				degree++;
+			}
+		}
+		// edge difference + uniformity
+		return shortcuts - degree + contractedNeighbours[v];
+	}
+
+	/**
+	 * Adds shortcuts u -> w for every path u -> v -> w which doesn't have witness path
+	 * @return number of (needed) shortcuts
+	 */
+	private int contractNode(int v, boolean simulate) {
+		int shortcuts = 0;
+		TIntArrayList in = inEdges[v];
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			int inEdge = in.get(i);
+			int u = edgeFrom.get(inEdge);
+			if (contracted[u] || u == v) {
+				continue;
+			}
+			float maxCost = 0;
+			for (int j = 0; j < out.size(); j++) {
+				int w = edgeTo.get(out.get(j));
+				if (!contracted[w] && w != u && w != v) {
+					maxCost = Math.max(maxCost, edgeWeight[inEdge] + edgeWeight[out.get(j)]);
+				}
+			}
+			if (maxCost == 0) {
+				continue;
+			}
+			witnessSearch(u, v, maxCost);
+			for (int j = 0; j < out.size(); j++) {
+				int outEdge = out.get(j);
+				int w = edgeTo.get(outEdge);
+				if (contracted[w] || w == u || w == v) {
+					continue;
+				}
+				float cost = edgeWeight[inEdge] + edgeWeight[outEdge];
+				if (witnessDist[w] > cost) {
+					shortcuts++;
+					if (!simulate) {
+						addEdge(u, w, cost, inEdge, outEdge, 0, -1, -1);
+						// don't add same shortcut twice through parallel edges
+						if (witnessDist[w] == Float.POSITIVE_INFINITY) {
+							witnessTouched.add(w);
+						}
+						witnessDist[w] = cost;
+					}
+				}
+			}
+			resetWitnessSearch();
+		}
+		return shortcuts;
+	}
+
+	private void witnessSearch(int source, int excluded, float maxCost) {
+		ContractionHierarchy.NodeHeap queue = new ContractionHierarchy.NodeHeap(16);
+		witnessDist[source] = 0;
+		witnessTouched.add(source);
+		queue.push(source, 0);
+		int settled = 0;
+		while (!queue.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+			float d = queue.peekKey();
+			int node = queue.poll();
+			if (d > witnessDist[node]) {
+				continue;
+			}
+			if (d > maxCost) {
+				break;
+			}
+			settled++;
+			TIntArrayList out = outEdges[node];
+			for (int i = 0; i < out.size(); i++) {
+				int e = out.get(i);
+				int next = edgeTo.get(e);
+				if (contracted[next] || next == excluded) {
+					continue;
+				}
+				float nd = d + edgeWeight[e];
+				if (nd < witnessDist[next]) {
+					if (witnessDist[next] == Float.POSITIVE_INFINITY) {
+						witnessTouched.add(next);
+					}
+					witnessDist[next] = nd;
+					queue.push(next, nd);
+				}
+			}
+		}
+	}
+
+	private void resetWitnessSearch() {
+		for (int i = 0; i < witnessTouched.size(); i++) {
+			witnessDist[witnessTouched.get(i)] = Float.POSITIVE_INFINITY;
+		}
+		witnessTouched.clear();
+	}
+
+	public static void main(String[] args) throws Exception {
+		String obfFile = null;
+		String vehicle = "car";
+		String routingXmlFile = null;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obfFile = a.substring("-obf=".length());
+			} else if (a.startsWith("-vehicle=")) {
+				vehicle = a.substring("-vehicle=".length());
+			} else if (a.startsWith("-routingXmlPath=")) {
+				routingXmlFile = a.substring("-routingXmlPath=".length());
+			} else if (a.startsWith("-witnessLimit=")) {
+				WITNESS_SETTLED_LIMIT = Integer.parseInt(a.substring("-witnessLimit=".length()));
+			}
+		}
+		if (obfFile == null) {
+			System.out.println("Usage : ContractionHierarchyBuilder -obf=file.obf [-vehicle=car] [-routingXmlPath=routing.xml] [-witnessLimit=500]");
+			return;
+		}
+		RoutingConfiguration.Builder builder = routingXmlFile == null ? RoutingConfiguration.getDefault()
+				: RoutingConfiguration.parseFromInputStream(new java.io.FileInputStream(routingXmlFile));
+		RoutingConfiguration config = builder.build(vehicle, RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		if (!ContractionHierarchy.isSupported(config.router)) {
+			System.out.println("Profile " + vehicle + " defines turn time, contraction hierarchy is not used for it");
+			return;
+		}
+		File obf = new File(obfFile);
+		RandomAccessFile raf = new RandomAccessFile(obf, "r");
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, obf);
+		try {
+			for (RouteRegion region : reader.getRoutingIndexes()) {
+				ContractionHierarchy ch = new ContractionHierarchyBuilder(config.router).build(reader, region);
+				File out = ContractionHierarchy.getHierarchyFile(obf, region, config.router);
+				ch.writeToFile(out);
+				System.out.println("Contraction hierarchy is written to " + out.getAbsolutePath());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
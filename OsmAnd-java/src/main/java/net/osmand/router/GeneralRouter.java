@@ -11,7 +11,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -19,6 +19,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import gnu.trove.set.hash.TLongHashSet;
 
@@ -57,8 +60,6 @@ public class GeneralRouter implements VehicleRouter {
 	private String filename = null;
 	private String profileName = "";
 
-	private Map<RouteRegion, Map<Integer, Integer>> regionConvert = new LinkedHashMap<RouteRegion, Map<Integer,Integer>>();
-	
 	// cached values
 	private boolean restrictionsAware = true;
 	private float leftTurn;
@@ -71,10 +72,24 @@ public class GeneralRouter implements VehicleRouter {
 	// speed in m/s
 	private float maxSpeed = 10f;
 
-	private TLongHashSet impassableRoads;
+	// replaced on change, so it could be read by routing threads
+	private volatile TLongHashSet impassableRoads;
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;	
+	// router could be shared by routing threads: compiled tables are read without locks,
+	// tag registry (shared with derived routers) is changed only under write lock
+	private final ConcurrentMap<RouteRegion, CompiledRegion> compiledRegions = new ConcurrentHashMap<RouteRegion, CompiledRegion>();
+	private final ReentrantReadWriteLock registryLock;
+	
+	private static final int ATTRIBUTES = RouteDataObjectAttribute.values().length;
+	private static final int ROAD_SPEED = RouteDataObjectAttribute.ROAD_SPEED.ordinal();
+	private static final int ROAD_PRIORITIES = RouteDataObjectAttribute.ROAD_PRIORITIES.ordinal();
+	private static final int ACCESS = RouteDataObjectAttribute.ACCESS.ordinal();
+	private static final int OBSTACLES = RouteDataObjectAttribute.OBSTACLES.ordinal();
+	private static final int ROUTING_OBSTACLES = RouteDataObjectAttribute.ROUTING_OBSTACLES.ordinal();
+	private static final int ONEWAY = RouteDataObjectAttribute.ONEWAY.ordinal();
+	private static final int PENALTY_TRANSITION = RouteDataObjectAttribute.PENALTY_TRANSITION.ordinal();
+	private static final int AREA = RouteDataObjectAttribute.AREA.ordinal();
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -130,6 +145,7 @@ public class GeneralRouter implements VehicleRouter {
 		tagRuleMask = parent.tagRuleMask;
 		ruleToValue = parent.ruleToValue;
 		parameters = parent.parameters;
+		registryLock = parent.registryLock;
 		
 		objectAttributes = new RouteAttributeContext[RouteDataObjectAttribute.values().length];
 		for (int i = 0; i < objectAttributes.length; i++) {
@@ -150,7 +166,6 @@ public class GeneralRouter implements VehicleRouter {
 		if (shortestRoute) {
 			maxSpeed = Math.min(CAR_SHORTEST_DEFAULT_SPEED, maxSpeed);
 		}
-		initCaches();
 	}
 	
 	public GeneralRouter(GeneralRouterProfile profile, Map<String, String> attributes) {
@@ -170,18 +185,7 @@ public class GeneralRouter implements VehicleRouter {
 		tagRuleMask = new LinkedHashMap<String, BitSet>();
 		ruleToValue = new ArrayList<Object>();
 		parameters = new LinkedHashMap<String, GeneralRouter.RoutingParameter>();
-		
-		initCaches();
-
-	}
-
-	@SuppressWarnings("unchecked")
-	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
-		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
-		}
+		registryLock = new ReentrantReadWriteLock();
 	}
 
 	public String getFilename() {
@@ -230,6 +234,8 @@ public class GeneralRouter implements VehicleRouter {
 		} else if(k.equals("maxDefaultSpeed") || k.equals("maxSpeed")) {
 			maxSpeed = parseSilentFloat(v, maxSpeed * 3.6f) / 3.6f;
 		}
+		// speed limits are applied to compiled values
+		clearCompiledRegions();
 	}
 	
 	public RouteAttributeContext getObjContext(RouteDataObjectAttribute a) {
@@ -262,11 +268,8 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
-			putCache(RouteDataObjectAttribute.ACCESS, way, res);
-		}
+		float res = getRoadValues(way)[ACCESS];
+		TLongHashSet impassableRoads = this.impassableRoads;
 		if(impassableRoads != null && impassableRoads.contains(way.id)) {
 			return false;
 		}
@@ -278,6 +281,7 @@ public class GeneralRouter implements VehicleRouter {
 	}
 
 	public long[] getImpassableRoadIds() {
+		TLongHashSet impassableRoads = this.impassableRoads;
 		if(impassableRoads == null) {
 			return new long[0];
 		}
@@ -285,18 +289,23 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	public int registerTagValueAttribute(String tag, String value) {
-		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
-		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
-		}
-		tagRuleMask.get(tag).set(id);
-		return id;
+		registryLock.writeLock().lock();
+		try {
+			String key = tag + "$" + value;
+			if (universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			if (!tagRuleMask.containsKey(tag)) {
+				tagRuleMask.put(tag, new BitSet());
+			}
+			tagRuleMask.get(tag).set(id);
+			return id;
+		} finally {
+			registryLock.writeLock().unlock();
+		}
 	}
 	
 	
@@ -323,18 +332,22 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		// called by concurrent evaluations under registry read lock
+		synchronized (ruleToValue) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v = universalRulesById.get(id);
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
@@ -356,12 +369,7 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineObstacle(RouteDataObject road, int point) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes);
-			if(obst == null) {
-				obst = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(road.region, pointTypes, 0);
-				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, obst);
-			}
-			return obst;
+			return getPointValues(road.region, pointTypes)[OBSTACLES];
 		}
 		return 0;
 	}
@@ -370,12 +378,7 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineRoutingObstacle(RouteDataObject road, int point) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null){
-			Float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes);
-			if(obst ==  null) {
-				obst = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, pointTypes, 0);
-				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, obst);
-			}
-			return obst;
+			return getPointValues(road.region, pointTypes)[ROUTING_OBSTACLES];
 		}
 		return 0;
 	}
@@ -402,8 +405,8 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					double incline = diff > 0 ? percentIncl : -percentIncl;
+					sum += objContext.evaluateFloat(road, incline, 0) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -413,111 +416,160 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
-		}
-		return res.intValue();
+		return (int) getRoadValues(road)[ONEWAY];
 	}
 	
 	@Override
 	public boolean isArea(RouteDataObject road) {
-		return getObjContext(RouteDataObjectAttribute.AREA).evaluateInt(road, 0) == 1;
+		return getRoadValues(road)[AREA] == 1;
 	}
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
-			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
-		}
-		return vl;
+		return getRoadValues(road)[PENALTY_TRANSITION];
 	}
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (definedSpd == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
-			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
-			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, definedSpd);
-		}
-		return definedSpd;
+		return getRoadValues(road)[ROAD_SPEED];
 	}
 	
 	@Override
 	public float defineVehicleSpeed(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (sp == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
-			sp = Math.max(Math.min(spd, maxSpeed), minSpeed);
-			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, sp);
-		}
-		return sp;
+		return getRoadValues(road)[ROAD_SPEED];
 	}
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
-		if(sp == null) {
-			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
-			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp);
-		}
-		return sp;
+		return getRoadValues(road)[ROAD_PRIORITIES];
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
-		putCache(attr, road.region, road.types, val);
+	/**
+	 * Values of all road attributes indexed by {@link RouteDataObjectAttribute#ordinal()}
+	 */
+	private float[] getRoadValues(RouteDataObject road) {
+		CompiledRegion cr = getCompiledRegion(road.region);
+		int hash = road.getTypesHash();
+		float[] vls = USE_CACHE ? cr.roadValues.get(road.types, hash) : null;
+		if (vls == null) {
+			long time = System.nanoTime();
+			BitSet b = cr.convert(road.types);
+			vls = new float[ATTRIBUTES];
+			Arrays.fill(vls, Float.NaN);
+			vls[ACCESS] = getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(b, 0);
+			vls[ONEWAY] = getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(b, 0);
+			vls[AREA] = getObjContext(RouteDataObjectAttribute.AREA).evaluateInt(b, 0);
+			vls[PENALTY_TRANSITION] = getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(b, 0);
+			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(b, defaultSpeed);
+			vls[ROAD_SPEED] = Math.max(Math.min(spd, maxSpeed), minSpeed);
+			vls[ROAD_PRIORITIES] = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(b, 1f);
+			if (USE_CACHE) {
+				cr.roadValues.put(road.types, hash, vls);
+			}
+			TIMER += System.nanoTime() - time;
+		}
+		return vls;
 	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
+
+	/**
+	 * Values of point attributes (obstacles) indexed by {@link RouteDataObjectAttribute#ordinal()}
+	 */
+	private float[] getPointValues(RouteRegion reg, int[] pointTypes) {
+		CompiledRegion cr = getCompiledRegion(reg);
+		int hash = RouteTypesCache.hash(pointTypes);
+		float[] vls = USE_CACHE ? cr.pointValues.get(pointTypes, hash) : null;
+		if (vls == null) {
+			long time = System.nanoTime();
+			BitSet b = cr.convert(pointTypes);
+			vls = new float[ATTRIBUTES];
+			Arrays.fill(vls, Float.NaN);
+			vls[OBSTACLES] = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(b, 0);
+			vls[ROUTING_OBSTACLES] = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(b, 0);
+			if (USE_CACHE) {
+				cr.pointValues.put(pointTypes, hash, vls);
 			}
-			rM.put(new IntHolder(types), val);
+			TIMER += System.nanoTime() - time;
 		}
-		TIMER += System.nanoTime();
+		return vls;
 	}
-	
-	class IntHolder {
-	    private final int[] array;
-	    IntHolder(int[] ts) { array = ts; }
-	    @Override public int hashCode() { return Arrays.hashCode(array); }
-	    @Override public boolean equals(Object other) {
-	        if (array == other) { return true; }
-	        if (! (other instanceof IntHolder) ) {
-	            return false;
-	        }
-	        //noinspection unchecked
-	        return Arrays.equals(array, ((IntHolder) other).array);
-	    }
+
+	private CompiledRegion getCompiledRegion(RouteRegion reg) {
+		CompiledRegion cr = compiledRegions.get(reg);
+		if (cr == null) {
+			cr = new CompiledRegion(reg);
+			CompiledRegion prev = compiledRegions.putIfAbsent(reg, cr);
+			if (prev != null) {
+				cr = prev;
+			}
+		}
+		return cr;
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
-		return getCache(attr, road.region, road.types);
+	/**
+	 * Drops compiled values, they are compiled again on next access
+	 */
+	public void clearCompiledRegions() {
+		compiledRegions.clear();
 	}
-	
-	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-		TIMER -= System.nanoTime();
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
+
+	/**
+	 * Tables compiled for region: region encoding rule -> universal rule id and
+	 * type combinations of region roads and points -> values of attributes.
+	 * Depend only on profile parameters which are fixed for router.
+	 */
+	private class CompiledRegion {
+		private final RouteRegion region;
+		private volatile int[] ruleIds;
+		private final RouteTypesCache roadValues = new RouteTypesCache();
+		private final RouteTypesCache pointValues = new RouteTypesCache();
+
+		CompiledRegion(RouteRegion region) {
+			this.region = region;
+			registryLock.writeLock().lock();
+			try {
+				ruleIds = compileRuleIds(new int[0]);
+			} finally {
+				registryLock.writeLock().unlock();
 			}
-			Float vl = rM.get(new IntHolder(types));
-			if(vl != null) {
-				TIMER += System.nanoTime();
-				return vl;
+		}
+
+		private int[] compileRuleIds(int[] prev) {
+			int sz = region.routeEncodingRules.size();
+			if (sz <= prev.length) {
+				return prev;
+			}
+			int[] ids = Arrays.copyOf(prev, sz);
+			for (int i = prev.length; i < sz; i++) {
+				RouteTypeRule r = region.quickGetEncodingRule(i);
+				ids[i] = r == null ? -1 : registerTagValueAttribute(r.getTag(), r.getValue());
 			}
+			return ids;
+		}
+
+		BitSet convert(int[] types) {
+			BitSet b = new BitSet();
+			int[] ids = ruleIds;
+			for (int k = 0; k < types.length; k++) {
+				int t = types[k];
+				if (t >= ids.length || ids[t] < 0) {
+					// rule was added to region after compilation
+					registryLock.writeLock().lock();
+					try {
+						ids = compileRuleIds(ruleIds);
+						if (t < ids.length && ids[t] < 0) {
+							RouteTypeRule r = region.quickGetEncodingRule(t);
+							ids = ids.clone();
+							ids[t] = registerTagValueAttribute(r.getTag(), r.getValue());
+						}
+						ruleIds = ids;
+					} finally {
+						registryLock.writeLock().unlock();
+					}
+				}
+				b.set(ids[t]);
+			}
+			return b;
 		}
-		return null;
 	}
 
 	@Override
@@ -662,8 +714,13 @@ public class GeneralRouter implements VehicleRouter {
 	
 	
 	private class ParameterContext {
-		private Map<String, String> vars;
-		private double incline = 0;
+		private final Map<String, String> vars;
+		private final double incline;
+
+		ParameterContext(Map<String, String> vars, double incline) {
+			this.vars = vars;
+			this.incline = incline;
+		}
 	}
 	
 	public class RouteAttributeContext {
@@ -674,8 +731,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		public RouteAttributeContext(RouteAttributeContext original, Map<String, String> params){
 			if (params != null) {
-				paramContext = new ParameterContext();
-				paramContext.vars = params;
+				paramContext = new ParameterContext(params, 0);
 			}
 			for(RouteAttributeEvalRule rt : original.rules){
 				if(checkParameter(rt)){
@@ -703,7 +759,14 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types, paramContext);
+		}
+
+		private Object evaluate(RouteRegion reg, int[] types, ParameterContext ctx) {
+			long time = System.nanoTime();
+			Object o = evaluate(convert(reg, types), ctx);
+			TIMER += System.nanoTime() - time;
+			return o;
 		}
 
 		public void printRules(PrintStream out) {
@@ -723,15 +786,21 @@ public class GeneralRouter implements VehicleRouter {
 			return rules.get(rules.size() - 1);
 		}
 
-		private Object evaluate(BitSet types) {
-			for (int k = 0; k < rules.size(); k++) {
-				RouteAttributeEvalRule r = rules.get(k);
-				Object o = r.eval(types, paramContext);
-				if (o != null) {
-					return o;
+		private Object evaluate(BitSet types, ParameterContext ctx) {
+			// rules are re-entrant, lock only protects tag registry from concurrent registration
+			registryLock.readLock().lock();
+			try {
+				for (int k = 0; k < rules.size(); k++) {
+					RouteAttributeEvalRule r = rules.get(k);
+					Object o = r.eval(types, ctx);
+					if (o != null) {
+						return o;
+					}
 				}
+				return null;
+			} finally {
+				registryLock.readLock().unlock();
 			}
-			return null;
 		}
 
 		private boolean checkParameter(RouteAttributeEvalRule r) {
@@ -762,7 +831,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types, paramContext);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -770,7 +839,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(BitSet rawTypes, int defValue) {
-			Object o = evaluate(rawTypes);
+			Object o = evaluate(rawTypes, paramContext);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -785,8 +854,20 @@ public class GeneralRouter implements VehicleRouter {
 			return ((Number)o).floatValue();
 		}
 		
+		/**
+		 * Evaluates rules with :incline parameter, could be called concurrently with different inclines
+		 */
+		public float evaluateFloat(RouteDataObject ro, double incline, float defValue) {
+			Map<String, String> vars = paramContext == null ? Collections.<String, String>emptyMap() : paramContext.vars;
+			Object o = evaluate(ro.region, ro.types, new ParameterContext(vars, incline));
+			if(!(o instanceof Number)) {
+				return defValue;
+			}
+			return ((Number)o).floatValue();
+		}
+		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types, paramContext);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
@@ -794,7 +875,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(BitSet rawTypes, float defValue) {
-			Object o = evaluate(rawTypes);
+			Object o = evaluate(rawTypes, paramContext);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -802,22 +883,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private BitSet convert(RouteRegion reg, int[] types) {
-			BitSet b = new BitSet(universalRules.size());
-			Map<Integer, Integer> map = regionConvert.get(reg);
-			if(map == null){
-				map = new HashMap<Integer, Integer>();
-				regionConvert.put(reg, map);
-			}
-			for(int k = 0; k < types.length; k++) {
-				Integer nid = map.get(types[k]);
-				if(nid == null){
-					RouteTypeRule r = reg.quickGetEncodingRule(types[k]);
-					nid = registerTagValueAttribute(r.getTag(), r.getValue());
-					map.put(types[k], nid);
-				}
-				b.set(nid);
-			}
-			return b;
+			return getCompiledRegion(reg).convert(types);
 		}
 	}
 
@@ -875,15 +941,12 @@ public class GeneralRouter implements VehicleRouter {
 			Object o = null;
 			if (value instanceof String && value.toString().startsWith("$")) {
 				BitSet mask = tagRuleMask.get(value.toString().substring(1));
-				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int v = findBit.nextSetBit(0);
+				int v = firstCommonBit(mask, types);
+				if (v >= 0) {
 					o = parseValueFromTag(v, valueType);
 				}
 			} else if (value instanceof String && value.equals(":incline")) {
-				return paramContext.incline;
+				return paramContext == null ? 0 : paramContext.incline;
 			} else if (value instanceof String && value.toString().startsWith(":")) {
 				String p = ((String) value).substring(1);
 				if (paramContext != null && paramContext.vars.containsKey(p)) {
@@ -911,7 +974,6 @@ public class GeneralRouter implements VehicleRouter {
 		protected String selectType = null;
 		protected BitSet filterTypes = new BitSet();
 		protected BitSet filterNotTypes = new BitSet();
-		protected BitSet evalFilterTypes = new BitSet();
 		
 		protected Set<String> onlyTags = new LinkedHashSet<String>();
 		protected Set<String> onlyNotTags = new LinkedHashSet<String>();
@@ -1027,7 +1089,8 @@ public class GeneralRouter implements VehicleRouter {
 			parameters.add(param);
 		}
 
-		public synchronized Object eval(BitSet types, ParameterContext paramContext) {
+		// doesn't change rule state, so rule could be evaluated concurrently
+		public Object eval(BitSet types, ParameterContext paramContext) {
 			if (matches(types, paramContext)) {
 				return calcSelectValue(types, paramContext);
 			}
@@ -1038,17 +1101,15 @@ public class GeneralRouter implements VehicleRouter {
 		protected Object calcSelectValue(BitSet types, ParameterContext paramContext) {
 			if (selectValue instanceof String && selectValue.toString().startsWith("$")) {
 				BitSet mask = tagRuleMask.get(selectValue.toString().substring(1));
-				if (mask != null && mask.intersects(types)) {
-					BitSet findBit = new BitSet(mask.length());
-					findBit.or(mask);
-					findBit.and(types);
-					int value = findBit.nextSetBit(0);
+				int value = firstCommonBit(mask, types);
+				if (value >= 0) {
 					return parseValueFromTag(value, selectType);
 				}
 			} else if (selectValue instanceof String && selectValue.toString().startsWith(":")) {
+				// rules are shared by routers built with different parameters, so parameter value is not stored
 				String p = ((String) selectValue).substring(1);
 				if (paramContext != null && paramContext.vars.containsKey(p)) {
-					selectValue = parseValue(paramContext.vars.get(p), selectType);
+					return parseValue(paramContext.vars.get(p), selectType);
 				} else {
 					return null;
 				}
@@ -1112,14 +1173,11 @@ public class GeneralRouter implements VehicleRouter {
 		}
 
 		private boolean checkAllTypesShouldBePresent(BitSet types) {
-			// Bitset method subset is missing "filterTypes.isSubset(types)"    
-			// reset previous evaluation
-			// evalFilterTypes.clear(); // not needed same as or()
-			evalFilterTypes.or(filterTypes);
-			// evaluate bit intersection and check if filterTypes contained as set in types
-			evalFilterTypes.and(types);
-			if(!evalFilterTypes.equals(filterTypes)) {
-				return false;
+			// Bitset method subset is missing "filterTypes.isSubset(types)"
+			for (int i = filterTypes.nextSetBit(0); i >= 0; i = filterTypes.nextSetBit(i + 1)) {
+				if (!types.get(i)) {
+					return false;
+				}
 			}
 			return true;
 		}
@@ -1127,6 +1185,17 @@ public class GeneralRouter implements VehicleRouter {
 	}
 
 
+	private static int firstCommonBit(BitSet mask, BitSet types) {
+		if (mask != null) {
+			for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+				if (types.get(i)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
 	public void printRules(PrintStream out) {
 		for(int i = 0; i < RouteDataObjectAttribute.values().length ; i++) {
 			out.println(RouteDataObjectAttribute.values()[i]);
@@ -1137,10 +1206,13 @@ public class GeneralRouter implements VehicleRouter {
 
 	public void addImpassableRoads(Set<Long> impassableRoads) {
 		if (impassableRoads != null && !impassableRoads.isEmpty()) {
-			if (this.impassableRoads == null) {
-				this.impassableRoads = new TLongHashSet();
+			// compiled values don't depend on road ids, impassable roads are checked separately in acceptLine
+			TLongHashSet set = new TLongHashSet();
+			if (this.impassableRoads != null) {
+				set.addAll(this.impassableRoads);
 			}
-			this.impassableRoads.addAll(impassableRoads);
+			set.addAll(impassableRoads);
+			this.impassableRoads = set;
 		}		
 	}
 }
@@ -0,0 +1,372 @@
+package net.osmand.router;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+/**
+ * Runs batch of route queries on thread pool and writes per query metrics and latency percentiles,
+ * could be used to compare performance of different builds.
+ * Usage : RouteBatchRunner -obfDir=PATH -queries=FILE [-routingXmlPath=routing.xml] [-vehicle=car]
+ * [-threads=N] [-memory=MB] [-out=FILE]
+ *
+ * Queries file is csv (name,start_lat,start_lon,end_lat,end_lon[,vehicle]) or json array of test entries
+ * (testName, startPoint, endPoint, transitPoint1-3, params, ignore).
+ */
+public class RouteBatchRunner {
+
+	private final RoutingConfiguration.Builder config;
+	private final List<File> obfFiles;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int memoryLimitMB = TestRouting.MEMORY_TEST_LIMIT;
+
+	/**
+	 * @param config builder owned by runner, routing configurations of all queries are built from it before run
+	 */
+	public RouteBatchRunner(RoutingConfiguration.Builder config, List<File> obfFiles) {
+		this.config = config;
+		this.obfFiles = obfFiles;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setMemoryLimitMB(int memoryLimitMB) {
+		this.memoryLimitMB = memoryLimitMB;
+	}
+
+	public static class RouteQuery {
+		public String name;
+		public String vehicle;
+		public LatLon start;
+		public LatLon end;
+		public List<LatLon> intermediates = new ArrayList<LatLon>();
+		public Map<String, String> params = new LinkedHashMap<String, String>();
+	}
+
+	public static class QueryResult {
+		public final RouteQuery query;
+		public boolean success;
+		public String error;
+		public long latencyMs;
+		public float routingTime;
+		public int visitedSegments;
+		public int relaxedSegments;
+		public int queuePushes;
+		public int loadedTiles;
+		public int distinctLoadedTiles;
+		public float routeDistance;
+		public float routeTime;
+		public long peakMemory;
+
+		QueryResult(RouteQuery query) {
+			this.query = query;
+		}
+	}
+
+	public List<QueryResult> run(List<RouteQuery> queries) throws IOException, InterruptedException {
+		// readers are not thread safe, so each worker takes own set of readers sharing index structure
+		final BlockingQueue<BinaryMapIndexReader[]> readers = new ArrayBlockingQueue<BinaryMapIndexReader[]>(threads);
+		List<BinaryMapIndexReader[]> allReaders = new ArrayList<BinaryMapIndexReader[]>();
+		BinaryMapIndexReader[] first = null;
+		for (int i = 0; i < threads; i++) {
+			BinaryMapIndexReader[] rs = new BinaryMapIndexReader[obfFiles.size()];
+			for (int k = 0; k < rs.length; k++) {
+				RandomAccessFile raf = new RandomAccessFile(obfFiles.get(k), "r");
+				rs[k] = first == null ? new BinaryMapIndexReader(raf, obfFiles.get(k)) : new BinaryMapIndexReader(raf, first[k]);
+			}
+			if (first == null) {
+				first = rs;
+			}
+			allReaders.add(rs);
+			readers.add(rs);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<QueryResult>> futures = new ArrayList<Future<QueryResult>>();
+			for (final RouteQuery q : queries) {
+				final RoutingConfiguration rconfig = buildConfiguration(q);
+				futures.add(executor.submit(new Callable<QueryResult>() {
+					@Override
+					public QueryResult call() throws Exception {
+						BinaryMapIndexReader[] rs = readers.take();
+						try {
+							return runQuery(q, rconfig, rs);
+						} finally {
+							readers.add(rs);
+						}
+					}
+				}));
+			}
+			List<QueryResult> results = new ArrayList<QueryResult>();
+			for (Future<QueryResult> f : futures) {
+				try {
+					results.add(f.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+			for (BinaryMapIndexReader[] rs : allReaders) {
+				for (BinaryMapIndexReader r : rs) {
+					r.close();
+				}
+			}
+		}
+	}
+
+	private RoutingConfiguration buildConfiguration(RouteQuery q) {
+		// params are always passed, so every query gets own copy of router
+		return config.build(q.vehicle, memoryLimitMB, new LinkedHashMap<String, String>(q.params));
+	}
+
+	private QueryResult runQuery(RouteQuery q, RoutingConfiguration rconfig, BinaryMapIndexReader[] rs) {
+		QueryResult res = new QueryResult(q);
+		long time = System.nanoTime();
+		try {
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			RoutingContext ctx = frontEnd.buildRoutingContext(rconfig, null, rs);
+			ctx.calculationProgress = new RouteCalculationProgress();
+			List<RouteSegmentResult> route = frontEnd.searchRoute(ctx, q.start, q.end, q.intermediates);
+			res.latencyMs = (System.nanoTime() - time) / 1000000;
+			res.success = route != null && !route.isEmpty();
+			if (route != null) {
+				for (RouteSegmentResult r : route) {
+					res.routeDistance += r.getDistance();
+					res.routeTime += r.getSegmentTime();
+				}
+			}
+			res.routingTime = ctx.routingTime;
+			res.visitedSegments = ctx.visitedSegments;
+			res.relaxedSegments = ctx.relaxedSegments;
+			res.queuePushes = ctx.calculationProgress.queuePushes;
+			res.loadedTiles = ctx.loadedTiles;
+			res.distinctLoadedTiles = ctx.distinctLoadedTiles;
+			res.peakMemory = ctx.calculationProgress.getPeakMemory();
+			if (!res.success) {
+				res.error = "Route is not found";
+			}
+		} catch (Exception e) {
+			res.latencyMs = (System.nanoTime() - time) / 1000000;
+			res.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+		return res;
+	}
+
+	public static List<RouteQuery> readQueries(File file, String defaultVehicle) throws IOException {
+		StringBuilder content = new StringBuilder();
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				content.append(line).append('\n');
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		if (content.toString().trim().startsWith("[")) {
+			return readJsonQueries(new JSONArray(content.toString()), defaultVehicle);
+		}
+		return readCsvQueries(lines, defaultVehicle);
+	}
+
+	private static List<RouteQuery> readCsvQueries(List<String> lines, String defaultVehicle) {
+		List<RouteQuery> queries = new ArrayList<RouteQuery>();
+		for (String line : lines) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			String[] vls = line.split(",");
+			if (vls.length < 5) {
+				throw new IllegalArgumentException("Wrong query line : " + line);
+			}
+			try {
+				RouteQuery q = new RouteQuery();
+				q.name = vls[0].trim();
+				q.start = new LatLon(Double.parseDouble(vls[1].trim()), Double.parseDouble(vls[2].trim()));
+				q.end = new LatLon(Double.parseDouble(vls[3].trim()), Double.parseDouble(vls[4].trim()));
+				q.vehicle = vls.length > 5 && vls[5].trim().length() > 0 ? vls[5].trim() : defaultVehicle;
+				queries.add(q);
+			} catch (NumberFormatException e) {
+				// header line
+				if (!queries.isEmpty()) {
+					throw new IllegalArgumentException("Wrong query line : " + line);
+				}
+			}
+		}
+		return queries;
+	}
+
+	private static List<RouteQuery> readJsonQueries(JSONArray arr, String defaultVehicle) {
+		List<RouteQuery> queries = new ArrayList<RouteQuery>();
+		for (int i = 0; i < arr.length(); i++) {
+			JSONObject o = arr.getJSONObject(i);
+			if (o.optBoolean("ignore", false)) {
+				continue;
+			}
+			RouteQuery q = new RouteQuery();
+			q.name = o.optString("testName", String.valueOf(i));
+			q.start = parseLatLon(o.getJSONObject("startPoint"));
+			q.end = parseLatLon(o.getJSONObject("endPoint"));
+			for (int k = 1; k <= 3; k++) {
+				if (o.has("transitPoint" + k)) {
+					q.intermediates.add(parseLatLon(o.getJSONObject("transitPoint" + k)));
+				}
+			}
+			q.vehicle = defaultVehicle;
+			JSONObject params = o.optJSONObject("params");
+			if (params != null) {
+				Iterator<String> keys = params.keys();
+				while (keys.hasNext()) {
+					String k = keys.next();
+					q.params.put(k, params.get(k).toString());
+				}
+				if (q.params.containsKey("vehicle")) {
+					q.vehicle = q.params.remove("vehicle");
+				}
+			}
+			queries.add(q);
+		}
+		return queries;
+	}
+
+	private static LatLon parseLatLon(JSONObject o) {
+		return new LatLon(o.getDouble("latitude"), o.getDouble("longitude"));
+	}
+
+	public static void writeResults(List<QueryResult> results, PrintWriter out) {
+		out.println("name,vehicle,success,latency_ms,routing_time,route_distance,route_time,visited_segments,"
+				+ "relaxed_segments,queue_pushes,loaded_tiles,distinct_loaded_tiles,peak_memory_mb,error");
+		for (QueryResult r : results) {
+			out.println(String.format(Locale.US, "%s,%s,%b,%d,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d,%.1f,%s", r.query.name,
+					r.query.vehicle, r.success, r.latencyMs, r.routingTime, r.routeDistance, r.routeTime,
+					r.visitedSegments, r.relaxedSegments, r.queuePushes, r.loadedTiles, r.distinctLoadedTiles,
+					r.peakMemory / (float) (1 << 20), r.error == null ? "" : r.error.replace(',', ';')));
+		}
+		out.flush();
+	}
+
+	public static void printSummary(List<QueryResult> results, long totalTimeMs, PrintStream out) {
+		int failed = 0;
+		long[] latencies = new long[results.size()];
+		long visited = 0;
+		for (int i = 0; i < results.size(); i++) {
+			QueryResult r = results.get(i);
+			latencies[i] = r.latencyMs;
+			visited += r.visitedSegments;
+			if (!r.success) {
+				failed++;
+			}
+		}
+		Arrays.sort(latencies);
+		out.println(String.format(Locale.US, "Queries %d, failed %d, total %d ms, throughput %.2f routes/s",
+				results.size(), failed, totalTimeMs, totalTimeMs == 0 ? 0 : results.size() * 1000f / totalTimeMs));
+		out.println(String.format(Locale.US, "Latency ms : p50 %d, p95 %d, p99 %d, max %d",
+				percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+				latencies.length == 0 ? 0 : latencies[latencies.length - 1]));
+		out.println("Visited segments " + visited);
+	}
+
+	/**
+	 * Nearest rank percentile of sorted values
+	 */
+	public static long percentile(long[] sorted, int p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+
+	public static void main(String[] args) throws Exception {
+		String obfDir = null;
+		String queriesFile = null;
+		String routingXml = null;
+		String out = null;
+		String vehicle = "car";
+		int threads = Runtime.getRuntime().availableProcessors();
+		int memory = TestRouting.MEMORY_TEST_LIMIT;
+		for (String a : args) {
+			if (a.startsWith("-obfDir=")) {
+				obfDir = a.substring("-obfDir=".length());
+			} else if (a.startsWith("-queries=")) {
+				queriesFile = a.substring("-queries=".length());
+			} else if (a.startsWith("-routingXmlPath=")) {
+				routingXml = a.substring("-routingXmlPath=".length());
+			} else if (a.startsWith("-vehicle=")) {
+				vehicle = a.substring("-vehicle=".length());
+			} else if (a.startsWith("-threads=")) {
+				threads = Integer.parseInt(a.substring("-threads=".length()));
+			} else if (a.startsWith("-memory=")) {
+				memory = Integer.parseInt(a.substring("-memory=".length()));
+			} else if (a.startsWith("-out=")) {
+				out = a.substring("-out=".length());
+			}
+		}
+		if (obfDir == null || queriesFile == null) {
+			System.out.println("Usage : RouteBatchRunner -obfDir=PATH -queries=FILE [-routingXmlPath=routing.xml] "
+					+ "[-vehicle=car] [-threads=N] [-memory=MB] [-out=FILE]");
+			return;
+		}
+		List<File> files = new ArrayList<File>();
+		File[] fs = new File(obfDir).listFiles();
+		if (fs != null) {
+			for (File f : fs) {
+				if (f.getName().endsWith(".obf")) {
+					files.add(f);
+				}
+			}
+		}
+		// own builder, shared default configuration is not modified by the run
+		RoutingConfiguration.Builder config = RoutingConfiguration.parseFromInputStream(
+				routingXml == null || routingXml.equals("routing.xml") ? RoutingConfiguration.class
+						.getResourceAsStream("routing.xml") : new FileInputStream(routingXml));
+		RouteBatchRunner runner = new RouteBatchRunner(config, files);
+		runner.setThreads(threads);
+		runner.setMemoryLimitMB(memory);
+		List<RouteQuery> queries = readQueries(new File(queriesFile), vehicle);
+		long time = System.currentTimeMillis();
+		List<QueryResult> results = runner.run(queries);
+		long totalTime = System.currentTimeMillis() - time;
+		PrintWriter w = out == null ? new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"))
+				: new PrintWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF-8"));
+		writeResults(results, w);
+		if (out != null) {
+			w.close();
+		}
+		printSummary(results, totalTime, System.out);
+	}
+}
@@ -15,6 +15,24 @@ public class RouteCalculationProgress {
 	public int loadedTiles = 0;
 	public int visitedSegments = 0;
 	
+	// priority queue statistics
+	public int queuePushes = 0;
+	public int queuePolls = 0;
+	public int queueDecreaseKeys = 0;
+	// pushes of already queued segments with worse priority (not stored)
+	public int queueIgnoredPushes = 0;
+	// polled segments which were already visited
+	public int queueStaleEntries = 0;
+	public int maxQueueSize = 0;
+	
+	// estimated memory in bytes (current and peak) : loaded tiles, priority queues, visited segments
+	public long tilesMemory = 0;
+	public long peakTilesMemory = 0;
+	public long queueMemory = 0;
+	public long peakQueueMemory = 0;
+	public long visitedMemory = 0;
+	public long peakVisitedMemory = 0;
+	
 	public int totalIterations = 1;
 	public int iteration = -1;
 	
@@ -44,6 +62,23 @@ public class RouteCalculationProgress {
 		return Math.min(progress * 100f, 99);
 	}
 
+	public void updateMemory(long tiles, long queue, long visited) {
+		tilesMemory = tiles;
+		queueMemory = queue;
+		visitedMemory = visited;
+		peakTilesMemory = Math.max(peakTilesMemory, tiles);
+		peakQueueMemory = Math.max(peakQueueMemory, queue);
+		peakVisitedMemory = Math.max(peakVisitedMemory, visited);
+	}
+
+	public long getPeakMemory() {
+		return peakTilesMemory + peakQueueMemory + peakVisitedMemory;
+	}
+
+	public float getQueueStaleRatio() {
+		return queuePolls == 0 ? 0 : ((float) queueStaleEntries) / queuePolls;
+	}
+
 	public void nextIteration() {
 		iteration++;
 		totalEstimatedDistance = 0;
@@ -0,0 +1,421 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+/**
+ * Calculates travel time and distance matrices between origins and destinations.
+ * For each origin one-to-many Dijkstra search over road points runs until all destinations are settled,
+ * searches of different origins run in parallel and share routing context with its loaded tiles.
+ * Segment times, turn times and turn restrictions are the same as in {@link BinaryRoutePlanner},
+ * so matrix entries match times of point to point routes.
+ */
+public class RouteMatrixPlanner {
+
+	private final static Log log = PlatformUtil.getLog(RouteMatrixPlanner.class);
+
+	public static final float UNREACHABLE = -1;
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	// seconds, search is stopped when it is reached (0 - not limited)
+	private float maxTime = 0;
+
+	public RouteMatrixPlanner(RoutePlannerFrontEnd frontEnd) {
+		this.frontEnd = frontEnd;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setMaxTime(float maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	public static class RouteMatrix {
+		// [origin][destination] in seconds, UNREACHABLE if route is not found
+		public final float[][] times;
+		// [origin][destination] in meters, UNREACHABLE if route is not found
+		public final float[][] distances;
+
+		RouteMatrix(int origins, int destinations) {
+			times = new float[origins][destinations];
+			distances = new float[origins][destinations];
+		}
+	}
+
+	public RouteMatrix calculate(final RoutingContext ctx, List<LatLon> points) throws IOException, InterruptedException {
+		return calculate(ctx, points, points);
+	}
+
+	public RouteMatrix calculate(final RoutingContext ctx, List<LatLon> origins, List<LatLon> destinations)
+			throws IOException, InterruptedException {
+		long time = System.currentTimeMillis();
+		final RouteMatrix matrix = new RouteMatrix(origins.size(), destinations.size());
+		// tile loading for projections is not thread safe
+		final List<RouteSegmentPoint> originSegments = findRouteSegments(ctx, origins);
+		final List<RouteSegmentPoint> destinationSegments = findRouteSegments(ctx, destinations);
+		final TLongObjectHashMap<List<TargetLink>> targets = new TLongObjectHashMap<List<TargetLink>>();
+		final int targetsCount = initTargets(ctx, destinationSegments, targets);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, origins.size())));
+		boolean concurrentTileLoading = ctx.concurrentTileLoading;
+		ctx.concurrentTileLoading = true;
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < originSegments.size(); i++) {
+				final int row = i;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						new OneToManySearch(ctx, targets, targetsCount, matrix.times[row], matrix.distances[row])
+								.search(originSegments.get(row), destinationSegments);
+						return null;
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			ctx.concurrentTileLoading = concurrentTileLoading;
+		}
+		log.info(String.format("Route matrix %d x %d calculated in %d ms", origins.size(), destinations.size(),
+				System.currentTimeMillis() - time));
+		return matrix;
+	}
+
+	private List<RouteSegmentPoint> findRouteSegments(RoutingContext ctx, List<LatLon> points) throws IOException {
+		List<RouteSegmentPoint> res = new ArrayList<RouteSegmentPoint>();
+		for (LatLon l : points) {
+			RouteSegmentPoint p = frontEnd.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			if (p == null) {
+				log.warn("Point " + l + " is not found on roads");
+			}
+			res.add(p);
+		}
+		return res;
+	}
+
+	private int initTargets(RoutingContext ctx, List<RouteSegmentPoint> destinations,
+			TLongObjectHashMap<List<TargetLink>> targets) {
+		int count = 0;
+		for (int i = 0; i < destinations.size(); i++) {
+			RouteSegmentPoint d = destinations.get(i);
+			if (d == null) {
+				continue;
+			}
+			RouteDataObject road = d.getRoad();
+			int oneway = ctx.getRouter().isOneWay(road);
+			int end = d.getSegmentStart();
+			// moving to destination from previous point is positive direction,
+			// as in BinaryRoutePlanner segment of destination is passed till its end
+			if (oneway >= 0) {
+				addTargetLink(ctx, targets, i, road, end - 1, true);
+			}
+			if (oneway <= 0) {
+				addTargetLink(ctx, targets, i, road, end, false);
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private void addTargetLink(RoutingContext ctx, TLongObjectHashMap<List<TargetLink>> targets, int target,
+			RouteDataObject road, int ind, boolean positive) {
+		long key = stateKey(road, ind, positive);
+		List<TargetLink> l = targets.get(key);
+		if (l == null) {
+			l = new ArrayList<TargetLink>();
+			targets.put(key, l);
+		}
+		int end = positive ? ind + 1 : ind - 1;
+		float dist = (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(ind), road.getPoint31YTile(ind),
+				road.getPoint31XTile(end), road.getPoint31YTile(end));
+		l.add(new TargetLink(target, dist, BinaryRoutePlanner.calculateTimeWithObstacles(ctx, road, dist, 0)));
+	}
+
+	// road point and direction to move further from it
+	private static long stateKey(RouteDataObject road, int ind, boolean positive) {
+		return (road.getId() << 16) + (ind << 1) + (positive ? 1 : 0);
+	}
+
+	private static class TargetLink {
+		final int target;
+		final float distance;
+		final float time;
+
+		TargetLink(int target, float distance, float time) {
+			this.target = target;
+			this.distance = distance;
+			this.time = time;
+		}
+	}
+
+	private static class SearchState {
+		final RouteDataObject road;
+		final int ind;
+		final boolean positive;
+		// last road with different id, needed to check via restrictions
+		RouteDataObject parentRoad;
+		float time = Float.POSITIVE_INFINITY;
+		float distance;
+		boolean settled;
+
+		SearchState(RouteDataObject road, int ind, boolean positive) {
+			this.road = road;
+			this.ind = ind;
+			this.positive = positive;
+		}
+	}
+
+	private static class QueueEntry implements Comparable<QueueEntry> {
+		final SearchState state;
+		final float time;
+
+		QueueEntry(SearchState state, float time) {
+			this.state = state;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(QueueEntry o) {
+			return Float.compare(time, o.time);
+		}
+	}
+
+	/**
+	 * Dijkstra search over road points reached in direction of movement, so turn restrictions and turn times
+	 * are applied on intersections the same way as {@link BinaryRoutePlanner} does.
+	 */
+	private class OneToManySearch {
+		private final RoutingContext ctx;
+		private final TLongObjectHashMap<List<TargetLink>> targets;
+		private final float[] times;
+		private final float[] distances;
+		private final int targetsCount;
+		private int targetsReached;
+		private float maxTargetTime = -1;
+		private final TLongObjectHashMap<SearchState> states = new TLongObjectHashMap<SearchState>();
+		private final PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		// restrictions are processed with own lists, context lists are used by other searches
+		private final List<RouteSegment> prescripted = new ArrayList<RouteSegment>(5);
+		private final List<RouteSegment> notForbidden = new ArrayList<RouteSegment>(5);
+
+		OneToManySearch(RoutingContext ctx, TLongObjectHashMap<List<TargetLink>> targets, int targetsCount,
+				float[] times, float[] distances) {
+			this.ctx = ctx;
+			this.targets = targets;
+			this.targetsCount = targetsCount;
+			this.times = times;
+			this.distances = distances;
+			for (int i = 0; i < times.length; i++) {
+				times[i] = UNREACHABLE;
+				distances[i] = UNREACHABLE;
+			}
+		}
+
+		void search(RouteSegmentPoint origin, List<RouteSegmentPoint> destinations) throws InterruptedException {
+			if (origin == null) {
+				return;
+			}
+			RouteDataObject road = origin.getRoad();
+			int oneway = ctx.getRouter().isOneWay(road);
+			int end = origin.getSegmentStart();
+			// as in BinaryRoutePlanner segment of origin is passed from its start
+			if (oneway >= 0) {
+				visit(road, end, true, null, road.getPoint31XTile(end - 1), road.getPoint31YTile(end - 1), 0, 0);
+			}
+			if (oneway <= 0) {
+				visit(road, end - 1, false, null, road.getPoint31XTile(end), road.getPoint31YTile(end), 0, 0);
+			}
+			checkSameSegment(origin, destinations, oneway);
+			while (!queue.isEmpty()) {
+				QueueEntry e = queue.poll();
+				SearchState s = e.state;
+				if (s.settled || e.time > s.time) {
+					continue;
+				}
+				if (maxTime > 0 && s.time > maxTime) {
+					break;
+				}
+				// times of targets could not be improved by states reached later
+				if (targetsReached == targetsCount && getMaxTargetTime() <= s.time) {
+					break;
+				}
+				s.settled = true;
+				expand(s);
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route matrix calculation interrupted");
+				}
+			}
+		}
+
+		private void checkSameSegment(RouteSegmentPoint origin, List<RouteSegmentPoint> destinations, int oneway) {
+			for (int i = 0; i < destinations.size(); i++) {
+				RouteSegmentPoint d = destinations.get(i);
+				if (d != null && d.getRoad().getId() == origin.getRoad().getId()
+						&& d.getSegmentStart() == origin.getSegmentStart()) {
+					int ind = origin.getSegmentStart();
+					RouteDataObject road = origin.getRoad();
+					// positive direction goes from point ind - 1 to ind
+					double fromStart = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(ind - 1),
+							road.getPoint31YTile(ind - 1), origin.preciseX, origin.preciseY);
+					double toStart = BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(ind - 1),
+							road.getPoint31YTile(ind - 1), d.preciseX, d.preciseY);
+					boolean positive = toStart >= fromStart;
+					if ((positive && oneway >= 0) || (!positive && oneway <= 0)) {
+						float dist = (float) Math.abs(toStart - fromStart);
+						offer(i, BinaryRoutePlanner.calculateTimeWithObstacles(ctx, road, dist, 0), dist);
+					}
+				}
+			}
+		}
+
+		private float getMaxTargetTime() {
+			if (maxTargetTime < 0) {
+				for (int i = 0; i < times.length; i++) {
+					maxTargetTime = Math.max(maxTargetTime, times[i]);
+				}
+			}
+			return maxTargetTime;
+		}
+
+		private void offer(int target, float time, float distance) {
+			if (times[target] == UNREACHABLE || time < times[target]) {
+				if (times[target] == UNREACHABLE) {
+					targetsReached++;
+				}
+				times[target] = time;
+				distances[target] = distance;
+				maxTargetTime = -1;
+			}
+		}
+
+		private void offerTargets(RouteDataObject road, int ind, boolean positive, float time, float distance) {
+			List<TargetLink> links = targets.get(stateKey(road, ind, positive));
+			if (links != null) {
+				for (TargetLink l : links) {
+					offer(l.target, time + l.time, distance + l.distance);
+				}
+			}
+		}
+
+		private void expand(SearchState s) {
+			RouteDataObject road = s.road;
+			int x = road.getPoint31XTile(s.ind);
+			int y = road.getPoint31YTile(s.ind);
+			int nextInd = s.positive ? s.ind + 1 : s.ind - 1;
+			if (nextInd >= 0 && nextInd < road.getPointsLength()) {
+				offerTargets(road, s.ind, s.positive, s.time, s.distance);
+				visit(road, nextInd, s.positive, s.parentRoad, x, y, s.time, s.distance);
+			}
+			RouteSegment inputNext = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation);
+			if (inputNext == null || (inputNext.getRoad().getId() == road.getId() && inputNext.getNext() == null)) {
+				return;
+			}
+			Iterator<RouteSegment> it;
+			if (BinaryRoutePlanner.proccessRestrictions(ctx, road, s.parentRoad, inputNext, false, prescripted,
+					notForbidden)) {
+				it = prescripted.iterator();
+			} else {
+				it = inputNext.getIterator();
+			}
+			while (it.hasNext()) {
+				RouteSegment next = it.next();
+				if (next.getRoad().getId() == road.getId() && next.getSegmentStart() == s.ind) {
+					// road itself is continued above
+					continue;
+				}
+				turn(s, next, true);
+				turn(s, next, false);
+			}
+		}
+
+		private void turn(SearchState s, RouteSegment next, boolean positive) {
+			RouteDataObject road = next.getRoad();
+			int start = next.getSegmentStart();
+			int oneway = ctx.getRouter().isOneWay(road);
+			int nextInd = positive ? start + 1 : start - 1;
+			if ((positive ? oneway < 0 : oneway > 0) || nextInd < 0 || nextInd >= road.getPointsLength()) {
+				return;
+			}
+			// segments are created to not change direction of segments shared by context
+			float turnTime = (float) ctx.getRouter().calculateTurnTime(new RouteSegment(road, start),
+					positive ? road.getPointsLength() - 1 : 0,
+					new RouteSegment(s.road, s.positive ? s.ind - 1 : s.ind + 1), s.ind);
+			float time = s.time + turnTime;
+			RouteDataObject parentRoad = road.getId() == s.road.getId() ? s.parentRoad : s.road;
+			offerTargets(road, start, positive, time, s.distance);
+			visit(road, nextInd, positive, parentRoad, road.getPoint31XTile(start), road.getPoint31YTile(start),
+					time, s.distance);
+		}
+
+		private void visit(RouteDataObject road, int ind, boolean positive, RouteDataObject parentRoad, int fromX,
+				int fromY, float time, float distance) {
+			int x = road.getPoint31XTile(ind);
+			int y = road.getPoint31YTile(ind);
+			float dist = 0;
+			float obstaclesTime = 0;
+			if (x != fromX || y != fromY) {
+				float obstacle = ctx.getRouter().defineRoutingObstacle(road, ind);
+				if (obstacle < 0) {
+					return;
+				}
+				double heightObstacle = ctx.getRouter().defineHeightObstacle(road,
+						(short) (positive ? ind - 1 : ind + 1), (short) ind);
+				if (heightObstacle < 0) {
+					return;
+				}
+				dist = (float) BinaryRoutePlanner.squareRootDist(fromX, fromY, x, y);
+				obstaclesTime = (float) (obstacle + heightObstacle);
+			}
+			long key = stateKey(road, ind, positive);
+			SearchState s = states.get(key);
+			if (s == null) {
+				s = new SearchState(road, ind, positive);
+				states.put(key, s);
+			} else if (s.settled) {
+				return;
+			}
+			float t = time + BinaryRoutePlanner.calculateTimeWithObstacles(ctx, road, dist, obstaclesTime);
+			if (t < s.time) {
+				s.time = t;
+				s.distance = distance + dist;
+				s.parentRoad = parentRoad;
+				queue.add(new QueueEntry(s, t));
+			}
+		}
+	}
+}
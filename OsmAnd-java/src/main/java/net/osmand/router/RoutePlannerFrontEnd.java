@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
@@ -29,6 +30,13 @@ public class RoutePlannerFrontEnd {
 	// Check issue #8649
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public boolean useSmartRouteRecalculation = true;
+	/**
+	 * Use precalculated contraction hierarchy (*.chg next to obf) when it is available. Hierarchy is built per
+	 * {@link RouteRegion}, so it is used only when single region contains both start and end points
+	 * (otherwise route is calculated by A*). Profiles with turn time are not supported
+	 * (see {@link ContractionHierarchy#isSupported(GeneralRouter)}).
+	 */
+	public boolean useContractionHierarchy = false;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -40,6 +48,10 @@ public class RoutePlannerFrontEnd {
 		COMPLEX
 	}
 
+	public void setUseContractionHierarchy(boolean useContractionHierarchy) {
+		this.useContractionHierarchy = useContractionHierarchy;
+	}
+
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map, RouteCalculationMode rm) {
 		return new RoutingContext(config, nativeLibrary, map, rm);
 	}
@@ -195,6 +207,12 @@ public class RoutePlannerFrontEnd {
 				b = l;
 			}
 		}
+		if (intermediatesEmpty && ctx.nativeLib == null) {
+			List<RouteSegmentResult> res = searchRouteByHierarchy(ctx, start, end);
+			if (res != null) {
+				return res;
+			}
+		}
 		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
 				&& maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
 			ctx.calculationProgress.totalIterations++;
@@ -336,6 +354,9 @@ public class RoutePlannerFrontEnd {
 		}
 
 		if (insert != 0) {
+			// object could be shared with other contexts by tile caches, so point is inserted into its copy
+			r = new RouteDataObject(r);
+			routeSegmentResult.setObject(r);
 			if (st && routeSegmentResult.getStartPointIndex() < routeSegmentResult.getEndPointIndex()) {
 				routeSegmentResult.setEndPointIndex(routeSegmentResult.getEndPointIndex() + 1);
 			}
@@ -393,6 +414,53 @@ public class RoutePlannerFrontEnd {
 		}
 	}
 
+	/**
+	 * @return route found by contraction hierarchy or null if there is no hierarchy or route should be found by A*
+	 * (with base route direction if needed)
+	 */
+	private List<RouteSegmentResult> searchRouteByHierarchy(RoutingContext ctx, LatLon start, LatLon end)
+			throws IOException {
+		ContractionHierarchy ch = getContractionHierarchy(ctx, MapUtils.get31TileNumberX(start.getLongitude()),
+				MapUtils.get31TileNumberY(start.getLatitude()), MapUtils.get31TileNumberX(end.getLongitude()),
+				MapUtils.get31TileNumberY(end.getLatitude()));
+		if (ch == null || getRecalculationEnd(ctx) != null) {
+			return null;
+		}
+		RouteSegmentPoint s = findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null, ctx.startTransportStop);
+		RouteSegmentPoint e = findRouteSegment(end.getLatitude(), end.getLongitude(), ctx, null, ctx.targetTransportStop);
+		if (s == null || e == null) {
+			return null;
+		}
+		ctx.initStartAndTargetPoints(s, e);
+		List<RouteSegmentResult> res = ch.searchRoute(ctx, s, e);
+		if (res == null) {
+			return null;
+		}
+		ctx.calculationProgress.nextIteration();
+		res = new RouteResultPreparation().prepareResult(ctx, res, false);
+		makeStartEndPointsPrecise(res, start, end, null);
+		new RouteResultPreparation().printResults(ctx, start, end, res);
+		return res;
+	}
+
+	private ContractionHierarchy getContractionHierarchy(RoutingContext ctx, int sx31, int sy31, int ex31, int ey31) {
+		if (!useContractionHierarchy || !(ctx.getRouter() instanceof GeneralRouter)
+				|| !ContractionHierarchy.isSupported((GeneralRouter) ctx.getRouter())) {
+			return null;
+		}
+		for (Map.Entry<RouteRegion, BinaryMapIndexReader> e : ctx.reverseMap.entrySet()) {
+			RouteRegion reg = e.getKey();
+			if (reg.contains(sx31, sy31) && reg.contains(ex31, ey31) && e.getValue().getFile() != null) {
+				ContractionHierarchy ch = ContractionHierarchy.getHierarchy(e.getValue().getFile(), reg,
+						(GeneralRouter) ctx.getRouter());
+				if (ch != null) {
+					return ch;
+				}
+			}
+		}
+		return null;
+	}
+
 	public RouteSegment getRecalculationEnd(final RoutingContext ctx) {
 		RouteSegment recalculationEnd = null;
 		boolean runRecalculation = ctx.previouslyCalculatedRoute != null && ctx.previouslyCalculatedRoute.size() > 0
@@ -102,8 +102,7 @@ public class RouteResultPreparation {
 				nobj.restrictions = null;
 				nobj.restrictionsVia = null;
 				nobj.pointTypes = null;
-				nobj.pointNames = null;
-				nobj.pointNameTypes = null;
+				nobj.setPointNames(null, null);
 				RouteSegmentResult nrsr = new RouteSegmentResult(nobj, 0, newsize - 1);
 				result.set(i, nrsr);
 			}
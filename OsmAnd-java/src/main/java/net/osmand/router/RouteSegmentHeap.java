@@ -0,0 +1,305 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Binary min heap of route segments keyed by route point id (the same id as used for visited segments).
+ * Pushing a segment which is already queued only decreases its key, so the queue never contains
+ * 2 entries for the same route point.
+ */
+public class RouteSegmentHeap {
+
+	private float[] keys;
+	private long[] ids;
+	private RouteSegment[] segments;
+	private int size;
+	// id -> position in heap
+	private final PositionMap positions = new PositionMap();
+	private long uniqueId = -1;
+
+	private int pushes;
+	private int polls;
+	private int decreaseKeys;
+	private int ignoredPushes;
+	private int staleEntries;
+	private int maxSize;
+
+	public RouteSegmentHeap(int initialCapacity) {
+		initialCapacity = Math.max(initialCapacity, 4);
+		keys = new float[initialCapacity];
+		ids = new long[initialCapacity];
+		segments = new RouteSegment[initialCapacity];
+	}
+
+	/**
+	 * Id for segments which are not bound to route point (final segments), always negative
+	 */
+	public long nextUniqueId() {
+		return uniqueId--;
+	}
+
+	/**
+	 * @return true if segment was added or key was decreased
+	 */
+	public boolean push(RouteSegment segment, long id, float key) {
+		pushes++;
+		int pos = positions.get(id);
+		if (pos >= 0) {
+			if (key < keys[pos]) {
+				decreaseKeys++;
+				keys[pos] = key;
+				segments[pos] = segment;
+				siftUp(pos);
+				return true;
+			}
+			ignoredPushes++;
+			return false;
+		}
+		if (size == keys.length) {
+			int ncapacity = keys.length + (keys.length >> 1);
+			keys = Arrays.copyOf(keys, ncapacity);
+			ids = Arrays.copyOf(ids, ncapacity);
+			segments = Arrays.copyOf(segments, ncapacity);
+		}
+		keys[size] = key;
+		ids[size] = id;
+		segments[size] = segment;
+		positions.put(id, size);
+		size++;
+		maxSize = Math.max(maxSize, size);
+		siftUp(size - 1);
+		return true;
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		polls++;
+		RouteSegment s = segments[0];
+		positions.remove(ids[0]);
+		removeTop();
+		return s;
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	public float peekKey() {
+		return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+	}
+
+	/**
+	 * Owner of the heap reports polled segment which was already visited
+	 */
+	public void staleEntryPolled() {
+		staleEntries++;
+	}
+
+	public boolean contains(long id) {
+		return positions.get(id) >= 0;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(segments, 0, size, null);
+		size = 0;
+		positions.clear();
+	}
+
+	public int getPushes() {
+		return pushes;
+	}
+
+	public int getPolls() {
+		return polls;
+	}
+
+	public int getDecreaseKeys() {
+		return decreaseKeys;
+	}
+
+	/**
+	 * Pushes of already queued segment with not better key
+	 */
+	public int getIgnoredPushes() {
+		return ignoredPushes;
+	}
+
+	/**
+	 * Polled entries reported as stale by owner of the heap
+	 */
+	public int getStaleEntries() {
+		return staleEntries;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private void removeTop() {
+		size--;
+		if (size > 0) {
+			move(size, 0);
+			siftDown(0);
+		}
+		segments[size] = null;
+	}
+
+	private void siftUp(int pos) {
+		float key = keys[pos];
+		long id = ids[pos];
+		RouteSegment s = segments[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			move(parent, pos);
+			pos = parent;
+		}
+		set(pos, key, id, s);
+	}
+
+	private void siftDown(int pos) {
+		float key = keys[pos];
+		long id = ids[pos];
+		RouteSegment s = segments[pos];
+		int half = size >> 1;
+		while (pos < half) {
+			int child = (pos << 1) + 1;
+			int right = child + 1;
+			if (right < size && keys[right] < keys[child]) {
+				child = right;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			move(child, pos);
+			pos = child;
+		}
+		set(pos, key, id, s);
+	}
+
+	private void move(int from, int to) {
+		set(to, keys[from], ids[from], segments[from]);
+	}
+
+	private void set(int pos, float key, long id, RouteSegment s) {
+		keys[pos] = key;
+		ids[pos] = id;
+		segments[pos] = s;
+		positions.put(id, pos);
+	}
+
+	/**
+	 * Open addressing long -> int map (linear probing, backward shift deletion)
+	 */
+	private static class PositionMap {
+		private static final long FREE = Long.MIN_VALUE;
+		private long[] mkeys;
+		private int[] mvalues;
+		private int msize;
+		private int mask;
+
+		PositionMap() {
+			init(64);
+		}
+
+		private void init(int capacity) {
+			mkeys = new long[capacity];
+			mvalues = new int[capacity];
+			Arrays.fill(mkeys, FREE);
+			mask = capacity - 1;
+			msize = 0;
+		}
+
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		int get(long key) {
+			int i = slot(key);
+			while (mkeys[i] != FREE) {
+				if (mkeys[i] == key) {
+					return mvalues[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+
+		void put(long key, int value) {
+			int i = slot(key);
+			while (mkeys[i] != FREE) {
+				if (mkeys[i] == key) {
+					mvalues[i] = value;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			mkeys[i] = key;
+			mvalues[i] = value;
+			msize++;
+			if (msize * 2 > mkeys.length) {
+				rehash();
+			}
+		}
+
+		int remove(long key) {
+			int i = slot(key);
+			while (mkeys[i] != FREE) {
+				if (mkeys[i] == key) {
+					int value = mvalues[i];
+					shiftBack(i);
+					msize--;
+					return value;
+				}
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+
+		private void shiftBack(int free) {
+			int i = (free + 1) & mask;
+			while (mkeys[i] != FREE) {
+				int s = slot(mkeys[i]);
+				// entry at i can be moved to free slot if its ideal slot is not in (free, i]
+				if (((i - s) & mask) >= ((i - free) & mask)) {
+					mkeys[free] = mkeys[i];
+					mvalues[free] = mvalues[i];
+					free = i;
+				}
+				i = (i + 1) & mask;
+			}
+			mkeys[free] = FREE;
+		}
+
+		private void rehash() {
+			long[] okeys = mkeys;
+			int[] ovalues = mvalues;
+			init(okeys.length * 2);
+			for (int i = 0; i < okeys.length; i++) {
+				if (okeys[i] != FREE) {
+					put(okeys[i], ovalues[i]);
+				}
+			}
+		}
+
+		void clear() {
+			Arrays.fill(mkeys, FREE);
+			msize = 0;
+		}
+	}
+}
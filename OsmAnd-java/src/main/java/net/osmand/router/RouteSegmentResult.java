@@ -21,7 +21,7 @@ import gnu.trove.map.hash.TIntObjectHashMap;
 
 
 public class RouteSegmentResult implements StringExternalizable<RouteDataBundle> {
-	private final RouteDataObject object;
+	private RouteDataObject object;
 	private int startPointIndex;
 	private int endPointIndex;
 	private List<RouteSegmentResult>[] attachedRoutes;
@@ -77,6 +77,7 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 				rules.put(r, rules.size());
 			}
 		}
+		object.decodeNames();
 		if (object.nameIds != null) {
 			for (int nameId : object.nameIds) {
 				String name = object.names.get(nameId);
@@ -268,6 +269,7 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 		}
 		bundle.putLong("id", object.id);
 		bundle.putArray("types", convertTypes(object.types, rules));
+		object.decodeNames();
 
 		int start = Math.min(startPointIndex, endPointIndex);
 		int end = Math.max(startPointIndex, endPointIndex) + 1;
@@ -438,6 +440,10 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 	public RouteDataObject getObject() {
 		return object;
 	}
+
+	void setObject(RouteDataObject object) {
+		this.object = object;
+	}
 	
 	public float getSegmentTime() {
 		return segmentTime;
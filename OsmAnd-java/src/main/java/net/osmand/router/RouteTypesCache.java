@@ -0,0 +1,114 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of route types (encoding rule ids of one region) to values of evaluated attributes.
+ * Lookup is lock free and doesn't allocate, so one cache could be read by many routing threads.
+ * Values are added under lock, entries are immutable and never removed, table is replaced when it grows.
+ */
+public class RouteTypesCache {
+
+	private static final int INITIAL_CAPACITY = 32;
+
+	private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+	private int size;
+
+	public static int hash(int[] types) {
+		int h = 1;
+		for (int i = 0; i < types.length; i++) {
+			h = 31 * h + types[i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return cached values or null if types were not evaluated
+	 */
+	public float[] get(int[] types) {
+		return get(types, hash(types));
+	}
+
+	/**
+	 * @param h hash of types computed by {@link #hash(int[])}
+	 * @return cached values or null if types were not evaluated
+	 */
+	public float[] get(int[] types, int h) {
+		Entry[] t = table;
+		int mask = t.length - 1;
+		for (int i = h & mask;; i = (i + 1) & mask) {
+			Entry e = t[i];
+			if (e == null) {
+				return null;
+			}
+			if (e.hash == h && Arrays.equals(e.types, types)) {
+				return e.values;
+			}
+		}
+	}
+
+	/**
+	 * @param values should not be changed after put
+	 */
+	public void put(int[] types, float[] values) {
+		put(types, hash(types), values);
+	}
+
+	/**
+	 * @param h hash of types computed by {@link #hash(int[])}
+	 * @param values should not be changed after put
+	 */
+	public synchronized void put(int[] types, int h, float[] values) {
+		Entry[] t = table;
+		if ((size + 1) * 2 > t.length) {
+			t = grow(t);
+		}
+		// types array could be changed by owner later, so key is copied
+		if (insert(t, new Entry(types.clone(), h, values))) {
+			size++;
+		}
+		// publishes new table and entries written to current one
+		table = t;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	private static boolean insert(Entry[] t, Entry n) {
+		int mask = t.length - 1;
+		int i = n.hash & mask;
+		while (t[i] != null) {
+			if (t[i].hash == n.hash && Arrays.equals(t[i].types, n.types)) {
+				t[i] = n;
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		t[i] = n;
+		return true;
+	}
+
+	private static Entry[] grow(Entry[] t) {
+		Entry[] nt = new Entry[t.length * 2];
+		for (int i = 0; i < t.length; i++) {
+			if (t[i] != null) {
+				insert(nt, t[i]);
+			}
+		}
+		return nt;
+	}
+
+	private static class Entry {
+		// final fields make entry safely visible for readers without lock
+		final int[] types;
+		final int hash;
+		final float[] values;
+
+		Entry(int[] types, int hash, float[] values) {
+			this.types = types;
+			this.hash = hash;
+			this.values = values;
+		}
+	}
+}
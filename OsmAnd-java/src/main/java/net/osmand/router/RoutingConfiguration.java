@@ -34,6 +34,9 @@ public class RoutingConfiguration {
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// process direct and reverse search on separate threads (only for 2 ways),
+	// searches use exact average potentials instead of heuristicCoefficient
+	public boolean parallelBidirectionalSearch = false;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -107,6 +110,8 @@ public class RoutingConfiguration {
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
 //			i.planRoadDirection = 1;
+			i.parallelBidirectionalSearch = parseSilentBoolean(getAttribute(i.router, "parallelBidirectionalSearch"),
+					i.parallelBidirectionalSearch);
 			return i;
 		}
 
@@ -167,6 +172,13 @@ public class RoutingConfiguration {
 	}
 
 
+	public static boolean parseSilentBoolean(String t, boolean v) {
+		if (t == null || t.length() == 0) {
+			return v;
+		}
+		return Boolean.parseBoolean(t);
+	}
+
 	public static float parseSilentFloat(String t, float v) {
 		if (t == null || t.length() == 0) {
 			return v;
@@ -6,7 +6,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,7 +13,6 @@ import java.util.Map.Entry;
 
 import org.apache.commons.logging.Log;
 
-import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.iterator.TLongIterator;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
@@ -28,6 +26,7 @@ import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.RouteDataObject;
+import net.osmand.binary.TileCoverage;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
@@ -66,22 +65,30 @@ public class RoutingContext {
 	public boolean leftSideNavigation;
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
+	public RoutingMemoryBudget memoryBudget = new RoutingMemoryBudget.ConfiguredMemoryBudget();
 	
 	// 2. Routing memory cache (big objects)
 	TLongObjectHashMap<List<RoutingSubregionTile>> indexedSubregions = new TLongObjectHashMap<List<RoutingSubregionTile>>();
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
+	// tiles are loaded by several threads sharing this context (route matrix)
+	boolean concurrentTileLoading = false;
 	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	// separate lists for reverse search, so both directions could be processed in parallel
+	ArrayList<RouteSegment> segmentsToVisitPrescriptedReverse = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> segmentsToVisitNotForbiddenReverse = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
 	
 	// 5. debug information (package accessor)
 	public TileStatistics global = new TileStatistics();
 	// updated by route planner in bytes
 	public int memoryOverhead = 0;
+	// incremented on each tile access to unload least recently used tiles
+	long tileAccessCounter = 0;
 	
 	
 	long timeNanoToCalcDeviation = 0;
@@ -114,17 +121,8 @@ public class RoutingContext {
 		// copy local data and clear caches
 		for(RoutingSubregionTile tl : subregionTiles) {
 			if(tl.isLoaded()) {
+				// tiles keep only packed points, segments with search state are created per request
 				subregionTiles.add(tl);
-				for (RouteSegment rs : tl.routes.valueCollection()) {
-					RouteSegment s = rs;
-					while (s != null) {
-						s.parentRoute = null;
-						s.parentSegmentEnd = 0;
-						s.distanceFromStart = 0;
-						s.distanceToEnd = 0;
-						s = s.next;
-					}
-				}
 			}
 		}
 	}
@@ -188,6 +186,20 @@ public class RoutingContext {
 		return config.planRoadDirection == 0;
 	}
 
+	public boolean planRouteInParallel() {
+		// precalculated route direction is not thread safe
+		return config.parallelBidirectionalSearch && planRouteIn2Directions() && nativeLib == null
+				&& precalculatedRouteDirection == null;
+	}
+
+	ArrayList<RouteSegment> getSegmentsToVisitPrescripted(boolean reverseWay) {
+		return reverseWay ? segmentsToVisitPrescriptedReverse : segmentsToVisitPrescripted;
+	}
+
+	ArrayList<RouteSegment> getSegmentsToVisitNotForbidden(boolean reverseWay) {
+		return reverseWay ? segmentsToVisitNotForbiddenReverse : segmentsToVisitNotForbidden;
+	}
+
 	public int getPlanRoadDirection() {
 		return config.planRoadDirection;
 	}
@@ -220,6 +232,8 @@ public class RoutingContext {
 					tl.unload();
 					unloadedTiles ++;
 					global.size -= tl.tileStatistics.size;
+				} else {
+					tl.releaseCachedTile();
 				}
 			}
 		}
@@ -266,6 +280,15 @@ public class RoutingContext {
 
 	
 	public RouteSegment loadRouteSegment(int x31, int y31, int memoryLimit) {
+		if (concurrentTileLoading || planRouteInParallel()) {
+			synchronized (this) {
+				return loadRouteSegmentFromTiles(x31, y31, memoryLimit);
+			}
+		}
+		return loadRouteSegmentFromTiles(x31, y31, memoryLimit);
+	}
+
+	private RouteSegment loadRouteSegmentFromTiles(int x31, int y31, int memoryLimit) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -287,15 +310,31 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				RoutingTileCache.CachedTile cachedTile = RoutingTileCache.getInstance().acquire(reader, ts.subregion);
+				List<RouteDataObject> res;
+				if (cachedTile != null) {
+					ts.cachedTile = cachedTile;
+					res = cachedTile.getObjects();
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 				
+				// cached objects are shared between contexts, every context works with its own copies
+				boolean shared = cachedTile != null;
 				if(toLoad != null) {
-					toLoad.addAll(res);
+					for (RouteDataObject ro : res) {
+						toLoad.add(shared && ro != null ? new RouteDataObject(ro) : ro);
+					}
 				} else {
 					for(RouteDataObject ro : res){
 						if(ro != null) {
 							if(config.routeCalculationTime != 0) {
+								if (shared) {
+									ro = ro.copyMutable();
+								}
 								ro.processConditionalTags(config.routeCalculationTime);
+							} else if (shared) {
+								ro = new RouteDataObject(ro);
 							}
 							if(config.router.acceptLine(ro)) {
 								if(excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
@@ -325,6 +364,7 @@ public class RoutingContext {
 			timeToLoad += (System.nanoTime() - now);
 		}
 		loadedTiles++;
+		ts.lastAccess = ++tileAccessCounter;
 		if (wasUnloaded) {
 			if(ucount == 1) {
 				loadedPrevUnloadedTiles++;
@@ -386,6 +426,11 @@ public class RoutingContext {
 		List<RoutingSubregionTile> collection = null;
 		for (Entry<BinaryMapIndexReader, List<RouteSubregion>> r : map.entrySet()) {
 			// NOTE: load headers same as we do in non-native (it is not native optimized)
+			TileCoverage coverage = r.getKey().getCoverage(TileCoverage.ROUTE);
+			if (coverage != null && !coverage.intersects(request.getLeft(), request.getTop(), request.getRight(),
+					request.getBottom())) {
+				continue;
+			}
 			try {
 				if (r.getValue().size() > 0) {
 					long now = System.nanoTime();
@@ -451,6 +496,7 @@ public class RoutingContext {
 		if (memoryLimit == 0) {
 			memoryLimit = config.memoryLimitation;
 		}
+		memoryLimit = (int) Math.min(Integer.MAX_VALUE, getTilesMemoryLimit(memoryLimit));
 		if (getCurrentEstimatedSize() > 0.9 * memoryLimit) {
 			int sz1 = getCurrentEstimatedSize();
 			long h1 = 0;
@@ -460,7 +506,7 @@ public class RoutingContext {
 			}
 			int clt = getCurrentlyLoadedTiles();
 			long us1 = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
-			unloadUnusedTiles(memoryLimit);
+			unloadTiles(memoryLimit);
 			if (h1 != 0 && getCurrentlyLoadedTiles() != clt) {
 				int sz2 = getCurrentEstimatedSize();
 				runGCUsedMemory();
@@ -508,19 +554,26 @@ public class RoutingContext {
 	}
 
 	private long maxMemory() {
-		// AVIAN FIXME
-//		return Runtime.getRuntime().maxMemory();
-		return 0;
+		return Runtime.getRuntime().maxMemory();
 	}
 
 	
 	
 	public boolean checkIfMemoryLimitCritical(int memoryLimit) {
-		return getCurrentEstimatedSize() > 0.9 * memoryLimit;
+		return getCurrentEstimatedSize() > 0.9 * getTilesMemoryLimit(memoryLimit);
 	}
 	
 	public void unloadUnusedTiles(int memoryLimit) {
-		float desirableSize = memoryLimit * 0.7f;
+		unloadTiles(getTilesMemoryLimit(memoryLimit));
+	}
+
+	private long getTilesMemoryLimit(int memoryLimit) {
+		return memoryBudget.getTilesMemoryLimit(this, memoryLimit);
+	}
+
+	// tiles memory limit is already defined by memory budget
+	private void unloadTiles(long tilesMemoryLimit) {
+		float desirableSize = tilesMemoryLimit * 0.7f;
 		List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(subregionTiles.size() / 2);
 		int loaded = 0;
 		for(RoutingSubregionTile t : subregionTiles) {
@@ -530,19 +583,11 @@ public class RoutingContext {
 			}
 		}
 		maxLoadedTiles = Math.max(maxLoadedTiles, getCurrentlyLoadedTiles());
+		// least recently used first
 		Collections.sort(list, new Comparator<RoutingSubregionTile>() {
-			private int pow(int base, int pw) {
-				int r = 1;
-				for (int i = 0; i < pw; i++) {
-					r *= base;
-				}
-				return r;
-			}
 			@Override
 			public int compare(RoutingSubregionTile o1, RoutingSubregionTile o2) {
-				int v1 = (o1.access + 1) * pow(10, o1.getUnloadCont() -1);
-				int v2 = (o2.access + 1) * pow(10, o2.getUnloadCont() -1);
-				return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+				return o1.lastAccess < o2.lastAccess ? -1 : (o1.lastAccess == o2.lastAccess ? 0 : 1);
 			}
 		});
 		int i = 0;
@@ -556,9 +601,6 @@ public class RoutingContext {
 			// tile could be cleaned from routing tiles and deleted from whole list
 			
 		}
-		for(RoutingSubregionTile t : subregionTiles) {
-			t.access /= 3;
-		}
 	}
 	
 	private void getAllObjects(long tileId, final List<RouteDataObject> toFillIn, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
@@ -600,33 +642,32 @@ public class RoutingContext {
 		public final RouteSubregion subregion;
 		// make it without get/set for fast access
 		public int access;
+		// value of context access counter when tile was used last time
+		public long lastAccess;
 		public TileStatistics tileStatistics = new TileStatistics();
 		
 		private NativeRouteSearchResult searchResult = null;
 		private int isLoaded = 0;
-		private TLongObjectMap<RouteSegment> routes = null;
+		private RoutingTilePoints routes = null;
 		private TLongHashSet excludedIds = null;
+		// tile objects are shared with other contexts through RoutingTileCache
+		private RoutingTileCache.CachedTile cachedTile = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
 			this.subregion = subregion;
 		}
 		
 		public TLongObjectMap<RouteSegment> getRoutes() {
-			return routes;
+			return routes == null ? null : routes.toSegmentsMap();
 		}
 		
 		public void loadAllObjects(final List<RouteDataObject> toFillIn, RoutingContext ctx, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
 			if(routes != null) {
-				Iterator<RouteSegment> it = routes.valueCollection().iterator();
-				while(it.hasNext()){
-					RouteSegment rs = it.next();
-					while(rs != null){
-						RouteDataObject ro = rs.road;
-						if (!excludeDuplications.contains(ro.id)) {
-							excludeDuplications.put(ro.id, ro);
-							toFillIn.add(ro);
-						}
-						rs = rs.next;
+				for (int i = 0; i < routes.getRoadsCount(); i++) {
+					RouteDataObject ro = routes.getRoad(i);
+					if (!excludeDuplications.contains(ro.id)) {
+						excludeDuplications.put(ro.id, ro);
+						toFillIn.add(ro);
 					}
 				}
 			} else if(searchResult != null) {
@@ -645,20 +686,22 @@ public class RoutingContext {
 		private RouteSegment loadRouteSegment(int x31, int y31, RoutingContext ctx,
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original, List<RoutingSubregionTile> subregions, int subregionIndex) {
 			access++;
+			lastAccess = ++ctx.tileAccessCounter;
 			if (routes != null) {
-				long l = (((long) x31) << 31) + (long) y31;
-				RouteSegment segment = routes.get(l);
-				while (segment != null) {
-					RouteDataObject ro = segment.road;
-					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segment.getSegmentStart()));
+				long l = RoutingTilePoints.getKey(x31, y31);
+				int ind = routes.find(l);
+				while (ind >= 0 && ind < routes.size() && routes.getPointKey(ind) == l) {
+					RouteDataObject ro = routes.getPointRoad(ind);
+					int segmentStart = routes.getPointIndex(ind);
+					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segmentStart));
 					if (!isExcluded(ro.id, subregions, subregionIndex)
 							&& (toCmp == null || toCmp.getPointsLength() < ro.getPointsLength())) {
-						excludeDuplications.put(calcRouteId(ro, segment.getSegmentStart()), ro);
-						RouteSegment s = new RouteSegment(ro, segment.getSegmentStart());
+						excludeDuplications.put(calcRouteId(ro, segmentStart), ro);
+						RouteSegment s = new RouteSegment(ro, segmentStart);
 						s.next = original;
 						original = s;
 					}
-					segment = segment.next;
+					ind++;
 				}
 			} else {
 				throw new UnsupportedOperationException("Not clear how it could be used with native");
@@ -699,31 +742,25 @@ public class RoutingContext {
 			searchResult = null;
 			routes = null;
 			excludedIds = null;
+			releaseCachedTile();
+		}
+
+		public void releaseCachedTile() {
+			if (cachedTile != null) {
+				RoutingTileCache.getInstance().release(cachedTile);
+				cachedTile = null;
+			}
 		}
 		
 		public void setLoadedNonNative(){
 			isLoaded = Math.abs(isLoaded) + 1;
-			routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+			routes = new RoutingTilePoints();
 			tileStatistics = new TileStatistics();
 		}
 		
 		public void add(RouteDataObject ro) {
 			tileStatistics.addObject(ro);
-			for (int i = 0; i < ro.pointsX.length; i++) {
-				int x31 = ro.getPoint31XTile(i);
-				int y31 = ro.getPoint31YTile(i);
-				long l = (((long) x31) << 31) + (long) y31;
-				RouteSegment segment = new RouteSegment(ro, i);
-				if (!routes.containsKey(l)) {
-					routes.put(l, segment);
-				} else {
-					RouteSegment orig = routes.get(l);
-					while (orig.next != null) {
-						orig = orig.next;
-					}
-					orig.next = segment;
-				}
-			}
+			routes.add(ro);
 		}
 		
 		public void setLoadedNative(NativeRouteSearchResult r, RoutingContext ctx) {
@@ -731,7 +768,7 @@ public class RoutingContext {
 			tileStatistics = new TileStatistics();
 			if (r.objects != null) {
 				searchResult = null;
-				routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+				routes = new RoutingTilePoints();
 				for (RouteDataObject ro : r.objects) {
 					if (ro != null && ctx.config.router.acceptLine(ro)) {
 						add(ro);
@@ -744,39 +781,6 @@ public class RoutingContext {
 		}
 	}
 	
-	static int getEstimatedSize(RouteDataObject o) {
-		// calculate size
-		int sz = 0;
-		sz += 8 + 4; // overhead
-		if (o.names != null) {
-			sz += 12;
-			TIntObjectIterator<String> it = o.names.iterator();
-			while(it.hasNext()) {
-				it.advance();
-				String vl = it.value();
-				sz += 12 + vl.length();
-			}
-			sz += 12 + o.names.size() * 25;
-		}
-		sz += 8; // id
-		// coordinates
-		sz += (8 + 4 + 4 * o.getPointsLength()) * 4;
-		sz += o.types == null ? 4 : (8 + 4 + 4 * o.types.length);
-		sz += o.restrictions == null ? 4 : (8 + 4 + 8 * o.restrictions.length);
-		sz += 4;
-		if (o.pointTypes != null) {
-			sz += 8 + 4 * o.pointTypes.length;
-			for (int i = 0; i < o.pointTypes.length; i++) {
-				sz += 4;
-				if (o.pointTypes[i] != null) {
-					sz += 8 + 8 * o.pointTypes[i].length;
-				}
-			}
-		}
-		// Standard overhead?
-		return  (int) (sz * 3.5);
-	}
-	
 	protected static class TileStatistics {
 		public int size = 0;
 		public int allRoutes = 0;
@@ -792,7 +796,7 @@ public class RoutingContext {
 		public void addObject(RouteDataObject o) {
 			allRoutes++;
 			coordinates += o.getPointsLength() * 2;
-			size += getEstimatedSize(o);
+			size += RoutingMemoryModel.getTileObjectSize(o);
 		}
 
 		
@@ -0,0 +1,49 @@
+package net.osmand.router;
+
+/**
+ * Defines how much memory loaded routing tiles could occupy, tiles are unloaded when the limit is reached.
+ * Objects of shared caches ({@link RoutingTileCache}, route data {@link net.osmand.binary.DecodedBlockCache})
+ * are limited by global budgets of caches, only {@link HeapMemoryBudget} takes them into account as used heap.
+ */
+public interface RoutingMemoryBudget {
+
+	/**
+	 * @param memoryLimit limit requested by route search (configured memory limitation minus search overhead)
+	 * @return limit in bytes for loaded tiles
+	 */
+	long getTilesMemoryLimit(RoutingContext ctx, long memoryLimit);
+
+	/**
+	 * Uses limit from routing configuration as is
+	 */
+	public static class ConfiguredMemoryBudget implements RoutingMemoryBudget {
+
+		@Override
+		public long getTilesMemoryLimit(RoutingContext ctx, long memoryLimit) {
+			return memoryLimit;
+		}
+	}
+
+	/**
+	 * Additionally limits tiles by part of heap which is free or occupied by tiles of this context
+	 */
+	public static class HeapMemoryBudget implements RoutingMemoryBudget {
+		private final float heapPart;
+
+		public HeapMemoryBudget(float heapPart) {
+			this.heapPart = heapPart;
+		}
+
+		@Override
+		public long getTilesMemoryLimit(RoutingContext ctx, long memoryLimit) {
+			Runtime rt = Runtime.getRuntime();
+			long max = rt.maxMemory();
+			if (max == Long.MAX_VALUE) {
+				return memoryLimit;
+			}
+			long used = rt.totalMemory() - rt.freeMemory();
+			long available = max - used + ctx.getCurrentEstimatedSize();
+			return Math.min(memoryLimit, (long) (available * heapPart));
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package net.osmand.router;
+
+import static net.osmand.binary.ObjectSizeModel.OBJECT_HEADER;
+import static net.osmand.binary.ObjectSizeModel.REFERENCE;
+import static net.osmand.binary.ObjectSizeModel.align;
+
+import net.osmand.binary.ObjectSizeModel;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Size model of routing objects in bytes (64-bit VM with compressed references),
+ * sizes of decoded objects are estimated by {@link ObjectSizeModel}.
+ */
+public class RoutingMemoryModel {
+
+	// RouteSegment : 4 references, 2 shorts, byte, 2 floats
+	static final int ROUTE_SEGMENT = align(OBJECT_HEADER + 4 * REFERENCE + 2 * 2 + 1 + 2 * 4);
+	// trove open addressing map slot (key, value, state) with load factor 0.5
+	static final int LONG_OBJECT_MAP_ENTRY = 2 * (8 + REFERENCE + 1);
+	// point of tile : key and entry in RoutingTilePoints
+	static final int TILE_POINT_ENTRY = 8 + 8;
+	// segment in RouteSegmentHeap : key, id, segment slot (growth 1.5) and position map slot (load factor <= 0.5)
+	static final int QUEUE_ENTRY = ROUTE_SEGMENT + (4 + 8 + REFERENCE) * 3 / 2 + 3 * (8 + 4);
+	// visited segment : map entry and segment itself
+	static final int VISITED_ENTRY = ROUTE_SEGMENT + LONG_OBJECT_MAP_ENTRY;
+
+	/**
+	 * Size of object loaded into routing tile including its packed points
+	 */
+	public static int getTileObjectSize(RouteDataObject o) {
+		return ObjectSizeModel.getRouteDataObjectSize(o) + REFERENCE + o.getPointsLength() * TILE_POINT_ENTRY;
+	}
+
+	public static long getQueueSize(int queueEntries) {
+		return (long) queueEntries * QUEUE_ENTRY;
+	}
+
+	public static long getVisitedSize(int visitedEntries) {
+		return (long) visitedEntries * VISITED_ENTRY;
+	}
+}
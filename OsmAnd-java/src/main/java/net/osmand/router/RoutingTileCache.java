@@ -0,0 +1,230 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.DecodedBlockCache;
+import net.osmand.binary.ObjectSizeModel;
+import net.osmand.binary.RouteDataObject;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Process wide cache of decoded route subregions shared by all routing contexts.
+ * Tiles are keyed by obf file and subregion file pointer. Tile acquired by routing context
+ * is not evicted until it is released, unused tiles are evicted in LRU order when
+ * cache exceeds memory budget. Cache is disabled while memory budget is 0.
+ *
+ * Cached objects are read only, every routing context loads its own copies of them
+ * (see {@link RoutingContext#loadSubregionTile}).
+ *
+ * Tiles are read bypassing route data {@link DecodedBlockCache}, so decoded objects of tile are held only once.
+ * Block cache serves route reads outside of routing contexts and contexts while this cache is disabled.
+ * Budgets of both caches are global and not part of tiles memory limit of routing context
+ * ({@link RoutingMemoryBudget}), so memory of routing process is sum of them.
+ */
+public class RoutingTileCache {
+
+	private final static Log log = PlatformUtil.getLog(RoutingTileCache.class);
+
+	private static final RoutingTileCache INSTANCE = new RoutingTileCache();
+
+	// access ordered
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(64, 0.75f, true);
+	private long memoryBudget = 0;
+	private long currentSize = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public static RoutingTileCache getInstance() {
+		return INSTANCE;
+	}
+
+	public synchronized void setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+		evict();
+	}
+
+	public synchronized long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public synchronized boolean isEnabled() {
+		return memoryBudget > 0;
+	}
+
+	/**
+	 * Returns cached tile or loads it with reader. Returned tile should be released when it is unloaded.
+	 * @return null if tile can't be cached (cache disabled or reader doesn't have file)
+	 */
+	public CachedTile acquire(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		File file = reader.getFile();
+		CachedTile tile;
+		synchronized (this) {
+			if (memoryBudget <= 0 || file == null) {
+				return null;
+			}
+			TileKey key = new TileKey(file.getAbsolutePath(), file.lastModified(), subregion.filePointer);
+			tile = tiles.get(key);
+			if (tile == null) {
+				misses++;
+				tile = new CachedTile();
+				tiles.put(key, tile);
+			} else {
+				hits++;
+			}
+			tile.references++;
+		}
+		// other contexts wait until tile is loaded by first one
+		synchronized (tile) {
+			if (tile.objects == null) {
+				boolean loaded = false;
+				try {
+					List<RouteDataObject> res = reader.loadRouteIndexData(subregion, false);
+					int size = 0;
+					for (RouteDataObject ro : res) {
+						if (ro != null) {
+							size += ObjectSizeModel.getRouteDataObjectSize(ro);
+						}
+					}
+					tile.objects = Collections.unmodifiableList(res);
+					loaded = true;
+					synchronized (this) {
+						tile.size = size;
+						currentSize += size;
+						evict();
+					}
+				} finally {
+					if (!loaded) {
+						// tile stays empty and will be loaded by next request
+						release(tile);
+					}
+				}
+			}
+		}
+		return tile;
+	}
+
+	public synchronized void release(CachedTile tile) {
+		if (tile.references > 0) {
+			tile.references--;
+		}
+		if (tile.references == 0) {
+			evict();
+		}
+	}
+
+	public synchronized void clear() {
+		Iterator<CachedTile> it = tiles.values().iterator();
+		while (it.hasNext()) {
+			CachedTile t = it.next();
+			if (t.references == 0) {
+				currentSize -= t.size;
+				it.remove();
+			}
+		}
+	}
+
+	private void evict() {
+		if (currentSize <= memoryBudget) {
+			return;
+		}
+		Iterator<CachedTile> it = tiles.values().iterator();
+		while (currentSize > memoryBudget && it.hasNext()) {
+			CachedTile t = it.next();
+			// tiles in use or being loaded are not evicted
+			if (t.references == 0) {
+				currentSize -= t.size;
+				evictions++;
+				it.remove();
+			}
+		}
+		if (currentSize > memoryBudget) {
+			log.debug("Routing tile cache exceeds budget with tiles in use " + currentSize / (1 << 20) + " MB");
+		}
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getCurrentSize() {
+		return currentSize;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Routing tile cache " + tiles.size() + " tiles, " + currentSize / (1 << 20) + " of " + memoryBudget
+				/ (1 << 20) + " MB, hits " + hits + ", misses " + misses + ", evictions " + evictions;
+	}
+
+	public static class CachedTile {
+		private volatile List<RouteDataObject> objects;
+		private int size;
+		private int references;
+
+		private CachedTile() {
+		}
+
+		public List<RouteDataObject> getObjects() {
+			return objects;
+		}
+
+		public int getSize() {
+			return size;
+		}
+	}
+
+	private static class TileKey {
+		private final String file;
+		private final long lastModified;
+		private final long filePointer;
+
+		TileKey(String file, long lastModified, long filePointer) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.filePointer = filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = file.hashCode();
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			result = 31 * result + (int) (filePointer ^ (filePointer >>> 32));
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return filePointer == other.filePointer && lastModified == other.lastModified && file.equals(other.file);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Points of roads loaded into routing tile packed in flat arrays: point key (x31 << 31 + y31)
+ * and road index / point index of each point sorted by key.
+ * It replaces map of chained RouteSegment per point, segments are created only when they are requested.
+ */
+class RoutingTilePoints {
+
+	private static final int SMALL_SORT = 16;
+
+	private RouteDataObject[] roads = new RouteDataObject[16];
+	private int roadsCount = 0;
+	private long[] keys = new long[64];
+	// road index << 32 | point index
+	private long[] entries = new long[64];
+	private int size = 0;
+	private boolean sorted = true;
+
+	public static long getKey(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+
+	public void add(RouteDataObject ro) {
+		if (roadsCount == roads.length) {
+			roads = Arrays.copyOf(roads, roadsCount + (roadsCount >> 1) + 1);
+		}
+		int roadIndex = roadsCount++;
+		roads[roadIndex] = ro;
+		int len = ro.getPointsLength();
+		if (size + len > keys.length) {
+			int nsize = Math.max(size + len, size + (size >> 1));
+			keys = Arrays.copyOf(keys, nsize);
+			entries = Arrays.copyOf(entries, nsize);
+		}
+		for (int i = 0; i < len; i++) {
+			long key = getKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+			if (sorted && size > 0 && keys[size - 1] > key) {
+				sorted = false;
+			}
+			keys[size] = key;
+			entries[size] = (((long) roadIndex) << 32) | i;
+			size++;
+		}
+	}
+
+	public int getRoadsCount() {
+		return roadsCount;
+	}
+
+	public RouteDataObject getRoad(int roadIndex) {
+		return roads[roadIndex];
+	}
+
+	/**
+	 * @return index of first point with this key or -1, next points with the same key follow it in order of adding
+	 */
+	public int find(long key) {
+		sort();
+		int lo = 0;
+		int hi = size - 1;
+		int res = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				if (keys[mid] == key) {
+					res = mid;
+				}
+				hi = mid - 1;
+			}
+		}
+		return res;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getPointKey(int ind) {
+		return keys[ind];
+	}
+
+	public RouteDataObject getPointRoad(int ind) {
+		return roads[(int) (entries[ind] >>> 32)];
+	}
+
+	public int getPointIndex(int ind) {
+		return (int) entries[ind];
+	}
+
+	/**
+	 * @return map of new chained segments by point key (for compatibility, it is not used by router)
+	 */
+	public TLongObjectMap<RouteSegment> toSegmentsMap() {
+		sort();
+		TLongObjectHashMap<RouteSegment> routes = new TLongObjectHashMap<RouteSegment>();
+		RouteSegment last = null;
+		for (int i = 0; i < size; i++) {
+			RouteSegment segment = new RouteSegment(getPointRoad(i), getPointIndex(i));
+			if (i > 0 && keys[i - 1] == keys[i]) {
+				last.next = segment;
+			} else {
+				routes.put(keys[i], segment);
+			}
+			last = segment;
+		}
+		return routes;
+	}
+
+	private void sort() {
+		if (!sorted) {
+			sort(0, size - 1);
+			sorted = true;
+		}
+		if (keys.length > size) {
+			// tile is not supposed to grow after it was searched
+			keys = Arrays.copyOf(keys, size);
+			entries = Arrays.copyOf(entries, size);
+			roads = Arrays.copyOf(roads, roadsCount);
+		}
+	}
+
+	// entries grow in order of adding, so sorting by (key, entry) keeps that order for the same key
+	private void sort(int lo, int hi) {
+		while (hi - lo >= SMALL_SORT) {
+			int mid = (lo + hi) >>> 1;
+			long pk = keys[mid];
+			long pe = entries[mid];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (compare(i, pk, pe) < 0) {
+					i++;
+				}
+				while (compare(j, pk, pe) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			// recurse into smaller part
+			if (j - lo < hi - i) {
+				sort(lo, j);
+				lo = i;
+			} else {
+				sort(i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			for (int j = i; j > lo && compare(j - 1, keys[j], entries[j]) > 0; j--) {
+				swap(j - 1, j);
+			}
+		}
+	}
+
+	private int compare(int i, long key, long entry) {
+		if (keys[i] != key) {
+			return keys[i] < key ? -1 : 1;
+		}
+		return entries[i] < entry ? -1 : (entries[i] == entry ? 0 : 1);
+	}
+
+	private void swap(int i, int j) {
+		long k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		long e = entries[i];
+		entries[i] = entries[j];
+		entries[j] = e;
+	}
+}
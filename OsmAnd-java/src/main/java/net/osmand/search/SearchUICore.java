@@ -16,6 +16,7 @@ import net.osmand.search.core.ObjectType;
 import net.osmand.search.core.SearchCoreAPI;
 import net.osmand.search.core.SearchCoreFactory;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchStreetByCityAPI;
 import net.osmand.search.core.SearchExportSettings;
@@ -35,11 +36,19 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -56,10 +65,12 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	private ExecutorService searchPool;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
 	private int totalLimit = -1; // -1 unlimited - not used
+	private int resultsLimit = -1;
 
 	List<SearchCoreAPI> apis = new ArrayList<>();
 	private SearchSettings searchSettings;
@@ -77,6 +88,20 @@ public class SearchUICore {
 		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
 	}
 
+	/**
+	 * Search apis (and regions by apis which support it) run in parallel on pool threads if all offline indexes
+	 * are opened by {@link BinaryMapIndexReader#openConcurrentReader}, results are published in the same order
+	 * as by serial search. Tasks which are not started by pool when their results are needed run on waiting thread,
+	 * so pool of any size could be used. Null pool (default) runs apis one after another.
+	 */
+	public void setSearchPool(ExecutorService searchPool) {
+		this.searchPool = searchPool;
+	}
+
+	public ExecutorService getSearchPool() {
+		return searchPool;
+	}
+
 	public static void setDebugMode(boolean debugMode) {
 		SearchUICore.debugMode = debugMode;
 	}
@@ -89,14 +114,37 @@ public class SearchUICore {
 		private List<SearchResult> searchResults;
 		private SearchPhrase phrase;
 		private static final int DEPTH_TO_CHECK_SAME_SEARCH_RESULTS = 20;
+		// top results mode: the worst result is in the head of queue
+		private final int limit;
+		private SearchResultComparator topComparator;
+		private PriorityQueue<SearchResult> topResults;
+		private SameResultsIndex sameResults;
 
 		public SearchResultCollection(SearchPhrase phrase) {
+			this(phrase, -1);
+		}
+
+		/**
+		 * @param limit if positive only the best results are kept (sorted) and duplicates are found by hash
+		 * of type and name, object or street location, so adding and combining costs are proportional to limit
+		 */
+		public SearchResultCollection(SearchPhrase phrase, int limit) {
 			searchResults = new ArrayList<>();
 			this.phrase = phrase;
+			this.limit = limit;
+			if (limit > 0) {
+				topComparator = new SearchResultComparator(phrase);
+				topResults = new PriorityQueue<>(limit, Collections.reverseOrder(topComparator));
+				sameResults = new SameResultsIndex();
+			}
+		}
+
+		public int getLimit() {
+			return limit;
 		}
 
 		public SearchResultCollection combineWithCollection(SearchResultCollection collection, boolean resort, boolean removeDuplicates) {
-			SearchResultCollection src = new SearchResultCollection(phrase);
+			SearchResultCollection src = new SearchResultCollection(phrase, limit);
 			src.addSearchResults(searchResults, false, false);
 			src.addSearchResults(collection.searchResults, resort, removeDuplicates);
 			return src;
@@ -106,7 +154,12 @@ public class SearchUICore {
 			if (SearchUICore.isDebugMode()) {
 				LOG.info("Add search results resortAll=" + (resortAll ? "true" : "false") + " removeDuplicates=" + (removeDuplicates ? "true" : "false") + " Results=" + sr.size() + " Current results=" + this.searchResults.size());
 			}
-			if (resortAll) {
+			if (topResults != null) {
+				for (SearchResult r : sr) {
+					addTopResult(r, removeDuplicates);
+				}
+				updateTopResults();
+			} else if (resortAll) {
 				this.searchResults.addAll(sr);
 				sortSearchResults();
 				if (removeDuplicates) {
@@ -174,6 +227,35 @@ public class SearchUICore {
 			return phrase;
 		}
 
+		private void addTopResult(SearchResult r, boolean removeDuplicates) {
+			SearchResultComparator cmp = topComparator;
+			if (removeDuplicates) {
+				SearchResult same = sameResults.find(r);
+				if (same != null) {
+					if (cmp.compare(r, same) >= 0) {
+						return;
+					}
+					topResults.remove(same);
+					sameResults.remove(same);
+				}
+			}
+			if (topResults.size() >= limit) {
+				SearchResult worst = topResults.peek();
+				if (cmp.compare(r, worst) >= 0) {
+					return;
+				}
+				topResults.poll();
+				sameResults.remove(worst);
+			}
+			topResults.add(r);
+			sameResults.add(r);
+		}
+
+		private void updateTopResults() {
+			searchResults = new ArrayList<>(topResults);
+			Collections.sort(searchResults, topComparator);
+		}
+
 		public void sortSearchResults() {
 			if (debugMode) {
 				LOG.info("Sorting search results <" + phrase + "> Results=" + searchResults.size());
@@ -188,7 +270,17 @@ public class SearchUICore {
 			if (debugMode) {
 				LOG.info("Filter duplicate results <" + phrase + "> Results=" + searchResults.size());
 			}
-			filterSearchDuplicateResults(searchResults);
+			if (topResults != null) {
+				List<SearchResult> results = searchResults;
+				topResults.clear();
+				sameResults = new SameResultsIndex();
+				for (SearchResult r : results) {
+					addTopResult(r, true);
+				}
+				updateTopResults();
+			} else {
+				filterSearchDuplicateResults(searchResults);
+			}
 			if (debugMode) {
 				LOG.info("Duplicate results filtered <" + phrase + "> Results=" + searchResults.size());
 			}
@@ -267,12 +359,109 @@ public class SearchUICore {
 			}
 			return false;
 		}
+
+		private static boolean isComparedByLocation(SearchResult r) {
+			return r.location != null && !ObjectType.isTopVisible(r.objectType);
+		}
+
+		/**
+		 * Results grouped by keys which are equal for same results by {@link #sameSearchResult}:
+		 * name for results with location, street location for streets and object for others,
+		 * so only results of one group are compared.
+		 */
+		private class SameResultsIndex {
+			private final Map<String, List<SearchResult>> byName = new HashMap<>();
+			private final Map<LatLon, List<SearchResult>> byStreetLocation = new HashMap<>();
+			private final Map<Object, List<SearchResult>> byObject = new IdentityHashMap<>();
+
+			SearchResult find(SearchResult r) {
+				SearchResult same = null;
+				if (isComparedByLocation(r)) {
+					if (r.objectType == ObjectType.STREET) {
+						same = find(byStreetLocation.get(((Street) r.object).getLocation()), r);
+					}
+					if (same == null) {
+						same = find(byName.get(r.localeName), r);
+					}
+				}
+				if (same == null && r.object != null) {
+					same = find(byObject.get(r.object), r);
+				}
+				return same;
+			}
+
+			private SearchResult find(List<SearchResult> l, SearchResult r) {
+				if (l != null) {
+					for (SearchResult s : l) {
+						if (sameSearchResult(s, r)) {
+							return s;
+						}
+					}
+				}
+				return null;
+			}
+
+			void add(SearchResult r) {
+				if (isComparedByLocation(r)) {
+					put(byName, r.localeName, r);
+					if (r.objectType == ObjectType.STREET) {
+						put(byStreetLocation, ((Street) r.object).getLocation(), r);
+					}
+				}
+				if (r.object != null) {
+					put(byObject, r.object, r);
+				}
+			}
+
+			void remove(SearchResult r) {
+				if (isComparedByLocation(r)) {
+					remove(byName, r.localeName, r);
+					if (r.objectType == ObjectType.STREET) {
+						remove(byStreetLocation, ((Street) r.object).getLocation(), r);
+					}
+				}
+				if (r.object != null) {
+					remove(byObject, r.object, r);
+				}
+			}
+
+			private <K> void put(Map<K, List<SearchResult>> map, K key, SearchResult r) {
+				List<SearchResult> l = map.get(key);
+				if (l == null) {
+					l = new ArrayList<>(1);
+					map.put(key, l);
+				}
+				l.add(r);
+			}
+
+			private <K> void remove(Map<K, List<SearchResult>> map, K key, SearchResult r) {
+				List<SearchResult> l = map.get(key);
+				if (l != null) {
+					l.remove(r);
+					if (l.isEmpty()) {
+						map.remove(key);
+					}
+				}
+			}
+		}
 	}
 
 	public void setPoiTypes(MapPoiTypes poiTypes) {
 		this.poiTypes = poiTypes;
 	}
 
+	/**
+	 * Search results are collected to collections which keep only the given number of the best results,
+	 * -1 (default) keeps all results.
+	 */
+	public void setResultsLimit(int resultsLimit) {
+		this.resultsLimit = resultsLimit;
+	}
+
+	public int getResultsLimit() {
+		return resultsLimit;
+	}
+
 	public int getTotalLimit() {
 		return totalLimit;
 	}
@@ -305,7 +494,7 @@ public class SearchUICore {
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(
-					sphrase);
+					sphrase, resultsLimit);
 			collection.addSearchResults(rm.getRequestResults(), true, true);
 			if (debugMode) {
 				LOG.info("Finish shallow search <" + sphrase + "> Results=" + rm.getRequestResults().size());
@@ -408,15 +597,28 @@ public class SearchUICore {
 	}
 
 	public SearchPhrase resetPhrase() {
+		clearCache();
 		this.phrase = this.phrase.generateNewPhrase("", searchSettings);
 		return this.phrase;
 	}
 
 	public SearchPhrase resetPhrase(String text) {
+		clearCache();
 		this.phrase = this.phrase.generateNewPhrase(text, searchSettings);
 		return this.phrase;
 	}
 
+	/**
+	 * Drops objects kept by apis between searches, should be called when search is finished
+	 */
+	public void clearCache() {
+		for (SearchCoreAPI api : apis) {
+			if (api instanceof SearchBaseAPI) {
+				((SearchBaseAPI) api).clearCache();
+			}
+		}
+	}
+
 	public void search(final String text, final boolean delayedExecution, final ResultMatcher<SearchResult> matcher) {
 		search(text, delayedExecution, matcher, searchSettings);
 	}
@@ -499,7 +701,7 @@ public class SearchUICore {
 					searchInternal(phrase, rm);
 					if (!rm.isCancelled()) {
 						SearchResultCollection collection = new SearchResultCollection(
-								phrase);
+								phrase, resultsLimit);
 						if (debugMode) {
 							LOG.info("Processing search results <" + phrase + ">");
 						}
@@ -578,6 +780,12 @@ public class SearchUICore {
 						o2.getSearchPriority(phrase));
 			}
 		});
+		ExecutorService pool = isParallelSearchAvailable(phrase) ? searchPool : null;
+		matcher.searchPool = pool;
+		if (pool != null) {
+			searchParallel(phrase, matcher, lst, pool);
+			return;
+		}
 		for (SearchCoreAPI api : lst) {
 			if (matcher.isCancelled()) {
 				break;
@@ -585,25 +793,118 @@ public class SearchUICore {
 			if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
 				continue;
 			}
-			try {
+			if (searchApi(api, phrase, matcher)) {
+				matcher.apiSearchFinished(api, phrase);
 				if (debugMode) {
-					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+					LOG.info("API search done <" + phrase + "> API=<" + api + ">");
 				}
-				api.search(phrase, matcher);
+			}
+		}
+	}
+
+	private boolean isParallelSearchAvailable(SearchPhrase phrase) {
+		if (searchPool == null) {
+			return false;
+		}
+		for (BinaryMapIndexReader r : phrase.getSettings().getOfflineIndexes()) {
+			if (!r.isConcurrent()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Runs apis on pool threads, each api publishes to its own buffer. Buffers are published in order of apis
+	 * as soon as all previous apis are finished. Apis with max priority use results of others
+	 * (see {@link SearchResultMatcher#getRequestResults()}), so they run after all others.
+	 * Poi types api sets poi types of phrase, so it runs on calling thread before apis which follow it.
+	 */
+	private void searchParallel(final SearchPhrase phrase, SearchResultMatcher matcher, List<SearchCoreAPI> lst,
+			ExecutorService pool) {
+		List<SearchCoreAPI> parallelApis = new ArrayList<>();
+		List<FutureTask<SearchResultMatcher>> tasks = new ArrayList<>();
+		List<SearchCoreAPI> lastApis = new ArrayList<>();
+		for (final SearchCoreAPI api : lst) {
+			int priority = api.getSearchPriority(phrase);
+			if (!api.isSearchAvailable(phrase) || priority == -1) {
+				continue;
+			}
+			if (priority == SearchCoreFactory.SEARCH_MAX_PRIORITY) {
+				lastApis.add(api);
+				continue;
+			}
+			final SearchResultMatcher buffer = matcher.createBuffer();
+			parallelApis.add(api);
+			FutureTask<SearchResultMatcher> task = new FutureTask<>(new Callable<SearchResultMatcher>() {
+				@Override
+				public SearchResultMatcher call() {
+					return searchApi(api, phrase, buffer) ? buffer : null;
+				}
+			});
+			if (api instanceof SearchAmenityTypesAPI) {
+				// sets poi types of phrase
+				task.run();
+			} else {
+				pool.execute(task);
+			}
+			tasks.add(task);
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			if (matcher.isCancelled()) {
+				return;
+			}
+			FutureTask<SearchResultMatcher> task = tasks.get(i);
+			// runs api on calling thread if pool has not started it
+			task.run();
+			SearchResultMatcher buffer;
+			try {
+				buffer = task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				LOG.error(e.getMessage(), e);
+				buffer = null;
+			}
+			if (buffer != null) {
+				matcher.publishBuffer(buffer);
+				matcher.apiSearchFinished(parallelApis.get(i), phrase);
 				if (debugMode) {
-					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
+					LOG.info("API search done <" + phrase + "> API=<" + parallelApis.get(i) + ">");
 				}
+			}
+		}
+		for (SearchCoreAPI api : lastApis) {
+			if (matcher.isCancelled()) {
+				return;
+			}
+			if (searchApi(api, phrase, matcher)) {
 				matcher.apiSearchFinished(api, phrase);
 				if (debugMode) {
 					LOG.info("API search done <" + phrase + "> API=<" + api + ">");
 				}
-			} catch (Throwable e) {
-				e.printStackTrace();
-				LOG.error(e.getMessage(), e);
 			}
 		}
 	}
 
+	private boolean searchApi(SearchCoreAPI api, SearchPhrase phrase, SearchResultMatcher matcher) {
+		try {
+			if (debugMode) {
+				LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+			}
+			api.search(phrase, matcher);
+			if (debugMode) {
+				LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
+			}
+			return true;
+		} catch (Throwable e) {
+			e.printStackTrace();
+			LOG.error(e.getMessage(), e);
+			return false;
+		}
+	}
+
 	private void preparePhrase(final SearchPhrase phrase) {
 		if (debugMode) {
 			LOG.info("Preparing search phrase <" + phrase + ">");
@@ -619,6 +920,26 @@ public class SearchUICore {
 		}
 	}
 
+	private static class BufferResultMatcher implements ResultMatcher<SearchResult> {
+		private final SearchResultMatcher parent;
+		private final List<SearchResult> objects = new ArrayList<>();
+
+		BufferResultMatcher(SearchResultMatcher parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean publish(SearchResult object) {
+			objects.add(object);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return parent.isCancelled();
+		}
+	}
+
 	public static class SearchResultMatcher implements ResultMatcher<SearchResult>{
 		private final List<SearchResult> requestResults = new ArrayList<>();
 		private final ResultMatcher<SearchResult> matcher;
@@ -630,6 +951,8 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		// set for search in parallel mode
+		private ExecutorService searchPool;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -640,6 +963,48 @@ public class SearchUICore {
 			this.totalLimit = totalLimit;
 		}
 
+		/**
+		 * @return pool to search regions in parallel or null if search is serial
+		 */
+		public ExecutorService getSearchPool() {
+			return searchPool;
+		}
+
+		/**
+		 * @return matcher which keeps published results and events till they are published by
+		 * {@link #publishBuffer(SearchResultMatcher)}, it is cancelled with this matcher
+		 */
+		SearchResultMatcher createBuffer() {
+			SearchResultMatcher buffer = new SearchResultMatcher(new BufferResultMatcher(this), phrase, request,
+					requestNumber, totalLimit);
+			buffer.parentSearchResult = parentSearchResult;
+			buffer.searchPool = searchPool;
+			return buffer;
+		}
+
+		void publishBuffer(SearchResultMatcher buffer) {
+			for (SearchResult object : ((BufferResultMatcher) buffer.matcher).objects) {
+				if (object.objectType == ObjectType.SEARCH_API_FINISHED
+						|| object.objectType == ObjectType.SEARCH_API_REGION_FINISHED) {
+					if (matcher != null) {
+						matcher.publish(object);
+					}
+				} else if (matcher == null || matcher.publish(object)) {
+					addResult(object);
+				}
+			}
+			if (buffer.exportedObjects != null) {
+				for (MapObject object : buffer.exportedObjects) {
+					exportObject(object);
+				}
+			}
+			if (buffer.exportedCities != null) {
+				for (City city : buffer.exportedCities) {
+					exportCity(city);
+				}
+			}
+		}
+
 		public SearchResult setParentSearchResult(SearchResult parentSearchResult) {
 			SearchResult prev = this.parentSearchResult;
 			this.parentSearchResult = parentSearchResult;
@@ -725,15 +1090,19 @@ public class SearchUICore {
 				object.alternateName = null;
 			}
 			if (matcher == null || matcher.publish(object)) {
-				count++;
 				object.parentSearchResult = parentSearchResult;
-				if (totalLimit == -1 || count < totalLimit) {
-					requestResults.add(object);
-				}
+				addResult(object);
 				return true;
 			}
 			return false;
 		}
+
+		private void addResult(SearchResult object) {
+			count++;
+			if (totalLimit == -1 || count < totalLimit) {
+				requestResults.add(object);
+			}
+		}
 		@Override
 		public boolean isCancelled() {
 			boolean cancelled = request != requestNumber.get();
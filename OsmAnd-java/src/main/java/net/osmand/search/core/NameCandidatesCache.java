@@ -0,0 +1,121 @@
+package net.osmand.search.core;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Objects read by name from regions for previous search word of search api.
+ * While user is typing new search word extends previous one, so objects found by previous word
+ * are filtered instead of reading name index of region again.
+ * @param <R> region key (file reader of region)
+ */
+public class NameCandidatesCache<R, T> {
+
+	// regions with more objects are not cached
+	public static final int MAX_REGION_OBJECTS = 10000;
+	// least recently used regions are dropped when all regions have more objects
+	public static final int MAX_OBJECTS = 30000;
+
+	private Object[] params;
+	// in access order
+	private final Map<R, Candidates<T>> regions = new LinkedHashMap<>(16, 0.75f, true);
+	private int objectsCount;
+
+	public static class Candidates<T> {
+		public final String word;
+		public final StringMatcherMode mode;
+		public final List<T> objects;
+
+		Candidates(String word, StringMatcherMode mode, List<T> objects) {
+			this.word = word;
+			this.mode = mode;
+			this.objects = objects;
+		}
+
+		boolean canFilter(String word, StringMatcherMode mode) {
+			if (!word.startsWith(this.word)) {
+				return false;
+			}
+			return this.mode == StringMatcherMode.CHECK_STARTS_FROM_SPACE
+					|| (this.mode == mode && this.word.equals(word));
+		}
+	}
+
+	/**
+	 * Starts new search, cached objects are dropped if search parameters (area, selected words) changed
+	 * or search word doesn't extend their word anymore.
+	 */
+	public synchronized void startSearch(String word, Object... params) {
+		if (!Arrays.equals(this.params, params)) {
+			this.params = params;
+			regions.clear();
+			objectsCount = 0;
+			return;
+		}
+		Iterator<Candidates<T>> it = regions.values().iterator();
+		while (it.hasNext()) {
+			Candidates<T> c = it.next();
+			if (!word.startsWith(c.word)) {
+				objectsCount -= c.objects.size();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return objects found in region by previous word or null if region should be searched again
+	 */
+	public synchronized Candidates<T> get(R region, String word, StringMatcherMode mode) {
+		Candidates<T> c = regions.get(region);
+		if (c != null && c.canFilter(word, mode)) {
+			return c;
+		}
+		return null;
+	}
+
+	/**
+	 * Stores all objects found in region by word, objects found by cancelled search shouldn't be stored.
+	 */
+	public synchronized void put(R region, String word, StringMatcherMode mode, List<T> objects) {
+		Candidates<T> c = regions.get(region);
+		if (c != null && mode != StringMatcherMode.CHECK_STARTS_FROM_SPACE && c.canFilter(word, mode)) {
+			// keep objects of incomplete word, they could be filtered by next word too
+			return;
+		}
+		remove(region);
+		if (objects.size() <= MAX_REGION_OBJECTS) {
+			regions.put(region, new Candidates<T>(word, mode, objects));
+			objectsCount += objects.size();
+			Iterator<Candidates<T>> it = regions.values().iterator();
+			while (objectsCount > MAX_OBJECTS) {
+				objectsCount -= it.next().objects.size();
+				it.remove();
+			}
+		}
+	}
+
+	private void remove(R region) {
+		Candidates<T> c = regions.remove(region);
+		if (c != null) {
+			objectsCount -= c.objects.size();
+		}
+	}
+
+	public synchronized int getObjectsCount() {
+		return objectsCount;
+	}
+
+	/**
+	 * Drops all cached objects, should be called when search is reset or finished
+	 */
+	public synchronized void clear() {
+		params = null;
+		regions.clear();
+		objectsCount = 0;
+	}
+}
@@ -23,6 +23,7 @@ import net.osmand.osm.PoiCategory;
 import net.osmand.osm.PoiFilter;
 import net.osmand.osm.PoiType;
 import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.NameCandidatesCache.Candidates;
 import net.osmand.search.core.SearchPhrase.NameStringMatcher;
 import net.osmand.search.core.SearchPhrase.SearchPhraseDataType;
 import net.osmand.util.Algorithms;
@@ -47,6 +48,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -140,6 +145,25 @@ public class SearchCoreFactory {
 			return 0;
 		}
 
+		/**
+		 * Drops objects which api keeps between searches
+		 */
+		public void clearCache() {
+		}
+
+		/**
+		 * @return objects of selected words (or words without results), so cached objects are dropped
+		 * when other object is selected
+		 */
+		protected static List<Object> getSelectedWords(SearchPhrase phrase) {
+			List<Object> words = new ArrayList<>();
+			for (SearchWord w : phrase.getWords()) {
+				SearchResult r = w.getResult();
+				words.add(r != null && r.object != null ? r.object : w.getWord());
+			}
+			return words;
+		}
+
 		protected void subSearchApiOrPublish(SearchPhrase phrase,
 											 SearchResultMatcher resultMatcher, SearchResult res, SearchBaseAPI api)
 				throws IOException {
@@ -236,6 +260,7 @@ public class SearchCoreFactory {
 		private QuadTree<City> townCitiesQR = new QuadTree<City>(new QuadRect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE),
 				8, 0.55f);
 		private List<City> resArray = new ArrayList<>();
+		private final NameCandidatesCache<BinaryMapIndexReader, MapObject> candidatesCache = new NameCandidatesCache<>();
 		private SearchStreetByCityAPI cityApi;
 		private SearchBuildingAndIntersectionsByStreetAPI streetsApi;
 
@@ -247,6 +272,11 @@ public class SearchCoreFactory {
 			this.cityApi = cityApi;
 		}
 
+		@Override
+		public void clearCache() {
+			candidatesCache.clear();
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (!p.isNoSelectedType() && p.getRadiusLevel() == 1) {
@@ -468,18 +498,43 @@ public class SearchCoreFactory {
 				String wordToSearch = phrase.getUnknownWordToSearch();
 				NameStringMatcher wordEqualsMatcher = phrase.getNameStringMatcher(wordToSearch, true);
 				boolean firstUnknownWordMatches = wordToSearch.equals(phrase.getUnknownSearchWord());
+				String query = wordToSearch.toLowerCase().trim();
+				StringMatcherMode mode = phrase.isUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+						: StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+				int radius = phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
+				candidatesCache.startSearch(query, getSelectedWords(phrase), loc, radius);
 				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
 					BinaryMapIndexReader r = offlineIterator.next();
 					currentFile[0] = r;
 					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, wordToSearch.toLowerCase(),
-							phrase.isUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+					List<MapObject> cached = getCachedCandidates(r, query, mode);
+					if (cached != null) {
+						for (MapObject object : cached) {
+							rm.publish(object);
+						}
+					} else {
+						final List<MapObject> objects = new ArrayList<>();
+						final ResultMatcher<MapObject> regionMatcher = rm;
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								objects.add(object);
+								return regionMatcher.publish(object);
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return regionMatcher.isCancelled();
+							}
+						}, query, mode);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(), radius);
+						}
+						r.searchAddressDataByName(req);
+						if (!rm.isCancelled()) {
+							candidatesCache.put(r, query, mode, objects);
+						}
 					}
-					r.searchAddressDataByName(req);
 					for (SearchResult res : immediateResults) {
 						res.firstUnknownWordMatches = firstUnknownWordMatches;
 						res.unknownPhraseMatches = wordEqualsMatcher.matches(res.localeName);
@@ -497,6 +552,25 @@ public class SearchCoreFactory {
 				}
 			}
 		}
+
+		/**
+		 * @return streets and cities found in region by previous search word filtered by new one
+		 * or null if region should be read
+		 */
+		private List<MapObject> getCachedCandidates(BinaryMapIndexReader r, String query, StringMatcherMode mode) {
+			Candidates<MapObject> c = candidatesCache.get(r, query, mode);
+			if (c == null) {
+				return null;
+			}
+			if (query.equals(c.word) && mode == c.mode) {
+				return c.objects;
+			}
+			List<MapObject> objects = r.filterAddressDataByName(c.objects, c.word, query, mode);
+			if (objects != null) {
+				candidatesCache.put(r, query, mode, objects);
+			}
+			return objects;
+		}
 	}
 
 	public static class SearchAmenityByNameAPI extends SearchBaseAPI {
@@ -505,10 +579,17 @@ public class SearchCoreFactory {
 		private static final int BBOX_RADIUS_INSIDE = 10000 * 1000; // to support city search for basemap
 		private static final int FIRST_WORD_MIN_LENGTH = 3;
 
+		private final NameCandidatesCache<BinaryMapIndexReader, Amenity> candidatesCache = new NameCandidatesCache<>();
+
 		public SearchAmenityByNameAPI() {
 			super(ObjectType.POI);
 		}
 
+		@Override
+		public void clearCache() {
+			candidatesCache.clear();
+		}
+
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (!phrase.isUnknownSearchWordPresent()) {
@@ -528,76 +609,209 @@ public class SearchCoreFactory {
 			} else {
 				phraseMatcher = null;
 			}
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
-					(int)bbox.centerX(), (int)bbox.centerY(),
-					searchWord,
-					(int)bbox.left, (int)bbox.right,
-					(int)bbox.top, (int)bbox.bottom,
-					new ResultMatcher<Amenity>() {
-						int limit = 0;
-						@Override
-						public boolean publish(Amenity object) {
-							if (phrase.getSettings().isExportObjects()) {
-								resultMatcher.exportObject(object);
-							}
-							if (limit ++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
-							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getAllNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-							if (phrase.isUnknownSearchWordComplete()) {
-								if(!nm.matches(sr.localeName) && !nm.matches(sr.otherNames) &&
-										!nm.matches(object.getAdditionalInfo().values())) {
-									return false;
-								}
-							}
-							sr.object = object;
-							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") ||
-									object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							if (phraseMatcher != null) {
-								sr.unknownPhraseMatches = phraseMatcher.matches(sr.localeName);
-							}
-							phrase.countUnknownWordsMatch(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
+			ResultMatcher<Amenity> rm = new ResultMatcher<Amenity>() {
+				int limit = 0;
+				@Override
+				public boolean publish(Amenity object) {
+					if (phrase.getSettings().isExportObjects()) {
+						resultMatcher.exportObject(object);
+					}
+					if (limit ++ > LIMIT) {
+						return false;
+					}
+					String poiID = object.getType().getKeyName() + "_" + object.getId();
+					if (ids.contains(poiID)) {
+						return false;
+					}
+					SearchResult sr = new SearchResult(phrase);
+					sr.otherNames = object.getAllNames(true);
+					sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+					if (phrase.isUnknownSearchWordComplete()) {
+						if(!nm.matches(sr.localeName) && !nm.matches(sr.otherNames) &&
+								!nm.matches(object.getAdditionalInfo().values())) {
 							return false;
 						}
+					}
+					sr.object = object;
+					sr.preferredZoom = 17;
+					sr.file = currentFile[0];
+					sr.location = object.getLocation();
+					if (object.getSubType().equals("city") ||
+							object.getSubType().equals("country")) {
+						sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+						sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
+					} else if (object.getSubType().equals("town")) {
+						sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+					} else {
+						sr.priorityDistance = 1;
+					}
+					sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+					if (phraseMatcher != null) {
+						sr.unknownPhraseMatches = phraseMatcher.matches(sr.localeName);
+					}
+					phrase.countUnknownWordsMatch(sr);
+					sr.objectType = ObjectType.POI;
+					resultMatcher.publish(sr);
+					ids.add(poiID);
+					return false;
+				}
 
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT) ;
-						}
-					});
-
+				@Override
+				public boolean isCancelled() {
+					return resultMatcher.isCancelled() && (limit < LIMIT) ;
+				}
+			};
+			String query = searchWord.trim().toLowerCase();
+			candidatesCache.startSearch(query, getSelectedWords(phrase),
+					(int) bbox.left, (int) bbox.right, (int) bbox.top, (int) bbox.bottom);
+			ExecutorService pool = resultMatcher.getSearchPool();
+			if (pool != null) {
+				searchParallel(offlineIterator, bbox, searchWord, rm, currentFile, phrase, resultMatcher, pool);
+				return true;
+			}
 			while (offlineIterator.hasNext()) {
 				BinaryMapIndexReader r = offlineIterator.next();
 				currentFile[0] = r;
-				r.searchPoiByName(req);
+				List<Amenity> cached = getCachedCandidates(r, query);
+				if (cached != null) {
+					publishCandidates(cached, rm);
+				} else {
+					final List<Amenity> amenities = new ArrayList<Amenity>();
+					final ResultMatcher<Amenity> regionMatcher = rm;
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
+							(int)bbox.centerX(), (int)bbox.centerY(),
+							searchWord,
+							(int)bbox.left, (int)bbox.right,
+							(int)bbox.top, (int)bbox.bottom,
+							new ResultMatcher<Amenity>() {
+								@Override
+								public boolean publish(Amenity object) {
+									amenities.add(object);
+									return regionMatcher.publish(object);
+								}
 
+								@Override
+								public boolean isCancelled() {
+									return regionMatcher.isCancelled();
+								}
+							});
+					r.searchPoiByName(req);
+					if (!resultMatcher.isCancelled()) {
+						candidatesCache.put(r, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, amenities);
+					}
+				}
 				resultMatcher.apiSearchRegionFinished(this, r, phrase);
 			}
 			return true;
 		}
 
+		/**
+		 * @return pois found in region by previous search word filtered by new one or null if region should be read
+		 */
+		private List<Amenity> getCachedCandidates(BinaryMapIndexReader r, String query) {
+			Candidates<Amenity> c = candidatesCache.get(r, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+			if (c == null) {
+				return null;
+			}
+			List<Amenity> amenities = query.equals(c.word) ? c.objects : BinaryMapIndexReader.filterPoiByName(c.objects, query);
+			candidatesCache.put(r, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, amenities);
+			return amenities;
+		}
+
+		private void publishCandidates(List<Amenity> amenities, ResultMatcher<Amenity> rm) {
+			for (Amenity a : amenities) {
+				if (rm.isCancelled()) {
+					break;
+				}
+				rm.publish(a);
+			}
+		}
+
+		/**
+		 * Reads pois of regions on pool threads, found pois are published to result matcher
+		 * in order of regions as by serial search.
+		 * Region buffer is limited, result matcher uses only first {@link #LIMIT} pois anyway and bigger
+		 * regions are not cached, so region is not read further. Exported objects are not limited.
+		 */
+		private void searchParallel(Iterator<BinaryMapIndexReader> offlineIterator, final QuadRect bbox,
+				final String searchWord, ResultMatcher<Amenity> rm, BinaryMapIndexReader[] currentFile,
+				SearchPhrase phrase, final SearchResultMatcher resultMatcher, ExecutorService pool) throws IOException {
+			String query = searchWord.trim().toLowerCase();
+			final int bufferLimit = phrase.getSettings().isExportObjects() ? Integer.MAX_VALUE
+					: Math.max(LIMIT, NameCandidatesCache.MAX_REGION_OBJECTS) + 1;
+			List<BinaryMapIndexReader> regions = new ArrayList<BinaryMapIndexReader>();
+			List<List<Amenity>> cachedRegions = new ArrayList<List<Amenity>>();
+			List<FutureTask<List<Amenity>>> tasks = new ArrayList<FutureTask<List<Amenity>>>();
+			while (offlineIterator.hasNext()) {
+				final BinaryMapIndexReader r = offlineIterator.next();
+				regions.add(r);
+				List<Amenity> cached = getCachedCandidates(r, query);
+				cachedRegions.add(cached);
+				if (cached != null) {
+					tasks.add(null);
+					continue;
+				}
+				FutureTask<List<Amenity>> task = new FutureTask<List<Amenity>>(new Callable<List<Amenity>>() {
+					@Override
+					public List<Amenity> call() throws IOException {
+						final List<Amenity> amenities = new ArrayList<Amenity>();
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
+								(int) bbox.centerX(), (int) bbox.centerY(),
+								searchWord,
+								(int) bbox.left, (int) bbox.right,
+								(int) bbox.top, (int) bbox.bottom,
+								new ResultMatcher<Amenity>() {
+									@Override
+									public boolean publish(Amenity object) {
+										if (amenities.size() < bufferLimit) {
+											amenities.add(object);
+										}
+										return false;
+									}
+
+									@Override
+									public boolean isCancelled() {
+										return amenities.size() >= bufferLimit || resultMatcher.isCancelled();
+									}
+								});
+						r.searchPoiByName(req);
+						return amenities;
+					}
+				});
+				pool.execute(task);
+				tasks.add(task);
+			}
+			for (int i = 0; i < regions.size(); i++) {
+				if (resultMatcher.isCancelled()) {
+					break;
+				}
+				List<Amenity> amenities = cachedRegions.get(i);
+				if (amenities == null) {
+					FutureTask<List<Amenity>> task = tasks.get(i);
+					// api itself runs on pool thread, so region not started by pool is read here
+					task.run();
+					try {
+						amenities = task.get();
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof IOException) {
+							throw (IOException) e.getCause();
+						}
+						throw new IOException(e.getCause());
+					}
+					if (!resultMatcher.isCancelled()) {
+						candidatesCache.put(regions.get(i), query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, amenities);
+					}
+				}
+				currentFile[0] = regions.get(i);
+				publishCandidates(amenities, rm);
+				resultMatcher.apiSearchRegionFinished(this, regions.get(i), phrase);
+			}
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (p.hasObjectType(ObjectType.POI) ||
@@ -660,13 +874,18 @@ public class SearchCoreFactory {
 			this.filterOrders = filterOrders;
 		}
 
-		@Override
-		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+		// api could be called by other apis running in parallel
+		private synchronized void initPoiTypes() {
 			if (translatedNames.isEmpty()) {
 				translatedNames = types.getAllTranslatedNames(false);
 				topVisibleFilters = types.getTopVisibleFilters();
 				categories = types.getCategories(false);
 			}
+		}
+
+		@Override
+		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			initPoiTypes();
 			List<AbstractPoiType> results = new ArrayList<AbstractPoiType>();
 			List<AbstractPoiType> searchWordTypes = new ArrayList<AbstractPoiType>();
 			NameStringMatcher nm;
@@ -1045,9 +1264,7 @@ public class SearchCoreFactory {
 			SearchWord sw = phrase.getLastSelectedWord();
 			if (isLastWordCityGroup(phrase) && sw.getResult() != null && sw.getResult().file != null) {
 				City c = (City) sw.getResult().object;
-				if (c.getStreets().isEmpty()) {
-					sw.getResult().file.preloadStreets(c, null);
-				}
+				List<Street> streets = loadStreets(sw.getResult().file, c);
 				int limit = 0;
 				String wordToSearch = phrase.getUnknownWordToSearch();
 				boolean firstUnknownWordMatches = wordToSearch.equals(phrase.getUnknownSearchWord());
@@ -1057,7 +1274,7 @@ public class SearchCoreFactory {
 				if (!Algorithms.isEmpty(unknownSearchPhrase)) {
 					phraseMatcher = new NameStringMatcher(unknownSearchPhrase, StringMatcherMode.CHECK_EQUALS);
 				}
-				for (Street object : c.getStreets()) {
+				for (Street object : streets) {
 
 					SearchResult res = new SearchResult(phrase);
 					
@@ -1111,8 +1328,20 @@ public class SearchCoreFactory {
 				p.isLastWord(ObjectType.VILLAGE);
 	}
 
+	/**
+	 * Loads streets of city once. The same city could be searched by apis running in parallel
+	 * (selected city and sub search of found cities), so streets are not modified after they are loaded.
+	 */
+	private static List<Street> loadStreets(BinaryMapIndexReader file, City c) throws IOException {
+		synchronized (c) {
+			if (c.getStreets().isEmpty() && file != null) {
+				file.preloadStreets(c, null);
+			}
+			return c.getStreets();
+		}
+	}
+
 	public static class SearchBuildingAndIntersectionsByStreetAPI extends SearchBaseAPI {
-		Street cacheBuilding;
 
 		public SearchBuildingAndIntersectionsByStreetAPI() {
 			super(ObjectType.HOUSE, ObjectType.STREET_INTERSECTION);
@@ -1127,6 +1356,7 @@ public class SearchCoreFactory {
 		public boolean search(SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			Street s = null;
 			int priority = SEARCH_BUILDING_BY_STREET_PRIORITY;
+			BinaryMapIndexReader file = phrase.getLastSelectedWord().getResult().file;
 			if (phrase.isLastWord(ObjectType.STREET)) {
 				s =  (Street) phrase.getLastSelectedWord().getResult().object;
 			}
@@ -1134,7 +1364,7 @@ public class SearchCoreFactory {
 				priority = SEARCH_BUILDING_BY_CITY_PRIORITY;
 				Object o = phrase.getLastSelectedWord().getResult().object;
 				if (o instanceof City) {
-					List<Street> streets = ((City) o).getStreets();
+					List<Street> streets = loadStreets(file, (City) o);
 					if (streets.size() == 1) {
 						s = streets.get(0);
 					} else {
@@ -1150,38 +1380,7 @@ public class SearchCoreFactory {
 			}
 
 			if (s != null) {
-				BinaryMapIndexReader file = phrase.getLastSelectedWord().getResult().file;
-				
-				if (cacheBuilding != s) {
-					cacheBuilding = s;
-					SearchRequest<Building> sr = BinaryMapIndexReader
-							.buildAddressRequest(new ResultMatcher<Building>() {
-
-								@Override
-								public boolean publish(Building object) {
-									return true;
-								}
-
-								@Override
-								public boolean isCancelled() {
-									return resultMatcher.isCancelled();
-								}
-							});
-
-					file.preloadBuildings(s, sr);
-					Collections.sort(s.getBuildings(), new Comparator<Building>() {
-
-						@Override
-						public int compare(Building o1, Building o2) {
-							int i1 = Algorithms.extractFirstIntegerNumber(o1.getName());
-							int i2 = Algorithms.extractFirstIntegerNumber(o2.getName());
-							if (i1 == i2) {
-								return 0;
-							}
-							return Algorithms.compare(i1, i2);
-						}
-					});
-				}
+				loadBuildings(file, s, resultMatcher);
 				String lw = phrase.getUnknownWordToSearchBuilding();
 				NameStringMatcher buildingMatch = phrase.getNameStringMatcher(lw, phrase.isLastUnknownSearchWordComplete());
 				NameStringMatcher startMatch = new NameStringMatcher(lw, StringMatcherMode.CHECK_ONLY_STARTS_WITH);
@@ -1240,6 +1439,46 @@ public class SearchCoreFactory {
 			return true;
 		}
 
+		/**
+		 * Loads buildings and intersections of street once. The same street could be searched by apis running
+		 * in parallel (selected street and sub search of found streets), so street is not modified after load.
+		 */
+		private void loadBuildings(BinaryMapIndexReader file, Street s, final SearchResultMatcher resultMatcher)
+				throws IOException {
+			synchronized (s) {
+				if (!s.getBuildings().isEmpty() || !s.getIntersectedStreets().isEmpty()) {
+					return;
+				}
+				SearchRequest<Building> sr = BinaryMapIndexReader
+						.buildAddressRequest(new ResultMatcher<Building>() {
+
+							@Override
+							public boolean publish(Building object) {
+								return true;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return resultMatcher.isCancelled();
+							}
+						});
+
+				file.preloadBuildings(s, sr);
+				Collections.sort(s.getBuildings(), new Comparator<Building>() {
+
+					@Override
+					public int compare(Building o1, Building o2) {
+						int i1 = Algorithms.extractFirstIntegerNumber(o1.getName());
+						int i2 = Algorithms.extractFirstIntegerNumber(o2.getName());
+						if (i1 == i2) {
+							return 0;
+						}
+						return Algorithms.compare(i1, i2);
+					}
+				});
+			}
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (isLastWordCityGroup(p)) {
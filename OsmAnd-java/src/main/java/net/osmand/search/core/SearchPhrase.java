@@ -318,7 +318,7 @@ public class SearchPhrase {
 		return new QuadRect(topLeftX, topLeftY, bottomRightX, bottomRightY);
 	}
 	
-	public QuadRect get1km31Rect() {
+	public synchronized QuadRect get1km31Rect() {
 		if(cache1kmRect != null) {
 			return cache1kmRect;
 		}
@@ -504,7 +504,7 @@ public class SearchPhrase {
 		return null;
 	}
 
-	public NameStringMatcher getNameStringMatcher() {
+	public synchronized NameStringMatcher getNameStringMatcher() {
 		if(sm != null) {
 			return sm;
 		}
@@ -694,7 +694,7 @@ public class SearchPhrase {
 
 	public static class NameStringMatcher implements StringMatcher {
 
-		private CollatorStringMatcher sm;
+		private final CollatorStringMatcher sm;
 
 		public NameStringMatcher(String lastWordTrim, StringMatcherMode mode) {
 			sm = new CollatorStringMatcher(lastWordTrim, mode);
@@ -726,12 +726,7 @@ public class SearchPhrase {
 	public void countUnknownWordsMatch(SearchResult sr, String localeName, Collection<String> otherNames) {
 		if(unknownWords.size() > 0) {
 			for(int i = 0; i < unknownWords.size(); i++) {
-				if(unknownWordsMatcher.size() == i) {
-					unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i), 
-							i < unknownWords.size() - 1 || isLastUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
-								StringMatcherMode.CHECK_STARTS_FROM_SPACE));
-				}
-				NameStringMatcher ms = unknownWordsMatcher.get(i);
+				NameStringMatcher ms = getUnknownWordMatcher(i);
 				if(ms.matches(localeName) || ms.matches(otherNames)) {
 					if(sr.otherWordsMatch == null) {
 						sr.otherWordsMatch = new TreeSet<>();
@@ -747,6 +742,15 @@ public class SearchPhrase {
 		}
 		
 	}
+	private synchronized NameStringMatcher getUnknownWordMatcher(int i) {
+		if (unknownWordsMatcher.size() == i) {
+			unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i),
+					i < unknownWords.size() - 1 || isLastUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
+						StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+		}
+		return unknownWordsMatcher.get(i);
+	}
+
 	public int getRadiusSearch(int meters, int radiusLevel) {
 		int res = meters;
 		for(int k = 0; k < radiusLevel; k++) {
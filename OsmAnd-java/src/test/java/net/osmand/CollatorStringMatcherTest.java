@@ -0,0 +1,97 @@
+package net.osmand;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+public class CollatorStringMatcherTest {
+
+	@Test
+	public void testContains() {
+		Assert.assertTrue(matches("strasse", StringMatcherMode.CHECK_CONTAINS, "Bahnhofstraße"));
+		Assert.assertTrue(matches("straß", StringMatcherMode.CHECK_CONTAINS, "Bahnhofstrasse"));
+		Assert.assertTrue(matches("cafe", StringMatcherMode.CHECK_CONTAINS, "Royal Café"));
+		Assert.assertTrue(matches("saint jean", StringMatcherMode.CHECK_CONTAINS, "Saint-Jean"));
+		Assert.assertTrue(matches("", StringMatcherMode.CHECK_CONTAINS, "Main"));
+		Assert.assertFalse(matches("mainz", StringMatcherMode.CHECK_CONTAINS, "Main"));
+		Assert.assertTrue(matches("abac", StringMatcherMode.CHECK_CONTAINS, "ababac"));
+	}
+
+	@Test
+	public void testStartsWith() {
+		Assert.assertTrue(matches("main", StringMatcherMode.CHECK_ONLY_STARTS_WITH, "Main Street"));
+		Assert.assertFalse(matches("street", StringMatcherMode.CHECK_ONLY_STARTS_WITH, "Main Street"));
+		Assert.assertTrue(matches("str", StringMatcherMode.CHECK_STARTS_FROM_SPACE, "Main Street"));
+		Assert.assertFalse(matches("reet", StringMatcherMode.CHECK_STARTS_FROM_SPACE, "Main Street"));
+		Assert.assertFalse(matches("main", StringMatcherMode.CHECK_STARTS_FROM_SPACE_NOT_BEGINNING, "Main Street"));
+		Assert.assertTrue(matches("ленина", StringMatcherMode.CHECK_STARTS_FROM_SPACE_NOT_BEGINNING, "ул. Ленина"));
+	}
+
+	@Test
+	public void testEquals() {
+		Assert.assertTrue(matches("street", StringMatcherMode.CHECK_EQUALS_FROM_SPACE, "Main Street"));
+		Assert.assertFalse(matches("stre", StringMatcherMode.CHECK_EQUALS_FROM_SPACE, "Main Street"));
+		Assert.assertTrue(matches("main", StringMatcherMode.CHECK_EQUALS_FROM_SPACE, "Main Street"));
+		Assert.assertTrue(matches("cafe", StringMatcherMode.CHECK_EQUALS, "Café"));
+		Assert.assertFalse(matches("caf", StringMatcherMode.CHECK_EQUALS, "Café"));
+	}
+
+	@Test
+	public void testTrim() {
+		Assert.assertTrue(matches("main street", StringMatcherMode.CHECK_ONLY_STARTS_WITH_TRIM, "Main"));
+		Assert.assertFalse(matches("mainz", StringMatcherMode.CHECK_ONLY_STARTS_WITH_TRIM, "Main"));
+		Assert.assertTrue(matches("ma", StringMatcherMode.CHECK_ONLY_STARTS_WITH_TRIM, "Main"));
+		Assert.assertFalse(matches("main", StringMatcherMode.CHECK_ONLY_STARTS_WITH_TRIM, ""));
+	}
+
+	@Test
+	public void testWordBoundaries() {
+		Assert.assertFalse(matches("newyork", StringMatcherMode.CHECK_EQUALS_FROM_SPACE, "New York"));
+		Assert.assertFalse(matches("newyork", StringMatcherMode.CHECK_ONLY_STARTS_WITH, "New York"));
+		Assert.assertFalse(matches("abcdef", StringMatcherMode.CHECK_STARTS_FROM_SPACE, "abc-def"));
+		Assert.assertTrue(matches("abc-def", StringMatcherMode.CHECK_STARTS_FROM_SPACE, "abc-def"));
+		Assert.assertTrue(matches("york", StringMatcherMode.CHECK_EQUALS_FROM_SPACE, "NEW-YORK"));
+	}
+
+	@Test
+	public void testFinalSigma() {
+		Collator collator = OsmAndCollator.primaryCollator();
+		Assert.assertTrue(CollatorStringMatcher.cmatches(collator, "ΟΔΟΣ ΑΘΗΝΑΣ", "οδος",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+		Assert.assertTrue(CollatorStringMatcher.cmatches(collator, "ΟΔΟΣ ΑΘΗΝΑΣ", "αθηνας",
+				StringMatcherMode.CHECK_EQUALS_FROM_SPACE));
+		Assert.assertTrue(new CollatorStringMatcher("ΟΔΟΣ", StringMatcherMode.CHECK_ONLY_STARTS_WITH).matches("ΟΔΟΣ ΑΘΗΝΑΣ"));
+		Assert.assertTrue(matches("σοφιας", StringMatcherMode.CHECK_EQUALS, "ΣΟΦΙΑΣ"));
+	}
+
+	@Test
+	public void testCollatorEqualChars() {
+		java.text.Collator instance = java.text.Collator.getInstance(new java.util.Locale("lt"));
+		instance.setStrength(java.text.Collator.PRIMARY);
+		Collator collator = OsmAndCollator.wrapCollator(instance);
+		// i and y are the same letter for lithuanian collator
+		Assert.assertTrue(CollatorStringMatcher.cmatches(collator, "New York", "i", StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+		Assert.assertTrue(CollatorStringMatcher.cmatches(collator, "Main Street", "y", StringMatcherMode.CHECK_CONTAINS));
+		Assert.assertFalse(CollatorStringMatcher.cmatches(OsmAndCollator.primaryCollator(), "Main Street", "y",
+				StringMatcherMode.CHECK_CONTAINS));
+	}
+
+	@Test
+	public void testStaticMatchesReusePart() {
+		Collator collator = OsmAndCollator.primaryCollator();
+		// part of previous call is longer and has other prefix function
+		Assert.assertFalse(CollatorStringMatcher.ccontains(collator, "ababac", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaab"));
+		Assert.assertTrue(CollatorStringMatcher.ccontains(collator, "ababac", "abac"));
+		Assert.assertTrue(CollatorStringMatcher.cstartsWith(collator, "Main Street", "main", true, false, false, false));
+		Assert.assertFalse(CollatorStringMatcher.ccontains(collator, "ababab", "abac"));
+		Assert.assertEquals(collator, OsmAndCollator.primaryCollator());
+		Assert.assertEquals(collator.hashCode(), OsmAndCollator.primaryCollator().hashCode());
+	}
+
+	private static boolean matches(String part, StringMatcherMode mode, String name) {
+		boolean res = new CollatorStringMatcher(part, mode).matches(name);
+		Assert.assertEquals(res, CollatorStringMatcher.cmatches(OsmAndCollator.primaryCollator(), name, part, mode));
+		return res;
+	}
+}
@@ -0,0 +1,192 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CachedOsmandIndexesTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private File dir;
+	private File file;
+	private File otherFile;
+	private File cacheFile;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = files.newFolder();
+		file = new File(dir, "First.obf");
+		new SyntheticObfWriter(52.4, 4.8).setGrid(20, 0.0015).setBoxCells(4).write(file);
+		otherFile = new File(dir, "Second.obf");
+		new SyntheticObfWriter(52.4, 4.86).setGrid(12, 0.0015).write(otherFile);
+		cacheFile = new File(dir, "indexes.cache");
+	}
+
+	@Test
+	public void testCacheRoundTrip() throws IOException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		List<BinaryMapIndexReader> readers = cache.getReaders(Arrays.asList(file, otherFile), 2);
+		for (BinaryMapIndexReader r : readers) {
+			r.getCoverage(TileCoverage.MAP);
+		}
+		closeReaders(readers);
+		cache.writeToFile(cacheFile);
+
+		CachedOsmandIndexes stored = new CachedOsmandIndexes();
+		stored.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		for (File f : Arrays.asList(file, otherFile)) {
+			assertSameStructure(f, stored.getReader(f));
+		}
+		// all entries are up to date, so cache is not rewritten
+		byte[] data = readCache();
+		stored.writeToFile(cacheFile);
+		Assert.assertArrayEquals(data, readCache());
+	}
+
+	@Test
+	public void testCoverageIsBuiltOnFirstUse() throws IOException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		BinaryMapIndexReader reader = cache.getReader(file);
+		Assert.assertFalse(reader.isCoverageInitialized());
+		cache.writeToFile(cacheFile);
+
+		CachedOsmandIndexes stored = new CachedOsmandIndexes();
+		stored.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		BinaryMapIndexReader cached = stored.getReader(file);
+		Assert.assertFalse(cached.isCoverageInitialized());
+		Assert.assertTrue(cached.containsRouteData(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 15));
+		Assert.assertTrue(cached.isCoverageInitialized());
+		// built coverage is stored by next write
+		byte[] data = readCache();
+		stored.writeToFile(cacheFile);
+		Assert.assertFalse(Arrays.equals(data, readCache()));
+		reader.close();
+		cached.close();
+
+		CachedOsmandIndexes replaced = new CachedOsmandIndexes();
+		replaced.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		BinaryMapIndexReader withCoverage = replaced.getReader(file);
+		Assert.assertTrue(withCoverage.isCoverageInitialized());
+		assertSameStructure(file, withCoverage);
+	}
+
+	@Test
+	public void testMappedCacheIsReplaced() throws IOException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		closeReaders(cache.getReaders(Arrays.asList(file), 1));
+		cache.writeToFile(cacheFile);
+
+		CachedOsmandIndexes stored = new CachedOsmandIndexes();
+		stored.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		// new entry changes cache, which is mapped while it is written
+		closeReaders(stored.getReaders(Arrays.asList(otherFile), 1));
+		stored.writeToFile(cacheFile);
+		Assert.assertFalse(new File(dir, cacheFile.getName() + ".tmp").exists());
+		// entry which was not parsed yet is read from new mapping
+		assertSameStructure(file, stored.getReader(file));
+
+		CachedOsmandIndexes replaced = new CachedOsmandIndexes();
+		replaced.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		assertSameStructure(file, replaced.getReader(file));
+		assertSameStructure(otherFile, replaced.getReader(otherFile));
+	}
+
+	@Test
+	public void testStaleEntriesAreReread() throws IOException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		closeReaders(cache.getReaders(Arrays.asList(file, otherFile), 2));
+		cache.writeToFile(cacheFile);
+		// size of file is changed
+		new SyntheticObfWriter(52.3, 4.8).setGrid(16, 0.0015).write(file);
+		// file is modified after cache was written
+		Assert.assertTrue(otherFile.setLastModified(System.currentTimeMillis() + 60 * 1000));
+
+		CachedOsmandIndexes stored = new CachedOsmandIndexes();
+		stored.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		// modified file is parsed again, so cache is rewritten
+		assertSameStructure(otherFile, stored.getReader(otherFile));
+		byte[] data = readCache();
+		stored.writeToFile(cacheFile);
+		Assert.assertFalse(Arrays.equals(data, readCache()));
+		assertSameStructure(file, stored.getReader(file));
+	}
+
+	@Test
+	public void testErrorsAreReportedByFile() throws IOException {
+		File broken = new File(dir, "Broken.obf");
+		FileOutputStream out = new FileOutputStream(broken);
+		out.write("not obf".getBytes());
+		out.close();
+		Throwable[] errors = new Throwable[3];
+		List<BinaryMapIndexReader> readers = new CachedOsmandIndexes().getReaders(Arrays.asList(file, broken, otherFile),
+				2, errors);
+		Assert.assertNull(readers.get(1));
+		Assert.assertNotNull(errors[1]);
+		Assert.assertNull(errors[0]);
+		Assert.assertNull(errors[2]);
+		closeReaders(readers);
+	}
+
+	private static void assertSameStructure(File f, BinaryMapIndexReader cached) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f);
+		try {
+			Assert.assertEquals(reader.getVersion(), cached.getVersion());
+			Assert.assertEquals(reader.getMapIndexes().size(), cached.getMapIndexes().size());
+			for (int i = 0; i < reader.getMapIndexes().size(); i++) {
+				MapIndex index = reader.getMapIndexes().get(i);
+				MapIndex cachedIndex = cached.getMapIndexes().get(i);
+				Assert.assertEquals(index.getFilePointer(), cachedIndex.getFilePointer());
+				Assert.assertEquals(index.getRoots().size(), cachedIndex.getRoots().size());
+				for (int j = 0; j < index.getRoots().size(); j++) {
+					MapRoot root = index.getRoots().get(j);
+					MapRoot cachedRoot = cachedIndex.getRoots().get(j);
+					Assert.assertEquals(root.getFilePointer(), cachedRoot.getFilePointer());
+					Assert.assertEquals(root.getLeft(), cachedRoot.getLeft());
+					Assert.assertEquals(root.getBottom(), cachedRoot.getBottom());
+				}
+			}
+			Assert.assertEquals(reader.getRoutingIndexes().size(), cached.getRoutingIndexes().size());
+			for (int i = 0; i < reader.getRoutingIndexes().size(); i++) {
+				RouteRegion region = reader.getRoutingIndexes().get(i);
+				RouteRegion cachedRegion = cached.getRoutingIndexes().get(i);
+				Assert.assertEquals(region.getFilePointer(), cachedRegion.getFilePointer());
+				Assert.assertEquals(region.getSubregions().size(), cachedRegion.getSubregions().size());
+			}
+			Assert.assertEquals(reader.getPoiIndexes().size(), cached.getPoiIndexes().size());
+			reader.initCoverage();
+			for (int type : new int[] { TileCoverage.MAP, TileCoverage.ROUTE, TileCoverage.POI }) {
+				Assert.assertEquals(reader.getCoverage(type), cached.getCoverage(type));
+			}
+		} finally {
+			reader.close();
+			cached.close();
+		}
+	}
+
+	private byte[] readCache() throws IOException {
+		return Files.readAllBytes(cacheFile.toPath());
+	}
+
+	private static void closeReaders(List<BinaryMapIndexReader> readers) throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			if (r != null) {
+				r.close();
+			}
+		}
+	}
+}
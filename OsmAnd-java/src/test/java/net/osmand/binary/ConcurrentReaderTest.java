@@ -0,0 +1,153 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.data.Amenity;
+import net.osmand.data.Building;
+import net.osmand.data.City;
+import net.osmand.data.Street;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConcurrentReaderTest {
+
+	private static final int THREADS = 4;
+	private static final int ITERATIONS = 5;
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = files.write(new SyntheticObfWriter(52.4, 4.8).setGrid(30, 0.0015).setBoxCells(4));
+	}
+
+	@Test
+	public void testChannelReader() throws Exception {
+		testConcurrentSearches(false);
+	}
+
+	@Test
+	public void testMappedReader() throws Exception {
+		testConcurrentSearches(true);
+	}
+
+	private void testConcurrentSearches(boolean mapped) throws Exception {
+		final int header;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			header = raf.readInt();
+		} finally {
+			raf.close();
+		}
+		final List<Long> expected = search(files.open(file));
+		Assert.assertFalse(expected.isEmpty());
+
+		final BinaryMapIndexReader reader = files.openConcurrent(file, mapped);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						// every thread reads with its own cursor from the beginning of file
+						Assert.assertEquals(header, reader.readInt());
+						for (int j = 0; j < ITERATIONS; j++) {
+							Assert.assertEquals(expected, search(reader));
+						}
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		if (error.get() != null) {
+			throw new AssertionError(error.get());
+		}
+	}
+
+	/**
+	 * @return ids of map objects, route objects, pois and addresses found in whole file
+	 */
+	private static List<Long> search(BinaryMapIndexReader reader) throws IOException {
+		List<Long> ids = new ArrayList<Long>();
+		SearchRequest<BinaryMapDataObject> mapReq = BinaryMapIndexReader.buildSearchRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, 15, null, null);
+		for (BinaryMapDataObject o : reader.searchMapIndex(mapReq)) {
+			ids.add(o.getId());
+		}
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> routeReq = BinaryMapIndexReader.buildSearchRouteRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+			List<RouteSubregion> subregions = reader.searchRouteIndexTree(routeReq, region.getSubregions());
+			for (RouteSubregion sub : subregions) {
+				for (RouteDataObject o : reader.loadRouteIndexData(sub)) {
+					ids.add(o.getId());
+				}
+			}
+		}
+		final List<Long> poiIds = new ArrayList<Long>();
+		SearchRequest<Amenity> poiReq = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, "Green", 0,
+				Integer.MAX_VALUE, 0, Integer.MAX_VALUE, new ResultMatcher<Amenity>() {
+					@Override
+					public boolean publish(Amenity object) {
+						poiIds.add(object.getId());
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+		reader.searchPoiByName(poiReq);
+		Assert.assertFalse(poiIds.isEmpty());
+		Collections.sort(poiIds);
+		ids.addAll(poiIds);
+		for (BinaryIndexPart part : reader.getIndexes()) {
+			if (part instanceof AddressRegion) {
+				for (int type : new int[] { BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE,
+						BinaryMapAddressReaderAdapter.VILLAGES_TYPE }) {
+					for (City c : reader.getCities((AddressRegion) part, null, type)) {
+						ids.add(c.getId());
+						reader.preloadStreets(c, null);
+						for (Street s : c.getStreets()) {
+							ids.add(s.getId());
+							reader.preloadBuildings(s, null);
+							for (Building b : s.getBuildings()) {
+								ids.add(b.getId());
+							}
+						}
+					}
+				}
+			}
+		}
+		return ids;
+	}
+}
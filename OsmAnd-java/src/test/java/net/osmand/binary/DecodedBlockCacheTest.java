@@ -0,0 +1,100 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DecodedBlockCacheTest {
+
+	private static final String FILE = "test.obf@1";
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	@Test
+	public void testHitsAndBudget() {
+		DecodedBlockCache<String> cache = new DecodedBlockCache<String>("Test");
+		Assert.assertNull(cache.get(FILE, 1));
+		cache.setMemoryBudget(300);
+		List<String> objects = cache.put(FILE, 1, Arrays.asList("a", "b"), 100);
+		Assert.assertEquals(objects, cache.get(FILE, 1));
+		Assert.assertNull(cache.get("other.obf@1", 1));
+		// concurrent request gets objects which are already cached
+		Assert.assertSame(objects, cache.put(FILE, 1, Arrays.asList("a", "b"), 100));
+		// block bigger than budget is not cached
+		cache.put(FILE, 2, Arrays.asList("c"), 400);
+		Assert.assertNull(cache.get(FILE, 2));
+		Assert.assertEquals(100, cache.getCurrentSize());
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.getMisses());
+		Assert.assertEquals(0.25, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void testScanDoesNotEvictProtected() {
+		DecodedBlockCache<String> cache = new DecodedBlockCache<String>("Test");
+		cache.setMemoryBudget(500);
+		cache.setProtectedRatio(0.6f);
+		cache.put(FILE, 1, Arrays.asList("hot"), 100);
+		cache.put(FILE, 2, Arrays.asList("hot"), 100);
+		cache.get(FILE, 1);
+		cache.get(FILE, 2);
+		Assert.assertEquals(200, cache.getProtectedSize());
+		// blocks read once go through probation segment only
+		for (int i = 10; i < 30; i++) {
+			cache.put(FILE, i, Arrays.asList("scan"), 100);
+		}
+		Assert.assertNotNull(cache.get(FILE, 1));
+		Assert.assertNotNull(cache.get(FILE, 2));
+		Assert.assertNull(cache.get(FILE, 10));
+		Assert.assertNotNull(cache.get(FILE, 29));
+		Assert.assertTrue(cache.getCurrentSize() <= 500);
+
+		// protected segment overflow demotes least recently used block to probation
+		cache.get(FILE, 28);
+		cache.get(FILE, 27);
+		Assert.assertTrue(cache.getProtectedSize() <= 300);
+		Assert.assertNotNull(cache.get(FILE, 1));
+		cache.setMemoryBudget(0);
+		Assert.assertEquals(0, cache.getCurrentSize());
+		Assert.assertFalse(cache.isEnabled());
+	}
+
+	@Test
+	public void testRouteObjectsAreCopied() throws IOException {
+		BinaryMapIndexReader reader = files.open(new SyntheticObfWriter(52.4, 4.8).setGrid(8, 0.0015));
+		DecodedBlockCache<RouteDataObject> cache = DecodedBlockCache.getRouteDataCache();
+		cache.setMemoryBudget(16 << 20);
+		try {
+			RouteRegion region = reader.getRoutingIndexes().get(0);
+			List<RouteSubregion> subregions = reader.searchRouteIndexTree(
+					BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null),
+					region.getSubregions());
+			RouteSubregion subregion = subregions.get(0);
+			List<RouteDataObject> first = reader.loadRouteIndexData(subregion);
+			RouteDataObject o = first.get(0);
+			int pointsLength = o.getPointsLength();
+			int type = o.types[0];
+			// routing changes types in place and inserts precise points
+			o.types[0] = -1;
+			o.insert(1, o.pointsX[0], o.pointsY[0]);
+
+			List<RouteDataObject> second = reader.loadRouteIndexData(subregion);
+			Assert.assertEquals(1, cache.getHits());
+			Assert.assertNotSame(o, second.get(0));
+			Assert.assertEquals(o.id, second.get(0).id);
+			Assert.assertEquals(type, second.get(0).types[0]);
+			Assert.assertEquals(pointsLength, second.get(0).getPointsLength());
+		} finally {
+			cache.setMemoryBudget(0);
+			cache.resetStatistics();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Memory mapped and positional streams should read exactly the same as buffered random access file,
+ * segment size is kept small so values cross segments boundaries.
+ */
+public class MappedCodedInputStreamTest {
+
+	private static final int RECORDS = 500;
+	private static final int SEGMENT_SIZE = 1000;
+
+	private File file;
+	private int[] offsets = new int[RECORDS];
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("mapped", ".bin");
+		FileOutputStream fout = new FileOutputStream(file);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		Random rnd = new Random(7);
+		int pos = 0;
+		for (int i = 0; i < RECORDS; i++) {
+			offsets[i] = pos;
+			String s = "record " + i + " улица";
+			byte[] bytes = new byte[i % 50 == 0 ? 6000 + i : i % 17];
+			rnd.nextBytes(bytes);
+			out.writeUInt32NoTag(i * 131);
+			out.writeStringNoTag(s);
+			out.writeUInt32NoTag(bytes.length);
+			out.writeRawBytes(bytes);
+			out.writeInt64NoTag(-i * 1000003L);
+			pos += CodedOutputStream.computeUInt32SizeNoTag(i * 131) + CodedOutputStream.computeStringSizeNoTag(s)
+					+ CodedOutputStream.computeUInt32SizeNoTag(bytes.length) + bytes.length
+					+ CodedOutputStream.computeInt64SizeNoTag(-i * 1000003L);
+		}
+		out.flush();
+		fout.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testSequentialRead() throws IOException {
+		RandomAccessFile r1 = new RandomAccessFile(file, "r");
+		RandomAccessFile r2 = new RandomAccessFile(file, "r");
+		CodedInputStream buffered = CodedInputStream.newInstance(r1);
+		CodedInputStream mapped = CodedInputStream.newMappedInstance(r2, SEGMENT_SIZE);
+		for (int i = 0; i < RECORDS; i++) {
+			Assert.assertEquals(offsets[i], mapped.getTotalBytesRead());
+			assertRecord(buffered, mapped);
+		}
+		Assert.assertTrue(mapped.isAtEnd());
+		r1.close();
+		r2.close();
+	}
+
+	@Test
+	public void testSeekAndLimits() throws IOException {
+		RandomAccessFile r1 = new RandomAccessFile(file, "r");
+		RandomAccessFile r2 = new RandomAccessFile(file, "r");
+		CodedInputStream buffered = CodedInputStream.newInstance(r1);
+		CodedInputStream mapped = CodedInputStream.newMappedInstance(
+				CodedInputStream.newMappedInstance(r2, SEGMENT_SIZE));
+		Random rnd = new Random(11);
+		for (int k = 0; k < 300; k++) {
+			int i = rnd.nextInt(RECORDS - 1);
+			buffered.seek(offsets[i]);
+			mapped.seek(offsets[i]);
+			int len = offsets[i + 1] - offsets[i];
+			int o1 = buffered.pushLimit(len);
+			int o2 = mapped.pushLimit(len);
+			assertRecord(buffered, mapped);
+			Assert.assertTrue(mapped.isAtEnd());
+			buffered.popLimit(o1);
+			mapped.popLimit(o2);
+			// skip over next record header and compare its tail
+			mapped.readRawVarint32();
+			mapped.skipRawBytes(mapped.readRawVarint32());
+			mapped.skipRawBytes(mapped.readRawVarint32());
+			buffered.seek(mapped.getTotalBytesRead());
+			Assert.assertEquals(buffered.readRawVarint64(), mapped.readRawVarint64());
+		}
+		mapped.seek(offsets[RECORDS - 1]);
+		mapped.pushLimit(3);
+		try {
+			mapped.readRawBytes(10);
+			Assert.fail();
+		} catch (InvalidProtocolBufferException e) {
+			// expected
+		}
+		r1.close();
+		r2.close();
+	}
+
+	@Test
+	public void testBigFileIsReadByChannel() throws IOException {
+		File big = File.createTempFile("mapped_big", ".bin");
+		RandomAccessFile raf = new RandomAccessFile(big, "rw");
+		try {
+			byte[] start = new byte[1000];
+			RandomAccessFile small = new RandomAccessFile(file, "r");
+			small.readFully(start);
+			small.close();
+			raf.write(start);
+			// sparse file, no space is used
+			raf.setLength(Integer.MAX_VALUE + 1L);
+			CodedInputStream cis = CodedInputStream.newMappedInstance(raf);
+			Assert.assertFalse(cis.isMemoryMapped());
+			cis.setSizeLimit(Integer.MAX_VALUE);
+			CodedInputStream expected = CodedInputStream.newInstance(start);
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(expected.readRawVarint64(), cis.readRawVarint64());
+			}
+			cis.seek(1 << 30);
+			Assert.assertEquals(0, cis.readRawLittleEndian64());
+		} finally {
+			raf.close();
+			big.delete();
+		}
+	}
+
+	@Test
+	public void testConcurrentPositionalReads() throws Exception {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		final CodedInputStream mapped = CodedInputStream.newMappedInstance(raf, SEGMENT_SIZE);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						RandomAccessFile own = new RandomAccessFile(file, "r");
+						CodedInputStream expected = CodedInputStream.newInstance(own);
+						// odd threads read shared channel, even threads shared mapping
+						CodedInputStream cursor = seed % 2 == 1 ? CodedInputStream.newInstance(raf.getChannel())
+								: CodedInputStream.newMappedInstance(mapped);
+						Random rnd = new Random(seed);
+						for (int k = 0; k < 500; k++) {
+							int i = rnd.nextInt(RECORDS);
+							expected.seek(offsets[i]);
+							cursor.seek(offsets[i]);
+							assertRecord(expected, cursor);
+						}
+						own.close();
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		raf.close();
+		Assert.assertEquals(Collections.emptyList(), errors);
+	}
+
+	private void assertRecord(CodedInputStream buffered, CodedInputStream mapped) throws IOException {
+		Assert.assertEquals(buffered.readRawVarint32(), mapped.readRawVarint32());
+		Assert.assertEquals(buffered.readString(), mapped.readString());
+		int l = buffered.readRawVarint32();
+		Assert.assertTrue(Arrays.equals(buffered.readRawBytes(l), mapped.readBytes().toByteArray()));
+		Assert.assertEquals(buffered.readRawVarint64(), mapped.readRawVarint64());
+	}
+}
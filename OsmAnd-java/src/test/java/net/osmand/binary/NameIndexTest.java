@@ -0,0 +1,41 @@
+package net.osmand.binary;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.OsmAndCollator;
+
+public class NameIndexTest {
+
+	@Test
+	public void testBestMatchingKeys() {
+		NameIndex index = new NameIndex();
+		int gr = index.addKey("gr");
+		index.addValue(gr, 1);
+		int gre = index.addKey("gre");
+		index.addValue(gre, 2);
+		int gree = index.addKey("gree");
+		index.addValue(gree, 3);
+		index.endSubtree(gre);
+		index.endSubtree(gr);
+		int ma = index.addKey("ma");
+		index.addValue(ma, 4);
+		index.addValue(ma, 2);
+
+		Assert.assertEquals("{1, 2, 3}", lookup(index, "g"));
+		Assert.assertEquals("{2, 3}", lookup(index, "gre"));
+		// key is part of query
+		Assert.assertEquals("{3}", lookup(index, "green"));
+		Assert.assertEquals("{1}", lookup(index, "grand"));
+		Assert.assertEquals("{4, 2}", lookup(index, "main"));
+		Assert.assertEquals("{}", lookup(index, "x"));
+		Assert.assertEquals("{1, 2, 3, 4}", index.getValues().toString());
+	}
+
+	private static String lookup(NameIndex index, String query) {
+		TIntArrayList list = new TIntArrayList();
+		index.readIndexedStringTable(OsmAndCollator.primaryCollator(), query, list);
+		return list.toString();
+	}
+}
@@ -0,0 +1,140 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+public class NearestPoiSearchTest {
+
+	private static final double LAT = 52.37;
+	private static final double LON = 4.89;
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	@Test
+	public void testNearestAreKept() throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiNearestRequest(
+				MapUtils.get31TileNumberX(LON), MapUtils.get31TileNumberY(LAT), 3, null, new ResultMatcher<Amenity>() {
+					@Override
+					public boolean publish(Amenity object) {
+						return object.getId() != 4;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+		NearestPoiSearch search = new NearestPoiSearch(req);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, search.getBound(), 0);
+		// ids are ordered by distance
+		int[] order = { 5, 1, 7, 3, 4, 2, 6 };
+		for (int id : order) {
+			search.addAmenity(amenity(id, id));
+		}
+		// the same poi from another file
+		search.addAmenity(amenity(1, 1));
+		Assert.assertEquals("[1, 2, 3]", ids(search.search()));
+		Assert.assertTrue(search.getBound() < Double.POSITIVE_INFINITY);
+	}
+
+	@Test
+	public void testBoxBounds() {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiNearestRequest(1000, 1000, 1, null, null);
+		NearestPoiSearch search = new NearestPoiSearch(req);
+		Assert.assertEquals(0, search.getDistance(0, 2000, 0, 2000), 0);
+		Assert.assertTrue(search.getDistance(0, 500, 0, 500) > 0);
+		Assert.assertEquals(search.getDistance(1500, 2000, 0, 2000), search.getDistance(1500, 1500, 1000, 1000), 0);
+	}
+
+	@Test
+	public void testNearestMatchBruteForce() throws IOException {
+		// every poi is in its own data block, overlapping files, the last file repeats pois of the first one
+		SyntheticObfWriter[] writers = { new SyntheticObfWriter(52.4, 4.8).setGrid(20, 0.02),
+				new SyntheticObfWriter(52.25, 5.05).setGrid(15, 0.025).setFirstPoiId(1000),
+				new SyntheticObfWriter(52.6, 5.3).setGrid(10, 0.03).setFirstPoiId(2000),
+				new SyntheticObfWriter(52.4, 4.8).setGrid(20, 0.02) };
+		List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+		List<Amenity> all = new ArrayList<Amenity>();
+		for (SyntheticObfWriter w : writers) {
+			BinaryMapIndexReader reader = files.open(w);
+			readers.add(reader);
+			all.addAll(reader.searchPoi(BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+					Integer.MAX_VALUE, -1, null, null)));
+		}
+		Random rnd = new Random(11);
+		for (int i = 0; i < 200; i++) {
+			final int x = MapUtils.get31TileNumberX(4.7 + rnd.nextDouble() * 1.0);
+			final int y = MapUtils.get31TileNumberY(52.75 - rnd.nextDouble() * 0.8);
+			int limit = 1 + rnd.nextInt(30);
+			final int mod = 1 + rnd.nextInt(3);
+			ResultMatcher<Amenity> matcher = new ResultMatcher<Amenity>() {
+				@Override
+				public boolean publish(Amenity object) {
+					return object.getId() % mod == 0;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			};
+			List<Amenity> expected = new ArrayList<Amenity>();
+			List<Long> seen = new ArrayList<Long>();
+			for (Amenity a : all) {
+				if (!seen.contains(a.getId()) && matcher.publish(a)) {
+					seen.add(a.getId());
+					expected.add(a);
+				}
+			}
+			Collections.sort(expected, new Comparator<Amenity>() {
+				@Override
+				public int compare(Amenity o1, Amenity o2) {
+					return Double.compare(dist(x, y, o1), dist(x, y, o2));
+				}
+			});
+			expected = expected.subList(0, limit);
+			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiNearestRequest(x, y, limit, null,
+					matcher);
+			List<Amenity> res = BinaryMapIndexReader.searchPoiNearest(readers, req);
+			String msg = MapUtils.get31LatitudeY(y) + " " + MapUtils.get31LongitudeX(x) + " limit " + limit;
+			Assert.assertEquals(msg, ids(expected), ids(res));
+			Assert.assertTrue(msg, req.numberOfAcceptedSubtrees < all.size() / 2);
+		}
+	}
+
+	private static double dist(int x, int y, Amenity a) {
+		LatLon l = a.getLocation();
+		return MapUtils.squareDist31TileMetric(x, y, MapUtils.get31TileNumberX(l.getLongitude()),
+				MapUtils.get31TileNumberY(l.getLatitude()));
+	}
+
+	private static Amenity amenity(long id, int dist) {
+		Amenity a = new Amenity();
+		a.setId(id);
+		a.setLocation(LAT + dist * 0.001, LON);
+		return a;
+	}
+
+	private static String ids(List<Amenity> list) {
+		List<Long> ids = new ArrayList<Long>();
+		for (Amenity a : list) {
+			ids.add(a.getId());
+		}
+		return ids.toString();
+	}
+}
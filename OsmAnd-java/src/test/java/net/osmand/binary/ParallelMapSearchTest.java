@@ -0,0 +1,125 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.SearchFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ParallelMapSearchTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private File file;
+	private File otherFile;
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() throws IOException {
+		file = files.write(new SyntheticObfWriter(52.4, 4.8).setGrid(40, 0.0015).setBoxCells(4));
+		otherFile = files.write(new SyntheticObfWriter(52.4, 4.86).setGrid(20, 0.0015).setBoxCells(4));
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testParallelSearchMatchesSerial() throws IOException {
+		List<Long> serial = new ArrayList<Long>();
+		for (File f : Arrays.asList(file, otherFile)) {
+			BinaryMapIndexReader reader = files.open(f);
+			for (BinaryMapDataObject o : reader.searchMapIndex(createRequest(new CallingThreadFilter(), null))) {
+				serial.add(o.getId());
+			}
+		}
+		Assert.assertTrue(serial.size() > 100);
+
+		for (boolean mapped : new boolean[] { false, true }) {
+			List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+			for (File f : Arrays.asList(file, otherFile)) {
+				readers.add(files.openConcurrent(f, mapped));
+			}
+			final List<Long> published = new ArrayList<Long>();
+			final Thread thread = Thread.currentThread();
+			SearchRequest<BinaryMapDataObject> req = createRequest(new CallingThreadFilter(),
+					new ResultMatcher<BinaryMapDataObject>() {
+						@Override
+						public boolean publish(BinaryMapDataObject object) {
+							Assert.assertSame(thread, Thread.currentThread());
+							published.add(object.getId());
+							return true;
+						}
+
+						@Override
+						public boolean isCancelled() {
+							return false;
+						}
+					});
+			List<BinaryMapDataObject> res = BinaryMapIndexReader.searchMapIndex(readers, req, pool);
+			Assert.assertEquals(serial, published);
+			List<Long> ids = new ArrayList<Long>();
+			for (BinaryMapDataObject o : res) {
+				ids.add(o.getId());
+			}
+			Assert.assertEquals(serial, ids);
+		}
+	}
+
+	@Test
+	public void testCancelledSearch() throws IOException {
+		BinaryMapIndexReader reader = files.openConcurrent(file, false);
+		final int[] published = new int[1];
+		SearchRequest<BinaryMapDataObject> req = createRequest(null, new ResultMatcher<BinaryMapDataObject>() {
+			@Override
+			public boolean publish(BinaryMapDataObject object) {
+				published[0]++;
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return published[0] >= 10;
+			}
+		});
+		BinaryMapIndexReader.searchMapIndex(Arrays.asList(reader), req, pool);
+		Assert.assertTrue(published[0] >= 10);
+		Assert.assertTrue(published[0] < 100);
+	}
+
+	private static SearchRequest<BinaryMapDataObject> createRequest(SearchFilter filter,
+			ResultMatcher<BinaryMapDataObject> matcher) {
+		return BinaryMapIndexReader.buildSearchRequest(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 15, filter, matcher);
+	}
+
+	/**
+	 * Filters could keep state (like filters by rendering rules), so they should be called only by search thread
+	 */
+	private static class CallingThreadFilter implements SearchFilter {
+		private final Thread thread = Thread.currentThread();
+
+		@Override
+		public boolean accept(TIntArrayList types, MapIndex index) {
+			Assert.assertSame(thread, Thread.currentThread());
+			return types.get(0) % 2 == 1 || types.size() > 1;
+		}
+	}
+}
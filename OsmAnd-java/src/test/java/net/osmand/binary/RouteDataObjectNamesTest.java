@@ -0,0 +1,57 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+public class RouteDataObjectNamesTest {
+
+	@Test
+	public void testLazyNames() throws IOException {
+		RouteRegion reg = new RouteRegion();
+		reg.initRouteEncodingRule(0, "highway", "primary");
+		reg.initRouteEncodingRule(1, "name", "");
+		reg.initRouteEncodingRule(2, "ref", "");
+		reg.initRouteEncodingRule(3, "destination", "");
+		RouteDataObject o = new RouteDataObject(reg);
+		o.types = new int[] { 0 };
+		o.pointsX = new int[3];
+		o.pointsY = new int[3];
+		o.setEncodedNames(encode(1, 0, 2, 1, 3, 2), encode(2, 1, 3, 0, 1, 0, 2, 2, 1));
+		o.setStringTable(Arrays.asList("Main Street", "A1", "Berlin", "Exit"));
+		Assert.assertTrue(o.hasEncodedNames());
+
+		RouteDataObject copy = new RouteDataObject(o);
+		Assert.assertEquals("Main Street", o.getName());
+		Assert.assertFalse(o.hasEncodedNames());
+		Assert.assertArrayEquals(new int[] { 1, 2, 3 }, o.getNameIds());
+		Assert.assertEquals("A1", o.getRef("", false, true));
+		Assert.assertEquals("Berlin", o.getDestinationName("", false, true));
+		Assert.assertNull(o.getPointNames(1));
+		Assert.assertArrayEquals(new String[] { "Exit", "A1" }, o.getPointNames(2));
+		Assert.assertArrayEquals(new int[] { 1, 2 }, o.getPointNameTypes(2));
+		Assert.assertEquals("Main Street", o.getPointNames(0)[0]);
+		Assert.assertTrue(o.compareRoute(copy));
+
+		copy.setPointNames(null, null);
+		Assert.assertFalse(copy.hasPointNames());
+		Assert.assertEquals("Main Street", copy.getName());
+	}
+
+	private static byte[] encode(int... values) throws IOException {
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bous);
+		for (int v : values) {
+			out.writeUInt32NoTag(v);
+		}
+		out.flush();
+		return bous.toByteArray();
+	}
+}
@@ -0,0 +1,58 @@
+package net.osmand.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.ResultBatchConsumer;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+
+public class SearchRequestBatchTest {
+
+	@Test
+	public void testBatchesAndCancel() {
+		final List<Integer> sizes = new ArrayList<Integer>();
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+		req.setBatchConsumer(new ResultBatchConsumer<BinaryMapDataObject>() {
+			@Override
+			public int consume(List<BinaryMapDataObject> batch) {
+				sizes.add(batch.size());
+				// request smaller batches, then cancel
+				return sizes.size() < 3 ? 4 : 0;
+			}
+		}, 10);
+		for (int i = 0; i < 17 && !req.isCancelled(); i++) {
+			req.publish(new BinaryMapDataObject());
+		}
+		Assert.assertEquals("[10, 4]", sizes.toString());
+		Assert.assertEquals(3, req.getSearchResults().size());
+		req.flushBatch();
+		Assert.assertEquals("[10, 4, 3]", sizes.toString());
+		Assert.assertTrue(req.getSearchResults().isEmpty());
+		Assert.assertTrue(req.isCancelled());
+		Assert.assertEquals(17, req.getPublishedResultsCount());
+	}
+
+	@Test
+	public void testHoldBatch() {
+		final List<Integer> sizes = new ArrayList<Integer>();
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+		req.setBatchConsumer(new ResultBatchConsumer<BinaryMapDataObject>() {
+			@Override
+			public int consume(List<BinaryMapDataObject> batch) {
+				sizes.add(batch.size());
+				return 2;
+			}
+		}, 2);
+		req.holdBatch();
+		for (int i = 0; i < 5; i++) {
+			req.publish(new BinaryMapDataObject());
+		}
+		Assert.assertTrue(sizes.isEmpty());
+		req.releaseBatch();
+		Assert.assertEquals("[5]", sizes.toString());
+		Assert.assertFalse(req.isCancelled());
+	}
+}
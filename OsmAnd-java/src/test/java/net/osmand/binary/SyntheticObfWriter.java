@@ -0,0 +1,939 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.OsmandOdb.AddressNameIndexDataAtom;
+import net.osmand.binary.OsmandOdb.BuildingIndex;
+import net.osmand.binary.OsmandOdb.CityBlockIndex;
+import net.osmand.binary.OsmandOdb.CityIndex;
+import net.osmand.binary.OsmandOdb.IdTable;
+import net.osmand.binary.OsmandOdb.IndexedStringTable;
+import net.osmand.binary.OsmandOdb.MapData;
+import net.osmand.binary.OsmandOdb.MapDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex.CitiesIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData.AddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndCategoryTable;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapRootLevel;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBox;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndPoiIndex;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex.OsmAndPoiNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndexDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.binary.OsmandOdb.OsmAndTileBox;
+import net.osmand.binary.OsmandOdb.RestrictionData;
+import net.osmand.binary.OsmandOdb.RouteData;
+import net.osmand.binary.OsmandOdb.StreetIndex;
+import net.osmand.binary.OsmandOdb.StreetIntersection;
+import net.osmand.binary.OsmandOdb.StringTable;
+import net.osmand.data.City.CityType;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Writes small obf file with map, routing, poi and address sections for tests and benchmarks.
+ * Roads form regular grid of streets, every road spans several grid cells so it has intersections
+ * in the middle, every 4th street is primary and every 5th vertical street is one way.
+ * Road blocks are split into square boxes of grid cells, pois are placed in the middle of cells.
+ * Turn restrictions could be added at grid nodes.
+ * Address index has one city with street for every grid line, houses and intersections at grid nodes,
+ * town without streets and a few villages with houses addressed by village name.
+ * Poi and address name indexes are keyed by first letters of every word of name. Transport index is not written.
+ */
+public class SyntheticObfWriter {
+
+	public static final int VERSION = 2;
+	public static final String REGION_NAME = "Synthetic";
+
+	private static final int MAP_SHIFT = 5;
+	private static final int ROUTE_SHIFT = 4;
+	private static final int POI_BOX_ZOOM = 10;
+	private static final int POI_TILE_ZOOM = 14;
+	private static final int NAME_KEY_LENGTH = 3;
+	private static final int VILLAGE_HOUSES = 5;
+
+	private static final String[] STREET_NAMES = { "Main", "Oak", "Maple", "Station", "Church", "Park", "Mill",
+			"River", "Bridge", "Market", "School", "Castle" };
+	private static final String[] POI_NAMES = { "Green", "Old", "Royal", "Golden", "Corner", "Central", "Little",
+			"Happy" };
+	private static final String[] TOWN_NAMES = { "Greenfield", "Oakham" };
+	private static final String[] VILLAGE_NAMES = { "Millbrook", "Maplewood", "Stonebridge", "Parkhill" };
+	private static final String[][] POI_CATEGORIES = { { "sustenance", "restaurant", "cafe", "fast_food", "pub" },
+			{ "shop", "supermarket", "bakery", "convenience" }, { "finance", "bank", "atm" } };
+
+	private final double top;
+	private final double left;
+	private int gridSize = 40;
+	private double step = 0.0015;
+	private int roadCells = 4;
+	private int boxCells = 8;
+	private long firstPoiId = 1;
+	// row, col, from horizontal, type
+	private final List<int[]> restrictions = new ArrayList<int[]>();
+
+	public SyntheticObfWriter(double top, double left) {
+		this.top = top;
+		this.left = left;
+	}
+
+	/**
+	 * @param gridSize number of streets in each direction
+	 * @param step distance between streets in degrees
+	 */
+	public SyntheticObfWriter setGrid(int gridSize, double step) {
+		this.gridSize = gridSize;
+		this.step = step;
+		return this;
+	}
+
+	public SyntheticObfWriter setRoadCells(int roadCells) {
+		this.roadCells = roadCells;
+		return this;
+	}
+
+	public SyntheticObfWriter setBoxCells(int boxCells) {
+		this.boxCells = boxCells;
+		return this;
+	}
+
+	/**
+	 * Pois get consecutive ids, files with the same first id are treated as overlapping by searches.
+	 */
+	public SyntheticObfWriter setFirstPoiId(long firstPoiId) {
+		this.firstPoiId = firstPoiId;
+		return this;
+	}
+
+	/**
+	 * Restricts turns at grid node from streets of one direction to streets of other direction,
+	 * both streets should be in the same box.
+	 * @param type restriction type as in {@link net.osmand.osm.MapRenderingTypes}
+	 */
+	public SyntheticObfWriter addRestriction(int row, int col, boolean fromHorizontal, int type) {
+		restrictions.add(new int[] { row, col, fromHorizontal ? 1 : 0, type });
+		return this;
+	}
+
+	public int getGridSize() {
+		return gridSize;
+	}
+
+	public LatLon getNode(int row, int col) {
+		return new LatLon(top - row * step, left + col * step);
+	}
+
+	public LatLon getCenter() {
+		return getNode(gridSize / 2, gridSize / 2);
+	}
+
+	public static String getStreetName(int ind) {
+		return STREET_NAMES[ind % STREET_NAMES.length] + " Street " + (ind / STREET_NAMES.length + 1);
+	}
+
+	/**
+	 * @return name of city which has all streets
+	 */
+	public static String getCityName() {
+		return TOWN_NAMES[0];
+	}
+
+	public static int getVillageCount() {
+		return VILLAGE_NAMES.length;
+	}
+
+	public static String getVillageName(int ind) {
+		return VILLAGE_NAMES[ind % VILLAGE_NAMES.length];
+	}
+
+	public static String getPoiName(int ind) {
+		String[] sub = POI_CATEGORIES[ind % POI_CATEGORIES.length];
+		String type = sub[1 + (ind / POI_CATEGORIES.length) % (sub.length - 1)];
+		return POI_NAMES[ind % POI_NAMES.length] + " " + Character.toUpperCase(type.charAt(0))
+				+ type.substring(1).replace('_', ' ') + " " + ind;
+	}
+
+	public File write(File file) throws IOException {
+		List<Road> roads = createRoads();
+		List<Box> boxes = createBoxes(roads);
+		addRestrictions(roads);
+		Message root = new Message();
+		root.out.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, VERSION);
+		root.out.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, System.currentTimeMillis());
+		root.writeFixedLength(OsmAndStructure.MAPINDEX_FIELD_NUMBER, writeMapIndex(boxes));
+		root.writeFixedLength(OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER, writeRoutingIndex(boxes));
+		root.writeFixedLength(OsmAndStructure.POIINDEX_FIELD_NUMBER, writePoiIndex());
+		root.writeFixedLength(OsmAndStructure.ADDRESSINDEX_FIELD_NUMBER, writeAddressIndex());
+		root.out.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, VERSION);
+		OutputStream os = new FileOutputStream(file);
+		try {
+			os.write(root.toByteArray());
+		} finally {
+			os.close();
+		}
+		return file;
+	}
+
+	private List<Road> createRoads() {
+		List<Road> roads = new ArrayList<Road>();
+		for (int horizontal = 0; horizontal < 2; horizontal++) {
+			for (int line = 0; line < gridSize; line++) {
+				for (int start = 0; start < gridSize - 1; start += roadCells) {
+					int end = Math.min(start + roadCells, gridSize - 1);
+					Road r = new Road(roads.size() + 1, end - start + 1);
+					for (int k = 0; k <= end - start; k++) {
+						LatLon l = horizontal == 1 ? getNode(line, start + k) : getNode(start + k, line);
+						r.x[k] = MapUtils.get31TileNumberX(l.getLongitude());
+						r.y[k] = MapUtils.get31TileNumberY(l.getLatitude());
+					}
+					r.horizontal = horizontal == 1;
+					r.primary = line % 4 == 0;
+					r.oneway = horizontal == 0 && line % 5 == 2;
+					r.name = getStreetName(horizontal * gridSize + line);
+					r.boxCol = (horizontal == 1 ? start : line) / boxCells;
+					r.boxRow = (horizontal == 1 ? line : start) / boxCells;
+					roads.add(r);
+				}
+			}
+		}
+		return roads;
+	}
+
+	private void addRestrictions(List<Road> roads) {
+		for (int[] rs : restrictions) {
+			LatLon l = getNode(rs[0], rs[1]);
+			int x = MapUtils.get31TileNumberX(l.getLongitude());
+			int y = MapUtils.get31TileNumberY(l.getLatitude());
+			for (Road from : roads) {
+				if (from.horizontal == (rs[2] == 1) && from.contains(x, y)) {
+					for (Road to : roads) {
+						if (to.horizontal != from.horizontal && to.contains(x, y)) {
+							if (to.boxRow != from.boxRow || to.boxCol != from.boxCol) {
+								throw new IllegalArgumentException("Restricted roads are in different boxes");
+							}
+							from.restrictions.put(to, rs[3]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private List<Box> createBoxes(List<Road> roads) {
+		Map<Integer, Box> boxes = new LinkedHashMap<Integer, Box>();
+		for (Road r : roads) {
+			int key = r.boxRow * gridSize + r.boxCol;
+			Box b = boxes.get(key);
+			if (b == null) {
+				b = new Box();
+				boxes.put(key, b);
+			}
+			b.roads.add(r);
+			for (int k = 0; k < r.x.length; k++) {
+				b.left = Math.min(b.left, r.x[k]);
+				b.right = Math.max(b.right, r.x[k]);
+				b.top = Math.min(b.top, r.y[k]);
+				b.bottom = Math.max(b.bottom, r.y[k]);
+			}
+		}
+		return new ArrayList<Box>(boxes.values());
+	}
+
+	private static Box union(List<Box> boxes) {
+		Box u = new Box();
+		for (Box b : boxes) {
+			u.left = Math.min(u.left, b.left);
+			u.right = Math.max(u.right, b.right);
+			u.top = Math.min(u.top, b.top);
+			u.bottom = Math.max(u.bottom, b.bottom);
+		}
+		return u;
+	}
+
+	private Message writeMapIndex(List<Box> boxes) throws IOException {
+		// rule ids are assigned in order starting from 1
+		String[][] rules = { { "highway", "primary" }, { "highway", "residential" }, { "name", "" } };
+		Message index = new Message();
+		index.out.writeString(OsmAndMapIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		for (String[] rule : rules) {
+			Message r = new Message();
+			r.out.writeString(MapEncodingRule.TAG_FIELD_NUMBER, rule[0]);
+			r.out.writeString(MapEncodingRule.VALUE_FIELD_NUMBER, rule[1]);
+			r.out.writeUInt32(MapEncodingRule.TYPE_FIELD_NUMBER, 0);
+			index.writeMessage(OsmAndMapIndex.RULES_FIELD_NUMBER, r);
+		}
+		Box all = union(boxes);
+		Message level = new Message();
+		level.out.writeInt32(MapRootLevel.MAXZOOM_FIELD_NUMBER, 21);
+		level.out.writeInt32(MapRootLevel.MINZOOM_FIELD_NUMBER, 13);
+		level.out.writeInt32(MapRootLevel.LEFT_FIELD_NUMBER, all.left);
+		level.out.writeInt32(MapRootLevel.RIGHT_FIELD_NUMBER, all.right);
+		level.out.writeInt32(MapRootLevel.TOP_FIELD_NUMBER, all.top);
+		level.out.writeInt32(MapRootLevel.BOTTOM_FIELD_NUMBER, all.bottom);
+		int[] shiftPositions = new int[boxes.size()];
+		int[] boxPositions = new int[boxes.size()];
+		for (int i = 0; i < boxes.size(); i++) {
+			Box b = boxes.get(i);
+			Message box = new Message();
+			box.out.writeSInt32(MapDataBox.LEFT_FIELD_NUMBER, b.left - all.left);
+			box.out.writeSInt32(MapDataBox.RIGHT_FIELD_NUMBER, b.right - all.right);
+			box.out.writeSInt32(MapDataBox.TOP_FIELD_NUMBER, b.top - all.top);
+			box.out.writeSInt32(MapDataBox.BOTTOM_FIELD_NUMBER, b.bottom - all.bottom);
+			int shift = box.writeIntPlaceholder(MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER);
+			boxPositions[i] = level.writeFixedLength(MapRootLevel.BOXES_FIELD_NUMBER, box);
+			shiftPositions[i] = boxPositions[i] + shift;
+		}
+		level.out.writeTag(MapRootLevel.BLOCKS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		for (int i = 0; i < boxes.size(); i++) {
+			level.patchInt(shiftPositions[i], level.position() - boxPositions[i]);
+			Message block = writeMapBlock(boxes.get(i));
+			level.out.writeRawVarint32(block.size());
+			level.writeRaw(block);
+		}
+		index.writeFixedLength(OsmAndMapIndex.LEVELS_FIELD_NUMBER, level);
+		return index;
+	}
+
+	private Message writeMapBlock(Box b) throws IOException {
+		Message block = new Message();
+		block.out.writeUInt64(MapDataBlock.BASEID_FIELD_NUMBER, 0);
+		List<String> strings = new ArrayList<String>();
+		int px = b.left >> MAP_SHIFT << MAP_SHIFT;
+		int py = b.top >> MAP_SHIFT << MAP_SHIFT;
+		for (Road r : b.roads) {
+			Message obj = new Message();
+			Message coordinates = new Message();
+			int prevX = px >> MAP_SHIFT;
+			int prevY = py >> MAP_SHIFT;
+			for (int k = 0; k < r.x.length; k++) {
+				coordinates.out.writeSInt32NoTag((r.x[k] >> MAP_SHIFT) - prevX);
+				coordinates.out.writeSInt32NoTag((r.y[k] >> MAP_SHIFT) - prevY);
+				prevX = r.x[k] >> MAP_SHIFT;
+				prevY = r.y[k] >> MAP_SHIFT;
+			}
+			obj.writeMessage(MapData.COORDINATES_FIELD_NUMBER, coordinates);
+			Message types = new Message();
+			types.out.writeRawVarint32(r.primary ? 1 : 2);
+			obj.writeMessage(MapData.TYPES_FIELD_NUMBER, types);
+			obj.out.writeSInt64(MapData.ID_FIELD_NUMBER, r.id);
+			Message names = new Message();
+			names.out.writeRawVarint32(3);
+			names.out.writeRawVarint32(strings.size());
+			strings.add(r.name);
+			obj.writeMessage(MapData.STRINGNAMES_FIELD_NUMBER, names);
+			block.writeMessage(MapDataBlock.DATAOBJECTS_FIELD_NUMBER, obj);
+		}
+		block.writeMessage(MapDataBlock.STRINGTABLE_FIELD_NUMBER, writeStringTable(strings));
+		return block;
+	}
+
+	private Message writeRoutingIndex(List<Box> boxes) throws IOException {
+		String[][] rules = { { "highway", "primary" }, { "highway", "residential" }, { "name", "" },
+				{ "oneway", "yes" } };
+		Message index = new Message();
+		index.out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		for (int i = 0; i < rules.length; i++) {
+			Message r = new Message();
+			r.out.writeString(RouteEncodingRule.TAG_FIELD_NUMBER, rules[i][0]);
+			r.out.writeString(RouteEncodingRule.VALUE_FIELD_NUMBER, rules[i][1]);
+			r.out.writeUInt32(RouteEncodingRule.ID_FIELD_NUMBER, i + 1);
+			index.writeMessage(OsmAndRoutingIndex.RULES_FIELD_NUMBER, r);
+		}
+		Box all = union(boxes);
+		Message root = new Message();
+		// root box coordinates are absolute, children are relative to parent
+		root.out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, all.left);
+		root.out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, all.right);
+		root.out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, all.top);
+		root.out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, all.bottom);
+		int[] shiftPositions = new int[boxes.size()];
+		int[] boxPositions = new int[boxes.size()];
+		for (int i = 0; i < boxes.size(); i++) {
+			Box b = boxes.get(i);
+			Message box = new Message();
+			box.out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, b.left - all.left);
+			box.out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, b.right - all.right);
+			box.out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, b.top - all.top);
+			box.out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, b.bottom - all.bottom);
+			int shift = box.writeIntPlaceholder(RouteDataBox.SHIFTTODATA_FIELD_NUMBER);
+			boxPositions[i] = root.writeFixedLength(RouteDataBox.BOXES_FIELD_NUMBER, box);
+			shiftPositions[i] = boxPositions[i] + shift;
+		}
+		int rootPosition = index.writeFixedLength(OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER, root);
+		index.out.writeTag(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		for (int i = 0; i < boxes.size(); i++) {
+			int boxPosition = rootPosition + boxPositions[i];
+			index.patchInt(rootPosition + shiftPositions[i], index.position() - boxPosition);
+			Message block = writeRouteBlock(boxes.get(i));
+			index.out.writeRawVarint32(block.size());
+			index.writeRaw(block);
+		}
+		return index;
+	}
+
+	private Message writeRouteBlock(Box b) throws IOException {
+		Message block = new Message();
+		Message ids = new Message();
+		long prevId = 0;
+		for (Road r : b.roads) {
+			// real files keep osm id shifted by 6 bits
+			long id = ((long) r.id) << 6;
+			ids.out.writeSInt64(IdTable.ROUTEID_FIELD_NUMBER, id - prevId);
+			prevId = id;
+		}
+		block.writeMessage(RouteDataBlock.IDTABLE_FIELD_NUMBER, ids);
+		List<String> strings = new ArrayList<String>();
+		for (int i = 0; i < b.roads.size(); i++) {
+			Road r = b.roads.get(i);
+			Message obj = new Message();
+			Message points = new Message();
+			int prevX = b.left >> ROUTE_SHIFT;
+			int prevY = b.top >> ROUTE_SHIFT;
+			for (int k = 0; k < r.x.length; k++) {
+				points.out.writeSInt32NoTag((r.x[k] >> ROUTE_SHIFT) - prevX);
+				points.out.writeSInt32NoTag((r.y[k] >> ROUTE_SHIFT) - prevY);
+				prevX = r.x[k] >> ROUTE_SHIFT;
+				prevY = r.y[k] >> ROUTE_SHIFT;
+			}
+			obj.writeMessage(RouteData.POINTS_FIELD_NUMBER, points);
+			Message types = new Message();
+			types.out.writeRawVarint32(r.primary ? 1 : 2);
+			if (r.oneway) {
+				types.out.writeRawVarint32(4);
+			}
+			obj.writeMessage(RouteData.TYPES_FIELD_NUMBER, types);
+			Message names = new Message();
+			names.out.writeRawVarint32(3);
+			names.out.writeRawVarint32(strings.size());
+			strings.add(r.name);
+			obj.writeMessage(RouteData.STRINGNAMES_FIELD_NUMBER, names);
+			obj.out.writeInt32(RouteData.ROUTEID_FIELD_NUMBER, i);
+			block.writeMessage(RouteDataBlock.DATAOBJECTS_FIELD_NUMBER, obj);
+		}
+		for (int i = 0; i < b.roads.size(); i++) {
+			for (Map.Entry<Road, Integer> rs : b.roads.get(i).restrictions.entrySet()) {
+				Message restriction = new Message();
+				restriction.out.writeInt32(RestrictionData.TYPE_FIELD_NUMBER, rs.getValue());
+				restriction.out.writeInt32(RestrictionData.FROM_FIELD_NUMBER, i);
+				restriction.out.writeInt32(RestrictionData.TO_FIELD_NUMBER, b.roads.indexOf(rs.getKey()));
+				block.writeMessage(RouteDataBlock.RESTRICTIONS_FIELD_NUMBER, restriction);
+			}
+		}
+		block.writeMessage(RouteDataBlock.STRINGTABLE_FIELD_NUMBER, writeStringTable(strings));
+		return block;
+	}
+
+	private Message writePoiIndex() throws IOException {
+		Message index = new Message();
+		index.out.writeString(OsmAndPoiIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		LatLon tl = getNode(0, 0);
+		LatLon br = getNode(gridSize - 1, gridSize - 1);
+		Message bounds = new Message();
+		bounds.out.writeUInt32(OsmAndTileBox.LEFT_FIELD_NUMBER, MapUtils.get31TileNumberX(tl.getLongitude()));
+		bounds.out.writeUInt32(OsmAndTileBox.RIGHT_FIELD_NUMBER, MapUtils.get31TileNumberX(br.getLongitude()));
+		bounds.out.writeUInt32(OsmAndTileBox.TOP_FIELD_NUMBER, MapUtils.get31TileNumberY(tl.getLatitude()));
+		bounds.out.writeUInt32(OsmAndTileBox.BOTTOM_FIELD_NUMBER, MapUtils.get31TileNumberY(br.getLatitude()));
+		index.writeMessage(OsmAndPoiIndex.BOUNDARIES_FIELD_NUMBER, bounds);
+		Message categories = new Message();
+		for (String[] c : POI_CATEGORIES) {
+			categories.out.writeString(OsmAndCategoryTable.CATEGORY_FIELD_NUMBER, c[0]);
+			for (int k = 1; k < c.length; k++) {
+				categories.out.writeString(OsmAndCategoryTable.SUBCATEGORIES_FIELD_NUMBER, c[k]);
+			}
+		}
+		index.writeMessage(OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER, categories);
+
+		// one poi in the middle of every grid cell grouped by tiles
+		Map<Long, List<Integer>> tiles = new LinkedHashMap<Long, List<Integer>>();
+		Map<Long, List<Long>> boxTiles = new LinkedHashMap<Long, List<Long>>();
+		List<int[]> pois = new ArrayList<int[]>();
+		for (int row = 0; row < gridSize - 1; row++) {
+			for (int col = 0; col < gridSize - 1; col++) {
+				LatLon l = getNode(row, col);
+				int x = MapUtils.get31TileNumberX(l.getLongitude() + step / 2);
+				int y = MapUtils.get31TileNumberY(l.getLatitude() - step / 2);
+				long tile = tileKey(x >> (31 - POI_TILE_ZOOM), y >> (31 - POI_TILE_ZOOM));
+				List<Integer> list = tiles.get(tile);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					tiles.put(tile, list);
+					long box = tileKey(x >> (31 - POI_BOX_ZOOM), y >> (31 - POI_BOX_ZOOM));
+					if (!boxTiles.containsKey(box)) {
+						boxTiles.put(box, new ArrayList<Long>());
+					}
+					boxTiles.get(box).add(tile);
+				}
+				list.add(pois.size());
+				pois.add(new int[] { x, y });
+			}
+		}
+		Map<Long, Integer> shiftPositions = new LinkedHashMap<Long, Integer>();
+		for (Map.Entry<Long, List<Long>> e : boxTiles.entrySet()) {
+			Message box = new Message();
+			box.out.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, POI_BOX_ZOOM);
+			box.out.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, tileX(e.getKey()));
+			box.out.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, tileY(e.getKey()));
+			Map<Long, Integer> subShifts = new LinkedHashMap<Long, Integer>();
+			for (Long tile : e.getValue()) {
+				Message sub = new Message();
+				// zoom and coordinates of sub box are relative to parent
+				sub.out.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, POI_TILE_ZOOM - POI_BOX_ZOOM);
+				sub.out.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER,
+						tileX(tile) - (tileX(e.getKey()) << (POI_TILE_ZOOM - POI_BOX_ZOOM)));
+				sub.out.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER,
+						tileY(tile) - (tileY(e.getKey()) << (POI_TILE_ZOOM - POI_BOX_ZOOM)));
+				int shift = sub.writeIntPlaceholder(OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER);
+				subShifts.put(tile, box.writeFixedLength(OsmAndPoiBox.SUBBOXES_FIELD_NUMBER, sub) + shift);
+			}
+			int boxPosition = index.writeFixedLength(OsmAndPoiIndex.BOXES_FIELD_NUMBER, box);
+			for (Map.Entry<Long, Integer> s : subShifts.entrySet()) {
+				shiftPositions.put(s.getKey(), boxPosition + s.getValue());
+			}
+		}
+		Map<Long, List<Integer>> nameShiftPositions = new LinkedHashMap<Long, List<Integer>>();
+		Message nameIndex = writePoiNameIndex(pois, nameShiftPositions);
+		int nameIndexPosition = index.writeFixedLength(OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER, nameIndex);
+		for (Map.Entry<Long, List<Integer>> e : tiles.entrySet()) {
+			long tile = e.getKey();
+			Message data = new Message();
+			data.out.writeUInt32(OsmAndPoiBoxData.ZOOM_FIELD_NUMBER, POI_TILE_ZOOM);
+			data.out.writeUInt32(OsmAndPoiBoxData.X_FIELD_NUMBER, tileX(tile));
+			data.out.writeUInt32(OsmAndPoiBoxData.Y_FIELD_NUMBER, tileY(tile));
+			for (int ind : e.getValue()) {
+				int[] p = pois.get(ind);
+				Message atom = new Message();
+				atom.out.writeSInt32(OsmAndPoiBoxDataAtom.DX_FIELD_NUMBER,
+						(p[0] >> 7) - (tileX(tile) << (24 - POI_TILE_ZOOM)));
+				atom.out.writeSInt32(OsmAndPoiBoxDataAtom.DY_FIELD_NUMBER,
+						(p[1] >> 7) - (tileY(tile) << (24 - POI_TILE_ZOOM)));
+				int cat = ind % POI_CATEGORIES.length;
+				int subcat = (ind / POI_CATEGORIES.length) % (POI_CATEGORIES[cat].length - 1);
+				atom.out.writeUInt32(OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER,
+						(subcat << BinaryMapPoiReaderAdapter.SHIFT_BITS_CATEGORY) | cat);
+				atom.out.writeUInt64(OsmAndPoiBoxDataAtom.ID_FIELD_NUMBER, firstPoiId + ind);
+				atom.out.writeString(OsmAndPoiBoxDataAtom.NAME_FIELD_NUMBER, getPoiName(ind));
+				data.writeMessage(OsmAndPoiBoxData.POIDATA_FIELD_NUMBER, atom);
+			}
+			// shift points to the length of data message
+			int position = index.writeFixedLength(OsmAndPoiIndex.POIDATA_FIELD_NUMBER, data) - 4;
+			index.patchInt(shiftPositions.get(tile), position);
+			for (int p : nameShiftPositions.get(tile)) {
+				index.patchInt(nameIndexPosition + p, position);
+			}
+		}
+		return index;
+	}
+
+	private Message writePoiNameIndex(List<int[]> pois, Map<Long, List<Integer>> shiftPositions) throws IOException {
+		Map<String, Map<Long, Boolean>> keys = new TreeMap<String, Map<Long, Boolean>>();
+		for (int i = 0; i < pois.size(); i++) {
+			int[] p = pois.get(i);
+			long tile = tileKey(p[0] >> (31 - POI_TILE_ZOOM), p[1] >> (31 - POI_TILE_ZOOM));
+			shiftPositions.put(tile, new ArrayList<Integer>());
+			for (String word : getPoiName(i).toLowerCase().split(" ")) {
+				String key = word.substring(0, Math.min(NAME_KEY_LENGTH, word.length()));
+				if (!keys.containsKey(key)) {
+					keys.put(key, new LinkedHashMap<Long, Boolean>());
+				}
+				keys.get(key).put(tile, Boolean.TRUE);
+			}
+		}
+		Message table = new Message();
+		List<Integer> valPositions = new ArrayList<Integer>();
+		for (String key : keys.keySet()) {
+			table.out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, key);
+			valPositions.add(table.writeIntPlaceholder(IndexedStringTable.VAL_FIELD_NUMBER));
+		}
+		Message nameIndex = new Message();
+		// values of table are offsets from table start
+		int tablePosition = nameIndex.writeFixedLength(OsmAndPoiNameIndex.TABLE_FIELD_NUMBER, table);
+		nameIndex.out.writeTag(OsmAndPoiNameIndex.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		int k = 0;
+		for (Map<Long, Boolean> keyTiles : keys.values()) {
+			nameIndex.patchInt(tablePosition + valPositions.get(k++), nameIndex.position() - tablePosition);
+			Message data = new Message();
+			List<long[]> atomShifts = new ArrayList<long[]>();
+			for (Long tile : keyTiles.keySet()) {
+				Message atom = new Message();
+				atom.out.writeUInt32(OsmAndPoiNameIndexDataAtom.ZOOM_FIELD_NUMBER, POI_TILE_ZOOM);
+				atom.out.writeUInt32(OsmAndPoiNameIndexDataAtom.X_FIELD_NUMBER, tileX(tile));
+				atom.out.writeUInt32(OsmAndPoiNameIndexDataAtom.Y_FIELD_NUMBER, tileY(tile));
+				int shift = atom.writeIntPlaceholder(OsmAndPoiNameIndexDataAtom.SHIFTTO_FIELD_NUMBER);
+				int atomPosition = data.writeMessage(OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER, atom);
+				atomShifts.add(new long[] { tile, atomPosition + shift });
+			}
+			nameIndex.out.writeRawVarint32(data.size());
+			int dataPosition = nameIndex.position();
+			nameIndex.writeRaw(data);
+			for (long[] s : atomShifts) {
+				shiftPositions.get(s[0]).add(dataPosition + (int) s[1]);
+			}
+		}
+		return nameIndex;
+	}
+
+	private List<Place> createCities() {
+		List<Place> cities = new ArrayList<Place>();
+		long id = 1;
+		for (int i = 0; i < TOWN_NAMES.length + VILLAGE_NAMES.length; i++) {
+			boolean town = i < TOWN_NAMES.length;
+			int row = town ? gridSize / 2 - i * gridSize / 4 : (i - TOWN_NAMES.length + 1) * gridSize / (VILLAGE_NAMES.length + 1);
+			int col = town ? gridSize / 2 : gridSize - 1 - row;
+			Place c = new Place(town ? TOWN_NAMES[i] : VILLAGE_NAMES[i - TOWN_NAMES.length],
+					town ? BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE : BinaryMapAddressReaderAdapter.VILLAGES_TYPE,
+					getNode(row, col), id++);
+			c.cityType = i == 0 ? CityType.CITY : (town ? CityType.TOWN : CityType.VILLAGE);
+			if (!town) {
+				// houses of village are addressed by village name
+				Place s = new Place("<" + c.name + ">", BinaryMapAddressReaderAdapter.STREET_TYPE, getNode(row, col), id++);
+				s.city = c;
+				for (int k = 0; k < VILLAGE_HOUSES; k++) {
+					s.nodes.add(getNode(row, col - k));
+				}
+				c.streets.add(s);
+			}
+			cities.add(c);
+		}
+		Place city = cities.get(0);
+		for (int horizontal = 0; horizontal < 2; horizontal++) {
+			for (int line = 0; line < gridSize; line++) {
+				Place s = new Place(getStreetName(horizontal * gridSize + line), BinaryMapAddressReaderAdapter.STREET_TYPE,
+						horizontal == 1 ? getNode(line, gridSize / 2) : getNode(gridSize / 2, line), id++);
+				s.city = city;
+				s.horizontal = horizontal == 1;
+				s.line = line;
+				for (int k = 0; k < gridSize; k++) {
+					s.nodes.add(horizontal == 1 ? getNode(line, k) : getNode(k, line));
+				}
+				city.streets.add(s);
+			}
+		}
+		return cities;
+	}
+
+	private Message writeAddressIndex() throws IOException {
+		Message index = new Message();
+		index.out.writeString(OsmAndAddressIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		List<Place> cities = createCities();
+		List<Place> towns = new ArrayList<Place>();
+		List<Place> villages = new ArrayList<Place>();
+		for (Place c : cities) {
+			(c.type == BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE ? towns : villages).add(c);
+		}
+		writeCities(index, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE, towns);
+		writeCities(index, BinaryMapAddressReaderAdapter.VILLAGES_TYPE, villages);
+		List<Place> places = new ArrayList<Place>(cities);
+		places.addAll(cities.get(0).streets);
+		int nameIndexPosition = index.position() + CodedOutputStream.computeTagSize(OsmAndAddressIndex.NAMEINDEX_FIELD_NUMBER) + 4;
+		index.writeFixedLength(OsmAndAddressIndex.NAMEINDEX_FIELD_NUMBER, writeAddressNameIndex(places, nameIndexPosition));
+		return index;
+	}
+
+	/**
+	 * Sets positions of cities and streets in address index, they are referenced by name index.
+	 */
+	private void writeCities(Message index, int type, List<Place> cities) throws IOException {
+		Message block = new Message();
+		block.out.writeUInt32(CitiesIndex.TYPE_FIELD_NUMBER, type);
+		List<Integer> shiftPositions = new ArrayList<Integer>();
+		for (Place c : cities) {
+			Message city = new Message();
+			city.out.writeUInt32(CityIndex.CITY_TYPE_FIELD_NUMBER, c.cityType.ordinal());
+			city.out.writeString(CityIndex.NAME_FIELD_NUMBER, c.name);
+			city.out.writeUInt64(CityIndex.ID_FIELD_NUMBER, c.id);
+			city.out.writeUInt32(CityIndex.X_FIELD_NUMBER, c.x);
+			city.out.writeUInt32(CityIndex.Y_FIELD_NUMBER, c.y);
+			int shift = city.writeIntPlaceholder(CityIndex.SHIFTTOCITYBLOCKINDEX_FIELD_NUMBER);
+			c.position = block.writeMessage(CitiesIndex.CITIES_FIELD_NUMBER, city);
+			shiftPositions.add(c.position + shift);
+			// objects are referenced by position of their length
+			c.position -= CodedOutputStream.computeRawVarint32Size(city.size());
+		}
+		for (int i = 0; i < cities.size(); i++) {
+			Place c = cities.get(i);
+			Message streets = new Message();
+			for (Place s : c.streets) {
+				Message street = writeStreet(s, c);
+				s.position = streets.writeMessage(CityBlockIndex.STREETS_FIELD_NUMBER, street)
+						- CodedOutputStream.computeRawVarint32Size(street.size());
+			}
+			int streetsPosition = block.writeMessage(CitiesIndex.BLOCKS_FIELD_NUMBER, streets);
+			block.patchInt(shiftPositions.get(i), streetsPosition - CodedOutputStream.computeRawVarint32Size(streets.size())
+					- c.position);
+			for (Place s : c.streets) {
+				s.position += streetsPosition;
+			}
+		}
+		int blockPosition = index.writeFixedLength(OsmAndAddressIndex.CITIES_FIELD_NUMBER, block);
+		for (Place c : cities) {
+			c.position += blockPosition;
+			for (Place s : c.streets) {
+				s.position += blockPosition;
+			}
+		}
+	}
+
+	private Message writeStreet(Place s, Place city) throws IOException {
+		Message street = new Message();
+		street.out.writeString(StreetIndex.NAME_FIELD_NUMBER, s.name);
+		street.out.writeSInt32(StreetIndex.X_FIELD_NUMBER, (s.x >> 7) - (city.x >> 7));
+		street.out.writeSInt32(StreetIndex.Y_FIELD_NUMBER, (s.y >> 7) - (city.y >> 7));
+		street.out.writeUInt64(StreetIndex.ID_FIELD_NUMBER, s.id);
+		for (Place other : city.streets) {
+			// streets of other direction intersect at grid node
+			if (other.horizontal != s.horizontal) {
+				LatLon n = s.nodes.get(other.line);
+				Message intersection = new Message();
+				intersection.out.writeString(StreetIntersection.NAME_FIELD_NUMBER, other.name);
+				intersection.out.writeSInt32(StreetIntersection.INTERSECTEDX_FIELD_NUMBER,
+						(MapUtils.get31TileNumberX(n.getLongitude()) >> 7) - (s.x >> 7));
+				intersection.out.writeSInt32(StreetIntersection.INTERSECTEDY_FIELD_NUMBER,
+						(MapUtils.get31TileNumberY(n.getLatitude()) >> 7) - (s.y >> 7));
+				street.writeMessage(StreetIndex.INTERSECTIONS_FIELD_NUMBER, intersection);
+			}
+		}
+		for (int k = 0; k < s.nodes.size(); k++) {
+			LatLon n = s.nodes.get(k);
+			Message building = new Message();
+			building.out.writeString(BuildingIndex.NAME_FIELD_NUMBER, String.valueOf(k + 1));
+			building.out.writeSInt32(BuildingIndex.X_FIELD_NUMBER, (MapUtils.get31TileNumberX(n.getLongitude()) >> 7) - (s.x >> 7));
+			building.out.writeSInt32(BuildingIndex.Y_FIELD_NUMBER, (MapUtils.get31TileNumberY(n.getLatitude()) >> 7) - (s.y >> 7));
+			building.out.writeUInt64(BuildingIndex.ID_FIELD_NUMBER, s.id * gridSize + k);
+			street.writeMessage(StreetIndex.BUILDINGS_FIELD_NUMBER, building);
+		}
+		return street;
+	}
+
+	/**
+	 * @param indexPosition position of name index in address index, atoms reference objects relative to own position
+	 */
+	private Message writeAddressNameIndex(List<Place> places, int indexPosition) throws IOException {
+		Map<String, List<Place>> keys = new TreeMap<String, List<Place>>();
+		for (Place p : places) {
+			for (String word : p.name.toLowerCase().split(" ")) {
+				String key = word.substring(0, Math.min(NAME_KEY_LENGTH, word.length()));
+				if (!keys.containsKey(key)) {
+					keys.put(key, new ArrayList<Place>());
+				}
+				if (!keys.get(key).contains(p)) {
+					keys.get(key).add(p);
+				}
+			}
+		}
+		Message table = new Message();
+		List<Integer> valPositions = new ArrayList<Integer>();
+		for (String key : keys.keySet()) {
+			table.out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, key);
+			valPositions.add(table.writeIntPlaceholder(IndexedStringTable.VAL_FIELD_NUMBER));
+		}
+		Message nameIndex = new Message();
+		// values of table are offsets from table start
+		int tablePosition = nameIndex.writeFixedLength(OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER, table);
+		int k = 0;
+		for (List<Place> keyPlaces : keys.values()) {
+			nameIndex.out.writeTag(OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			int dataPosition = nameIndex.position();
+			nameIndex.patchInt(tablePosition + valPositions.get(k++), dataPosition - tablePosition);
+			int fp = indexPosition + dataPosition;
+			Message data = new Message();
+			for (Place p : keyPlaces) {
+				Message atom = new Message();
+				atom.out.writeString(AddressNameIndexDataAtom.NAME_FIELD_NUMBER, p.name);
+				atom.out.writeInt32(AddressNameIndexDataAtom.TYPE_FIELD_NUMBER, p.type);
+				atom.out.writeInt32(AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER, fp - p.position);
+				if (p.city != null) {
+					atom.out.writeInt32(AddressNameIndexDataAtom.SHIFTTOCITYINDEX_FIELD_NUMBER, fp - p.city.position);
+				}
+				atom.out.writeInt32(AddressNameIndexDataAtom.XY16_FIELD_NUMBER, ((p.x >> 15) << 16) | (p.y >> 15));
+				data.writeMessage(AddressNameIndexData.ATOM_FIELD_NUMBER, atom);
+			}
+			nameIndex.out.writeRawVarint32(data.size());
+			nameIndex.writeRaw(data);
+		}
+		return nameIndex;
+	}
+
+	private static Message writeStringTable(List<String> strings) throws IOException {
+		Message table = new Message();
+		for (String s : strings) {
+			table.out.writeString(StringTable.S_FIELD_NUMBER, s);
+		}
+		return table;
+	}
+
+	private static long tileKey(int x, int y) {
+		return (((long) x) << 32) | y;
+	}
+
+	private static int tileX(long key) {
+		return (int) (key >> 32);
+	}
+
+	private static int tileY(long key) {
+		return (int) key;
+	}
+
+	private static class Road {
+		final int id;
+		final int[] x;
+		final int[] y;
+		boolean horizontal;
+		boolean primary;
+		boolean oneway;
+		String name;
+		int boxRow;
+		int boxCol;
+		// restricted road, type
+		final Map<Road, Integer> restrictions = new LinkedHashMap<Road, Integer>();
+
+		Road(int id, int points) {
+			this.id = id;
+			this.x = new int[points];
+			this.y = new int[points];
+		}
+
+		boolean contains(int px, int py) {
+			for (int k = 0; k < x.length; k++) {
+				if (x[k] == px && y[k] == py) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static class Box {
+		int left = Integer.MAX_VALUE;
+		int right = Integer.MIN_VALUE;
+		int top = Integer.MAX_VALUE;
+		int bottom = Integer.MIN_VALUE;
+		final List<Road> roads = new ArrayList<Road>();
+	}
+
+	private static class Place {
+		final String name;
+		final int type;
+		final int x;
+		final int y;
+		final long id;
+		CityType cityType;
+		Place city;
+		boolean horizontal;
+		int line;
+		final List<Place> streets = new ArrayList<Place>();
+		final List<LatLon> nodes = new ArrayList<LatLon>();
+		// position of message length in address index
+		int position;
+
+		Place(String name, int type, LatLon l, long id) {
+			this.name = name;
+			this.type = type;
+			this.x = MapUtils.get31TileNumberX(l.getLongitude());
+			this.y = MapUtils.get31TileNumberY(l.getLatitude());
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Serialized message which could be patched after write (offsets to data blocks are written as fixed ints).
+	 */
+	private static class Message {
+		private final Buffer bytes = new Buffer();
+		final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+		int position() throws IOException {
+			out.flush();
+			return bytes.size();
+		}
+
+		int size() throws IOException {
+			return position();
+		}
+
+		byte[] toByteArray() throws IOException {
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		void writeRaw(Message m) throws IOException {
+			out.writeRawBytes(m.toByteArray());
+		}
+
+		/**
+		 * @return position of message content
+		 */
+		int writeMessage(int field, Message m) throws IOException {
+			out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(m.size());
+			int pos = position();
+			writeRaw(m);
+			return pos;
+		}
+
+		/**
+		 * @return position of message content
+		 */
+		int writeFixedLength(int field, Message m) throws IOException {
+			out.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+			writeFixedInt(m.size());
+			int pos = position();
+			writeRaw(m);
+			return pos;
+		}
+
+		/**
+		 * @return position of int value to patch
+		 */
+		int writeIntPlaceholder(int field) throws IOException {
+			out.writeTag(field, WireFormat.WIRETYPE_FIXED32);
+			int pos = position();
+			writeFixedInt(0);
+			return pos;
+		}
+
+		void writeFixedInt(int v) throws IOException {
+			// obf fixed ints are big endian
+			out.writeRawByte((v >>> 24) & 0xff);
+			out.writeRawByte((v >>> 16) & 0xff);
+			out.writeRawByte((v >>> 8) & 0xff);
+			out.writeRawByte(v & 0xff);
+		}
+
+		void patchInt(int pos, int v) throws IOException {
+			out.flush();
+			bytes.patchInt(pos, v);
+		}
+	}
+
+	private static class Buffer extends ByteArrayOutputStream {
+
+		void patchInt(int pos, int v) {
+			buf[pos] = (byte) (v >>> 24);
+			buf[pos + 1] = (byte) (v >>> 16);
+			buf[pos + 2] = (byte) (v >>> 8);
+			buf[pos + 3] = (byte) v;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.util.Algorithms;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * Temporary files for tests, obf files are written by {@link SyntheticObfWriter}.
+ * Readers opened by rule are closed and all files are deleted after test.
+ */
+public class TemporaryObfFiles extends ExternalResource {
+
+	private final List<File> files = new ArrayList<File>();
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+
+	public File newFile(String suffix) throws IOException {
+		File file = File.createTempFile("synthetic", suffix);
+		files.add(file);
+		return file;
+	}
+
+	/**
+	 * Folder for files which need own names, it is deleted with its files
+	 */
+	public File newFolder() throws IOException {
+		File dir = newFile("");
+		dir.delete();
+		dir.mkdirs();
+		return dir;
+	}
+
+	public File write(SyntheticObfWriter writer) throws IOException {
+		return writer.write(newFile(".obf"));
+	}
+
+	public BinaryMapIndexReader open(File file) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		readers.add(reader);
+		return reader;
+	}
+
+	public BinaryMapIndexReader open(SyntheticObfWriter writer) throws IOException {
+		return open(write(writer));
+	}
+
+	public BinaryMapIndexReader openConcurrent(File file, boolean mapped) throws IOException {
+		BinaryMapIndexReader reader = BinaryMapIndexReader.openConcurrentReader(new RandomAccessFile(file, "r"), file,
+				mapped);
+		readers.add(reader);
+		return reader;
+	}
+
+	@Override
+	protected void after() {
+		for (BinaryMapIndexReader r : readers) {
+			try {
+				r.close();
+			} catch (IOException e) {
+				// file is deleted anyway
+			}
+		}
+		readers.clear();
+		for (File f : files) {
+			Algorithms.removeAllFiles(f);
+		}
+		files.clear();
+	}
+}
@@ -0,0 +1,52 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+public class TileCoverageTest {
+
+	private static final int TILE_12 = 1 << 19;
+
+	@Test
+	public void testZoomSelection() {
+		TileCoverage small = new TileCoverage(0, 0, 10 * TILE_12, 10 * TILE_12);
+		Assert.assertEquals(TileCoverage.MAX_ZOOM, small.getZoom());
+		Assert.assertEquals(121, small.getAllTilesCount());
+		TileCoverage world = new TileCoverage(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		Assert.assertEquals(8, world.getZoom());
+		Assert.assertTrue(world.getAllTilesCount() <= TileCoverage.MAX_TILES);
+	}
+
+	@Test
+	public void testIntersects() {
+		TileCoverage c = new TileCoverage(0, 0, 10 * TILE_12, 10 * TILE_12);
+		c.add(2 * TILE_12 + 5, 3 * TILE_12 + 5, 2 * TILE_12 + 6, 3 * TILE_12 + 6);
+		Assert.assertEquals(1, c.getTilesCount());
+		Assert.assertTrue(c.contains(2 * TILE_12, 3 * TILE_12));
+		Assert.assertFalse(c.contains(3 * TILE_12, 3 * TILE_12));
+		Assert.assertTrue(c.intersects(0, 0, 2 * TILE_12, 3 * TILE_12));
+		Assert.assertFalse(c.intersects(0, 0, 2 * TILE_12 - 1, 10 * TILE_12));
+		// outside of bounding box
+		Assert.assertFalse(c.intersects(-TILE_12, -TILE_12, -1, -1));
+		Assert.assertFalse(c.intersects(20 * TILE_12, 0, 30 * TILE_12, 10 * TILE_12));
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		TileCoverage c = new TileCoverage(100 * TILE_12, 200 * TILE_12, 300 * TILE_12, 210 * TILE_12);
+		c.add(150 * TILE_12, 200 * TILE_12, 170 * TILE_12, 201 * TILE_12);
+		c.add(300 * TILE_12, 210 * TILE_12, 300 * TILE_12, 210 * TILE_12);
+		byte[] data = new byte[c.getSerializedSize()];
+		CodedOutputStream out = CodedOutputStream.newInstance(data);
+		c.writeTo(out);
+		out.checkNoSpaceLeft();
+		TileCoverage read = TileCoverage.readFrom(CodedInputStream.newInstance(data));
+		Assert.assertEquals(c, read);
+		Assert.assertEquals(43, read.getTilesCount());
+	}
+}
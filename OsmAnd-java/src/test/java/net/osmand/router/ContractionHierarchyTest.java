@@ -0,0 +1,160 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapRenderingTypes;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ContractionHierarchyTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private File file;
+	private File hierarchyFile;
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+
+	@After
+	public void tearDown() {
+		if (hierarchyFile != null) {
+			hierarchyFile.delete();
+		}
+	}
+
+	@Test
+	public void testHierarchyRoutesAsAStar() throws IOException, InterruptedException {
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		prepare(writer);
+		int[][] routes = { { 1, 1, 9, 7 }, { 10, 10, 0, 3 }, { 5, 0, 5, 10 }, { 2, 9, 10, 1 }, { 6, 6, 7, 2 } };
+		for (int[] r : routes) {
+			LatLon start = between(writer.getNode(r[0], r[1]), writer.getNode(r[0], r[1] + 1));
+			LatLon end = between(writer.getNode(r[2], r[3]), writer.getNode(r[2] + 1, r[3]));
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			frontEnd.setUseContractionHierarchy(true);
+			RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+			List<RouteSegmentResult> hierarchyRoute = frontEnd.searchRoute(ctx, start, end, null);
+			// route is not calculated by A*
+			Assert.assertNull(ctx.finalRouteSegment);
+			List<RouteSegmentResult> route = searchRoute(start, end);
+			Assert.assertEquals(getTime(route), getTime(hierarchyRoute), getTime(route) * 0.01);
+			Assert.assertEquals(getDistance(route), getDistance(hierarchyRoute), getDistance(route) * 0.01);
+		}
+	}
+
+	@Test
+	public void testRestrictedRouteIsCalculatedByAStar() throws IOException, InterruptedException {
+		// fastest route goes by primary streets and turns at (4, 4)
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015)
+				.addRestriction(4, 4, false, MapRenderingTypes.RESTRICTION_NO_LEFT_TURN);
+		prepare(writer);
+		LatLon start = between(writer.getNode(1, 4), writer.getNode(2, 4));
+		LatLon end = between(writer.getNode(4, 8), writer.getNode(4, 9));
+		LatLon restricted = writer.getNode(4, 4);
+
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		frontEnd.setUseContractionHierarchy(true);
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		List<RouteSegmentResult> hierarchyRoute = frontEnd.searchRoute(ctx, start, end, null);
+		Assert.assertNotNull(ctx.finalRouteSegment);
+		List<RouteSegmentResult> route = searchRoute(start, end);
+		Assert.assertEquals(getTime(route), getTime(hierarchyRoute), 0.001);
+		for (int i = 0; i + 1 < route.size(); i++) {
+			RouteSegmentResult r = route.get(i);
+			LatLon turn = r.getEndPoint();
+			Assert.assertFalse(r.getObject().getId() != route.get(i + 1).getObject().getId()
+					&& Math.abs(turn.getLatitude() - restricted.getLatitude()) < 1e-5
+					&& Math.abs(turn.getLongitude() - restricted.getLongitude()) < 1e-5);
+		}
+	}
+
+	@Test
+	public void testProfileWithTurnTimeIsCalculatedByAStar() throws IOException, InterruptedException {
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		prepare(writer);
+		// copy of default router
+		GeneralRouter router = new GeneralRouter((GeneralRouter) config.router, new HashMap<String, String>());
+		router.addAttribute("leftTurn", "30");
+		config.router = router;
+		Assert.assertFalse(ContractionHierarchy.isSupported(router));
+		try {
+			new ContractionHierarchyBuilder(router).build(reader, reader.getRoutingIndexes().get(0));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		LatLon start = between(writer.getNode(1, 1), writer.getNode(1, 2));
+		LatLon end = between(writer.getNode(9, 7), writer.getNode(10, 7));
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		frontEnd.setUseContractionHierarchy(true);
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		List<RouteSegmentResult> route = frontEnd.searchRoute(ctx, start, end, null);
+		Assert.assertNotNull(ctx.finalRouteSegment);
+		Assert.assertEquals(getTime(searchRoute(start, end)), getTime(route), 0.001);
+	}
+
+	@Test
+	public void testHierarchyIsLoadedAfterPreprocessing() throws IOException {
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(8, 0.0015);
+		file = files.write(writer);
+		reader = files.open(file);
+		config = RoutingConfiguration.getDefault().build("car", 256);
+		RouteRegion region = reader.getRoutingIndexes().get(0);
+		GeneralRouter router = (GeneralRouter) config.router;
+		hierarchyFile = ContractionHierarchy.getHierarchyFile(file, region, router);
+		Assert.assertNull(ContractionHierarchy.getHierarchy(file, region, router));
+		new ContractionHierarchyBuilder(router).build(reader, region).writeToFile(hierarchyFile);
+		Assert.assertNotNull(ContractionHierarchy.getHierarchy(file, region, router));
+	}
+
+	private void prepare(SyntheticObfWriter writer) throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		file = files.write(writer);
+		reader = files.open(file);
+		config = RoutingConfiguration.getDefault().build("car", 256);
+		RouteRegion region = reader.getRoutingIndexes().get(0);
+		ContractionHierarchy ch = new ContractionHierarchyBuilder((GeneralRouter) config.router).build(reader, region);
+		hierarchyFile = ContractionHierarchy.getHierarchyFile(file, region, (GeneralRouter) config.router);
+		ch.writeToFile(hierarchyFile);
+	}
+
+	private List<RouteSegmentResult> searchRoute(LatLon start, LatLon end) throws IOException, InterruptedException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		return frontEnd.searchRoute(ctx, start, end, null);
+	}
+
+	private static float getTime(List<RouteSegmentResult> route) {
+		float time = 0;
+		for (RouteSegmentResult r : route) {
+			time += r.getSegmentTime();
+		}
+		return time;
+	}
+
+	private static float getDistance(List<RouteSegmentResult> route) {
+		float distance = 0;
+		for (RouteSegmentResult r : route) {
+			distance += r.getDistance();
+		}
+		return distance;
+	}
+
+	private static LatLon between(LatLon a, LatLon b) {
+		return new LatLon(a.getLatitude() * 0.6 + b.getLatitude() * 0.4 + 0.00003,
+				a.getLongitude() * 0.6 + b.getLongitude() * 0.4 + 0.00003);
+	}
+}
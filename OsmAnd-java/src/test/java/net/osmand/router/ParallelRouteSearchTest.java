@@ -0,0 +1,65 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ParallelRouteSearchTest {
+
+	private static final int GRID = 30;
+	private static final int ROUTES = 60;
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private SyntheticObfWriter writer;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		writer = new SyntheticObfWriter(52.4, 4.8).setGrid(GRID, 0.0015);
+		reader = files.open(writer);
+	}
+
+	@Test
+	public void testParallelSearchMatchesSequential() throws IOException, InterruptedException {
+		Random rnd = new Random(17);
+		for (int i = 0; i < ROUTES; i++) {
+			LatLon start = randomPoint(rnd);
+			LatLon end = randomPoint(rnd);
+			float sequential = calculate(start, end, false);
+			// parallel result should not depend on timing of threads
+			for (int k = 0; k < 2; k++) {
+				Assert.assertEquals(start + " -> " + end, sequential, calculate(start, end, true), 0.01);
+			}
+		}
+	}
+
+	private float calculate(LatLon start, LatLon end, boolean parallel) throws IOException, InterruptedException {
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", 256);
+		config.parallelBidirectionalSearch = parallel;
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		Assert.assertNotNull(frontEnd.searchRoute(ctx, start, end, null));
+		return ctx.routingTime;
+	}
+
+	private LatLon randomPoint(Random rnd) {
+		int x = rnd.nextInt(GRID);
+		int y = rnd.nextInt(GRID - 1);
+		LatLon a = writer.getNode(x, y);
+		LatLon b = writer.getNode(x, y + 1);
+		return new LatLon(a.getLatitude() * 0.6 + b.getLatitude() * 0.4 + 0.00003,
+				a.getLongitude() * 0.6 + b.getLongitude() * 0.4 + 0.00003);
+	}
+}
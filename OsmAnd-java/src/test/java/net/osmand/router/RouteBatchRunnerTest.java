@@ -0,0 +1,95 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+import net.osmand.router.RouteBatchRunner.QueryResult;
+import net.osmand.router.RouteBatchRunner.RouteQuery;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RouteBatchRunnerTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private SyntheticObfWriter writer;
+	private File file;
+	private File queriesFile;
+
+	@Before
+	public void setUp() throws IOException {
+		writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		file = files.write(writer);
+		queriesFile = files.newFile(".csv");
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(queriesFile), "UTF-8"));
+		w.println("name,start_lat,start_lon,end_lat,end_lon,vehicle");
+		writeQuery(w, "first", writer.getNode(1, 1), writer.getNode(9, 7));
+		writeQuery(w, "second", writer.getNode(10, 10), writer.getNode(0, 3));
+		writeQuery(w, "third", writer.getNode(5, 1), writer.getNode(5, 10));
+		w.close();
+	}
+
+	@Test
+	public void testBatchRun() throws Exception {
+		List<RouteQuery> queries = RouteBatchRunner.readQueries(queriesFile, "car");
+		Assert.assertEquals(3, queries.size());
+		RoutingConfiguration.Builder builder = RoutingConfiguration.parseFromInputStream(
+				RoutingConfiguration.class.getResourceAsStream("routing.xml"));
+		RouteBatchRunner runner = new RouteBatchRunner(builder, Collections.singletonList(file));
+		runner.setThreads(2);
+		runner.setMemoryLimitMB(256);
+		List<QueryResult> results = runner.run(queries);
+		Assert.assertEquals(queries.size(), results.size());
+
+		BinaryMapIndexReader reader = files.open(file);
+		for (int i = 0; i < results.size(); i++) {
+			QueryResult r = results.get(i);
+			Assert.assertSame(queries.get(i), r.query);
+			Assert.assertTrue(r.error, r.success);
+			Assert.assertTrue(r.queuePushes > 0);
+
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			RoutingContext ctx = frontEnd.buildRoutingContext(RoutingConfiguration.getDefault().build("car", 256),
+					null, new BinaryMapIndexReader[] { reader });
+			ctx.calculationProgress = new RouteCalculationProgress();
+			List<RouteSegmentResult> route = frontEnd.searchRoute(ctx, r.query.start, r.query.end, null);
+			float distance = 0;
+			for (RouteSegmentResult s : route) {
+				distance += s.getDistance();
+			}
+			Assert.assertEquals(distance, r.routeDistance, 0.1);
+			Assert.assertEquals(ctx.visitedSegments, r.visitedSegments);
+			Assert.assertEquals(ctx.relaxedSegments, r.relaxedSegments);
+			Assert.assertEquals(ctx.calculationProgress.queuePushes, r.queuePushes);
+		}
+
+		StringWriter out = new StringWriter();
+		RouteBatchRunner.writeResults(results, new PrintWriter(out));
+		String[] lines = out.toString().trim().split("\\r?\\n");
+		Assert.assertEquals(results.size() + 1, lines.length);
+		int columns = lines[0].split(",", -1).length;
+		for (String line : lines) {
+			Assert.assertEquals(line, columns, line.split(",", -1).length);
+		}
+	}
+
+	private static void writeQuery(PrintWriter w, String name, LatLon start, LatLon end) {
+		w.println(String.format(Locale.US, "%s,%.6f,%.6f,%.6f,%.6f,car", name, start.getLatitude() + 0.00003,
+				start.getLongitude() + 0.00003, end.getLatitude() + 0.00003, end.getLongitude() + 0.00003));
+	}
+}
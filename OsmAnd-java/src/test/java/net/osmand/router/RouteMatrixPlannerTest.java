@@ -0,0 +1,111 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.TspAnt;
+import net.osmand.TspHeldKarp;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.RouteMatrixPlanner.RouteMatrix;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RouteMatrixPlannerTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+
+	@Test
+	public void testMatrixMatchesRoutes() throws IOException, InterruptedException {
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		prepare(writer);
+		List<LatLon> points = new ArrayList<LatLon>();
+		int[][] nodes = { { 1, 1 }, { 9, 7 }, { 10, 3 }, { 5, 5 }, { 2, 9 } };
+		for (int[] n : nodes) {
+			points.add(between(writer.getNode(n[0], n[1]), writer.getNode(n[0], n[1] + 1)));
+		}
+		RouteMatrix matrix = calculateMatrix(points);
+		for (int i = 0; i < points.size(); i++) {
+			for (int j = 0; j < points.size(); j++) {
+				if (i == j) {
+					Assert.assertEquals(0, matrix.times[i][j], 0.001);
+					continue;
+				}
+				RoutingContext ctx = createContext();
+				List<RouteSegmentResult> route = new RoutePlannerFrontEnd().searchRoute(ctx, points.get(i), points.get(j), null);
+				assertRouteTime(ctx.routingTime, matrix.times[i][j]);
+				Assert.assertEquals(getDistance(route), matrix.distances[i][j], getDistance(route) * 0.05);
+			}
+		}
+		// stops could be ordered by matrix
+		int[] order = new TspHeldKarp().readInput(matrix.times, false).solve();
+		Assert.assertEquals(points.size(), order.length);
+		Assert.assertEquals(0, order[0]);
+		new TspAnt().readGraph(matrix.times, false).solve();
+	}
+
+	@Test
+	public void testMatrixRespectsRestrictions() throws IOException, InterruptedException {
+		// fastest route goes by primary streets and turns at (4, 4)
+		SyntheticObfWriter writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		LatLon start = between(writer.getNode(1, 4), writer.getNode(2, 4));
+		LatLon end = between(writer.getNode(4, 8), writer.getNode(4, 9));
+		prepare(writer);
+		float unrestricted = calculateMatrix(Arrays.asList(start, end)).times[0][1];
+
+		prepare(writer.addRestriction(4, 4, false, MapRenderingTypes.RESTRICTION_NO_LEFT_TURN));
+		RouteMatrix matrix = calculateMatrix(Arrays.asList(start, end));
+		RoutingContext ctx = createContext();
+		new RoutePlannerFrontEnd().searchRoute(ctx, start, end, null);
+		assertRouteTime(ctx.routingTime, matrix.times[0][1]);
+		Assert.assertTrue(matrix.times[0][1] > unrestricted);
+	}
+
+	private static void assertRouteTime(float routeTime, float matrixTime) {
+		// A* passes roads as a whole from intersections, so its route could be a bit slower than optimal
+		Assert.assertTrue(matrixTime + " > " + routeTime, matrixTime <= routeTime + 0.01);
+		Assert.assertTrue(matrixTime + " < " + routeTime, matrixTime >= routeTime * 0.95);
+	}
+
+	private void prepare(SyntheticObfWriter writer) throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		reader = files.open(writer);
+		config = RoutingConfiguration.getDefault().build("car", 256);
+	}
+
+	private RouteMatrix calculateMatrix(List<LatLon> points) throws IOException, InterruptedException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		RouteMatrixPlanner planner = new RouteMatrixPlanner(frontEnd);
+		planner.setThreads(2);
+		return planner.calculate(ctx, points);
+	}
+
+	private RoutingContext createContext() {
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+	}
+
+	private static float getDistance(List<RouteSegmentResult> route) {
+		float distance = 0;
+		for (RouteSegmentResult r : route) {
+			distance += r.getDistance();
+		}
+		return distance;
+	}
+
+	private static LatLon between(LatLon a, LatLon b) {
+		return new LatLon(a.getLatitude() * 0.6 + b.getLatitude() * 0.4 + 0.00003,
+				a.getLongitude() * 0.6 + b.getLongitude() * 0.4 + 0.00003);
+	}
+}
@@ -0,0 +1,62 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSegmentHeapTest {
+
+	@Test
+	public void testPollOrder() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4);
+		Random r = new Random(7);
+		float[] keys = new float[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = r.nextFloat() * 1000;
+			heap.push(new RouteSegment(null, i), i, keys[i]);
+		}
+		Arrays.sort(keys);
+		Assert.assertEquals(keys.length, heap.size());
+		for (int i = 0; i < keys.length; i++) {
+			Assert.assertEquals(keys[i], heap.peekKey(), 0);
+			Assert.assertNotNull(heap.poll());
+		}
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4);
+		RouteSegment a = new RouteSegment(null, 1);
+		RouteSegment b = new RouteSegment(null, 2);
+		RouteSegment betterB = new RouteSegment(null, 2);
+		heap.push(a, 1, 10);
+		heap.push(b, 2, 20);
+		Assert.assertFalse(heap.push(new RouteSegment(null, 2), 2, 30));
+		Assert.assertTrue(heap.push(betterB, 2, 5));
+		Assert.assertEquals(2, heap.size());
+		Assert.assertEquals(1, heap.getDecreaseKeys());
+		Assert.assertEquals(1, heap.getIgnoredPushes());
+		Assert.assertSame(betterB, heap.poll());
+		Assert.assertSame(a, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+		// id could be queued again after poll
+		Assert.assertTrue(heap.push(b, 2, 20));
+		Assert.assertSame(b, heap.poll());
+	}
+
+	@Test
+	public void testUniqueIds() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(4);
+		heap.push(new RouteSegment(null, 1), heap.nextUniqueId(), 2);
+		heap.push(new RouteSegment(null, 2), heap.nextUniqueId(), 1);
+		Assert.assertEquals(2, heap.size());
+		Assert.assertEquals(2, heap.poll().getSegmentStart());
+		Assert.assertEquals(1, heap.poll().getSegmentStart());
+	}
+}
@@ -0,0 +1,78 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteTypesCacheTest {
+
+	@Test
+	public void testGetPut() {
+		RouteTypesCache cache = new RouteTypesCache();
+		Assert.assertNull(cache.get(new int[] { 1, 2 }));
+		for (int i = 0; i < 1000; i++) {
+			cache.put(new int[] { i, i + 1 }, new float[] { i });
+		}
+		Assert.assertEquals(1000, cache.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(i, cache.get(new int[] { i, i + 1 })[0], 0);
+		}
+		Assert.assertNull(cache.get(new int[] { 1 }));
+		cache.put(new int[] { 5, 6 }, new float[] { -1 });
+		Assert.assertEquals(1000, cache.size());
+		Assert.assertEquals(-1, cache.get(new int[] { 5, 6 })[0], 0);
+	}
+
+	@Test
+	public void testPrecomputedHash() {
+		RouteTypesCache cache = new RouteTypesCache();
+		int[] types = new int[] { 7, 8, 9 };
+		int hash = RouteTypesCache.hash(types);
+		cache.put(types, hash, new float[] { 1 });
+		Assert.assertEquals(1, cache.get(new int[] { 7, 8, 9 })[0], 0);
+		Assert.assertEquals(1, cache.get(types, hash)[0], 0);
+		cache.put(new int[] { 7, 8, 9 }, new float[] { 2 });
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(2, cache.get(types, hash)[0], 0);
+	}
+
+	@Test
+	public void testKeyIsCopied() {
+		RouteTypesCache cache = new RouteTypesCache();
+		int[] types = new int[] { 3, 4 };
+		cache.put(types, new float[] { 7 });
+		types[0] = 10;
+		Assert.assertEquals(7, cache.get(new int[] { 3, 4 })[0], 0);
+		Assert.assertNull(cache.get(types));
+	}
+
+	@Test
+	public void testConcurrentReaders() throws InterruptedException {
+		final RouteTypesCache cache = new RouteTypesCache();
+		final boolean[] failed = new boolean[1];
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int shift = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						int k = (i + shift * 1000) % 5000;
+						int[] types = new int[] { k, 1 };
+						float[] v = cache.get(types);
+						if (v == null) {
+							cache.put(types, new float[] { k });
+						} else if (v[0] != k) {
+							failed[0] = true;
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertFalse(failed[0]);
+		Assert.assertEquals(5000, cache.size());
+	}
+}
@@ -0,0 +1,59 @@
+package net.osmand.router;
+
+import java.io.IOException;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RoutingMemoryBudgetTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private SyntheticObfWriter writer;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		writer = new SyntheticObfWriter(52.4, 4.8);
+		reader = files.open(writer);
+	}
+
+	@Test
+	public void testTilesAreUnloadedByBudget() {
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", 256);
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null,
+				new BinaryMapIndexReader[] { reader });
+		for (int row = 0; row < writer.getGridSize(); row += 2) {
+			for (int col = 0; col < writer.getGridSize(); col += 2) {
+				LatLon l = writer.getNode(row, col);
+				ctx.loadRouteSegment(MapUtils.get31TileNumberX(l.getLongitude()),
+						MapUtils.get31TileNumberY(l.getLatitude()), 0);
+			}
+		}
+		final int loadedSize = ctx.getCurrentEstimatedSize();
+		Assert.assertFalse(ctx.checkIfMemoryLimitCritical(config.memoryLimitation));
+		ctx.unloadUnusedTiles(config.memoryLimitation);
+		Assert.assertEquals(loadedSize, ctx.getCurrentEstimatedSize());
+
+		// configured limit is much bigger than loaded tiles, but budget allows only half of them
+		ctx.memoryBudget = new RoutingMemoryBudget() {
+			@Override
+			public long getTilesMemoryLimit(RoutingContext ctx, long memoryLimit) {
+				return loadedSize / 2;
+			}
+		};
+		Assert.assertTrue(ctx.checkIfMemoryLimitCritical(config.memoryLimitation));
+		ctx.unloadUnusedTiles(config.memoryLimitation);
+		Assert.assertTrue(ctx.getCurrentEstimatedSize() < loadedSize * 0.35 + 1);
+		Assert.assertFalse(ctx.checkIfMemoryLimitCritical(config.memoryLimitation));
+	}
+}
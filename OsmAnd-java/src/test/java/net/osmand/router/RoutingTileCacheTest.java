@@ -0,0 +1,133 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.DecodedBlockCache;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class RoutingTileCacheTest {
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private SyntheticObfWriter writer;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = false;
+		writer = new SyntheticObfWriter(52.4, 4.8).setGrid(12, 0.0015);
+		reader = files.open(writer);
+		RoutingTileCache.getInstance().setMemoryBudget(64 << 20);
+	}
+
+	@After
+	public void tearDown() {
+		RoutingTileCache.getInstance().setMemoryBudget(0);
+		RoutingTileCache.getInstance().clear();
+	}
+
+	@Test
+	public void testContextsDontModifyCachedObjects() throws IOException, InterruptedException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", 256);
+		// start and end between grid nodes, so precise points are inserted into roads
+		LatLon start = between(writer.getNode(1, 1), writer.getNode(1, 2));
+		LatLon end = between(writer.getNode(9, 7), writer.getNode(10, 7));
+
+		RoutingContext first = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		List<RouteSegmentResult> firstRoute = frontEnd.searchRoute(first, start, end, null);
+		Assert.assertNotNull(firstRoute);
+		Map<RouteDataObject, int[]> cached = getCachedObjects(first);
+		Assert.assertFalse(cached.isEmpty());
+		Assert.assertTrue(RoutingTileCache.getInstance().getTilesCount() > 0);
+
+		RoutingContext second = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+		long hits = RoutingTileCache.getInstance().getHits();
+		List<RouteSegmentResult> secondRoute = frontEnd.searchRoute(second, start, end, null);
+		Assert.assertNotNull(secondRoute);
+		Assert.assertTrue(RoutingTileCache.getInstance().getHits() > hits);
+		Assert.assertEquals(firstRoute.size(), secondRoute.size());
+		RouteSegmentResult firstStart = firstRoute.get(0);
+		RouteSegmentResult secondStart = secondRoute.get(0);
+		// both routes got the same precise start point, it was not inserted twice
+		Assert.assertEquals(firstStart.getObject().getPointsLength(), secondStart.getObject().getPointsLength());
+		Assert.assertNotSame(firstStart.getObject(), secondStart.getObject());
+
+		for (RouteSegmentResult r : firstRoute) {
+			Assert.assertFalse(cached.containsKey(r.getObject()));
+		}
+		for (RouteSegmentResult r : secondRoute) {
+			Assert.assertFalse(cached.containsKey(r.getObject()));
+		}
+		for (Map.Entry<RouteDataObject, int[]> e : cached.entrySet()) {
+			Assert.assertArrayEquals(e.getValue(), e.getKey().pointsX);
+		}
+		Assert.assertEquals(cached.size(), getCachedObjects(second).size());
+	}
+
+	@Test
+	public void testTilesAreNotHeldByBlockCache() throws IOException, InterruptedException {
+		DecodedBlockCache<RouteDataObject> blockCache = DecodedBlockCache.getRouteDataCache();
+		blockCache.clear();
+		blockCache.setMemoryBudget(64 << 20);
+		try {
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", 256);
+			RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+			Assert.assertNotNull(frontEnd.searchRoute(ctx, between(writer.getNode(1, 1), writer.getNode(1, 2)),
+					between(writer.getNode(9, 7), writer.getNode(10, 7)), null));
+			Assert.assertTrue(RoutingTileCache.getInstance().getTilesCount() > 0);
+			Assert.assertEquals(0, blockCache.getBlocksCount());
+
+			// block cache is used while tile cache is disabled
+			RoutingTileCache.getInstance().setMemoryBudget(0);
+			ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader });
+			Assert.assertNotNull(frontEnd.searchRoute(ctx, between(writer.getNode(1, 1), writer.getNode(1, 2)),
+					between(writer.getNode(9, 7), writer.getNode(10, 7)), null));
+			Assert.assertTrue(blockCache.getBlocksCount() > 0);
+		} finally {
+			blockCache.setMemoryBudget(0);
+			blockCache.clear();
+		}
+	}
+
+	private Map<RouteDataObject, int[]> getCachedObjects(RoutingContext ctx) throws IOException {
+		Map<RouteDataObject, int[]> objects = new IdentityHashMap<RouteDataObject, int[]>();
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			List<RoutingSubregionTile> tiles = new ArrayList<RoutingSubregionTile>();
+			for (int i = 0; i < region.getSubregions().size(); i++) {
+				tiles.addAll(ctx.loadAllSubregionTiles(reader, region.getSubregions().get(i)));
+			}
+			for (RoutingSubregionTile t : tiles) {
+				RoutingTileCache.CachedTile tile = RoutingTileCache.getInstance().acquire(reader, t.subregion);
+				for (RouteDataObject o : tile.getObjects()) {
+					objects.put(o, o.pointsX.clone());
+				}
+				RoutingTileCache.getInstance().release(tile);
+			}
+		}
+		return objects;
+	}
+
+	private static LatLon between(LatLon a, LatLon b) {
+		return new LatLon(a.getLatitude() * 0.6 + b.getLatitude() * 0.4 + 0.00003,
+				a.getLongitude() * 0.6 + b.getLongitude() * 0.4 + 0.00003);
+	}
+}
@@ -0,0 +1,65 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.TLongObjectMap;
+
+public class RoutingTilePointsTest {
+
+	@Test
+	public void testSameAsSegmentsMap() {
+		Random r = new Random(3);
+		RoutingTilePoints points = new RoutingTilePoints();
+		RouteRegion region = new RouteRegion();
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (int k = 0; k < 300; k++) {
+			RouteDataObject ro = new RouteDataObject(region);
+			int len = 2 + r.nextInt(10);
+			ro.pointsX = new int[len];
+			ro.pointsY = new int[len];
+			for (int i = 0; i < len; i++) {
+				// small grid so roads share points
+				ro.pointsX[i] = r.nextInt(20) << 10;
+				ro.pointsY[i] = r.nextInt(20) << 10;
+			}
+			roads.add(ro);
+			points.add(ro);
+		}
+		Assert.assertEquals(roads.size(), points.getRoadsCount());
+		for (int x = 0; x < 20; x++) {
+			for (int y = 0; y < 20; y++) {
+				long key = RoutingTilePoints.getKey(x << 10, y << 10);
+				// expected chain in order of adding
+				List<String> expected = new ArrayList<String>();
+				for (RouteDataObject ro : roads) {
+					for (int i = 0; i < ro.getPointsLength(); i++) {
+						if (RoutingTilePoints.getKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i)) == key) {
+							expected.add(System.identityHashCode(ro) + ":" + i);
+						}
+					}
+				}
+				List<String> actual = new ArrayList<String>();
+				int ind = points.find(key);
+				while (ind >= 0 && ind < points.size() && points.getPointKey(ind) == key) {
+					actual.add(System.identityHashCode(points.getPointRoad(ind)) + ":" + points.getPointIndex(ind));
+					ind++;
+				}
+				Assert.assertEquals(expected, actual);
+			}
+		}
+		Assert.assertEquals(-1, points.find(RoutingTilePoints.getKey(1, 1)));
+		TLongObjectMap<RouteSegment> map = points.toSegmentsMap();
+		RouteSegment s = map.get(points.getPointKey(0));
+		Assert.assertSame(points.getPointRoad(0), s.getRoad());
+		Assert.assertEquals(points.getPointIndex(0), s.getSegmentStart());
+	}
+}
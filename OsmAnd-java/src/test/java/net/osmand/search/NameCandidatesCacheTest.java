@@ -0,0 +1,173 @@
+package net.osmand.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.data.Amenity;
+import net.osmand.data.MapObject;
+import net.osmand.search.core.NameCandidatesCache;
+import net.osmand.search.core.NameCandidatesCache.Candidates;
+
+public class NameCandidatesCacheTest {
+
+	private static final StringMatcherMode STARTS = StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+	private static final StringMatcherMode EQUALS = StringMatcherMode.CHECK_EQUALS_FROM_SPACE;
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	@Test
+	public void testPrefixExtension() {
+		NameCandidatesCache<Integer, String> cache = new NameCandidatesCache<>();
+		List<String> objects = Arrays.asList("Green Street", "Grand Avenue");
+		// region key is not used by cache except for lookup
+		cache.startSearch("gr", 1);
+		Assert.assertNull(cache.get(null, "gr", STARTS));
+		cache.put(null, "gr", STARTS, objects);
+
+		cache.startSearch("gre", 1);
+		Assert.assertSame(objects, cache.get(null, "gre", STARTS).objects);
+		Assert.assertNotNull(cache.get(null, "green", EQUALS));
+		// word completed, objects of incomplete word are kept
+		cache.put(null, "green", EQUALS, Collections.singletonList("Green Street"));
+		Assert.assertEquals("gr", cache.get(null, "green s", STARTS).word);
+	}
+
+	@Test
+	public void testFallback() {
+		NameCandidatesCache<Integer, String> cache = new NameCandidatesCache<>();
+		cache.startSearch("green", 1);
+		cache.put(null, "green", EQUALS, Collections.singletonList("Green Street"));
+		// complete word is not extended by longer word
+		Assert.assertNull(cache.get(null, "greens", STARTS));
+		Assert.assertNotNull(cache.get(null, "green", EQUALS));
+
+		// deleted chars
+		cache.startSearch("gree", 1);
+		Assert.assertNull(cache.get(null, "gree", STARTS));
+
+		// selected word
+		cache.put(null, "gree", STARTS, Collections.singletonList("Green Street"));
+		cache.startSearch("gree", 2);
+		Assert.assertNull(cache.get(null, "gree", STARTS));
+	}
+
+	@Test
+	public void testSelectedWords() {
+		NameCandidatesCache<Integer, String> cache = new NameCandidatesCache<>();
+		cache.startSearch("gr", Arrays.asList("Amsterdam"), 100);
+		cache.put(null, "gr", STARTS, Collections.singletonList("Green Street"));
+		cache.startSearch("gre", Arrays.asList("Amsterdam"), 100);
+		Assert.assertNotNull(cache.get(null, "gre", STARTS));
+		// other word is selected instead, but count of words is the same
+		cache.startSearch("gre", Arrays.asList("Utrecht"), 100);
+		Assert.assertNull(cache.get(null, "gre", STARTS));
+	}
+
+	@Test
+	public void testObjectsAreBounded() {
+		int count = NameCandidatesCache.MAX_OBJECTS / NameCandidatesCache.MAX_REGION_OBJECTS + 2;
+		NameCandidatesCache<Integer, String> cache = new NameCandidatesCache<>();
+		cache.startSearch("gr", 1);
+		List<String> objects = Collections.nCopies(NameCandidatesCache.MAX_REGION_OBJECTS, "Green Street");
+		for (int region = 0; region < count; region++) {
+			cache.put(region, "gr", STARTS, objects);
+			// first region is used by every search
+			Assert.assertNotNull(cache.get(0, "gr", STARTS));
+			Assert.assertTrue(cache.getObjectsCount() <= NameCandidatesCache.MAX_OBJECTS);
+		}
+		Assert.assertNull(cache.get(1, "gr", STARTS));
+		Assert.assertNotNull(cache.get(count - 1, "gr", STARTS));
+
+		cache.clear();
+		Assert.assertEquals(0, cache.getObjectsCount());
+		Assert.assertNull(cache.get(0, "gr", STARTS));
+	}
+
+	@Test
+	public void testTypingMatchesRegionSearch() throws IOException {
+		BinaryMapIndexReader reader = files.open(new SyntheticObfWriter(52.4, 4.8).setGrid(20, 0.0015));
+		for (String word : new String[] { SyntheticObfWriter.getCityName(), "Oak Street 2",
+				SyntheticObfWriter.getVillageName(0) }) {
+			typeAddress(reader, word.toLowerCase());
+		}
+		for (String word : new String[] { "Happy Cafe", "Green Bank" }) {
+			typePoi(reader, word.toLowerCase());
+		}
+	}
+
+	/**
+	 * Objects of every typed prefix are filtered from cached objects of previous one as address api does
+	 */
+	private static void typeAddress(BinaryMapIndexReader reader, String word) throws IOException {
+		NameCandidatesCache<BinaryMapIndexReader, MapObject> cache = new NameCandidatesCache<>();
+		for (int i = 1; i <= word.length(); i++) {
+			String query = word.substring(0, i);
+			// last word is completed
+			StringMatcherMode mode = i == word.length() ? EQUALS : STARTS;
+			List<MapObject> expected = searchAddress(reader, query, mode);
+			cache.startSearch(query, 1);
+			Candidates<MapObject> c = cache.get(reader, query, mode);
+			List<MapObject> objects = c == null ? null
+					: reader.filterAddressDataByName(c.objects, c.word, query, mode);
+			if (i > 1) {
+				Assert.assertNotNull(query, objects);
+			}
+			if (objects == null) {
+				objects = searchAddress(reader, query, mode);
+			}
+			cache.put(reader, query, mode, objects);
+			Assert.assertFalse(query, expected.isEmpty());
+			Assert.assertEquals(query, toStrings(expected), toStrings(objects));
+		}
+	}
+
+	private static void typePoi(BinaryMapIndexReader reader, String word) throws IOException {
+		NameCandidatesCache<BinaryMapIndexReader, Amenity> cache = new NameCandidatesCache<>();
+		for (int i = 1; i <= word.length(); i++) {
+			String query = word.substring(0, i);
+			List<Amenity> expected = searchPoi(reader, query);
+			cache.startSearch(query, 1);
+			Candidates<Amenity> c = cache.get(reader, query, STARTS);
+			List<Amenity> objects = c == null ? searchPoi(reader, query)
+					: BinaryMapIndexReader.filterPoiByName(c.objects, query);
+			Assert.assertTrue(query, i == 1 || c != null);
+			cache.put(reader, query, STARTS, objects);
+			Assert.assertFalse(query, expected.isEmpty());
+			Assert.assertEquals(query, toStrings(expected), toStrings(objects));
+		}
+	}
+
+	private static List<MapObject> searchAddress(BinaryMapIndexReader reader, String query, StringMatcherMode mode)
+			throws IOException {
+		SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(null, query, mode);
+		return new ArrayList<>(reader.searchAddressDataByName(req));
+	}
+
+	private static List<Amenity> searchPoi(BinaryMapIndexReader reader, String query) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, query, 0, Integer.MAX_VALUE,
+				0, Integer.MAX_VALUE, null);
+		return new ArrayList<>(reader.searchPoiByName(req));
+	}
+
+	private static List<String> toStrings(List<? extends MapObject> objects) {
+		List<String> res = new ArrayList<>();
+		for (MapObject o : objects) {
+			res.add(o.getClass().getSimpleName() + " " + o.getId() + " " + o.getName());
+		}
+		Collections.sort(res);
+		return res;
+	}
+}
@@ -0,0 +1,78 @@
+package net.osmand.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.OsmAndCollator;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.City;
+import net.osmand.data.LatLon;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+public class SearchResultCollectionTest {
+
+	private static final LatLon CENTER = new LatLon(52.0, 4.0);
+
+	@Test
+	public void testTopResults() {
+		SearchPhrase phrase = createPhrase();
+		List<SearchResult> results = new ArrayList<>();
+		for (int i = 5; i > 0; i--) {
+			results.add(result(phrase, "Village " + i, i, 0.01 * i));
+		}
+		// duplicate of village 2 is worse than it
+		results.add(result(phrase, "Village 2", 10, 0.02001));
+		SearchResultCollection top = new SearchResultCollection(phrase, 3).addSearchResults(results, true, true);
+		Assert.assertEquals("[Village 1, Village 2, Village 3]", names(top));
+
+		SearchResultCollection full = new SearchResultCollection(phrase).addSearchResults(results, true, true);
+		Assert.assertEquals(full.getCurrentSearchResults().subList(0, 3), top.getCurrentSearchResults());
+	}
+
+	@Test
+	public void testCombine() {
+		SearchPhrase phrase = createPhrase();
+		SearchResult better = result(phrase, "Village 2", 1, 0.02);
+		SearchResultCollection first = new SearchResultCollection(phrase, 2).addSearchResults(Arrays.asList(
+				result(phrase, "Village 1", 2, 0.01), result(phrase, "Village 2", 3, 0.02001)), true, true);
+		SearchResultCollection second = new SearchResultCollection(phrase, 2).addSearchResults(Arrays.asList(
+				better, result(phrase, "Village 3", 4, 0.03)), true, true);
+		SearchResultCollection combined = first.combineWithCollection(second, true, true);
+		Assert.assertEquals(2, combined.getLimit());
+		Assert.assertEquals("[Village 2, Village 1]", names(combined));
+		// better duplicate replaced the worse one
+		Assert.assertSame(better, combined.getCurrentSearchResults().get(0));
+	}
+
+	private static SearchPhrase createPhrase() {
+		SearchSettings settings = new SearchSettings(new ArrayList<BinaryMapIndexReader>())
+				.setOriginalLocation(CENTER);
+		return new SearchPhrase(settings, OsmAndCollator.primaryCollator());
+	}
+
+	private static SearchResult result(SearchPhrase phrase, String name, double priority, double lat) {
+		SearchResult sr = new SearchResult(phrase);
+		sr.localeName = name;
+		sr.objectType = ObjectType.VILLAGE;
+		sr.object = new City(City.CityType.VILLAGE);
+		sr.location = new LatLon(CENTER.getLatitude() + lat, CENTER.getLongitude());
+		sr.priority = priority;
+		return sr;
+	}
+
+	private static String names(SearchResultCollection c) {
+		List<String> names = new ArrayList<>();
+		for (SearchResult sr : c.getCurrentSearchResults()) {
+			names.add(sr.localeName);
+		}
+		return names.toString();
+	}
+}
@@ -0,0 +1,62 @@
+package net.osmand.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.ResultMatcher;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchResult;
+
+public class SearchResultMatcherBufferTest {
+
+	@Test
+	public void testBuffersArePublishedInOrder() {
+		final List<String> published = new ArrayList<String>();
+		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				published.add(object.objectType == ObjectType.SEARCH_API_REGION_FINISHED ? "region" : object.localeName);
+				// outer matcher still decides which results are taken
+				return !"skip".equals(object.localeName);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		AtomicInteger requestNumber = new AtomicInteger(1);
+		SearchResultMatcher matcher = new SearchResultMatcher(rm, null, 1, requestNumber, -1);
+		SearchResult parent = result("parent");
+		matcher.setParentSearchResult(parent);
+		SearchResultMatcher first = matcher.createBuffer();
+		SearchResultMatcher second = matcher.createBuffer();
+		second.publish(result("c"));
+		first.publish(result("a"));
+		first.publish(result("skip"));
+		first.apiSearchRegionFinished(null, null, null);
+		first.publish(result("b"));
+		Assert.assertTrue(published.isEmpty());
+
+		matcher.publishBuffer(first);
+		matcher.publishBuffer(second);
+		Assert.assertEquals("[a, skip, region, b, c]", published.toString());
+		Assert.assertEquals(3, matcher.getCount());
+		Assert.assertSame(parent, matcher.getRequestResults().get(0).parentSearchResult);
+
+		requestNumber.incrementAndGet();
+		Assert.assertTrue(first.isCancelled());
+	}
+
+	private static SearchResult result(String name) {
+		SearchResult sr = new SearchResult(null);
+		sr.localeName = name;
+		sr.objectType = ObjectType.POI;
+		return sr;
+	}
+}
@@ -0,0 +1,137 @@
+package net.osmand.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.binary.TemporaryObfFiles;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchResult;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SearchUICoreParallelTest {
+
+	private static final String[] QUERIES = { "Gre", "Green", "Happy Caf", "Cafe", "Cafe ", "Happy Cafe ", "Bank Gre", "Mill", "Main Street 1",
+			"Main Street 1 2", "Oak Street 2 1" };
+	// typed after city is selected
+	private static final String[] CITY_QUERIES = { "Oak", "Oak 2", "Oak Street 2 1", "Main 1" };
+	private static final String[] VILLAGE_QUERIES = { "3", "", "Main 1" };
+
+	@Rule
+	public TemporaryObfFiles files = new TemporaryObfFiles();
+
+	private List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private ExecutorService pool;
+	private MapPoiTypes poiTypes;
+	private SyntheticObfWriter writer;
+
+	@Before
+	public void setUp() throws IOException {
+		writer = new SyntheticObfWriter(52.4, 4.8).setGrid(20, 0.0015);
+		for (SyntheticObfWriter w : new SyntheticObfWriter[] { writer,
+				new SyntheticObfWriter(52.4, 4.86).setGrid(20, 0.0015) }) {
+			readers.add(files.openConcurrent(files.write(w), true));
+		}
+		pool = Executors.newFixedThreadPool(4);
+		poiTypes = MapPoiTypes.getDefault();
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testParallelSearchMatchesSerial() throws InterruptedException {
+		SearchUICore serial = createCore(null);
+		SearchUICore parallel = createCore(pool);
+		for (String query : QUERIES) {
+			List<String> expected = search(serial, query);
+			Assert.assertFalse(query, expected.isEmpty());
+			Assert.assertEquals(query, expected, search(parallel, query));
+		}
+
+		checkSelected(serial, parallel, SyntheticObfWriter.getCityName(), ObjectType.CITY, CITY_QUERIES);
+		for (int i = 0; i < SyntheticObfWriter.getVillageCount(); i++) {
+			checkSelected(serial, parallel, SyntheticObfWriter.getVillageName(i), ObjectType.VILLAGE, VILLAGE_QUERIES);
+		}
+	}
+
+	@Test
+	public void testSingleThreadPool() throws InterruptedException {
+		// apis wait for regions read by the same pool
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			SearchUICore serial = createCore(null);
+			SearchUICore parallel = createCore(single);
+			for (String query : QUERIES) {
+				Assert.assertEquals(query, search(serial, query), search(parallel, query));
+			}
+		} finally {
+			single.shutdownNow();
+		}
+	}
+
+	private void checkSelected(SearchUICore serial, SearchUICore parallel, String name, ObjectType type,
+			String[] queries) throws InterruptedException {
+		select(serial, name, type);
+		select(parallel, name, type);
+		for (String query : queries) {
+			String text = serial.getPhrase().getText(false) + query;
+			List<String> expected = search(serial, text);
+			Assert.assertFalse(query, expected.isEmpty());
+			Assert.assertEquals(query, expected, search(parallel, text));
+		}
+		serial.resetPhrase();
+		parallel.resetPhrase();
+	}
+
+	private SearchUICore createCore(ExecutorService pool) {
+		SearchUICore core = new SearchUICore(poiTypes, "en", false);
+		core.init();
+		core.setSearchPool(pool);
+		core.getSearchSettings().setOfflineIndexes(readers);
+		core.updateSettings(core.getSearchSettings().setOriginalLocation(writer.getCenter()));
+		return core;
+	}
+
+	private static void select(SearchUICore core, String name, ObjectType type) throws InterruptedException {
+		search(core, name);
+		for (SearchResult r : core.getCurrentSearchResult().getCurrentSearchResults()) {
+			if (r.objectType == type && name.equals(r.localeName)) {
+				core.selectSearchResult(r);
+				return;
+			}
+		}
+		Assert.fail(name + " is not found");
+	}
+
+	private static List<String> search(SearchUICore core, String text) throws InterruptedException {
+		final CountDownLatch finished = new CountDownLatch(1);
+		core.setOnResultsComplete(new Runnable() {
+			@Override
+			public void run() {
+				finished.countDown();
+			}
+		});
+		core.search(text, false, null);
+		Assert.assertTrue(finished.await(60, TimeUnit.SECONDS));
+		List<String> results = new ArrayList<String>();
+		for (SearchResult r : core.getCurrentSearchResult().getCurrentSearchResults()) {
+			results.add(r.objectType + " " + r + " " + r.location);
+		}
+		return results;
+	}
+}
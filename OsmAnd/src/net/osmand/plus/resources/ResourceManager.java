@@ -673,17 +673,21 @@ public class ResourceManager {
 			files.remove(worldBasemapMini);
 		}
 		java.text.DateFormat dateFormat = getDateFormat();
-		for (File f : files) {
+		progress.startTask(context.getString(R.string.indexing_map), -1);
+		// files are opened in parallel, errors are logged by cache
+		Throwable[] errors = new Throwable[files.size()];
+		List<BinaryMapIndexReader> readers = cachedOsmandIndexes.getReaders(files,
+				Math.max(2, Runtime.getRuntime().availableProcessors()), errors);
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
 			progress.startTask(context.getString(R.string.indexing_map) + " " + f.getName(), -1); //$NON-NLS-1$
 			try {
-				BinaryMapIndexReader mapReader = null;
-				try {
-					mapReader = cachedOsmandIndexes.getReader(f);
-					if (mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
-						mapReader = null;
-					}
-				} catch (IOException e) {
-					log.error(String.format("File %s could not be read", f.getName()), e);
+				if (errors[i] instanceof OutOfMemoryError) {
+					throw (OutOfMemoryError) errors[i];
+				}
+				BinaryMapIndexReader mapReader = readers.get(i);
+				if (mapReader != null && mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
+					mapReader = null;
 				}
 				boolean wikiMap = (f.getName().contains("_wiki") || f.getName().contains(IndexConstants.BINARY_WIKI_MAP_INDEX_EXT));
 				boolean srtmMap = f.getName().contains(IndexConstants.BINARY_SRTM_MAP_INDEX_EXT);
@@ -413,7 +413,7 @@ public class RouteCalculationResult {
 					if (ref != null) {
 						RouteDataObject nextRoad = next.getObject();
 						boolean isNextShieldFound = false;
-						int[] nextSegmentNameIds = nextRoad.nameIds;
+						int[] nextSegmentNameIds = nextRoad.getNameIds();
 						for (int nm = 0; nm < nextSegmentNameIds.length; nm++) {
 							if (nextRoad.region.quickGetEncodingRule(nextSegmentNameIds[nm]).getTag().startsWith("road_ref")) {
 								info.setRouteDataObject(nextRoad);
@@ -428,7 +428,7 @@ public class RouteCalculationResult {
 									break;
 								} else {
 									RouteDataObject obj = list.get(ind).getObject();
-									int[] nameIds = obj.nameIds;
+									int[] nameIds = obj.getNameIds();
 									for (int idx = 0; idx < nameIds.length; idx ++) {
 										if (obj.region.routeEncodingRules.get(obj.nameIds[idx]).getTag().startsWith("road_ref")) {
 											info.setRouteDataObject(obj);
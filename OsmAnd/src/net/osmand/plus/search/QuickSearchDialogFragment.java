@@ -1023,6 +1023,9 @@ public class QuickSearchDialogFragment extends DialogFragment implements OsmAndC
 
 	@Override
 	public void onDismiss(DialogInterface dialog) {
+		if (searchUICore != null) {
+			searchUICore.clearCache();
+		}
 		MapActivity mapActivity = getMapActivity();
 		if (mapActivity != null) {
 			hideToolbar();
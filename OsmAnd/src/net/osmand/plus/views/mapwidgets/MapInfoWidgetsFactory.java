@@ -1134,6 +1134,7 @@ public class MapInfoWidgetsFactory {
 			String nameTag = null;
 			String name = null;
 			StringBuilder additional = new StringBuilder();
+			object.decodeNames();
 			for (int i = 0; i < object.nameIds.length; i++) {
 				String key = object.region.routeEncodingRules.get(object.nameIds[i]).getTag();
 				String val = object.names.get(object.nameIds[i]);